@@ -0,0 +1,120 @@
+package com.abrik.bank_cards.bank_cards.repository;
+
+import com.abrik.bank_cards.bank_cards.BankCardsApplication;
+import com.abrik.bank_cards.bank_cards.dto.card.CardSummary;
+import com.abrik.bank_cards.bank_cards.dto.card.PanMode;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferResponse;
+import com.abrik.bank_cards.bank_cards.entity.Card;
+import com.abrik.bank_cards.bank_cards.entity.Transfer;
+import com.abrik.bank_cards.bank_cards.util.CardUtil;
+import com.abrik.bank_cards.bank_cards.util.TransferUtil;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.abrik.bank_cards.bank_cards.repository.specification.TransferSpecifications.search;
+
+/**
+ * Страница списка карт и переводов: прежний путь (сущности в persistence context + маппинг в ответ)
+ * против проекций CardSummary и TransferProjectionRepository, обе в read-only транзакции.
+ * <p>
+ * Нужен Postgres со схемой приложения и данными: SPRING_DATASOURCE_URL / _USERNAME / _PASSWORD,
+ * {@code bench.user-id} — пользователь с картами и переводами (по умолчанию 1). Фоновые задачи выключены.
+ * Запуск: mvn -Pbench test-compile exec:java
+ * -Dexec.args="ListProjectionBenchmark -prof gc -jvmArgsAppend -Dbench.user-id=42"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ListProjectionBenchmark {
+    // размер страницы списков по умолчанию
+    private static final int PAGE = 20;
+
+    private ConfigurableApplicationContext context;
+    private TransactionTemplate readOnly;
+    private EntityManager entityManager;
+    private CardRepository cardRepository;
+    private TransferRepository transferRepository;
+    private CardUtil cardUtil;
+    private TransferUtil transferUtil;
+
+    private Long userId;
+    private Pageable cardPage;
+    private Pageable transferPage;
+    private Specification<Transfer> transfers;
+
+    @Setup
+    public void setup() {
+        context = new SpringApplicationBuilder(BankCardsApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.liquibase.enabled=false",
+                        "app.outbox.relay.enabled=false",
+                        "app.transfer.partition.enabled=false",
+                        "app.security.pan-fingerprint.backfill.enabled=false")
+                .run();
+        readOnly = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnly.setReadOnly(true);
+        entityManager = context.getBean(EntityManager.class);
+        cardRepository = context.getBean(CardRepository.class);
+        transferRepository = context.getBean(TransferRepository.class);
+        cardUtil = context.getBean(CardUtil.class);
+        transferUtil = context.getBean(TransferUtil.class);
+
+        userId = Long.getLong("bench.user-id", 1L);
+        cardPage = PageRequest.of(0, PAGE, Sort.by(Sort.Direction.DESC, "createdAt"));
+        transferPage = PageRequest.of(0, PAGE, Sort.by(Sort.Direction.DESC, "createdAt", "id"));
+        transfers = search(userId, null, null, null, null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<?> cardsAsEntities() {
+        return readOnly.execute(status -> entityManager
+                .createQuery("select c from Card c where c.userId = :userId order by c.createdAt desc", Card.class)
+                .setParameter("userId", userId)
+                .setMaxResults(PAGE + 1)
+                .getResultList().stream()
+                .map(cardUtil::toResponse)
+                .toList());
+    }
+
+    @Benchmark
+    public List<?> cardsAsSummaries() {
+        return readOnly.execute(status -> {
+            Slice<CardSummary> slice = cardRepository.searchSlice(userId, null, null, null, cardPage);
+            return slice.getContent().stream().map(card -> cardUtil.toResponse(card, PanMode.FULL)).toList();
+        });
+    }
+
+    @Benchmark
+    public List<TransferResponse> transfersAsEntities() {
+        return readOnly.execute(status ->
+                transferRepository.findAll(transfers, transferPage).map(transferUtil::map).getContent());
+    }
+
+    @Benchmark
+    public List<TransferResponse> transfersAsResponses() {
+        return readOnly.execute(status ->
+                transferRepository.findResponses(transfers, transferPage).getContent());
+    }
+}
@@ -0,0 +1,72 @@
+package com.abrik.bank_cards.bank_cards.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Проверки входа на «счастливом пути»: прежние регулярки (replaceAll, Pattern.compile на вызов)
+ * против InputValidator. Аллокации смотреть профилировщиком gc — у is*-методов
+ * и normalizePan на чистом номере gc.alloc.rate.norm должен быть около 0 B/op.
+ * Запуск: mvn -Pbench test-compile exec:java -Dexec.args="InputValidatorBenchmark -prof gc"
+ * <p>
+ * Под JMH не запускался — цифры gc.alloc.rate.norm не сняты, см. README.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InputValidatorBenchmark {
+
+    private static final Pattern PAN_PATTERN = Pattern.compile("^\\d{13,19}$");
+    private static final String EMAIL_REGEX = "^[a-zA-Z0-9_.+-]+@[a-zA-Z0-9-]+\\.[a-zA-Z0-9-.]+$";
+
+    private String pan = "5212345678901234";
+    private String formattedPan = "5212 3456 7890 1234";
+    private String email = "first.last+tag@mail-server.co.uk";
+    private String currency = "USD";
+    private String idempotencyKey = "3f1c2a9e-7b1d-4c55-9d0e-0a7f2b6c8e11";
+
+    @Benchmark
+    public boolean legacyPan() {
+        return PAN_PATTERN.matcher(pan.replaceAll("[\\s-]", "")).matches();
+    }
+
+    @Benchmark
+    public boolean isPan() {
+        return InputValidator.isPan(pan);
+    }
+
+    @Benchmark
+    public String normalizeCleanPan() {
+        return InputValidator.normalizePan(pan);
+    }
+
+    @Benchmark
+    public String normalizeFormattedPan() {
+        return InputValidator.normalizePan(formattedPan);
+    }
+
+    @Benchmark
+    public boolean legacyEmail() {
+        return Pattern.compile(EMAIL_REGEX).matcher(email).matches();
+    }
+
+    @Benchmark
+    public boolean isEmail() {
+        return InputValidator.isEmail(email);
+    }
+
+    @Benchmark
+    public boolean isCurrency() {
+        return InputValidator.isCurrency(currency);
+    }
+
+    @Benchmark
+    public boolean isIdempotencyKey() {
+        return InputValidator.isIdempotencyKey(idempotencyKey);
+    }
+}
@@ -0,0 +1,95 @@
+package com.abrik.bank_cards.bank_cards.util;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Расшифровка PAN для страницы списка карт: прежняя реализация (AES/ECB, getInstance + init на вызов)
+ * против PanCryptoUtil (пул Cipher, конверт AES-GCM), пути byte[] и ByteBuffer.
+ * Запуск: mvn -Pbench test-compile exec:java
+ * <p>
+ * Под JMH не запускался — пропускная способность не измерена, см. README.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PanCryptoBenchmark {
+
+    private static final String LEGACY_KEY = "U8ZqTyCHJ3FSNFMoHp436kRbwuB5QlQqorF1ORy8rQw=";
+    private static final String KEY_RING = "1:WBmC7aKN7xQNDfRoTtNuwSqqKqfCoGu6Haf3+Nj9+3s=";
+    // размер страницы админского списка по умолчанию
+    private static final int PAGE = 20;
+
+    private PanCryptoUtil crypto;
+    private SecretKeySpec legacyKey;
+    private String[] legacyEncrypted;
+    private byte[][] envelopes;
+
+    @State(Scope.Thread)
+    public static class Buffers {
+        final ByteBuffer out = ByteBuffer.allocate(64);
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        crypto = new PanCryptoUtil(LEGACY_KEY, KEY_RING, 1);
+        legacyKey = new SecretKeySpec(Base64.getDecoder().decode(LEGACY_KEY), "AES");
+        Cipher cipher = Cipher.getInstance("AES");
+        cipher.init(Cipher.ENCRYPT_MODE, legacyKey);
+        legacyEncrypted = new String[PAGE];
+        envelopes = new byte[PAGE][];
+        for (int i = 0; i < PAGE; i++) {
+            String pan = String.format("4%015d", 1_000_000L * i + 42);
+            legacyEncrypted[i] = Base64.getEncoder().encodeToString(cipher.doFinal(pan.getBytes()));
+            envelopes[i] = crypto.encrypt(pan);
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void legacyPerCallCipher(Blackhole bh) throws Exception {
+        for (String e : legacyEncrypted) {
+            Cipher cipher = Cipher.getInstance("AES");
+            cipher.init(Cipher.DECRYPT_MODE, legacyKey);
+            bh.consume(new String(cipher.doFinal(Base64.getDecoder().decode(e))));
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void pooledLegacy(Blackhole bh) {
+        for (String e : legacyEncrypted) {
+            bh.consume(crypto.decryptLegacy(e));
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void pooledEnvelope(Blackhole bh) {
+        for (byte[] e : envelopes) {
+            bh.consume(crypto.decrypt(e));
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void pooledEnvelopeByteBuffer(Buffers buffers, Blackhole bh) {
+        for (byte[] e : envelopes) {
+            buffers.out.clear();
+            bh.consume(crypto.decrypt(ByteBuffer.wrap(e), buffers.out));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
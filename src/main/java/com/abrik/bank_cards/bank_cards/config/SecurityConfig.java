@@ -1,6 +1,7 @@
 package com.abrik.bank_cards.bank_cards.config;
 
 import com.abrik.bank_cards.bank_cards.security.*;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -45,8 +46,12 @@ public class SecurityConfig {
                         .accessDeniedHandler(accessDeniedHandler)
                 )
                 .authorizeHttpRequests(auth -> auth
+                        // async-диспетчеризация потоковых ответов: без неё StreamingResponseBody выгрузки
+                        // (/api/transfers/export) и SSE (/api/stream) получают 401 — исходный запрос уже авторизован
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers(freeResourceUrls).permitAll()
                         .requestMatchers("/api/admin/**").hasRole("ADMIN")
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
                         .anyRequest().authenticated()
                 )
                 .addFilterBefore(jwtRequestFilter, UsernamePasswordAuthenticationFilter.class)
@@ -3,7 +3,10 @@ package com.abrik.bank_cards.bank_cards.controller.admin;
 import com.abrik.bank_cards.bank_cards.dto.card.CardResponse;
 import com.abrik.bank_cards.bank_cards.dto.card.CardStatus;
 import com.abrik.bank_cards.bank_cards.dto.card.CreateCardRequest;
+import com.abrik.bank_cards.bank_cards.dto.card.PanLookupRequest;
+import com.abrik.bank_cards.bank_cards.dto.card.PanMode;
 import com.abrik.bank_cards.bank_cards.dto.card.StatusResponse;
+import com.abrik.bank_cards.bank_cards.dto.common.CountMode;
 import com.abrik.bank_cards.bank_cards.dto.common.PageResponse;
 import com.abrik.bank_cards.bank_cards.service.admin.CardAdminService;
 import jakarta.validation.Valid;
@@ -33,8 +36,10 @@ public class CardAdminController {
     @GetMapping
     public PageResponse<CardResponse> list(@RequestParam(required = false) CardStatus status,
                                            @RequestParam(required = false) String search,
+                                           @RequestParam(defaultValue = "exact") String count,
+                                           @RequestParam(defaultValue = "masked") String pan,
                                            @ParameterObject Pageable pageable) {
-        return adminCardService.listAllCards(status, search, pageable);
+        return adminCardService.listAllCards(status, search, pageable, CountMode.from(count), PanMode.from(pan));
     }
 
     @GetMapping("/{cardId}")
@@ -42,6 +47,12 @@ public class CardAdminController {
         return adminCardService.getCard(cardId);
     }
 
+    // PAN в теле, а не в URL — не попадает в логи доступа
+    @PostMapping("/lookup")
+    public CardResponse lookup(@RequestBody @Valid PanLookupRequest request) {
+        return adminCardService.findByPan(request.getPan());
+    }
+
     @PostMapping("/{cardId}/block")
     public StatusResponse block(@PathVariable UUID cardId) {
         return adminCardService.blockCard(cardId);
@@ -52,6 +63,17 @@ public class CardAdminController {
         return adminCardService.activateCard(cardId);
     }
 
+    @PostMapping("/{cardId}/hot")
+    public CardResponse makeHot(@PathVariable UUID cardId,
+                                @RequestParam(defaultValue = "8") int stripes) {
+        return adminCardService.makeHot(cardId, stripes);
+    }
+
+    @DeleteMapping("/{cardId}/hot")
+    public CardResponse makeCold(@PathVariable UUID cardId) {
+        return adminCardService.makeCold(cardId);
+    }
+
     @DeleteMapping("/{cardId}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void delete(@PathVariable UUID cardId) {
@@ -1,16 +1,26 @@
 package com.abrik.bank_cards.bank_cards.controller.admin;
 
+import com.abrik.bank_cards.bank_cards.dto.common.CountMode;
+import com.abrik.bank_cards.bank_cards.dto.common.CursorPage;
+import com.abrik.bank_cards.bank_cards.dto.common.PageResponse;
+import com.abrik.bank_cards.bank_cards.dto.transfer.ExportFormat;
 import com.abrik.bank_cards.bank_cards.dto.transfer.TransferResponse;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferSearchOrder;
 import com.abrik.bank_cards.bank_cards.dto.transfer.TransferStatus;
 import com.abrik.bank_cards.bank_cards.service.admin.TransferAdminService;
+import com.abrik.bank_cards.bank_cards.service.user.TransferExportService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.Instant;
 import java.util.UUID;
@@ -21,15 +31,69 @@ import java.util.UUID;
 @PreAuthorize("hasRole('ADMIN')")
 public class TransferAdminController {
     private final TransferAdminService adminTransferService;
+    private final TransferExportService transferExportService;
 
+    // q — поиск по сообщению (от 3 символов), order = date | relevance
     @GetMapping
     public Page<TransferResponse> listAll(
             @RequestParam(required = false) TransferStatus status,
             @RequestParam(required = false) Instant from,
             @RequestParam(required = false) Instant to,
             @RequestParam(required = false) UUID cardId,
+            @RequestParam(required = false) String q,
+            @RequestParam(defaultValue = "date") String order,
             Pageable pageable
     ) {
-        return adminTransferService.listAll(status, from, to, cardId, pageable);
+        return adminTransferService.listAll(status, from, to, cardId, q,
+                TransferSearchOrder.from(order), pageable);
+    }
+
+    // тот же список с count = exact | estimate | none — ответ в формате PageResponse
+    @GetMapping(params = "count")
+    public PageResponse<TransferResponse> listAllCounted(
+            @RequestParam(required = false) TransferStatus status,
+            @RequestParam(required = false) Instant from,
+            @RequestParam(required = false) Instant to,
+            @RequestParam(required = false) UUID cardId,
+            @RequestParam(required = false) String q,
+            @RequestParam(defaultValue = "date") String order,
+            @RequestParam String count,
+            Pageable pageable
+    ) {
+        return adminTransferService.listAll(status, from, to, cardId, q,
+                TransferSearchOrder.from(order), pageable, CountMode.from(count));
+    }
+
+    // keyset-пагинация для глубоких страниц: без OFFSET и count(*)
+    @GetMapping("/cursor")
+    public CursorPage<TransferResponse> listAllCursor(
+            @RequestParam(required = false) TransferStatus status,
+            @RequestParam(required = false) Instant from,
+            @RequestParam(required = false) Instant to,
+            @RequestParam(required = false) UUID cardId,
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        return adminTransferService.listAllCursor(status, from, to, cardId, q, cursor, size);
+    }
+
+    // выгрузка для финансов: поток с серверным курсором вместо постраничного обхода listAll
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam(required = false) TransferStatus status,
+            @RequestParam(required = false) Instant from,
+            @RequestParam(required = false) Instant to,
+            @RequestParam(required = false) UUID cardId,
+            @RequestParam(required = false) String q,
+            @RequestParam(defaultValue = "csv") String format
+    ) {
+        ExportFormat exportFormat = ExportFormat.from(format);
+        StreamingResponseBody body = transferExportService.export(null, status, from, to, cardId, q, exportFormat);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"transfers." + exportFormat.getExtension() + "\"")
+                .body(body);
     }
 }
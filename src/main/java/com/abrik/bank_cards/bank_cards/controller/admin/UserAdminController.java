@@ -1,5 +1,7 @@
 package com.abrik.bank_cards.bank_cards.controller.admin;
 
+import com.abrik.bank_cards.bank_cards.dto.common.CountMode;
+import com.abrik.bank_cards.bank_cards.dto.common.PageResponse;
 import com.abrik.bank_cards.bank_cards.dto.user.UpdateUserRequest;
 import com.abrik.bank_cards.bank_cards.dto.user.UpdateUserRolesRequest;
 import com.abrik.bank_cards.bank_cards.dto.user.UserDto;
@@ -33,6 +35,19 @@ public class UserAdminController {
         return userAdminService.listUsers(search, email, active, roles, pageable);
     }
 
+    // тот же список с count = exact | estimate | none — ответ в формате PageResponse
+    @GetMapping(params = "count")
+    public PageResponse<UserDto> listUsersCounted(
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) String email,
+            @RequestParam(required = false) Boolean active,
+            @RequestParam(required = false) List<String> roles,
+            @RequestParam String count,
+            @PageableDefault(size = 20, sort = "id", direction = Sort.Direction.DESC) Pageable pageable
+    ) {
+        return userAdminService.listUsers(search, email, active, roles, pageable, CountMode.from(count));
+    }
+
     @GetMapping("/{id}")
     public UserDto getUser(@PathVariable Long id) {
         return userAdminService.getUser(id);
@@ -1,9 +1,15 @@
 package com.abrik.bank_cards.bank_cards.controller.user;
 
 import com.abrik.bank_cards.bank_cards.dto.card.*;
+import com.abrik.bank_cards.bank_cards.dto.common.CountMode;
 import com.abrik.bank_cards.bank_cards.dto.common.PageResponse;
 import com.abrik.bank_cards.bank_cards.security.MyUserDetails;
+import com.abrik.bank_cards.bank_cards.dto.ledger.BalanceAtResponse;
+import com.abrik.bank_cards.bank_cards.dto.ledger.CardStatsResponse;
+import com.abrik.bank_cards.bank_cards.dto.ledger.LedgerEntryResponse;
 import com.abrik.bank_cards.bank_cards.service.user.CardService;
+import com.abrik.bank_cards.bank_cards.service.user.LedgerService;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.data.domain.Pageable;
@@ -11,6 +17,9 @@ import org.springframework.http.HttpStatus;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
 import java.util.UUID;
 
 @RestController
@@ -18,6 +27,7 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class CardController {
     private final CardService cardService;
+    private final LedgerService ledgerService;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -38,8 +48,17 @@ public class CardController {
             @AuthenticationPrincipal MyUserDetails myUserDetails,
             @RequestParam(required = false) CardStatus status,
             @RequestParam(required = false) String search,
+            @RequestParam(defaultValue = "exact") String count,
+            @RequestParam(defaultValue = "full") String pan,
             @ParameterObject Pageable pageable) {
-        return cardService.listMyCards(myUserDetails.getUserId(), status, search, pageable);
+        return cardService.listMyCards(myUserDetails.getUserId(), status, search, pageable,
+                CountMode.from(count), PanMode.from(pan));
+    }
+
+    @PostMapping("/reveal")
+    public List<RevealedPanResponse> reveal(@AuthenticationPrincipal MyUserDetails myUserDetails,
+                                            @RequestBody @Valid RevealPanRequest request) {
+        return cardService.revealPans(myUserDetails.getUserId(), request.getCardIds());
     }
 
     @GetMapping("/{cardId}")
@@ -48,6 +67,33 @@ public class CardController {
         return cardService.getMyCard(myUserDetails.getUserId(), cardId);
     }
 
+    @GetMapping("/{cardId}/ledger")
+    public PageResponse<LedgerEntryResponse> ledger(
+            @AuthenticationPrincipal MyUserDetails myUserDetails,
+            @PathVariable UUID cardId,
+            @RequestParam(required = false) Instant from,
+            @RequestParam(required = false) Instant to,
+            @ParameterObject Pageable pageable) {
+        return ledgerService.statement(myUserDetails.getUserId(), cardId, from, to, pageable);
+    }
+
+    @GetMapping("/{cardId}/balance")
+    public BalanceAtResponse balanceAt(
+            @AuthenticationPrincipal MyUserDetails myUserDetails,
+            @PathVariable UUID cardId,
+            @RequestParam(required = false) Instant at) {
+        return ledgerService.balanceAt(myUserDetails.getUserId(), cardId, at);
+    }
+
+    @GetMapping("/{cardId}/stats")
+    public CardStatsResponse stats(
+            @AuthenticationPrincipal MyUserDetails myUserDetails,
+            @PathVariable UUID cardId,
+            @RequestParam(required = false) LocalDate from,
+            @RequestParam(required = false) LocalDate to) {
+        return ledgerService.stats(myUserDetails.getUserId(), cardId, from, to);
+    }
+
     @PostMapping("/{cardId}/request-block")
     public StatusResponse requestBlock(@AuthenticationPrincipal MyUserDetails myUserDetails,
                                        @PathVariable UUID cardId) {
@@ -0,0 +1,24 @@
+package com.abrik.bank_cards.bank_cards.controller.user;
+
+import com.abrik.bank_cards.bank_cards.security.MyUserDetails;
+import com.abrik.bank_cards.bank_cards.service.stream.StreamHub;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/api/stream")
+@RequiredArgsConstructor
+public class StreamController {
+    private final StreamHub streamHub;
+
+    // SSE: события TRANSFER_* и CARD_* текущего пользователя сразу после коммита
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@AuthenticationPrincipal MyUserDetails myUserDetails) {
+        return streamHub.subscribe(myUserDetails.getUserId());
+    }
+}
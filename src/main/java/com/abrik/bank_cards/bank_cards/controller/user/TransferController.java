@@ -1,19 +1,35 @@
 package com.abrik.bank_cards.bank_cards.controller.user;
 
+import com.abrik.bank_cards.bank_cards.dto.common.CountMode;
+import com.abrik.bank_cards.bank_cards.dto.common.CursorPage;
+import com.abrik.bank_cards.bank_cards.dto.common.PageResponse;
+import com.abrik.bank_cards.bank_cards.dto.transfer.BatchTransferRequest;
+import com.abrik.bank_cards.bank_cards.dto.transfer.BatchTransferResponse;
 import com.abrik.bank_cards.bank_cards.dto.transfer.CreateTransferRequest;
+import com.abrik.bank_cards.bank_cards.dto.transfer.ExportFormat;
 import com.abrik.bank_cards.bank_cards.dto.transfer.TransferResponse;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferSearchOrder;
 import com.abrik.bank_cards.bank_cards.dto.transfer.TransferStatus;
+import com.abrik.bank_cards.bank_cards.exception.BadRequestException;
 import com.abrik.bank_cards.bank_cards.security.MyUserDetails;
+import com.abrik.bank_cards.bank_cards.service.user.TransferDispatcher;
+import com.abrik.bank_cards.bank_cards.service.user.TransferExportService;
 import com.abrik.bank_cards.bank_cards.service.user.TransferService;
+import com.abrik.bank_cards.bank_cards.util.InputValidator;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.net.URI;
 import java.time.Instant;
 import java.util.UUID;
 
@@ -22,22 +38,48 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class TransferController {
     private final TransferService transferService;
+    private final TransferDispatcher transferDispatcher;
+    private final TransferExportService transferExportService;
 
+    // 201 — перевод проведён; 202 + Location — принят асинхронно (app.transfer.async.enabled)
     @PostMapping
-    @ResponseStatus(HttpStatus.CREATED)
-    public TransferResponse create(
+    public ResponseEntity<TransferResponse> create(
             @AuthenticationPrincipal MyUserDetails myUserDetails,
             @Valid @RequestBody CreateTransferRequest request,
             @RequestHeader(value = "Idempotency-Key", required = false) String idemKeyHeader) {
 
-        String idempotencyKey = (idemKeyHeader == null || idemKeyHeader.isBlank())
-                ? UUID.randomUUID().toString()
-                : idemKeyHeader.trim();
+        TransferResponse response = transferDispatcher.transfer(
+                myUserDetails.getUserId(), request, resolveIdempotencyKey(idemKeyHeader));
 
-        return transferService.transferOwnCards(myUserDetails.getUserId(), request, idempotencyKey);
+        if (response.getStatus() == TransferStatus.PENDING) {
+            URI location = ServletUriComponentsBuilder.fromCurrentRequestUri()
+                    .path("/{id}")
+                    .buildAndExpand(response.getId())
+                    .toUri();
+            return ResponseEntity.accepted().location(location).body(response);
+        }
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
-    // 1) Список СВОИХ переводов
+    // Статус перевода (для асинхронного приёма)
+    @GetMapping("/{transferId}")
+    public TransferResponse get(@AuthenticationPrincipal MyUserDetails myUserDetails,
+                                @PathVariable UUID transferId) {
+        return transferService.getOwn(myUserDetails.getUserId(), transferId);
+    }
+
+    // Пакет переводов в одной транзакции (ALL_OR_NOTHING / PER_ITEM)
+    @PostMapping("/batch")
+    public BatchTransferResponse createBatch(
+            @AuthenticationPrincipal MyUserDetails myUserDetails,
+            @Valid @RequestBody BatchTransferRequest request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idemKeyHeader) {
+
+        return transferDispatcher.transferBatch(
+                myUserDetails.getUserId(), request, resolveIdempotencyKey(idemKeyHeader));
+    }
+
+    // 1) Список СВОИХ переводов (q — поиск по сообщению, order = date | relevance)
     @GetMapping
     public Page<TransferResponse> listOwn(
             @AuthenticationPrincipal MyUserDetails myUserDetails,
@@ -45,8 +87,75 @@ public class TransferController {
             @RequestParam(required = false) Instant from,
             @RequestParam(required = false) Instant to,
             @RequestParam(required = false) UUID cardId,
+            @RequestParam(required = false) String q,
+            @RequestParam(defaultValue = "date") String order,
             Pageable pageable
     ) {
-        return transferService.listOwn(myUserDetails.getUserId(), status, from, to, cardId, pageable);
+        return transferService.listOwn(myUserDetails.getUserId(), status, from, to, cardId, q,
+                TransferSearchOrder.from(order), pageable);
+    }
+
+    // тот же список с count = exact | estimate | none — ответ в формате PageResponse
+    @GetMapping(params = "count")
+    public PageResponse<TransferResponse> listOwnCounted(
+            @AuthenticationPrincipal MyUserDetails myUserDetails,
+            @RequestParam(required = false) TransferStatus status,
+            @RequestParam(required = false) Instant from,
+            @RequestParam(required = false) Instant to,
+            @RequestParam(required = false) UUID cardId,
+            @RequestParam(required = false) String q,
+            @RequestParam(defaultValue = "date") String order,
+            @RequestParam String count,
+            Pageable pageable
+    ) {
+        return transferService.listOwn(myUserDetails.getUserId(), status, from, to, cardId, q,
+                TransferSearchOrder.from(order), pageable, CountMode.from(count));
+    }
+
+    // Лента своих переводов с курсором (keyset-пагинация)
+    @GetMapping("/cursor")
+    public CursorPage<TransferResponse> listOwnCursor(
+            @AuthenticationPrincipal MyUserDetails myUserDetails,
+            @RequestParam(required = false) TransferStatus status,
+            @RequestParam(required = false) Instant from,
+            @RequestParam(required = false) Instant to,
+            @RequestParam(required = false) UUID cardId,
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        return transferService.listOwnCursor(myUserDetails.getUserId(), status, from, to, cardId, q, cursor, size);
+    }
+
+    // Выгрузка своих переводов потоком (format = csv | ndjson)
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(
+            @AuthenticationPrincipal MyUserDetails myUserDetails,
+            @RequestParam(required = false) TransferStatus status,
+            @RequestParam(required = false) Instant from,
+            @RequestParam(required = false) Instant to,
+            @RequestParam(required = false) UUID cardId,
+            @RequestParam(required = false) String q,
+            @RequestParam(defaultValue = "csv") String format
+    ) {
+        ExportFormat exportFormat = ExportFormat.from(format);
+        StreamingResponseBody body = transferExportService.export(
+                myUserDetails.getUserId(), status, from, to, cardId, q, exportFormat);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"transfers." + exportFormat.getExtension() + "\"")
+                .body(body);
+    }
+
+    // null — заголовка нет, ключ сгенерирует TransferDispatcher
+    private static String resolveIdempotencyKey(String idemKeyHeader) {
+        if (idemKeyHeader == null || idemKeyHeader.isBlank())
+            return null;
+        String key = idemKeyHeader.trim();
+        if (!InputValidator.isIdempotencyKey(key))
+            throw new BadRequestException("Idempotency-Key must be 1–"
+                    + InputValidator.IDEMPOTENCY_KEY_MAX_LENGTH + " printable ASCII characters without spaces");
+        return key;
     }
 }
@@ -20,6 +20,7 @@ public class CardResponse {
     @Schema(example = "**** **** **** 1234")
     private String maskedNumber;
 
+    @Schema(description = "Полный номер; null в списках с pan=masked")
     private String panDecrypted;
 
     @Schema(example = "9")
@@ -0,0 +1,21 @@
+package com.abrik.bank_cards.bank_cards.dto.card;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+/** Строка списка карт: только колонки для {@link CardResponse}, без сущности Card. */
+public record CardSummary(UUID id,
+                          Long userId,
+                          String last4,
+                          String panEncrypted,
+                          byte[] panCiphertext,
+                          short expiryMonth,
+                          short expiryYear,
+                          CardStatus status,
+                          BigDecimal balance,
+                          BigDecimal stripedBalance,
+                          String currency,
+                          Instant requestedBlockAt,
+                          Instant createdAt,
+                          Instant updatedAt) {}
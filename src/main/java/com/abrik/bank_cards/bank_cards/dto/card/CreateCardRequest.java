@@ -10,9 +10,9 @@ import java.math.BigDecimal;
 public class CreateCardRequest {
     Long userId;
 
+    // 13–19 цифр, пробелы и дефисы допускаются; проверка и нормализация — CardUtil.validatePan
     @NotBlank
-    @Pattern(regexp = "\\d{13,19}", message = "PAN должен содержать 13–19 цифр")
-    @Schema(example = "5212345678901234")
+    @Schema(example = "5212 3456 7890 1234")
     private String pan;
 
     @Min(1) @Max(12)
@@ -23,8 +23,8 @@ public class CreateCardRequest {
     @Schema(example = "2030")
     private short expiryYear;
 
+    // код ISO-4217 в любом регистре; проверка и нормализация — CardUtil.validateCurrency
     @NotBlank
-    @Pattern(regexp = "^[A-Z]{3}$", message = "Код валюты ISO-4217")
     @Schema(example = "USD")
     private String currency;
 
@@ -0,0 +1,13 @@
+package com.abrik.bank_cards.bank_cards.dto.card;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotBlank;
+import lombok.Data;
+
+@Data
+@Schema(description = "Поиск карты по полному номеру (ADMIN)")
+public class PanLookupRequest {
+    @NotBlank
+    @Schema(example = "5212 3456 7890 1234")
+    private String pan;
+}
@@ -0,0 +1,22 @@
+package com.abrik.bank_cards.bank_cards.dto.card;
+
+import com.abrik.bank_cards.bank_cards.exception.BadRequestException;
+
+import java.util.Locale;
+
+/** Отдавать ли в списке карт расшифрованный PAN. */
+public enum PanMode {
+    /** только maskedNumber, без расшифровки */
+    MASKED,
+    /** maskedNumber + panDecrypted (AES на каждую карту страницы) */
+    FULL;
+
+    public static PanMode from(String value) {
+        if (value == null || value.isBlank()) return MASKED;
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("pan must be one of: masked, full");
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.abrik.bank_cards.bank_cards.dto.card;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Schema(description = "Запрос полного номера для набора своих карт")
+public class RevealPanRequest {
+    @NotEmpty
+    @Size(max = 50)
+    private List<@NotNull UUID> cardIds;
+}
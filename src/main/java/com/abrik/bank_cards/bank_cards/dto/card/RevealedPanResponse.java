@@ -0,0 +1,19 @@
+package com.abrik.bank_cards.bank_cards.dto.card;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Полный номер карты")
+public class RevealedPanResponse {
+    private UUID cardId;
+
+    @Schema(example = "5212345678901234")
+    private String pan;
+}
@@ -11,9 +11,9 @@ import java.math.BigDecimal;
 * в реальности вряд ли применяется */
 @Data
 public class UpdateCardRequest {
+    // 13–19 цифр, пробелы и дефисы допускаются; проверка и нормализация — CardUtil.validatePan
     @NotBlank
-    @Pattern(regexp = "\\d{13,19}", message = "PAN должен содержать 13–19 цифр")
-    @Schema(example = "5212345678901234")
+    @Schema(example = "5212 3456 7890 1234")
     private String pan;
 
     @Min(1) @Max(12)
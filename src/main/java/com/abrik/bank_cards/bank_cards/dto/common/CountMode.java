@@ -0,0 +1,24 @@
+package com.abrik.bank_cards.bank_cards.dto.common;
+
+import com.abrik.bank_cards.bank_cards.exception.BadRequestException;
+
+import java.util.Locale;
+
+/** Как страница получает totalElements. */
+public enum CountMode {
+    /** отдельный COUNT(*) на каждый запрос */
+    EXACT,
+    /** COUNT(*) по тем же фильтрам, закэшированный на короткое время */
+    ESTIMATE,
+    /** без подсчёта: только hasNext */
+    NONE;
+
+    public static CountMode from(String value) {
+        if (value == null || value.isBlank()) return EXACT;
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("count must be one of: exact, estimate, none");
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.abrik.bank_cards.bank_cards.dto.common;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Schema(description = "Страница с курсором (keyset-пагинация, без подсчёта общего числа)")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CursorPage<T> {
+    private List<T> content;
+    private int size;
+
+    @Schema(description = "Курсор следующей страницы (передать в параметре cursor); null — страниц больше нет")
+    private String nextCursor;
+
+    private boolean hasNext;
+}
@@ -3,6 +3,8 @@ package com.abrik.bank_cards.bank_cards.dto.common;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 
 import java.util.List;
 
@@ -13,10 +15,12 @@ public class PageResponse<T> {
     private List<T> content;
     private int page;
     private int size;
-    private long totalElements;
-    private int totalPages;
+    // null при countMode = NONE
+    private Long totalElements;
+    private Integer totalPages;
     private boolean hasNext;
     private boolean hasPrevious;
+    private CountMode countMode;
 
     public static <T> PageResponse<T> of(List<T> content,
                                          int page,
@@ -25,6 +29,21 @@ public class PageResponse<T> {
                                          int totalPages,
                                          boolean hasNext,
                                          boolean hasPrevious) {
-        return new PageResponse<>(content, page, size, totalElements, totalPages, hasNext, hasPrevious);
+        return new PageResponse<>(content, page, size, totalElements, totalPages, hasNext, hasPrevious, CountMode.EXACT);
+    }
+
+    public static <T> PageResponse<T> of(Page<T> page) {
+        return of(page.getContent(), page.getNumber(), page.getSize(),
+                page.getTotalElements(), page.getTotalPages(), page.hasNext(), page.hasPrevious());
+    }
+
+    /** Страница без точного COUNT: total — оценка (ESTIMATE) или null (NONE). */
+    public static <T> PageResponse<T> of(Slice<?> slice, List<T> content, CountMode countMode, Long totalElements) {
+        Integer totalPages = null;
+        if (totalElements != null) {
+            totalPages = slice.getSize() == 0 ? 1 : (int) Math.ceil((double) totalElements / slice.getSize());
+        }
+        return new PageResponse<>(content, slice.getNumber(), slice.getSize(), totalElements, totalPages,
+                slice.hasNext(), slice.hasPrevious(), countMode);
     }
 }
@@ -0,0 +1,25 @@
+package com.abrik.bank_cards.bank_cards.dto.ledger;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+@Schema(description = "Баланс карты на момент времени")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BalanceAtResponse {
+    private UUID cardId;
+
+    private Instant at;
+
+    private BigDecimal balance;
+
+    @Schema(example = "USD")
+    private String currency;
+}
@@ -0,0 +1,26 @@
+package com.abrik.bank_cards.bank_cards.dto.ledger;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Schema(description = "Итоги карты за день (UTC)")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CardDayStatsResponse {
+    private LocalDate day;
+
+    private BigDecimal debitSum;
+
+    private BigDecimal creditSum;
+
+    private long txCount;
+
+    @Schema(description = "Баланс на конец дня; null — горячая карта")
+    private BigDecimal closingBalance;
+}
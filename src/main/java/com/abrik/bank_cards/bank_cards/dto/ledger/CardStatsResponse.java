@@ -0,0 +1,34 @@
+package com.abrik.bank_cards.bank_cards.dto.ledger;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+@Schema(description = "Дневные итоги карты за период; дни без проводок не возвращаются")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CardStatsResponse {
+    private UUID cardId;
+
+    @Schema(example = "USD")
+    private String currency;
+
+    private LocalDate from;
+
+    private LocalDate to;
+
+    private BigDecimal debitSum;
+
+    private BigDecimal creditSum;
+
+    private long txCount;
+
+    private List<CardDayStatsResponse> days;
+}
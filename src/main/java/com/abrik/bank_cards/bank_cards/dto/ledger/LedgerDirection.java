@@ -0,0 +1,6 @@
+package com.abrik.bank_cards.bank_cards.dto.ledger;
+
+public enum LedgerDirection {
+    DEBIT,
+    CREDIT
+}
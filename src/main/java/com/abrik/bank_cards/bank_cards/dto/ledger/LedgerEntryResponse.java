@@ -0,0 +1,34 @@
+package com.abrik.bank_cards.bank_cards.dto.ledger;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+@Schema(description = "Проводка по карте")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LedgerEntryResponse {
+    private Long id;
+
+    private UUID transferId;
+
+    private UUID cardId;
+
+    private LedgerDirection direction;
+
+    private BigDecimal amount;
+
+    @Schema(example = "USD")
+    private String currency;
+
+    @Schema(description = "Баланс карты после проводки (null — горячая карта)")
+    private BigDecimal balanceAfter;
+
+    private Instant createdAt;
+}
@@ -0,0 +1,3 @@
+package com.abrik.bank_cards.bank_cards.dto.transfer;
+
+public enum BatchMode { ALL_OR_NOTHING, PER_ITEM }
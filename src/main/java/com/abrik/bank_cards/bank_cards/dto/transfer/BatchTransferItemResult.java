@@ -0,0 +1,20 @@
+package com.abrik.bank_cards.bank_cards.dto.transfer;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Schema(description = "Результат одного элемента пакета")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchTransferItemResult {
+    @Schema(description = "Индекс элемента в запросе", example = "0")
+    private int index;
+
+    private TransferResponse transfer;
+
+    @Schema(description = "Причина отказа (только в режиме PER_ITEM)")
+    private String error;
+}
@@ -0,0 +1,22 @@
+package com.abrik.bank_cards.bank_cards.dto.transfer;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Schema(description = "Пакет переводов между своими картами (одна транзакция)")
+@Data
+public class BatchTransferRequest {
+    @NotEmpty
+    @Size(max = 500)
+    @Valid
+    private List<CreateTransferRequest> items;
+
+    @Schema(description = "ALL_OR_NOTHING — любая ошибка откатывает весь пакет; PER_ITEM — ошибки по элементам",
+            example = "ALL_OR_NOTHING")
+    private BatchMode mode = BatchMode.ALL_OR_NOTHING;
+}
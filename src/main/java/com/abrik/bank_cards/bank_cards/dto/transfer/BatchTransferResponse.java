@@ -0,0 +1,22 @@
+package com.abrik.bank_cards.bank_cards.dto.transfer;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Schema(description = "Результат пакета переводов")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchTransferResponse {
+    private BatchMode mode;
+
+    private int succeeded;
+
+    private int failed;
+
+    private List<BatchTransferItemResult> results;
+}
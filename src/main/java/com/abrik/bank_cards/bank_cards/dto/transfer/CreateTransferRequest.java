@@ -21,8 +21,9 @@ public class CreateTransferRequest {
     @Schema(example = "100.00")
     private BigDecimal amount;
 
+    // код ISO-4217 в любом регистре; в верхний регистр приводит TransferDispatcher
     @NotBlank
-    @Pattern(regexp = "^[A-Z]{3}$")
+    @Schema(example = "USD")
     private String currency;
 
     @Size(max = 256)
@@ -0,0 +1,26 @@
+package com.abrik.bank_cards.bank_cards.dto.transfer;
+
+import com.abrik.bank_cards.bank_cards.exception.BadRequestException;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Locale;
+
+@Getter
+@RequiredArgsConstructor
+public enum ExportFormat {
+    CSV("text/csv", "csv"),
+    NDJSON("application/x-ndjson", "ndjson");
+
+    private final String contentType;
+    private final String extension;
+
+    public static ExportFormat from(String value) {
+        if (value == null || value.isBlank()) return CSV;
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("format must be one of: csv, ndjson");
+        }
+    }
+}
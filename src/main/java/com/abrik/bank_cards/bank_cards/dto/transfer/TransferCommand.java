@@ -0,0 +1,4 @@
+package com.abrik.bank_cards.bank_cards.dto.transfer;
+
+/** Перевод, поставленный в очередь: пользователь, запрос и ключ идемпотентности. */
+public record TransferCommand(Long userId, CreateTransferRequest request, String idempotencyKey) {}
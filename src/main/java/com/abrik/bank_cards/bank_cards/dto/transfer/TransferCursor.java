@@ -0,0 +1,7 @@
+package com.abrik.bank_cards.bank_cards.dto.transfer;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/** Позиция в ленте переводов: последняя выданная строка по (created_at, id). */
+public record TransferCursor(Instant createdAt, UUID id) {}
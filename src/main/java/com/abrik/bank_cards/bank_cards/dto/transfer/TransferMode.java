@@ -0,0 +1,9 @@
+package com.abrik.bank_cards.bank_cards.dto.transfer;
+
+/**
+ * Способ проведения одиночного перевода (app.transfer.mode).
+ * PESSIMISTIC — SELECT ... FOR UPDATE обеих карт, проверки в Java, saveAll.
+ * GUARDED — условные UPDATE card ... WHERE balance >= :amount, решение по числу изменённых строк.
+ * OPTIMISTIC — чтение без блокировок, проверка @Version при flush, повтор в {@code TransferDispatcher}.
+ */
+public enum TransferMode { PESSIMISTIC, GUARDED, OPTIMISTIC }
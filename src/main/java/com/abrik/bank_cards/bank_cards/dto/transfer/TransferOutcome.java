@@ -0,0 +1,13 @@
+package com.abrik.bank_cards.bank_cards.dto.transfer;
+
+/** Результат одного перевода группы: либо transfer, либо бизнес-ошибка. */
+public record TransferOutcome(TransferResponse transfer, RuntimeException error) {
+
+    public static TransferOutcome ok(TransferResponse transfer) {
+        return new TransferOutcome(transfer, null);
+    }
+
+    public static TransferOutcome failed(RuntimeException error) {
+        return new TransferOutcome(null, error);
+    }
+}
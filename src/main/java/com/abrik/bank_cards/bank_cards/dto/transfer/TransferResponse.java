@@ -30,5 +30,8 @@ public class TransferResponse {
     @Schema(description = "Причина ошибки (если есть)")
     private String message;
 
+    @Schema(description = "Причина отказа асинхронного перевода (status = FAILED)")
+    private String failureReason;
+
     private Instant createdAt;
 }
@@ -0,0 +1,22 @@
+package com.abrik.bank_cards.bank_cards.dto.transfer;
+
+import com.abrik.bank_cards.bank_cards.exception.BadRequestException;
+
+import java.util.Locale;
+
+/** Порядок списка переводов при поиске по тексту (q). */
+public enum TransferSearchOrder {
+    /** по времени — sort из запроса или новые сверху */
+    DATE,
+    /** по сходству сообщения с q (pg_trgm), при равенстве — новые сверху */
+    RELEVANCE;
+
+    public static TransferSearchOrder from(String value) {
+        if (value == null || value.isBlank()) return DATE;
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("order must be one of: date, relevance");
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.abrik.bank_cards.bank_cards.entity;
 import com.abrik.bank_cards.bank_cards.dto.card.CardStatus;
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.math.BigDecimal;
 import java.time.Instant;
@@ -10,6 +11,8 @@ import java.util.UUID;
 
 @Entity
 @Data
+// UPDATE только изменённых столбцов: устаревшая сущность не затирает pan_* после PanRekeyer и backfill
+@DynamicUpdate
 @Table(name = "card")
 public class Card {
     @Id
@@ -22,10 +25,18 @@ public class Card {
     @Column(name = "last4", length = 4, nullable = false)
     private String last4;
 
-    // опционально, можно удалить
+    // прежний формат (Base64 от AES/ECB); обнуляется при перешифровании
     @Column(name = "pan_encrypted")
     private String panEncrypted;
 
+    // версионированный конверт AES-GCM, см. PanCryptoUtil
+    @Column(name = "pan_ciphertext")
+    private byte[] panCiphertext;
+
+    // HMAC нормализованного PAN (PanFingerprintUtil), уникален
+    @Column(name = "pan_fingerprint")
+    private byte[] panFingerprint;
+
     @Column(name = "expiry_month")
     private short expiryMonth;
 
@@ -42,6 +53,15 @@ public class Card {
     @Column(name = "currency", length = 3, nullable = false)
     private String currency;
 
+    // > 0 — «горячая» карта: зачисления идут в полосы card_balance_stripe, balance — основная часть
+    @Column(name = "balance_stripes", nullable = false)
+    private short balanceStripes;
+
+    // сумма полос горячей карты; не читается вместе с картой —
+    // заполняет CardBalanceStripeService.loadStripedBalance там, где нужен полный баланс
+    @Transient
+    private BigDecimal stripedBalance;
+
     @Column(name = "requested_block_at")
     private Instant requestedBlockAt; // null, если нет запроса
 
@@ -50,4 +70,8 @@ public class Card {
 
     @Column(name = "updated_at")
     private Instant updatedAt;
+
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
 }
@@ -0,0 +1,17 @@
+package com.abrik.bank_cards.bank_cards.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Entity
+@Data
+@Table(name = "card_balance_stripe")
+public class CardBalanceStripe {
+    @EmbeddedId
+    private CardBalanceStripeId id;
+
+    @Column(name = "balance", nullable = false, precision = 19, scale = 2)
+    private BigDecimal balance;
+}
@@ -0,0 +1,22 @@
+package com.abrik.bank_cards.bank_cards.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+@Embeddable
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CardBalanceStripeId implements Serializable {
+    @Column(name = "card_id", nullable = false)
+    private UUID cardId;
+
+    @Column(name = "stripe_no", nullable = false)
+    private short stripeNo;
+}
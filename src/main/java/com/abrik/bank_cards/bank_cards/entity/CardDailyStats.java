@@ -0,0 +1,32 @@
+package com.abrik.bank_cards.bank_cards.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * Дневные итоги по карте (день — UTC). Пишется только триггером на ledger_entry.
+ * slot 0 — проводки с известным балансом; у горячей карты зачисления раскладываются
+ * по слотам 1..8, чтобы дневная строка не стала общей блокировкой для полос.
+ */
+@Entity
+@Data
+@Table(name = "card_daily_stats")
+public class CardDailyStats {
+    @EmbeddedId
+    private CardDailyStatsId id;
+
+    @Column(name = "debit_sum", nullable = false, precision = 19, scale = 2)
+    private BigDecimal debitSum;
+
+    @Column(name = "credit_sum", nullable = false, precision = 19, scale = 2)
+    private BigDecimal creditSum;
+
+    @Column(name = "tx_count", nullable = false)
+    private int txCount;
+
+    // balance_after последней проводки дня в slot 0; NULL — горячая карта
+    @Column(name = "closing_balance", precision = 19, scale = 2)
+    private BigDecimal closingBalance;
+}
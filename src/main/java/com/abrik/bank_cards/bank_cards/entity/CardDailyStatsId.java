@@ -0,0 +1,26 @@
+package com.abrik.bank_cards.bank_cards.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.UUID;
+
+@Embeddable
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CardDailyStatsId implements Serializable {
+    @Column(name = "card_id", nullable = false)
+    private UUID cardId;
+
+    @Column(name = "day", nullable = false)
+    private LocalDate day;
+
+    @Column(name = "slot", nullable = false)
+    private short slot;
+}
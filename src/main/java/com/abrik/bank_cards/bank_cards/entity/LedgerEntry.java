@@ -0,0 +1,46 @@
+package com.abrik.bank_cards.bank_cards.entity;
+
+import com.abrik.bank_cards.bank_cards.dto.ledger.LedgerDirection;
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+@Entity
+@Data
+@Table(name = "ledger_entry")
+public class LedgerEntry {
+    // последовательность, а не IDENTITY: иначе Hibernate не батчит INSERT в пакетах и групповом коммите
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ledger_entry_seq")
+    @SequenceGenerator(name = "ledger_entry_seq", sequenceName = "ledger_entry_seq", allocationSize = 50)
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    @Column(name = "transfer_id", nullable = false)
+    private UUID transferId;
+
+    @Column(name = "card_id", nullable = false)
+    private UUID cardId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "direction", nullable = false, length = 6)
+    private LedgerDirection direction;
+
+    @Column(name = "amount", nullable = false, precision = 19, scale = 2)
+    private BigDecimal amount;
+
+    @Column(name = "currency", nullable = false, length = 3)
+    private String currency;
+
+    @Column(name = "balance_after", precision = 19, scale = 2)
+    private BigDecimal balanceAfter;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
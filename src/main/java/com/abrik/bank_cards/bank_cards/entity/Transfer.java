@@ -3,6 +3,8 @@ package com.abrik.bank_cards.bank_cards.entity;
 import com.abrik.bank_cards.bank_cards.dto.transfer.TransferStatus;
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import org.springframework.data.domain.Persistable;
 
 import java.math.BigDecimal;
 import java.time.Instant;
@@ -11,7 +13,7 @@ import java.util.UUID;
 @Entity
 @Data
 @Table(name = "transfer")
-public class Transfer {
+public class Transfer implements Persistable<UUID> {
     @Id
     @Column(name = "id", nullable = false)
     private UUID id;
@@ -38,9 +40,29 @@ public class Transfer {
     @Column(name = "message", columnDefinition = "text")
     private String message;
 
+    // причина отказа асинхронного перевода (status = FAILED)
+    @Column(name = "failure_reason", length = 255)
+    private String failureReason;
+
     @Column(name = "idempotency_key", length = 64, nullable = false)
     private String idempotencyKey;
 
     @Column(name = "created_at", nullable = false)
     private Instant createdAt;
+
+    // id назначается в приложении: без этого флага save() делает merge (лишний SELECT перед INSERT)
+    @Transient
+    @EqualsAndHashCode.Exclude
+    private boolean persisted;
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        this.persisted = true;
+    }
 }
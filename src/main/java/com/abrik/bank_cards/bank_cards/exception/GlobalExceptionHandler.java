@@ -1,6 +1,9 @@
 package com.abrik.bank_cards.bank_cards.exception;
 
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -9,9 +12,14 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 @Slf4j
 @RestControllerAdvice
 public class GlobalExceptionHandler {
+    private static final Pattern CONSTRAINT_IN_MESSAGE = Pattern.compile("constraint \"([A-Za-z0-9_]+)\"");
+
     private ResponseEntity<AppError> build(HttpStatus status, String message, Throwable ex) {
         if (ex != null) log.warn("{}: {}", status.value(), message, ex);
         else log.warn("{}: {}", status.value(), message);
@@ -42,6 +50,43 @@ public class GlobalExceptionHandler {
         return build(HttpStatus.NOT_FOUND, ex.getMessage(), ex);
     }
 
+    // нарушение ограничения БД: 409 только для известных гонок, остальное — ошибка запроса или наша
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<AppError> handleDataIntegrity(DataIntegrityViolationException ex) {
+        String constraint = constraintName(ex);
+        if (constraint == null) {
+            return build(HttpStatus.INTERNAL_SERVER_ERROR, "Internal server error", ex);
+        }
+        return switch (constraint) {
+            // два запроса с одним Idempotency-Key одновременно
+            case "uq_transfer_user_idempotency" -> build(HttpStatus.CONFLICT, "Conflicting concurrent request, retry", ex);
+            // две одновременные регистрации одного PAN
+            case "uq_card_pan_fingerprint" -> build(HttpStatus.CONFLICT, "Card with this PAN is already registered", ex);
+            default -> build(HttpStatus.BAD_REQUEST, "Request violates data constraint " + constraint, ex);
+        };
+    }
+
+    // имя ограничения: от Hibernate или из текста ошибки Postgres (путь JdbcTemplate)
+    static String constraintName(Throwable ex) {
+        for (Throwable t = ex; t != null; t = t.getCause()) {
+            if (t instanceof ConstraintViolationException cve && cve.getConstraintName() != null) {
+                return cve.getConstraintName();
+            }
+            Matcher m = CONSTRAINT_IN_MESSAGE.matcher(String.valueOf(t.getMessage()));
+            if (m.find()) {
+                return m.group(1);
+            }
+            if (t.getCause() == t) break;
+        }
+        return null;
+    }
+
+    // конфликт версий карты (@Version) вне режима OPTIMISTIC с повторами
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<AppError> handleOptimisticLock(OptimisticLockingFailureException ex) {
+        return build(HttpStatus.CONFLICT, "Resource was changed concurrently, retry", ex);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<AppError> handleAny(Exception ex) {
         return build(HttpStatus.INTERNAL_SERVER_ERROR, "Internal server error", ex);
@@ -0,0 +1,48 @@
+package com.abrik.bank_cards.bank_cards.repository;
+
+import com.abrik.bank_cards.bank_cards.dto.card.CardStatus;
+import com.abrik.bank_cards.bank_cards.entity.CardBalanceStripe;
+import com.abrik.bank_cards.bank_cards.entity.CardBalanceStripeId;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+public interface CardBalanceStripeRepository extends JpaRepository<CardBalanceStripe, CardBalanceStripeId> {
+
+    // Зачисление в полосу без блокировки строки карты; 0 — карта не горячая/не активна/другая валюта
+    @Modifying
+    @Query("""
+    update CardBalanceStripe s set s.balance = s.balance + :amount
+    where s.id.cardId = :cardId and s.id.stripeNo = :stripeNo
+      and exists (
+            select c.id from Card c
+            where c.id = :cardId and c.userId = :userId
+              and c.status = :status and c.currency = :currency
+              and c.balanceStripes > 0
+      )
+""")
+    int creditStripe(@Param("cardId") UUID cardId,
+                     @Param("stripeNo") short stripeNo,
+                     @Param("userId") Long userId,
+                     @Param("status") CardStatus status,
+                     @Param("currency") String currency,
+                     @Param("amount") BigDecimal amount);
+
+    @Query("select sum(s.balance) from CardBalanceStripe s where s.id.cardId = :cardId")
+    BigDecimal sumByCardId(@Param("cardId") UUID cardId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from CardBalanceStripe s where s.id.cardId = :cardId order by s.id.stripeNo")
+    List<CardBalanceStripe> lockAllByCardId(@Param("cardId") UUID cardId);
+
+    @Modifying
+    @Query("delete from CardBalanceStripe s where s.id.cardId = :cardId")
+    int deleteAllByCardId(@Param("cardId") UUID cardId);
+}
@@ -0,0 +1,40 @@
+package com.abrik.bank_cards.bank_cards.repository;
+
+import com.abrik.bank_cards.bank_cards.entity.CardDailyStats;
+import com.abrik.bank_cards.bank_cards.entity.CardDailyStatsId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+public interface CardDailyStatsRepository extends JpaRepository<CardDailyStats, CardDailyStatsId> {
+
+    interface DayView {
+        LocalDate getDay();
+        BigDecimal getDebitSum();
+        BigDecimal getCreditSum();
+        long getTxCount();
+        BigDecimal getClosingBalance();
+    }
+
+    // слоты дня складываются; закрывающий баланс — только у дня без зачислений в полосы:
+    // их порядок относительно проводок slot 0 неизвестен, поэтому для такого дня — null
+    @Query("""
+    select s.id.day as day,
+           sum(s.debitSum) as debitSum,
+           sum(s.creditSum) as creditSum,
+           sum(s.txCount) as txCount,
+           case when max(s.id.slot) = 0 then max(s.closingBalance) end as closingBalance
+    from CardDailyStats s
+    where s.id.cardId = :cardId and s.id.day between :fromDay and :toDay
+    group by s.id.day
+    order by s.id.day
+    """)
+    List<DayView> findDays(@Param("cardId") UUID cardId,
+                           @Param("fromDay") LocalDate fromDay,
+                           @Param("toDay") LocalDate toDay);
+}
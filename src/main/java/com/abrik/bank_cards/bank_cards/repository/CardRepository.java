@@ -1,15 +1,24 @@
 package com.abrik.bank_cards.bank_cards.repository;
 
 import com.abrik.bank_cards.bank_cards.dto.card.CardStatus;
+import com.abrik.bank_cards.bank_cards.dto.card.CardSummary;
 import com.abrik.bank_cards.bank_cards.entity.Card;
 import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -20,15 +29,81 @@ public interface CardRepository extends JpaRepository<Card, UUID> {
 
     Optional<Card> findByIdAndUserId(UUID id, Long userId);
 
+    Optional<Card> findByPanFingerprint(byte[] panFingerprint);
+
+    boolean existsByPanFingerprint(byte[] panFingerprint);
+
+    boolean existsByPanFingerprintAndIdNot(byte[] panFingerprint, UUID id);
+
     void deleteByIdAndUserId(UUID cardId, Long userId);
 
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("select c from Card c where c.id = :id and c.userId = :userId")
     Optional<Card> lockByIdAndUserId(@Param("id") UUID id, @Param("userId") Long userId);
 
-    // универсальный поиск для админа и пользователя
+    // блокировка набора карт одним запросом; order by id — тот же глобальный порядок, что и у одиночного перевода
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Card c where c.id in :ids and c.userId = :userId order by c.id")
+    List<Card> lockAllByIdInAndUserId(@Param("ids") Collection<UUID> ids, @Param("userId") Long userId);
+
+    // то же для группового коммита: карты разных пользователей, владелец проверяется в сервисе
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Card c where c.id in :ids order by c.id")
+    List<Card> lockAllByIdIn(@Param("ids") Collection<UUID> ids);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Card c where c.id = :id")
+    Optional<Card> lockById(@Param("id") UUID id);
+
+    interface PanView {
+        UUID getId();
+        String getPanEncrypted();
+        byte[] getPanCiphertext();
+    }
+
+    // только то, что нужно для раскрытия PAN; чужие карты просто не находятся
+    @Query("""
+    select c.id as id, c.panEncrypted as panEncrypted, c.panCiphertext as panCiphertext
+    from Card c where c.id in :ids and c.userId = :userId
+    """)
+    List<PanView> findPans(@Param("ids") Collection<UUID> ids, @Param("userId") Long userId);
+
+    interface HotCardView {
+        UUID getId();
+        short getBalanceStripes();
+    }
+
+    @Query("select c.id as id, c.balanceStripes as balanceStripes from Card c where c.balanceStripes > 0")
+    List<HotCardView> findHotCards();
+
+    // Условные списание/зачисление одним UPDATE: 1 — применено, 0 — условие не выполнено
+    @Modifying
+    @Query("""
+    update Card c set c.balance = c.balance - :amount, c.version = c.version + 1
+    where c.id = :id and c.userId = :userId
+      and c.status = :status and c.currency = :currency
+      and c.balance >= :amount
+""")
+    int debitGuarded(@Param("id") UUID id,
+                     @Param("userId") Long userId,
+                     @Param("status") CardStatus status,
+                     @Param("currency") String currency,
+                     @Param("amount") BigDecimal amount);
+
+    @Modifying
     @Query("""
-    select c from Card c
+    update Card c set c.balance = c.balance + :amount, c.version = c.version + 1
+    where c.id = :id and c.userId = :userId
+      and c.status = :status and c.currency = :currency
+""")
+    int creditGuarded(@Param("id") UUID id,
+                      @Param("userId") Long userId,
+                      @Param("status") CardStatus status,
+                      @Param("currency") String currency,
+                      @Param("amount") BigDecimal amount);
+
+    // универсальный поиск для админа и пользователя
+    String SEARCH_WHERE = """
     where (:userId is null or c.userId = :userId)
       and (:status is null or c.status = :status)
       and (
@@ -36,12 +111,47 @@ public interface CardRepository extends JpaRepository<Card, UUID> {
          or (:qPattern is not null and lower(c.currency) like :qPattern)
          or (:last4Pattern is not null and cast(c.last4 as string) like :last4Pattern)
       )
-""")
-    Page<Card> search(
+""";
+
+    // списки читают проекцию: сущности не гидрируются и не попадают в persistence context;
+    // сумма полос — подзапросом только для горячих карт
+    String SUMMARY_SELECT = """
+    select new com.abrik.bank_cards.bank_cards.dto.card.CardSummary(
+        c.id, c.userId, c.last4, c.panEncrypted, c.panCiphertext, c.expiryMonth, c.expiryYear, c.status,
+        c.balance,
+        case when c.balanceStripes > 0
+             then (select sum(s.balance) from CardBalanceStripe s where s.id.cardId = c.id) end,
+        c.currency, c.requestedBlockAt, c.createdAt, c.updatedAt)
+    from Card c
+""";
+
+    @Query(value = SUMMARY_SELECT + SEARCH_WHERE,
+            countQuery = "select count(c) from Card c " + SEARCH_WHERE)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    Page<CardSummary> search(
+            @Param("userId") Long userId,
+            @Param("status") CardStatus status,
+            @Param("qPattern") String qPattern,
+            @Param("last4Pattern") String last4Pattern,
+            Pageable pageable
+    );
+
+    // тот же поиск без COUNT: size + 1 строка для hasNext
+    @Query(SUMMARY_SELECT + SEARCH_WHERE)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    Slice<CardSummary> searchSlice(
             @Param("userId") Long userId,
             @Param("status") CardStatus status,
             @Param("qPattern") String qPattern,
             @Param("last4Pattern") String last4Pattern,
             Pageable pageable
     );
+
+    @Query("select count(c) from Card c " + SEARCH_WHERE)
+    long countSearch(
+            @Param("userId") Long userId,
+            @Param("status") CardStatus status,
+            @Param("qPattern") String qPattern,
+            @Param("last4Pattern") String last4Pattern
+    );
 }
@@ -0,0 +1,60 @@
+package com.abrik.bank_cards.bank_cards.repository;
+
+import com.abrik.bank_cards.bank_cards.entity.LedgerEntry;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
+
+    // выписка: range scan по idx_ledger_entry_card_created
+    @Query(value = """
+    select e from LedgerEntry e
+    where e.cardId = :cardId and e.createdAt >= :fromTs and e.createdAt < :toTs
+    order by e.createdAt desc, e.id desc
+    """, countQuery = """
+    select count(e) from LedgerEntry e
+    where e.cardId = :cardId and e.createdAt >= :fromTs and e.createdAt < :toTs
+    """)
+    Page<LedgerEntry> findStatement(@Param("cardId") UUID cardId,
+                                    @Param("fromTs") Instant fromTs,
+                                    @Param("toTs") Instant toTs,
+                                    Pageable pageable);
+
+    Optional<LedgerEntry> findFirstByCardIdAndCreatedAtLessThanEqualOrderByCreatedAtDescIdDesc(UUID cardId, Instant at);
+
+    // движение по карте после момента T (CREDIT — плюс, DEBIT — минус)
+    @Query("""
+    select coalesce(sum(case when e.direction = com.abrik.bank_cards.bank_cards.dto.ledger.LedgerDirection.CREDIT
+                             then e.amount else -e.amount end), 0)
+    from LedgerEntry e
+    where e.cardId = :cardId and e.createdAt > :at
+    """)
+    BigDecimal sumSignedAfter(@Param("cardId") UUID cardId, @Param("at") Instant at);
+
+    /**
+     * Проводка для GUARDED-пути, где карта не загружена: баланс берётся из строки карты,
+     * уже изменённой (и заблокированной) условным UPDATE этой транзакции.
+     */
+    @Modifying
+    @Query(value = """
+    insert into ledger_entry (id, transfer_id, card_id, user_id, direction, amount, currency, balance_after, created_at)
+    select nextval('ledger_entry_seq'), :transferId, c.id, c.user_id, :direction, :amount, c.currency,
+           case when c.balance_stripes = 0 then c.balance end, :createdAt
+    from card c
+    where c.id = :cardId
+    """, nativeQuery = true)
+    int insertForCard(@Param("transferId") UUID transferId,
+                      @Param("cardId") UUID cardId,
+                      @Param("direction") String direction,
+                      @Param("amount") BigDecimal amount,
+                      @Param("createdAt") Instant createdAt);
+}
@@ -0,0 +1,24 @@
+package com.abrik.bank_cards.bank_cards.repository;
+
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferResponse;
+import com.abrik.bank_cards.bank_cards.entity.Transfer;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Списки переводов сразу в {@link TransferResponse}: select new по нужным колонкам,
+ * сущности не создаются и не попадают в persistence context.
+ */
+public interface TransferProjectionRepository {
+    Page<TransferResponse> findResponses(Specification<Transfer> spec, Pageable pageable);
+
+    // без COUNT: size + 1 строка для hasNext
+    Slice<TransferResponse> findResponseSlice(Specification<Transfer> spec, Pageable pageable);
+
+    List<TransferResponse> findResponses(Specification<Transfer> spec, Sort sort, int limit);
+}
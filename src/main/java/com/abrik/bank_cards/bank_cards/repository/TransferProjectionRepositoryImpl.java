@@ -0,0 +1,95 @@
+package com.abrik.bank_cards.bank_cards.repository;
+
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferResponse;
+import com.abrik.bank_cards.bank_cards.entity.Transfer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.util.List;
+
+import static org.springframework.data.jpa.repository.query.QueryUtils.toOrders;
+
+class TransferProjectionRepositoryImpl implements TransferProjectionRepository {
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    public Page<TransferResponse> findResponses(Specification<Transfer> spec, Pageable pageable) {
+        List<TransferResponse> content = select(spec, pageable, pageable.isPaged() ? pageable.getPageSize() : -1);
+        return PageableExecutionUtils.getPage(content, pageable, () -> count(spec));
+    }
+
+    @Override
+    public Slice<TransferResponse> findResponseSlice(Specification<Transfer> spec, Pageable pageable) {
+        List<TransferResponse> rows = select(spec, pageable, pageable.getPageSize() + 1);
+        boolean hasNext = rows.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? rows.subList(0, pageable.getPageSize()) : rows, pageable, hasNext);
+    }
+
+    @Override
+    public List<TransferResponse> findResponses(Specification<Transfer> spec, Sort sort, int limit) {
+        CriteriaQuery<TransferResponse> query = query(spec, sort);
+        return readOnly(em.createQuery(query)).setMaxResults(limit).getResultList();
+    }
+
+    private List<TransferResponse> select(Specification<Transfer> spec, Pageable pageable, int limit) {
+        TypedQuery<TransferResponse> query = readOnly(em.createQuery(query(spec, pageable.getSort())));
+        if (pageable.isPaged()) {
+            query.setFirstResult(Math.toIntExact(pageable.getOffset()));
+            query.setMaxResults(limit);
+        }
+        return query.getResultList();
+    }
+
+    // порядок аргументов — как у конструктора TransferResponse
+    private CriteriaQuery<TransferResponse> query(Specification<Transfer> spec, Sort sort) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<TransferResponse> query = cb.createQuery(TransferResponse.class);
+        Root<Transfer> t = query.from(Transfer.class);
+        query.select(cb.construct(TransferResponse.class,
+                t.get("id"),
+                t.get("userId"),
+                t.get("fromCardId"),
+                t.get("toCardId"),
+                t.get("amount"),
+                t.get("currency"),
+                t.get("status"),
+                t.get("message"),
+                t.get("failureReason"),
+                t.get("createdAt")));
+        Predicate where = spec == null ? null : spec.toPredicate(t, query, cb);
+        if (where != null)
+            query.where(where);
+        if (sort.isSorted())
+            query.orderBy(toOrders(sort, t, cb));
+        return query;
+    }
+
+    private long count(Specification<Transfer> spec) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Transfer> t = query.from(Transfer.class);
+        query.select(cb.count(t));
+        Predicate where = spec == null ? null : spec.toPredicate(t, query, cb);
+        if (where != null)
+            query.where(where);
+        return readOnly(em.createQuery(query)).getSingleResult();
+    }
+
+    private static <T> TypedQuery<T> readOnly(TypedQuery<T> query) {
+        return query.setHint(HibernateHints.HINT_READ_ONLY, true);
+    }
+}
@@ -1,57 +1,50 @@
 package com.abrik.bank_cards.bank_cards.repository;
 
-import com.abrik.bank_cards.bank_cards.dto.transfer.TransferStatus;
 import com.abrik.bank_cards.bank_cards.entity.Transfer;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
-import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
-public interface TransferRepository extends JpaRepository<Transfer, UUID> {
+public interface TransferRepository extends JpaRepository<Transfer, UUID>,
+        JpaSpecificationExecutor<Transfer>,
+        TransferProjectionRepository {
     Optional<Transfer> findByUserIdAndIdempotencyKey(Long userId, String idempotencyKey);
 
-    @Query("""
-    select t from Transfer t
-    where t.userId = :userId
-      and t.status = coalesce(:status, t.status)
-      and t.createdAt >= coalesce(:fromTs, t.createdAt)
-      and t.createdAt <  coalesce(:toTs,   t.createdAt)
-      and (
-           t.fromCardId = coalesce(:cardId, t.fromCardId)
-        or t.toCardId   = coalesce(:cardId, t.toCardId)
-      )
-    order by t.createdAt desc
-    """)
-    Page<Transfer> searchUser(
-            @Param("userId") Long userId,
-            @Param("status") TransferStatus status,
-            @Param("fromTs") Instant from,
-            @Param("toTs") Instant to,
-            @Param("cardId") UUID cardId,
-            Pageable pageable
-    );
-
-    @Query("""
-    select t from Transfer t
-    where t.status = coalesce(:status, t.status)
-      and t.createdAt >= coalesce(:fromTs, t.createdAt)
-      and t.createdAt <  coalesce(:toTs,   t.createdAt)
-      and (
-           t.fromCardId = coalesce(:cardId, t.fromCardId)
-        or t.toCardId   = coalesce(:cardId, t.toCardId)
-      )
-    order by t.createdAt desc
-    """)
-    Page<Transfer> searchAdmin(
-            @Param("status") TransferStatus status,
-            @Param("fromTs") Instant from,
-            @Param("toTs") Instant to,
-            @Param("cardId") UUID cardId,
-            Pageable pageable
-    );
+    Optional<Transfer> findByIdAndUserId(UUID id, Long userId);
+
+    // очередь асинхронных переводов: частичный индекс idx_transfer_pending, занятые строки пропускаются
+    @Query(value = """
+    select * from transfer
+    where status = 'PENDING'
+    order by created_at
+    limit :limit
+    for update skip locked
+    """, nativeQuery = true)
+    List<Transfer> claimPending(@Param("limit") int limit);
+
+    @Query(value = """
+    select id from transfer
+    where status = 'PENDING'
+    order by created_at
+    limit :limit
+    """, nativeQuery = true)
+    List<UUID> findPendingIds(@Param("limit") int limit);
+
+    @Query(value = """
+    select * from transfer
+    where id = :id and status = 'PENDING'
+    for update skip locked
+    """, nativeQuery = true)
+    Optional<Transfer> claimPendingById(@Param("id") UUID id);
+
+    List<Transfer> findAllByUserIdAndIdempotencyKeyIn(Long userId, Collection<String> idempotencyKeys);
+
+    // надмножество пар (userId, key) группы — точное совпадение проверяется в сервисе
+    List<Transfer> findAllByUserIdInAndIdempotencyKeyIn(Collection<Long> userIds, Collection<String> idempotencyKeys);
 }
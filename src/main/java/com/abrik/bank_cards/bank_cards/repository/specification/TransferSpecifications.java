@@ -0,0 +1,118 @@
+package com.abrik.bank_cards.bank_cards.repository.specification;
+
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferCursor;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferSearchOrder;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferStatus;
+import com.abrik.bank_cards.bank_cards.entity.Transfer;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Фильтры истории переводов. Предикат строится только для заданного фильтра,
+ * чтобы планировщик видел простые сравнения колонок и мог взять индекс.
+ */
+public class TransferSpecifications {
+    private TransferSpecifications() {}
+
+    // порядок ленты: (created_at, id) — совпадает с индексами и keyset-курсором
+    public static final Sort NEWEST_FIRST = Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id"));
+
+    public static Specification<Transfer> userIdEq(Long userId) {
+        if (userId == null) return null;
+        return (root, search, cb) -> cb.equal(root.get("userId"), userId);
+    }
+
+    public static Specification<Transfer> statusEq(TransferStatus status) {
+        if (status == null) return null;
+        return (root, search, cb) -> cb.equal(root.get("status"), status);
+    }
+
+    public static Specification<Transfer> createdFrom(Instant from) {
+        if (from == null) return null;
+        return (root, search, cb) -> cb.greaterThanOrEqualTo(root.get("createdAt"), from);
+    }
+
+    public static Specification<Transfer> createdBefore(Instant to) {
+        if (to == null) return null;
+        return (root, search, cb) -> cb.lessThan(root.get("createdAt"), to);
+    }
+
+    // from_card_id = ? OR to_card_id = ? — BitmapOr по двум составным индексам
+    public static Specification<Transfer> touchesCard(UUID cardId) {
+        if (cardId == null) return null;
+        return (root, search, cb) -> cb.or(
+                cb.equal(root.get("fromCardId"), cardId),
+                cb.equal(root.get("toCardId"), cardId)
+        );
+    }
+
+    // lower(message) like '%q%' — GIN-индекс idx_transfer_message_trgm (pg_trgm); q уже в нижнем регистре
+    public static Specification<Transfer> messageContains(String q) {
+        if (q == null) return null;
+        return (root, search, cb) -> cb.like(cb.lower(root.get("message")), containsPattern(q), '\\');
+    }
+
+    // порядок по сходству с q; в COUNT-запрос не попадает
+    public static Specification<Transfer> orderByRelevance(String q) {
+        return (root, search, cb) -> {
+            if (search.getResultType() != Long.class && search.getResultType() != long.class) {
+                search.orderBy(
+                        cb.desc(cb.function("word_similarity", Double.class,
+                                cb.literal(q), cb.lower(root.get("message")))),
+                        cb.desc(root.get("createdAt")),
+                        cb.desc(root.get("id")));
+            }
+            return null;
+        };
+    }
+
+    // order=relevance: к фильтру добавляется порядок по сходству с q
+    public static Specification<Transfer> ordered(Specification<Transfer> spec, String q, TransferSearchOrder order) {
+        return order == TransferSearchOrder.RELEVANCE && q != null ? spec.and(orderByRelevance(q)) : spec;
+    }
+
+    /** '%q%' для like: символы %, _ и \ из q экранируются. */
+    public static String containsPattern(String q) {
+        String escaped = q.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        return "%" + escaped + "%";
+    }
+
+    // keyset: строки строго «старше» курсора в порядке NEWEST_FIRST
+    public static Specification<Transfer> seekAfter(TransferCursor cursor) {
+        if (cursor == null) return null;
+        return (root, search, cb) -> cb.or(
+                cb.lessThan(root.get("createdAt"), cursor.createdAt()),
+                cb.and(
+                        cb.equal(root.get("createdAt"), cursor.createdAt()),
+                        cb.lessThan(root.get("id"), cursor.id())
+                )
+        );
+    }
+
+    public static Specification<Transfer> search(Long userId,
+                                                 TransferStatus status,
+                                                 Instant from,
+                                                 Instant to,
+                                                 UUID cardId) {
+        return search(userId, status, from, to, cardId, null);
+    }
+
+    public static Specification<Transfer> search(Long userId,
+                                                 TransferStatus status,
+                                                 Instant from,
+                                                 Instant to,
+                                                 UUID cardId,
+                                                 String q) {
+        return Specification.allOf(
+                userIdEq(userId),
+                statusEq(status),
+                createdFrom(from),
+                createdBefore(to),
+                touchesCard(cardId),
+                messageContains(q)
+        );
+    }
+}
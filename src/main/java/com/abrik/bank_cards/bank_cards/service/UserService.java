@@ -7,13 +7,13 @@ import com.abrik.bank_cards.bank_cards.exception.BadInputParameters;
 import com.abrik.bank_cards.bank_cards.exception.PasswordMismatchException;
 import com.abrik.bank_cards.bank_cards.exception.UsernameAlreadyExistsException;
 import com.abrik.bank_cards.bank_cards.repository.UserRepository;
+import com.abrik.bank_cards.bank_cards.util.InputValidator;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Optional;
-import java.util.regex.Pattern;
 
 @Service
 @RequiredArgsConstructor
@@ -21,7 +21,6 @@ public class UserService {
     private final UserRepository userRepository;
     private final RoleService roleService;
     private final PasswordEncoder passwordEncoder;
-    private final static String emailRegex = "^[a-zA-Z0-9_.+-]+@[a-zA-Z0-9-]+\\.[a-zA-Z0-9-.]+$";
 
     public Optional<User> findByUsername(String username) {
         return userRepository.findByUsername(username);
@@ -53,13 +52,11 @@ public class UserService {
     }
 
     public static void validateEmail(String emailAddress) {
-        if (emailAddress == null || emailAddress.length() > 254) {
+        if (emailAddress == null || emailAddress.length() > InputValidator.EMAIL_MAX_LENGTH) {
             throw new BadInputParameters("email length exceeds 254 characters or is null");
         }
 
-        if (!Pattern.compile(emailRegex)
-                .matcher(emailAddress)
-                .matches()) {
+        if (!InputValidator.isEmail(emailAddress)) {
             throw new BadInputParameters("invalid email format");
         }
     }
@@ -2,8 +2,11 @@ package com.abrik.bank_cards.bank_cards.service.admin;
 
 import com.abrik.bank_cards.bank_cards.dto.card.CardResponse;
 import com.abrik.bank_cards.bank_cards.dto.card.CardStatus;
+import com.abrik.bank_cards.bank_cards.dto.card.CardSummary;
 import com.abrik.bank_cards.bank_cards.dto.card.CreateCardRequest;
+import com.abrik.bank_cards.bank_cards.dto.card.PanMode;
 import com.abrik.bank_cards.bank_cards.dto.card.StatusResponse;
+import com.abrik.bank_cards.bank_cards.dto.common.CountMode;
 import com.abrik.bank_cards.bank_cards.dto.common.PageResponse;
 import com.abrik.bank_cards.bank_cards.entity.Card;
 import com.abrik.bank_cards.bank_cards.entity.User;
@@ -11,8 +14,12 @@ import com.abrik.bank_cards.bank_cards.exception.BadRequestException;
 import com.abrik.bank_cards.bank_cards.exception.NotFoundException;
 import com.abrik.bank_cards.bank_cards.repository.CardRepository;
 import com.abrik.bank_cards.bank_cards.repository.UserRepository;
+import com.abrik.bank_cards.bank_cards.service.outbox.OutboxService;
+import com.abrik.bank_cards.bank_cards.service.user.CardBalanceStripeService;
 import com.abrik.bank_cards.bank_cards.service.user.CardService;
 import com.abrik.bank_cards.bank_cards.util.CardUtil;
+import com.abrik.bank_cards.bank_cards.util.PageCounter;
+import com.abrik.bank_cards.bank_cards.util.PanFingerprintUtil;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -31,6 +38,10 @@ public class CardAdminService {
     private final CardUtil cardUtil;
     private final UserRepository userRepository;
     private final CardRepository cardRepository;
+    private final CardBalanceStripeService stripeService;
+    private final OutboxService outboxService;
+    private final PageCounter pageCounter;
+    private final PanFingerprintUtil panFingerprintUtil;
 
     public CardResponse createCard(CreateCardRequest request) {
         User user = userRepository.findById(request.getUserId())
@@ -38,14 +49,37 @@ public class CardAdminService {
         return cardService.createCard(user.getId(), request);
     }
 
+    @Transactional(readOnly = true)
     public PageResponse<CardResponse> listAllCards(CardStatus status,
                                                    String search,
                                                    Pageable pageable) {
-        Page<Card> page = findCards(status, search, pageable);
+        Page<CardSummary> page = findCards(status, search, pageable);
         return cardUtil.toCardPageResponse(page);
     }
 
-    private Page<Card> findCards(CardStatus status, String search, Pageable pageable) {
+    @Transactional(readOnly = true)
+    public PageResponse<CardResponse> listAllCards(CardStatus status,
+                                                   String search,
+                                                   Pageable pageable,
+                                                   CountMode count,
+                                                   PanMode pan) {
+        if (count == CountMode.EXACT) {
+            return cardUtil.toCardPageResponse(findCards(status, search, pageable), pan);
+        }
+        String q = cardUtil.normalizeQuery(search);
+        String digits = cardUtil.extractDigits(search);
+
+        String qPattern = cardUtil.isBlank(q) ? null : "%" + q + "%";
+        String last4Pattern = cardUtil.isBlank(digits) ? null : "%" + digits + "%";
+
+        return pageCounter.fetch(count, pageable,
+                "cards:*:" + status + ":" + qPattern + ":" + last4Pattern,
+                p -> cardRepository.searchSlice(null, status, qPattern, last4Pattern, p),
+                () -> cardRepository.countSearch(null, status, qPattern, last4Pattern),
+                card -> cardUtil.toResponse(card, pan));
+    }
+
+    private Page<CardSummary> findCards(CardStatus status, String search, Pageable pageable) {
         String q = cardUtil.normalizeQuery(search);
         String digits = cardUtil.extractDigits(search);
 
@@ -61,9 +95,21 @@ public class CardAdminService {
         card = cardRepository.findById(cardId)
                 .orElseThrow(() -> new NotFoundException("Card not found"));
 
+        stripeService.loadStripedBalance(card);
         return cardUtil.toResponse(card);
     }
 
+    /** Поиск по полному PAN через pan_fingerprint — одна точечная выборка по уникальному индексу. */
+    @Transactional(readOnly = true)
+    public CardResponse findByPan(String pan) {
+        return cardRepository.findByPanFingerprint(panFingerprintUtil.fingerprint(cardUtil.validatePan(pan)))
+                .map(card -> {
+                    stripeService.loadStripedBalance(card);
+                    return cardUtil.toResponse(card);
+                })
+                .orElseThrow(() -> new NotFoundException("Card not found"));
+    }
+
     @Transactional
     public void deleteCard(UUID cardId) {
         cardRepository.deleteById(cardId);
@@ -79,6 +125,23 @@ public class CardAdminService {
         return changeStatus(cardId, CardStatus.ACTIVE);
     }
 
+    /** Включает полосы баланса для карты с частыми зачислениями. */
+    @Transactional
+    public CardResponse makeHot(UUID cardId, int stripes) {
+        Card card = cardRepository.lockById(cardId)
+                .orElseThrow(() -> new NotFoundException("Card not found"));
+        stripeService.stripe(card, stripes);
+        return cardUtil.toResponse(cardRepository.saveAndFlush(card));
+    }
+
+    @Transactional
+    public CardResponse makeCold(UUID cardId) {
+        Card card = cardRepository.lockById(cardId)
+                .orElseThrow(() -> new NotFoundException("Card not found"));
+        stripeService.unstripe(card);
+        return cardUtil.toResponse(cardRepository.saveAndFlush(card));
+    }
+
     private StatusResponse changeStatus(UUID cardId, CardStatus newStatus) {
         Card card = cardRepository.findById(cardId)
                 .orElseThrow(() -> new NotFoundException("Card not found"));
@@ -96,10 +159,12 @@ public class CardAdminService {
         card.setStatus(newStatus);
         cardRepository.saveAndFlush(card);
 
-        return new StatusResponse(
+        StatusResponse response = new StatusResponse(
                 card.getId(),
                 card.getRequestedBlockAt(),
                 card.getStatus()
         );
+        outboxService.record(OutboxService.CARD, card.getId(), "CARD_" + newStatus, card.getUserId(), response);
+        return response;
     }
 }
@@ -1,33 +1,92 @@
 package com.abrik.bank_cards.bank_cards.service.admin;
 
+import com.abrik.bank_cards.bank_cards.dto.common.CountMode;
+import com.abrik.bank_cards.bank_cards.dto.common.CursorPage;
+import com.abrik.bank_cards.bank_cards.dto.common.PageResponse;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferCursor;
 import com.abrik.bank_cards.bank_cards.dto.transfer.TransferResponse;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferSearchOrder;
 import com.abrik.bank_cards.bank_cards.dto.transfer.TransferStatus;
 import com.abrik.bank_cards.bank_cards.entity.Transfer;
 import com.abrik.bank_cards.bank_cards.repository.TransferRepository;
+import com.abrik.bank_cards.bank_cards.util.PageCounter;
 import com.abrik.bank_cards.bank_cards.util.TransferUtil;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.util.List;
 import java.util.UUID;
+import java.util.function.Function;
+
+import static com.abrik.bank_cards.bank_cards.repository.specification.TransferSpecifications.*;
 
 @Service
 @RequiredArgsConstructor
 public class TransferAdminService {
     private final TransferRepository transferRepository;
     private final TransferUtil transferUtil;
+    private final PageCounter pageCounter;
 
+    @Transactional(readOnly = true)
     public Page<TransferResponse> listAll(TransferStatus status,
                                           Instant from,
                                           Instant to,
                                           UUID cardId,
+                                          String q,
+                                          TransferSearchOrder order,
                                           Pageable pageable) {
         var bounds = transferUtil.normalizeBounds(from, to);
-        Pageable sortedPageable = transferUtil.ensureSort(pageable);
-        Page<Transfer> page = transferRepository.searchAdmin(
-                status, bounds.from(), bounds.to(), cardId, sortedPageable);
-        return page.map(transferUtil::map);
+        String text = transferUtil.normalizeMessageQuery(q);
+        Pageable searchPageable = transferUtil.searchPageable(pageable, text, order);
+        return transferRepository.findResponses(
+                ordered(search(null, status, bounds.from(), bounds.to(), cardId, text), text, order),
+                searchPageable);
+    }
+
+    @Transactional(readOnly = true)
+    public PageResponse<TransferResponse> listAll(TransferStatus status,
+                                                  Instant from,
+                                                  Instant to,
+                                                  UUID cardId,
+                                                  String q,
+                                                  TransferSearchOrder order,
+                                                  Pageable pageable,
+                                                  CountMode count) {
+        if (count == CountMode.EXACT) {
+            return PageResponse.of(listAll(status, from, to, cardId, q, order, pageable));
+        }
+        var bounds = transferUtil.normalizeBounds(from, to);
+        String text = transferUtil.normalizeMessageQuery(q);
+        Pageable searchPageable = transferUtil.searchPageable(pageable, text, order);
+        Specification<Transfer> spec = search(null, status, bounds.from(), bounds.to(), cardId, text);
+        Specification<Transfer> orderedSpec = ordered(spec, text, order);
+        return pageCounter.fetch(count, searchPageable,
+                "transfers:*:" + status + ":" + from + ":" + to + ":" + cardId + ":" + text,
+                p -> transferRepository.findResponseSlice(orderedSpec, p),
+                () -> transferRepository.count(spec),
+                Function.identity());
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<TransferResponse> listAllCursor(TransferStatus status,
+                                                      Instant from,
+                                                      Instant to,
+                                                      UUID cardId,
+                                                      String q,
+                                                      String cursor,
+                                                      int size) {
+        var bounds = transferUtil.normalizeBounds(from, to);
+        String text = transferUtil.normalizeMessageQuery(q);
+        TransferCursor after = transferUtil.decodeCursor(cursor);
+        int pageSize = transferUtil.cursorPageSize(size);
+        Specification<Transfer> spec = search(null, status, bounds.from(), bounds.to(), cardId, text)
+                .and(seekAfter(after));
+        List<TransferResponse> rows = transferRepository.findResponses(spec, NEWEST_FIRST, pageSize + 1);
+        return transferUtil.toCursorPage(rows, pageSize);
     }
 }
@@ -1,5 +1,7 @@
 package com.abrik.bank_cards.bank_cards.service.admin;
 
+import com.abrik.bank_cards.bank_cards.dto.common.CountMode;
+import com.abrik.bank_cards.bank_cards.dto.common.PageResponse;
 import com.abrik.bank_cards.bank_cards.dto.user.UpdateUserRequest;
 import com.abrik.bank_cards.bank_cards.dto.user.UpdateUserRolesRequest;
 import com.abrik.bank_cards.bank_cards.dto.user.UserDto;
@@ -9,6 +11,7 @@ import com.abrik.bank_cards.bank_cards.exception.ConflictException;
 import com.abrik.bank_cards.bank_cards.exception.NotFoundException;
 import com.abrik.bank_cards.bank_cards.repository.RoleRepository;
 import com.abrik.bank_cards.bank_cards.repository.UserRepository;
+import com.abrik.bank_cards.bank_cards.util.PageCounter;
 import com.abrik.bank_cards.bank_cards.util.RoleUtil;
 import com.abrik.bank_cards.bank_cards.util.UserUtil;
 import lombok.RequiredArgsConstructor;
@@ -35,6 +38,7 @@ public class UserAdminService {
     private final RoleRepository roleRepository;
     private final RoleUtil roleUtil;
     private final UserUtil userUtil;
+    private final PageCounter pageCounter;
 
     @Transactional(readOnly = true)
     public Page<UserDto> listUsers(
@@ -55,6 +59,32 @@ public class UserAdminService {
                 .map(userUtil::toDto);
     }
 
+    @Transactional(readOnly = true)
+    public PageResponse<UserDto> listUsers(
+            String search,
+            String email,
+            Boolean active,
+            List<String> roles,
+            Pageable pageable,
+            CountMode count
+    ) {
+        if (count == CountMode.EXACT) {
+            return PageResponse.of(listUsers(search, email, active, roles, pageable));
+        }
+        Specification<User> spec = Specification.allOf(
+                searchQ(search),
+                emailContains(email),
+                activeEq(active),
+                hasAnyRole(roles)
+        );
+
+        return pageCounter.fetch(count, pageable,
+                "users:" + search + ":" + email + ":" + active + ":" + roles,
+                p -> userRepository.findBy(spec, q -> q.slice(p)),
+                () -> userRepository.count(spec),
+                userUtil::toDto);
+    }
+
     @Transactional(readOnly = true)
     public UserDto getUser(Long id) {
         User user = userRepository.findById(id)
@@ -0,0 +1,254 @@
+package com.abrik.bank_cards.bank_cards.service.archive;
+
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferCursor;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferStatus;
+import com.abrik.bank_cards.bank_cards.entity.Transfer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Date;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Холодная история переводов: месячные сегменты {@code transfers-YYYY-MM.seg}.
+ * Всё, что раньше {@link #archivedBefore()}, лежит только здесь — в таблице transfer этих строк нет.
+ * <p>
+ * Источник истины — таблица transfer_archive_segment: {@link TransferArchiver} пишет туда сегмент
+ * в той же транзакции, что удаляет партицию. Каталог архива — локальный кэш инстанса: недостающий
+ * сегмент скачивается при первом обращении. Набор архивных месяцев читается из таблицы в текущей
+ * транзакции, поэтому в REPEATABLE READ он согласован с чтением transfer — месяц, архивируемый
+ * в этот момент, не пропадает и не задваивается.
+ * <p>
+ * Запрос к таблице делают только интервалы, уходящие раньше самого нового архивируемого месяца
+ * (now − after-months): обычное окно списков архив не задевает и обходится без запроса.
+ * Выключенный архив ({@code app.transfer.archive.enabled=false}) не читается вовсе.
+ */
+@Slf4j
+@Component
+public class TransferArchive {
+    private static final Pattern SEGMENT_NAME = Pattern.compile("transfers-(\\d{4})-(\\d{2})\\.seg");
+    // новые сверху — как в ленте переводов; id сравнивается строкой, как uuid в Postgres
+    public static final Comparator<Transfer> NEWEST_FIRST =
+            Comparator.comparing(Transfer::getCreatedAt)
+                    .thenComparing((Transfer t) -> t.getId().toString())
+                    .reversed();
+
+    private final Path dir;
+    // null — без БД: архив — всё, что лежит в каталоге (тесты)
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int afterMonths;
+    private final Clock clock;
+    // открытые сегменты только добавляются: запросы с разными снимками видят разные подмножества
+    private volatile TreeMap<YearMonth, TransferSegment> segments = new TreeMap<>();
+
+    @Autowired
+    public TransferArchive(@Value("${app.transfer.archive.dir:archive/transfers}") Path dir,
+                           JdbcTemplate jdbcTemplate,
+                           @Value("${app.transfer.archive.enabled:false}") boolean enabled,
+                           @Value("${app.transfer.archive.after-months:24}") int afterMonths) {
+        this(dir, jdbcTemplate, enabled, afterMonths, Clock.systemUTC());
+    }
+
+    TransferArchive(Path dir, JdbcTemplate jdbcTemplate, boolean enabled, int afterMonths, Clock clock) {
+        this.dir = dir;
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.afterMonths = Math.max(1, afterMonths);
+        this.clock = clock;
+    }
+
+    TransferArchive(Path dir) {
+        this(dir, null, true, 1, Clock.systemUTC());
+        reload();
+    }
+
+    public Path dir() {
+        return dir;
+    }
+
+    public static String segmentFileName(YearMonth month) {
+        return String.format("transfers-%04d-%02d.seg", month.getYear(), month.getMonthValue());
+    }
+
+    /** Граница архива (начало месяца после последнего сегмента); null — архив пуст. */
+    public Instant archivedBefore() {
+        var current = months();
+        return current.isEmpty() ? null
+                : current.lastKey().plusMonths(1).atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+    }
+
+    public boolean contains(YearMonth month) {
+        return months().containsKey(month);
+    }
+
+    /** Запрос с такой нижней границей задевает архив. */
+    public boolean covers(Instant from) {
+        if (!enabled || (from != null && !from.isBefore(archivableBefore())))
+            return false;
+        Instant before = archivedBefore();
+        return before != null && (from == null || from.isBefore(before));
+    }
+
+    // всё, что не раньше этой границы, архиватор не трогает; запас в месяц — на расхождение часов инстансов
+    private Instant archivableBefore() {
+        return YearMonth.now(clock.withZone(ZoneOffset.UTC)).minusMonths(afterMonths - 1)
+                .atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+    }
+
+    /**
+     * Переводы пользователя из архива по фильтрам (q — в нижнем регистре), новые сверху, не больше limit.
+     * Сегменты читаются от нового месяца к старому, пока не набрано limit строк.
+     */
+    public List<Transfer> find(Long userId,
+                               TransferStatus status,
+                               Instant from,
+                               Instant to,
+                               UUID cardId,
+                               String q,
+                               TransferCursor after,
+                               int limit) {
+        List<Transfer> out = new ArrayList<>();
+        if (!enabled)
+            return out;
+        Predicate<Transfer> filter = filter(status, cardId, q, after);
+        // месяцы не пересекаются, внутри сегмента строки уже новые сверху — сортировать нечего
+        for (TransferSegment segment : months().descendingMap().values()) {
+            if (out.size() >= limit) break;
+            out.addAll(segment.find(userId, from, to, filter, limit - out.size()));
+        }
+        return out;
+    }
+
+    /** Число переводов пользователя в архиве по тем же фильтрам. */
+    public long count(Long userId, TransferStatus status, Instant from, Instant to, UUID cardId, String q) {
+        if (!enabled)
+            return 0;
+        Predicate<Transfer> filter = filter(status, cardId, q, null);
+        long count = 0;
+        for (TransferSegment segment : months().values())
+            count += segment.count(userId, from, to, filter);
+        return count;
+    }
+
+    private static Predicate<Transfer> filter(TransferStatus status, UUID cardId, String q, TransferCursor after) {
+        return t ->
+                (status == null || t.getStatus() == status)
+                        && (cardId == null || cardId.equals(t.getFromCardId()) || cardId.equals(t.getToCardId()))
+                        && (q == null || (t.getMessage() != null
+                            && t.getMessage().toLowerCase(Locale.ROOT).contains(q)))
+                        && (after == null || t.getCreatedAt().isBefore(after.createdAt())
+                            || (t.getCreatedAt().equals(after.createdAt())
+                                && t.getId().toString().compareTo(after.id().toString()) < 0));
+    }
+
+    /** Архивные месяцы, видимые текущей транзакции, с открытыми сегментами. */
+    private TreeMap<YearMonth, TransferSegment> months() {
+        if (jdbcTemplate == null)
+            return segments;
+        TreeMap<YearMonth, Long> stored = new TreeMap<>();
+        jdbcTemplate.query("select month, size_bytes from transfer_archive_segment", rs -> {
+            stored.put(YearMonth.from(rs.getDate("month").toLocalDate()), rs.getLong("size_bytes"));
+        });
+        TreeMap<YearMonth, TransferSegment> visible = new TreeMap<>();
+        stored.forEach((month, sizeBytes) -> {
+            TransferSegment open = segments.get(month);
+            visible.put(month, open != null ? open : fetch(month, sizeBytes));
+        });
+        return visible;
+    }
+
+    // сегмент из кэша; нет или размер не тот (недописан прошлой попыткой) — скачать из БД
+    private synchronized TransferSegment fetch(YearMonth month, long sizeBytes) {
+        TransferSegment open = segments.get(month);
+        if (open != null)
+            return open;
+        Path file = dir.resolve(segmentFileName(month));
+        if (size(file) != sizeBytes)
+            download(month, file);
+        TransferSegment segment = TransferSegment.open(file);
+        TreeMap<YearMonth, TransferSegment> next = new TreeMap<>(segments);
+        next.put(month, segment);
+        segments = next;
+        return segment;
+    }
+
+    private void download(YearMonth month, Path file) {
+        Path tmp = file.resolveSibling(file.getFileName() + ".download");
+        try {
+            Files.createDirectories(dir);
+            jdbcTemplate.query("select data from transfer_archive_segment where month = ?", rs -> {
+                try (InputStream in = rs.getBinaryStream("data")) {
+                    Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot download transfer segment " + month, e);
+                }
+            }, Date.valueOf(month.atDay(1)));
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot store transfer segment " + file, e);
+        }
+        log.info("Transfer archive: fetched segment {} into {}", month, file);
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /** Перечитать каталог (без БД): новые сегменты открываются, исчезнувшие закрываются. */
+    synchronized void reload() {
+        TreeMap<YearMonth, TransferSegment> next = new TreeMap<>();
+        if (Files.isDirectory(dir)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "transfers-*.seg")) {
+                for (Path file : files) {
+                    YearMonth month = segmentMonth(file.getFileName().toString());
+                    if (month == null) continue;
+                    TransferSegment open = segments.get(month);
+                    next.put(month, open != null && open.path().equals(file) ? open : TransferSegment.open(file));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot list transfer archive " + dir, e);
+            }
+        }
+        var previous = segments;
+        segments = next;
+        previous.forEach((month, segment) -> {
+            if (!Objects.equals(next.get(month), segment)) segment.close();
+        });
+        log.debug("Transfer archive: {} segments in {}", next.size(), dir);
+    }
+
+    static YearMonth segmentMonth(String fileName) {
+        Matcher m = SEGMENT_NAME.matcher(fileName);
+        if (!m.matches())
+            return null;
+        return YearMonth.of(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)));
+    }
+}
@@ -0,0 +1,239 @@
+package com.abrik.bank_cards.bank_cards.service.archive;
+
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferStatus;
+import com.abrik.bank_cards.bank_cards.entity.Transfer;
+import com.abrik.bank_cards.bank_cards.service.partition.TransferPartitionMaintainer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Перенос старых месяцев из Postgres в архив: партиция старше {@code after-months} читается курсором
+ * в порядке (user_id, created_at, id) и пишется в сегмент. В одной транзакции сегмент сохраняется
+ * в transfer_archive_segment, партиция отсоединяется и удаляется — месяц одновременно появляется
+ * в архиве и исчезает из transfer для всех инстансов. Локальный файл остаётся кэшем этого инстанса.
+ * За проход — один месяц, самый старый. Работает один инстанс (advisory lock).
+ */
+@Slf4j
+@Component
+public class TransferArchiver implements SmartLifecycle {
+    // произвольная константа для pg_try_advisory_xact_lock
+    private static final long ARCHIVE_LOCK_KEY = 0x0B0C_0003L;
+    private static final int FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate tx;
+    private final TransferArchive archive;
+    private final Clock clock;
+    private final boolean enabled;
+    private final int afterMonths;
+    private final int blockRows;
+    private final long intervalMillis;
+
+    private volatile boolean running;
+    private Thread archiver;
+
+    @Autowired
+    public TransferArchiver(JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            TransferArchive archive,
+                            @Value("${app.transfer.archive.enabled:false}") boolean enabled,
+                            @Value("${app.transfer.archive.after-months:24}") int afterMonths,
+                            @Value("${app.transfer.archive.block-rows:1024}") int blockRows,
+                            @Value("${app.transfer.archive.check-interval:6h}") Duration checkInterval) {
+        this(jdbcTemplate, transactionManager, archive, Clock.systemUTC(),
+                enabled, afterMonths, blockRows, checkInterval);
+    }
+
+    TransferArchiver(JdbcTemplate jdbcTemplate,
+                     PlatformTransactionManager transactionManager,
+                     TransferArchive archive,
+                     Clock clock,
+                     boolean enabled,
+                     int afterMonths,
+                     int blockRows,
+                     Duration checkInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.archive = archive;
+        this.clock = clock;
+        this.enabled = enabled;
+        this.afterMonths = Math.max(1, afterMonths);
+        this.blockRows = blockRows;
+        this.intervalMillis = checkInterval.toMillis();
+    }
+
+    /** Архивирует самый старый подходящий месяц; null — архивировать нечего или занято другим инстансом. */
+    public YearMonth archiveOnce() {
+        return tx.execute(status -> {
+            Boolean locked = jdbcTemplate.queryForObject(
+                    "select pg_try_advisory_xact_lock(?)", Boolean.class, ARCHIVE_LOCK_KEY);
+            if (!Boolean.TRUE.equals(locked))
+                return null;
+
+            YearMonth cutoff = YearMonth.now(clock.withZone(ZoneOffset.UTC)).minusMonths(afterMonths);
+            YearMonth month = jdbcTemplate.queryForList("""
+                            select c.relname from pg_inherits i
+                            join pg_class c on c.oid = i.inhrelid
+                            where i.inhparent = 'transfer'::regclass
+                            """, String.class).stream()
+                    .map(TransferPartitionMaintainer::partitionMonth)
+                    .filter(Objects::nonNull)
+                    .filter(m -> m.isBefore(cutoff))
+                    .min(Comparator.naturalOrder())
+                    .orElse(null);
+            if (month == null)
+                return null;
+
+            archive(month);
+            return month;
+        });
+    }
+
+    private void archive(YearMonth month) {
+        // имя собрано из YearMonth — подставлять в SQL безопасно
+        String partition = String.format("transfer_y%04dm%02d", month.getYear(), month.getMonthValue());
+        Path file = archive.dir().resolve(TransferArchive.segmentFileName(month));
+
+        TransferSegmentWriter writer = new TransferSegmentWriter(file, blockRows);
+        try {
+            jdbcTemplate.query(con -> {
+                var ps = con.prepareStatement("""
+                        select id, user_id, from_card_id, to_card_id, amount, currency,
+                               status, message, failure_reason, idempotency_key, created_at
+                        from %s
+                        order by user_id, created_at, id
+                        """.formatted(partition), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(FETCH_SIZE);
+                return ps;
+            }, (RowCallbackHandler) rs -> writer.append(toTransfer(rs)));
+        } catch (RuntimeException e) {
+            writer.abort();
+            throw e;
+        }
+        writer.close();
+
+        try {
+            store(month, writer.rowCount(), file);
+            jdbcTemplate.execute("alter table transfer detach partition " + partition);
+            jdbcTemplate.execute("drop table " + partition);
+            jdbcTemplate.update("delete from transfer_idempotency where created_at >= ? and created_at < ?",
+                    Timestamp.from(month.atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC)),
+                    Timestamp.from(month.plusMonths(1).atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC)));
+        } catch (RuntimeException e) {
+            // транзакция откатится вместе с сегментом в БД; недописанный кэш не нужен
+            deleteQuietly(file);
+            throw e;
+        }
+        log.info("Archived {} transfers of {} to transfer_archive_segment and {}", writer.rowCount(), month, file);
+    }
+
+    private void store(YearMonth month, long rowCount, Path file) {
+        try (InputStream in = Files.newInputStream(file)) {
+            long size = Files.size(file);
+            jdbcTemplate.update(con -> {
+                var ps = con.prepareStatement(
+                        "insert into transfer_archive_segment (month, row_count, size_bytes, data) values (?, ?, ?, ?)");
+                ps.setDate(1, Date.valueOf(month.atDay(1)));
+                ps.setLong(2, rowCount);
+                ps.setLong(3, size);
+                ps.setBinaryStream(4, in, size);
+                return ps;
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read transfer segment " + file, e);
+        }
+    }
+
+    private static Transfer toTransfer(ResultSet rs) throws SQLException {
+        Transfer t = new Transfer();
+        t.setId(rs.getObject("id", UUID.class));
+        t.setUserId(rs.getLong("user_id"));
+        t.setFromCardId(rs.getObject("from_card_id", UUID.class));
+        t.setToCardId(rs.getObject("to_card_id", UUID.class));
+        t.setAmount(rs.getBigDecimal("amount"));
+        t.setCurrency(rs.getString("currency"));
+        t.setStatus(TransferStatus.valueOf(rs.getString("status")));
+        t.setMessage(rs.getString("message"));
+        t.setFailureReason(rs.getString("failure_reason"));
+        t.setIdempotencyKey(rs.getString("idempotency_key"));
+        t.setCreatedAt(rs.getTimestamp("created_at").toInstant());
+        return t;
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Cannot delete transfer segment {}", file, e);
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!enabled || running) return;
+        running = true;
+        archiver = Thread.ofPlatform().name("transfer-archiver").daemon().start(this::loop);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread thread = archiver;
+        if (thread == null) return;
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void loop() {
+        while (running) {
+            YearMonth archived = null;
+            try {
+                archived = archiveOnce();
+            } catch (RuntimeException e) {
+                log.warn("Transfer archiving failed, will retry", e);
+            }
+            // пока есть что архивировать — без паузы
+            if (archived != null) continue;
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.abrik.bank_cards.bank_cards.service.archive;
+
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferStatus;
+import com.abrik.bank_cards.bank_cards.entity.Transfer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Predicate;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Неизменяемый сегмент архива переводов, открытый через mmap.
+ * <pre>
+ * блоки:   deflate(колонки блока) — строки отсортированы по (user_id, created_at, id)
+ * индекс:  на блок — первый/последний ключ (user_id, created_at), смещение, длины, число строк
+ * футер:   смещение индекса, число блоков, число строк, min/max created_at, MAGIC
+ * </pre>
+ * Поиск по пользователю читает только блоки, чей диапазон ключей его задевает, от новых к старым,
+ * и останавливается, набрав limit строк.
+ */
+public final class TransferSegment implements AutoCloseable {
+    static final int MAGIC = 0x54534547; // "TSEG"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 8;
+    static final int INDEX_ENTRY_BYTES = 8 + 8 + 8 + 8 + 8 + 4 + 4 + 4;
+    static final int FOOTER_BYTES = 8 + 4 + 8 + 8 + 8 + 4;
+
+    private static final TransferStatus[] STATUSES = TransferStatus.values();
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer data;
+    private final Block[] blocks;
+    private final long rowCount;
+    private final Instant minCreatedAt;
+    private final Instant maxCreatedAt;
+
+    private TransferSegment(Path path, FileChannel channel, MappedByteBuffer data, Block[] blocks,
+                            long rowCount, Instant minCreatedAt, Instant maxCreatedAt) {
+        this.path = path;
+        this.channel = channel;
+        this.data = data;
+        this.blocks = blocks;
+        this.rowCount = rowCount;
+        this.minCreatedAt = minCreatedAt;
+        this.maxCreatedAt = maxCreatedAt;
+    }
+
+    public static TransferSegment open(Path path) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE || size < HEADER_BYTES + FOOTER_BYTES)
+                throw new IllegalStateException("Unsupported segment size " + size + ": " + path);
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            if (data.getInt(0) != MAGIC || data.getInt(4) != VERSION)
+                throw new IllegalStateException("Not a transfer segment: " + path);
+            int footer = (int) size - FOOTER_BYTES;
+            if (data.getInt(footer + FOOTER_BYTES - 4) != MAGIC)
+                throw new IllegalStateException("Truncated transfer segment: " + path);
+
+            long indexOffset = data.getLong(footer);
+            int blockCount = data.getInt(footer + 8);
+            long rows = data.getLong(footer + 12);
+            Instant min = fromMicros(data.getLong(footer + 20));
+            Instant max = fromMicros(data.getLong(footer + 28));
+
+            Block[] blocks = new Block[blockCount];
+            int pos = (int) indexOffset;
+            for (int i = 0; i < blockCount; i++, pos += INDEX_ENTRY_BYTES) {
+                blocks[i] = new Block(
+                        data.getLong(pos), data.getLong(pos + 8),
+                        data.getLong(pos + 16), data.getLong(pos + 24),
+                        data.getLong(pos + 32), data.getInt(pos + 40),
+                        data.getInt(pos + 44), data.getInt(pos + 48));
+            }
+            return new TransferSegment(path, channel, data, blocks, rows, min, max);
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw new UncheckedIOException("Cannot open transfer segment " + path, e);
+        } catch (RuntimeException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public long rowCount() {
+        return rowCount;
+    }
+
+    public Instant minCreatedAt() {
+        return minCreatedAt;
+    }
+
+    public Instant maxCreatedAt() {
+        return maxCreatedAt;
+    }
+
+    /** Переводы пользователя с created_at в [from, to) (null — без границы), прошедшие фильтр, новые сверху. */
+    public List<Transfer> find(long userId, Instant from, Instant to, Predicate<Transfer> filter) {
+        return find(userId, from, to, filter, Integer.MAX_VALUE);
+    }
+
+    /** То же, но не больше limit строк: блоки старше последней нужной строки не распаковываются. */
+    public List<Transfer> find(long userId, Instant from, Instant to, Predicate<Transfer> filter, int limit) {
+        List<Transfer> out = new ArrayList<>();
+        if (limit <= 0)
+            return out;
+        scan(userId, from, to, t -> {
+            if (filter.test(t)) out.add(t);
+            return out.size() < limit;
+        });
+        return out;
+    }
+
+    /** Число переводов пользователя в [from, to), прошедших фильтр. */
+    public long count(long userId, Instant from, Instant to, Predicate<Transfer> filter) {
+        long[] count = {0};
+        scan(userId, from, to, t -> {
+            if (filter.test(t)) count[0]++;
+            return true;
+        });
+        return count[0];
+    }
+
+    /**
+     * Строки пользователя в [from, to) от новых к старым — обратный порядок (user_id, created_at, id),
+     * тот же, что NEWEST_FIRST. visitor вернул false — дальше не читаем.
+     */
+    private void scan(long userId, Instant from, Instant to, Predicate<Transfer> visitor) {
+        if ((from != null && maxCreatedAt.isBefore(from)) || (to != null && !minCreatedAt.isBefore(to)))
+            return;
+        long fromMicros = from == null ? Long.MIN_VALUE : toMicros(from);
+        long toMicros = to == null ? Long.MAX_VALUE : toMicros(to);
+
+        int first = firstBlockFor(userId);
+        for (int i = blockAfter(userId) - 1; i >= first; i--) {
+            Block b = blocks[i];
+            // блок целиком этого пользователя и вне интервала — не распаковываем
+            boolean skip = b.firstUserId() == userId && b.lastUserId() == userId
+                    && (b.lastCreatedAt() < fromMicros || b.firstCreatedAt() >= toMicros);
+            if (!skip) {
+                List<Transfer> rows = decode(b);
+                for (int j = rows.size() - 1; j >= 0; j--) {
+                    Transfer t = rows.get(j);
+                    long micros = toMicros(t.getCreatedAt());
+                    if (t.getUserId() == userId && micros >= fromMicros && micros < toMicros && !visitor.test(t))
+                        return;
+                }
+            }
+            // блоки левее целиком старше from или принадлежат другим пользователям
+            if (b.firstUserId() < userId || b.firstCreatedAt() < fromMicros)
+                return;
+        }
+    }
+
+    // первый блок, чей последний ключ не меньше userId (блоки упорядочены по ключу)
+    private int firstBlockFor(long userId) {
+        int lo = 0, hi = blocks.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (blocks[mid].lastUserId() < userId) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // первый блок, который начинается с пользователя больше userId
+    private int blockAfter(long userId) {
+        int lo = 0, hi = blocks.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (blocks[mid].firstUserId() <= userId) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private List<Transfer> decode(Block b) {
+        byte[] raw = new byte[b.rawLength()];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data.slice((int) b.offset(), b.compressedLength()));
+            int n = 0;
+            while (n < raw.length && !inflater.finished())
+                n += inflater.inflate(raw, n, raw.length - n);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupted block in " + path, e);
+        } finally {
+            inflater.end();
+        }
+        return readColumns(ByteBuffer.wrap(raw), b.rows());
+    }
+
+    private static List<Transfer> readColumns(ByteBuffer buf, int rows) {
+        List<Transfer> out = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++)
+            out.add(new Transfer());
+        for (Transfer t : out) t.setId(new UUID(buf.getLong(), buf.getLong()));
+        for (Transfer t : out) t.setUserId(buf.getLong());
+        for (Transfer t : out) t.setFromCardId(new UUID(buf.getLong(), buf.getLong()));
+        for (Transfer t : out) t.setToCardId(new UUID(buf.getLong(), buf.getLong()));
+        for (Transfer t : out) t.setAmount(BigDecimal.valueOf(buf.getLong(), 2));
+        for (Transfer t : out) {
+            byte[] currency = new byte[3];
+            buf.get(currency);
+            t.setCurrency(new String(currency, StandardCharsets.US_ASCII));
+        }
+        for (Transfer t : out) t.setStatus(STATUSES[buf.get()]);
+        for (Transfer t : out) t.setCreatedAt(fromMicros(buf.getLong()));
+        for (Transfer t : out) t.setMessage(readString(buf));
+        for (Transfer t : out) t.setFailureReason(readString(buf));
+        for (Transfer t : out) t.setIdempotencyKey(readString(buf));
+        return out;
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int len = buf.getInt();
+        if (len < 0) return null;
+        byte[] bytes = new byte[len];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static long toMicros(Instant t) {
+        return ChronoUnit.MICROS.between(Instant.EPOCH, t);
+    }
+
+    static Instant fromMicros(long micros) {
+        return Instant.EPOCH.plus(micros, ChronoUnit.MICROS);
+    }
+
+    @Override
+    public void close() {
+        closeQuietly(channel);
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // mmap остаётся валидным до сборки буфера
+        }
+    }
+
+    record Block(long firstUserId, long firstCreatedAt, long lastUserId, long lastCreatedAt,
+                 long offset, int compressedLength, int rawLength, int rows) {}
+}
@@ -0,0 +1,190 @@
+package com.abrik.bank_cards.bank_cards.service.archive;
+
+import com.abrik.bank_cards.bank_cards.entity.Transfer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static com.abrik.bank_cards.bank_cards.service.archive.TransferSegment.toMicros;
+
+/**
+ * Пишет сегмент {@link TransferSegment}: строки должны приходить по возрастанию (user_id, created_at, id).
+ * В памяти держится один блок; файл пишется во временный и появляется под своим именем
+ * только после fsync в {@link #close()} — недописанный сегмент никогда не виден читателям.
+ */
+public final class TransferSegmentWriter implements AutoCloseable {
+    private final Path target;
+    private final Path tmp;
+    private final FileChannel channel;
+    private final int blockRows;
+    private final List<Transfer> block = new ArrayList<>();
+    private final ByteArrayOutputStream index = new ByteArrayOutputStream();
+    private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+
+    private long offset;
+    private int blockCount;
+    private long rowCount;
+    private long minMicros = Long.MAX_VALUE;
+    private long maxMicros = Long.MIN_VALUE;
+    private long lastUserId = Long.MIN_VALUE;
+    private long lastMicros = Long.MIN_VALUE;
+    private boolean committed;
+
+    public TransferSegmentWriter(Path target, int blockRows) {
+        this.target = target;
+        this.tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        this.blockRows = Math.max(1, blockRows);
+        try {
+            Files.createDirectories(target.toAbsolutePath().getParent());
+            this.channel = FileChannel.open(tmp, CREATE, WRITE, TRUNCATE_EXISTING);
+            ByteBuffer header = ByteBuffer.allocate(TransferSegment.HEADER_BYTES)
+                    .putInt(TransferSegment.MAGIC).putInt(TransferSegment.VERSION).flip();
+            write(header);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create transfer segment " + target, e);
+        }
+    }
+
+    public void append(Transfer t) {
+        long micros = toMicros(t.getCreatedAt());
+        if (t.getUserId() < lastUserId || (t.getUserId() == lastUserId && micros < lastMicros))
+            throw new IllegalArgumentException("Segment rows must be ordered by (user_id, created_at)");
+        lastUserId = t.getUserId();
+        lastMicros = micros;
+        minMicros = Math.min(minMicros, micros);
+        maxMicros = Math.max(maxMicros, micros);
+
+        block.add(t);
+        rowCount++;
+        if (block.size() >= blockRows)
+            flushBlock();
+    }
+
+    public long rowCount() {
+        return rowCount;
+    }
+
+    /** Дописывает индекс и футер, fsync, атомарно переименовывает в целевой файл. */
+    @Override
+    public void close() {
+        try {
+            if (!committed) {
+                flushBlock();
+                long indexOffset = offset;
+                write(ByteBuffer.wrap(index.toByteArray()));
+                ByteBuffer footer = ByteBuffer.allocate(TransferSegment.FOOTER_BYTES)
+                        .putLong(indexOffset)
+                        .putInt(blockCount)
+                        .putLong(rowCount)
+                        .putLong(rowCount == 0 ? 0 : minMicros)
+                        .putLong(rowCount == 0 ? 0 : maxMicros)
+                        .putInt(TransferSegment.MAGIC)
+                        .flip();
+                write(footer);
+                channel.force(true);
+                committed = true;
+            }
+            channel.close();
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write transfer segment " + target, e);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /** Бросить недописанный сегмент (ошибка чтения из БД). */
+    public void abort() {
+        try {
+            channel.close();
+            Files.deleteIfExists(tmp);
+        } catch (IOException ignored) {
+            // временный файл перезапишется при следующей попытке
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void flushBlock() {
+        if (block.isEmpty()) return;
+        byte[] raw = columns(block);
+
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 2 + 64);
+        byte[] chunk = new byte[8192];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(chunk);
+            compressed.write(chunk, 0, n);
+        }
+        byte[] bytes = compressed.toByteArray();
+
+        Transfer first = block.getFirst();
+        Transfer last = block.getLast();
+        ByteBuffer entry = ByteBuffer.allocate(TransferSegment.INDEX_ENTRY_BYTES)
+                .putLong(first.getUserId()).putLong(toMicros(first.getCreatedAt()))
+                .putLong(last.getUserId()).putLong(toMicros(last.getCreatedAt()))
+                .putLong(offset).putInt(bytes.length).putInt(raw.length).putInt(block.size());
+        index.writeBytes(entry.array());
+
+        try {
+            write(ByteBuffer.wrap(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write transfer segment " + target, e);
+        }
+        blockCount++;
+        block.clear();
+    }
+
+    // колонки подряд: одинаковые типы рядом сжимаются заметно лучше построчной записи
+    private static byte[] columns(List<Transfer> rows) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(rows.size() * 96);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            for (Transfer t : rows) { out.writeLong(t.getId().getMostSignificantBits()); out.writeLong(t.getId().getLeastSignificantBits()); }
+            for (Transfer t : rows) out.writeLong(t.getUserId());
+            for (Transfer t : rows) { out.writeLong(t.getFromCardId().getMostSignificantBits()); out.writeLong(t.getFromCardId().getLeastSignificantBits()); }
+            for (Transfer t : rows) { out.writeLong(t.getToCardId().getMostSignificantBits()); out.writeLong(t.getToCardId().getLeastSignificantBits()); }
+            for (Transfer t : rows) out.writeLong(t.getAmount().setScale(2, RoundingMode.UNNECESSARY).unscaledValue().longValueExact());
+            for (Transfer t : rows) out.write(t.getCurrency().getBytes(StandardCharsets.US_ASCII), 0, 3);
+            for (Transfer t : rows) out.writeByte(t.getStatus().ordinal());
+            for (Transfer t : rows) out.writeLong(toMicros(t.getCreatedAt()));
+            for (Transfer t : rows) writeString(out, t.getMessage());
+            for (Transfer t : rows) writeString(out, t.getFailureReason());
+            for (Transfer t : rows) writeString(out, t.getIdempotencyKey());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private void write(ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining())
+            offset += channel.write(buf);
+    }
+}
@@ -0,0 +1,19 @@
+package com.abrik.bank_cards.bank_cards.service.audit;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Аудит раскрытия PAN в лог. Слушатель синхронный: если запись аудита упала,
+ * номера не отдаются. Другие приёмники (таблица, SIEM) подключаются своим @EventListener.
+ */
+@Component
+@Slf4j
+public class PanRevealAuditLog {
+
+    @EventListener
+    public void onRevealed(PanRevealed event) {
+        log.info("PAN revealed: user={} cards={} at={}", event.userId(), event.cardIds(), event.at());
+    }
+}
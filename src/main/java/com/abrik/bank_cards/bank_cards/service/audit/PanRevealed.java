@@ -0,0 +1,8 @@
+package com.abrik.bank_cards.bank_cards.service.audit;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/** Пользователь получил полные номера карт; публикуется до отдачи ответа. */
+public record PanRevealed(Long userId, List<UUID> cardIds, Instant at) {}
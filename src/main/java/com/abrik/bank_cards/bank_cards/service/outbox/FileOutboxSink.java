@@ -0,0 +1,77 @@
+package com.abrik.bank_cards.bank_cards.service.outbox;
+
+import com.abrik.bank_cards.bank_cards.entity.OutboxEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * События в локальный файл, по строке JSON на событие (NDJSON).
+ * Пачка дописывается и сбрасывается на диск до удаления из outbox.
+ */
+@Component
+@ConditionalOnProperty(name = "app.outbox.sink", havingValue = "file", matchIfMissing = true)
+public class FileOutboxSink implements OutboxSink {
+    private final Path path;
+    private final ObjectMapper objectMapper;
+
+    public FileOutboxSink(@Value("${app.outbox.file.path:outbox/events.ndjson}") Path path,
+                          ObjectMapper objectMapper) {
+        this.path = path;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public synchronized void publish(List<OutboxEvent> events) {
+        StringBuilder lines = new StringBuilder();
+        for (OutboxEvent e : events)
+            lines.append(toJson(e)).append('\n');
+
+        try {
+            Path dir = path.toAbsolutePath().getParent();
+            if (dir != null)
+                Files.createDirectories(dir);
+            try (FileChannel channel = FileChannel.open(path, CREATE, WRITE, APPEND)) {
+                ByteBuffer buf = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+                while (buf.hasRemaining())
+                    channel.write(buf);
+                channel.force(false);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot write outbox events to " + path, ex);
+        }
+    }
+
+    private String toJson(OutboxEvent e) {
+        try {
+            ObjectNode node = objectMapper.createObjectNode();
+            node.put("id", e.getId());
+            node.put("aggregateType", e.getAggregateType());
+            node.put("aggregateId", e.getAggregateId());
+            node.put("eventType", e.getEventType());
+            if (e.getUserId() != null)
+                node.put("userId", e.getUserId());
+            node.put("createdAt", e.getCreatedAt().toString());
+            node.set("payload", objectMapper.readTree(e.getPayload()));
+            return objectMapper.writeValueAsString(node);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Invalid outbox payload, id=" + e.getId(), ex);
+        }
+    }
+}
@@ -0,0 +1,4 @@
+package com.abrik.bank_cards.bank_cards.service.outbox;
+
+/** Событие записано в outbox; payload — тот же JSON, что уходит в sink. */
+public record OutboxRecorded(String eventType, Long userId, String payload) {}
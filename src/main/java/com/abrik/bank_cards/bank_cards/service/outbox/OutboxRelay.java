@@ -0,0 +1,112 @@
+package com.abrik.bank_cards.bank_cards.service.outbox;
+
+import com.abrik.bank_cards.bank_cards.entity.OutboxEvent;
+import com.abrik.bank_cards.bank_cards.repository.OutboxEventRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Релей outbox: в одной транзакции берёт пачку событий по порядку id,
+ * отдаёт её в {@link OutboxSink} и удаляет. Ошибка sink — откат, пачка уйдёт повторно.
+ * Активен один релей на кластер (advisory lock).
+ * <p>
+ * Порядок гарантирован только внутри агрегата: его изменения сериализуются (блокировка строки / version),
+ * поэтому следующее событие получает id после коммита предыдущего. Между агрегатами порядок id
+ * не совпадает с порядком коммитов — транзакция с меньшим id может закоммититься позже.
+ */
+@Slf4j
+@Component
+public class OutboxRelay implements SmartLifecycle {
+    // произвольная константа для pg_try_advisory_xact_lock
+    private static final long RELAY_LOCK_KEY = 0x0B0C_0001L;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final OutboxSink sink;
+    private final TransactionTemplate tx;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long pollMillis;
+
+    private volatile boolean running;
+    private Thread relay;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+                       OutboxSink sink,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${app.outbox.relay.enabled:true}") boolean enabled,
+                       @Value("${app.outbox.relay.batch-size:100}") int batchSize,
+                       @Value("${app.outbox.relay.poll-interval:500ms}") Duration pollInterval) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.sink = sink;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.pollMillis = pollInterval.toMillis();
+    }
+
+    /** Одна пачка: число отправленных событий (0 — пусто или релей занят другим инстансом). */
+    public int relayOnce() {
+        Integer sent = tx.execute(status -> {
+            if (!outboxEventRepository.tryRelayLock(RELAY_LOCK_KEY))
+                return 0;
+            List<OutboxEvent> batch = outboxEventRepository.findBatch(batchSize);
+            if (batch.isEmpty())
+                return 0;
+            sink.publish(batch);
+            outboxEventRepository.deleteAllByIdIn(batch.stream().map(OutboxEvent::getId).toList());
+            return batch.size();
+        });
+        return sent == null ? 0 : sent;
+    }
+
+    @Override
+    public void start() {
+        if (!enabled || running) return;
+        running = true;
+        relay = Thread.ofPlatform().name("outbox-relay").daemon().start(this::pollLoop);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread thread = relay;
+        if (thread == null) return;
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void pollLoop() {
+        while (running) {
+            int sent = 0;
+            try {
+                sent = relayOnce();
+            } catch (RuntimeException e) {
+                log.warn("Outbox relay failed, batch will be retried", e);
+            }
+            if (sent < batchSize) {
+                try {
+                    Thread.sleep(pollMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
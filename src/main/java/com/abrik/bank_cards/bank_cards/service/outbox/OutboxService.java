@@ -0,0 +1,73 @@
+package com.abrik.bank_cards.bank_cards.service.outbox;
+
+import com.abrik.bank_cards.bank_cards.entity.OutboxEvent;
+import com.abrik.bank_cards.bank_cards.entity.Transfer;
+import com.abrik.bank_cards.bank_cards.repository.OutboxEventRepository;
+import com.abrik.bank_cards.bank_cards.util.TransferUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Запись событий в outbox. Вызывается внутри транзакции изменения —
+ * событие фиксируется или откатывается вместе с ним.
+ * Параллельно публикуется {@link OutboxRecorded} для подписчиков внутри процесса (SSE).
+ */
+@Service
+@RequiredArgsConstructor
+public class OutboxService {
+    public static final String TRANSFER = "TRANSFER";
+    public static final String CARD = "CARD";
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final TransferUtil transferUtil;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Clock clock = Clock.systemUTC();
+
+    public void record(String aggregateType, Object aggregateId, String eventType, Long userId, Object payload) {
+        OutboxEvent event = event(aggregateType, aggregateId, eventType, userId, payload);
+        outboxEventRepository.save(event);
+        publish(event);
+    }
+
+    /** TRANSFER_PENDING / TRANSFER_COMPLETED / TRANSFER_FAILED по текущему статусу. */
+    public void recordTransfers(Collection<Transfer> transfers) {
+        List<OutboxEvent> events = new ArrayList<>(transfers.size());
+        for (Transfer t : transfers)
+            events.add(event(TRANSFER, t.getId(), "TRANSFER_" + t.getStatus(), t.getUserId(), transferUtil.map(t)));
+        outboxEventRepository.saveAll(events);
+        events.forEach(this::publish);
+    }
+
+    private void publish(OutboxEvent event) {
+        eventPublisher.publishEvent(new OutboxRecorded(event.getEventType(), event.getUserId(), event.getPayload()));
+    }
+
+    private OutboxEvent event(String aggregateType, Object aggregateId, String eventType, Long userId, Object payload) {
+        var event = new OutboxEvent();
+        event.setAggregateType(aggregateType);
+        event.setAggregateId(String.valueOf(aggregateId));
+        event.setEventType(eventType);
+        event.setUserId(userId);
+        event.setPayload(toJson(payload));
+        event.setCreatedAt(Instant.now(clock));
+        return event;
+    }
+
+    private String toJson(Object payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize outbox payload", e);
+        }
+    }
+}
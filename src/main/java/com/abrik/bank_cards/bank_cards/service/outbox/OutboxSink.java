@@ -0,0 +1,13 @@
+package com.abrik.bank_cards.bank_cards.service.outbox;
+
+import com.abrik.bank_cards.bank_cards.entity.OutboxEvent;
+
+import java.util.List;
+
+/**
+ * Получатель событий outbox. Пачка приходит в порядке id (порядок значим только внутри агрегата);
+ * исключение — пачка остаётся в outbox и будет отправлена повторно (at-least-once).
+ */
+public interface OutboxSink {
+    void publish(List<OutboxEvent> events);
+}
@@ -0,0 +1,172 @@
+package com.abrik.bank_cards.bank_cards.service.partition;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Обслуживание месячных партиций transfer: заранее создаёт партиции на {@code months-ahead}
+ * месяцев вперёд и отсоединяет (DETACH, без удаления) партиции старше {@code retention-months}.
+ * Строки, попавшие в transfer_default, при создании партиции их месяца переносятся в неё.
+ * Отсоединённая партиция остаётся отдельной таблицей для архива. Работает один инстанс (advisory lock).
+ */
+@Slf4j
+@Component
+public class TransferPartitionMaintainer implements SmartLifecycle {
+    // произвольная константа для pg_try_advisory_xact_lock
+    private static final long MAINTENANCE_LOCK_KEY = 0x0B0C_0002L;
+    private static final Pattern PARTITION_NAME = Pattern.compile("transfer_y(\\d{4})m(\\d{2})");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate tx;
+    private final Clock clock;
+    private final boolean enabled;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final long intervalMillis;
+
+    private volatile boolean running;
+    private Thread maintainer;
+
+    @Autowired
+    public TransferPartitionMaintainer(JdbcTemplate jdbcTemplate,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${app.transfer.partition.enabled:true}") boolean enabled,
+                                       @Value("${app.transfer.partition.months-ahead:3}") int monthsAhead,
+                                       @Value("${app.transfer.partition.retention-months:0}") int retentionMonths,
+                                       @Value("${app.transfer.partition.check-interval:6h}") Duration checkInterval) {
+        this(jdbcTemplate, transactionManager, Clock.systemUTC(), enabled, monthsAhead, retentionMonths, checkInterval);
+    }
+
+    TransferPartitionMaintainer(JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                Clock clock,
+                                boolean enabled,
+                                int monthsAhead,
+                                int retentionMonths,
+                                Duration checkInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.clock = clock;
+        this.enabled = enabled;
+        this.monthsAhead = Math.max(1, monthsAhead);
+        this.retentionMonths = retentionMonths;
+        this.intervalMillis = checkInterval.toMillis();
+    }
+
+    /** Один проход: имена отсоединённых партиций (пусто — нечего делать или занято другим инстансом). */
+    public List<String> maintainOnce() {
+        List<String> detached = tx.execute(status -> {
+            Boolean locked = jdbcTemplate.queryForObject(
+                    "select pg_try_advisory_xact_lock(?)", Boolean.class, MAINTENANCE_LOCK_KEY);
+            if (!Boolean.TRUE.equals(locked))
+                return List.of();
+
+            YearMonth current = YearMonth.now(clock.withZone(ZoneOffset.UTC));
+            for (int i = 0; i <= monthsAhead; i++)
+                jdbcTemplate.queryForObject("select transfer_create_partition(?)", String.class,
+                        Date.valueOf(current.plusMonths(i).atDay(1)));
+            warnIfDefaultNotEmpty();
+
+            return retentionMonths > 0 ? detachBefore(current.minusMonths(retentionMonths)) : List.of();
+        });
+        return detached == null ? List.of() : detached;
+    }
+
+    // строки месяцев из окна переносятся transfer_create_partition; остались — created_at вне окна (сбой часов)
+    private void warnIfDefaultNotEmpty() {
+        Long stray = jdbcTemplate.queryForObject("select count(*) from transfer_default", Long.class);
+        if (stray != null && stray > 0)
+            log.warn("transfer_default holds {} transfers outside monthly partitions", stray);
+    }
+
+    // партиции целиком старше cutoff; ключи идемпотентности за этот период освобождаются
+    private List<String> detachBefore(YearMonth cutoff) {
+        List<String> partitions = jdbcTemplate.queryForList("""
+                select c.relname from pg_inherits i
+                join pg_class c on c.oid = i.inhrelid
+                where i.inhparent = 'transfer'::regclass
+                """, String.class);
+
+        List<String> detached = new ArrayList<>();
+        for (String name : partitions) {
+            YearMonth month = partitionMonth(name);
+            if (month == null || !month.isBefore(cutoff))
+                continue;
+            // имя совпало с шаблоном transfer_yYYYYmMM — подставлять в DDL безопасно
+            jdbcTemplate.execute("alter table transfer detach partition " + name);
+            detached.add(name);
+        }
+        if (!detached.isEmpty()) {
+            Instant before = cutoff.atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+            jdbcTemplate.update("delete from transfer_idempotency where created_at < ?", Timestamp.from(before));
+            log.info("Detached transfer partitions older than {}: {}", cutoff, detached);
+        }
+        return detached;
+    }
+
+    public static YearMonth partitionMonth(String name) {
+        Matcher m = PARTITION_NAME.matcher(name);
+        if (!m.matches())
+            return null;
+        return YearMonth.of(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)));
+    }
+
+    @Override
+    public void start() {
+        if (!enabled || running) return;
+        running = true;
+        maintainer = Thread.ofPlatform().name("transfer-partition-maintainer").daemon().start(this::loop);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread thread = maintainer;
+        if (thread == null) return;
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void loop() {
+        while (running) {
+            try {
+                maintainOnce();
+            } catch (RuntimeException e) {
+                log.warn("Transfer partition maintenance failed, will retry", e);
+            }
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+}
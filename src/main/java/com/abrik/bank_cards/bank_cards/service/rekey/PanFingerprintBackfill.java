@@ -0,0 +1,175 @@
+package com.abrik.bank_cards.bank_cards.service.rekey;
+
+import com.abrik.bank_cards.bank_cards.util.PanCryptoUtil;
+import com.abrik.bank_cards.bank_cards.util.PanFingerprintUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Заполняет pan_fingerprint у карт, созданных до его появления. Один проход по card (по id, кусками)
+ * после старта; новые и изменённые карты получают отпечаток в CardService.
+ * <p>
+ * version не трогается. UPDATE условный по прочитанным pan_ciphertext и pan_encrypted (PAN не сменили
+ * параллельно) и по отсутствию такого же отпечатка: у дубликата PAN отпечаток остаётся пустым,
+ * такие карты попадают в лог — их нужно разобрать вручную.
+ * Скорость ограничена {@code rows-per-second}. Кусок берётся под advisory lock.
+ */
+@Slf4j
+@Component
+public class PanFingerprintBackfill implements SmartLifecycle {
+    // произвольная константа для pg_try_advisory_xact_lock
+    private static final long BACKFILL_LOCK_KEY = 0x0B0C_0005L;
+
+    static final String UPDATE_SQL = """
+            update card set pan_fingerprint = ?
+            where id = ? and pan_fingerprint is null
+              and pan_ciphertext is not distinct from ? and pan_encrypted is not distinct from ?
+              and not exists (select 1 from card d where d.pan_fingerprint = ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate tx;
+    private final PanCryptoUtil crypto;
+    private final PanFingerprintUtil fingerprints;
+    private final boolean enabled;
+    private final int chunkSize;
+    private final int rowsPerSecond;
+
+    private volatile boolean running;
+    private Thread backfill;
+    // позиция прохода; карты без отпечатка до неё — дубликаты или изменённые во время прохода
+    private UUID after;
+    private long skipped;
+
+    /** Итог шага: scanned = 0 — конец таблицы. */
+    public record Chunk(int scanned, int filled) {}
+
+    public PanFingerprintBackfill(JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager,
+                                  PanCryptoUtil crypto,
+                                  PanFingerprintUtil fingerprints,
+                                  @Value("${app.security.pan-fingerprint.backfill.enabled:false}") boolean enabled,
+                                  @Value("${app.security.pan-fingerprint.backfill.chunk-size:500}") int chunkSize,
+                                  @Value("${app.security.pan-fingerprint.backfill.rows-per-second:2000}") int rowsPerSecond) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.crypto = crypto;
+        this.fingerprints = fingerprints;
+        this.enabled = enabled;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.rowsPerSecond = Math.max(1, rowsPerSecond);
+    }
+
+    /** Следующий кусок карт без отпечатка; null — занято другим инстансом. */
+    public Chunk backfillChunk() {
+        return tx.execute(status -> {
+            Boolean locked = jdbcTemplate.queryForObject(
+                    "select pg_try_advisory_xact_lock(?)", Boolean.class, BACKFILL_LOCK_KEY);
+            if (!Boolean.TRUE.equals(locked))
+                return null;
+
+            List<PanRekeyer.CardPan> rows = after == null
+                    ? jdbcTemplate.query("""
+                            select id, pan_encrypted, pan_ciphertext from card
+                            where pan_fingerprint is null order by id limit ?
+                            """, PanFingerprintBackfill::mapRow, chunkSize)
+                    : jdbcTemplate.query("""
+                            select id, pan_encrypted, pan_ciphertext from card
+                            where pan_fingerprint is null and id > ? order by id limit ?
+                            """, PanFingerprintBackfill::mapRow, after, chunkSize);
+            if (rows.isEmpty())
+                return new Chunk(0, 0);
+
+            List<Object[]> updates = new ArrayList<>();
+            for (PanRekeyer.CardPan row : rows) {
+                String pan = crypto.decryptPan(row.panCiphertext(), row.panEncrypted());
+                if (pan == null) continue;
+                byte[] fingerprint = fingerprints.fingerprint(pan);
+                updates.add(new Object[]{fingerprint, row.id(), row.panCiphertext(), row.panEncrypted(), fingerprint});
+            }
+            int filled = updates.isEmpty() ? 0
+                    : Arrays.stream(jdbcTemplate.batchUpdate(UPDATE_SQL, updates)).map(n -> Math.max(n, 0)).sum();
+
+            after = rows.getLast().id();
+            skipped += rows.size() - filled;
+            return new Chunk(rows.size(), filled);
+        });
+    }
+
+    private static PanRekeyer.CardPan mapRow(ResultSet rs, int n) throws SQLException {
+        return new PanRekeyer.CardPan(
+                rs.getObject("id", UUID.class),
+                rs.getString("pan_encrypted"),
+                rs.getBytes("pan_ciphertext"));
+    }
+
+    @Override
+    public void start() {
+        if (!enabled || running) return;
+        running = true;
+        backfill = Thread.ofPlatform().name("pan-fingerprint-backfill").daemon().start(this::loop);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread thread = backfill;
+        if (thread == null) return;
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void loop() {
+        while (running) {
+            long started = System.nanoTime();
+            Chunk chunk;
+            try {
+                chunk = backfillChunk();
+            } catch (RuntimeException e) {
+                log.warn("PAN fingerprint backfill failed, will retry", e);
+                chunk = null;
+            }
+            if (chunk != null && chunk.scanned() == 0) {
+                if (skipped > 0) {
+                    log.warn("PAN fingerprint backfill finished, {} cards left without fingerprint "
+                            + "(duplicate PAN or changed during backfill)", skipped);
+                } else {
+                    log.info("PAN fingerprint backfill finished");
+                }
+                return;
+            }
+            // занято или ошибка — секунда паузы; иначе пауза, чтобы держать rows-per-second
+            long pauseMillis = chunk == null
+                    ? TimeUnit.SECONDS.toMillis(1)
+                    : chunk.scanned() * 1000L / rowsPerSecond - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            if (pauseMillis <= 0) continue;
+            try {
+                Thread.sleep(pauseMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.abrik.bank_cards.bank_cards.service.rekey;
+
+import com.abrik.bank_cards.bank_cards.util.PanCryptoUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Перешифрование PAN под текущую версию ключа: строки прежнего формата (pan_encrypted)
+ * и конверты старых версий переписываются в pan_ciphertext.
+ * <p>
+ * Таблица card обходится по id кусками по {@code chunk-size}, каждый кусок — своя короткая транзакция;
+ * позиция хранится в pan_rekey_checkpoint, так что рестарт продолжает с места остановки.
+ * Строки не блокируются и version не трогается — перешифрование не меняет данных карты.
+ * UPDATE условный по прочитанным pan_ciphertext и pan_encrypted: карта, у которой PAN сменили параллельно,
+ * пропускается и подбирается следующим проходом. Проход завершён, когда в таблице не осталось строк не под текущим ключом.
+ * Скорость ограничена {@code rows-per-second} просмотренных строк. Работает один инстанс (advisory lock).
+ */
+@Slf4j
+@Component
+public class PanRekeyer implements SmartLifecycle {
+    // произвольная константа для pg_try_advisory_xact_lock
+    private static final long REKEY_LOCK_KEY = 0x0B0C_0004L;
+
+    static final String UPDATE_SQL = """
+            update card set pan_ciphertext = ?, pan_encrypted = null
+            where id = ? and pan_ciphertext is not distinct from ? and pan_encrypted is not distinct from ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate tx;
+    private final PanCryptoUtil crypto;
+    private final Clock clock;
+    private final boolean enabled;
+    private final int chunkSize;
+    private final int rowsPerSecond;
+    private final long intervalMillis;
+
+    private volatile boolean running;
+    private Thread rekeyer;
+
+    /** Итог шага: idle — делать нечего (проход завершён или занято другим инстансом). */
+    public record Chunk(int scanned, int rekeyed, boolean idle) {
+        static final Chunk IDLE = new Chunk(0, 0, true);
+    }
+
+    record CardPan(UUID id, String panEncrypted, byte[] panCiphertext) {}
+
+    record Checkpoint(UUID lastCardId, Instant completedAt) {}
+
+    @Autowired
+    public PanRekeyer(JdbcTemplate jdbcTemplate,
+                      PlatformTransactionManager transactionManager,
+                      PanCryptoUtil crypto,
+                      @Value("${app.security.pan-rekey.enabled:false}") boolean enabled,
+                      @Value("${app.security.pan-rekey.chunk-size:500}") int chunkSize,
+                      @Value("${app.security.pan-rekey.rows-per-second:2000}") int rowsPerSecond,
+                      @Value("${app.security.pan-rekey.check-interval:1h}") Duration checkInterval) {
+        this(jdbcTemplate, transactionManager, crypto, Clock.systemUTC(),
+                enabled, chunkSize, rowsPerSecond, checkInterval);
+    }
+
+    PanRekeyer(JdbcTemplate jdbcTemplate,
+               PlatformTransactionManager transactionManager,
+               PanCryptoUtil crypto,
+               Clock clock,
+               boolean enabled,
+               int chunkSize,
+               int rowsPerSecond,
+               Duration checkInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.crypto = crypto;
+        this.clock = clock;
+        this.enabled = enabled;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.rowsPerSecond = Math.max(1, rowsPerSecond);
+        this.intervalMillis = checkInterval.toMillis();
+    }
+
+    /** Один кусок карт после checkpoint. */
+    public Chunk rekeyChunk() {
+        return tx.execute(status -> {
+            Boolean locked = jdbcTemplate.queryForObject(
+                    "select pg_try_advisory_xact_lock(?)", Boolean.class, REKEY_LOCK_KEY);
+            if (!Boolean.TRUE.equals(locked))
+                return Chunk.IDLE;
+
+            int version = crypto.currentKeyVersion();
+            Checkpoint checkpoint = jdbcTemplate.query(
+                    "select last_card_id, completed_at from pan_rekey_checkpoint where key_version = ?",
+                    (rs, n) -> new Checkpoint(
+                            rs.getObject("last_card_id", UUID.class),
+                            rs.getTimestamp("completed_at") == null ? null : rs.getTimestamp("completed_at").toInstant()),
+                    version).stream().findFirst().orElse(null);
+            if (checkpoint != null && checkpoint.completedAt() != null)
+                return Chunk.IDLE;
+
+            UUID after = checkpoint == null ? null : checkpoint.lastCardId();
+            List<CardPan> rows = after == null
+                    ? jdbcTemplate.query(
+                            "select id, pan_encrypted, pan_ciphertext from card order by id limit ?",
+                            PanRekeyer::mapRow, chunkSize)
+                    : jdbcTemplate.query(
+                            "select id, pan_encrypted, pan_ciphertext from card where id > ? order by id limit ?",
+                            PanRekeyer::mapRow, after, chunkSize);
+
+            if (rows.isEmpty()) {
+                finishPass(version);
+                return new Chunk(0, 0, false);
+            }
+
+            List<Object[]> updates = rekey(rows);
+            int rekeyed = updates.isEmpty() ? 0
+                    : Arrays.stream(jdbcTemplate.batchUpdate(UPDATE_SQL, updates)).map(n -> Math.max(n, 0)).sum();
+            saveCheckpoint(version, rows.getLast().id(), rekeyed, null);
+            return new Chunk(rows.size(), rekeyed, false);
+        });
+    }
+
+    /** Аргументы UPDATE_SQL для строк не под текущим ключом. */
+    List<Object[]> rekey(List<CardPan> rows) {
+        List<Object[]> updates = new ArrayList<>();
+        for (CardPan row : rows) {
+            if (crypto.isCurrent(row.panCiphertext()) || (row.panCiphertext() == null && row.panEncrypted() == null))
+                continue;
+            String pan = crypto.decryptPan(row.panCiphertext(), row.panEncrypted());
+            updates.add(new Object[]{crypto.encrypt(pan), row.id(), row.panCiphertext(), row.panEncrypted()});
+        }
+        return updates;
+    }
+
+    // конец таблицы: если что-то пропущено из-за параллельных изменений — новый проход с начала
+    private void finishPass(int version) {
+        Long remaining = jdbcTemplate.queryForObject("""
+                select count(*) from card
+                where (pan_ciphertext is null and pan_encrypted is not null)
+                   or (pan_ciphertext is not null and get_byte(pan_ciphertext, 1) * 256 + get_byte(pan_ciphertext, 2) <> ?)
+                """, Long.class, version);
+        if (remaining != null && remaining > 0) {
+            log.info("PAN rekey pass to key version {} left {} cards behind, starting another pass", version, remaining);
+            saveCheckpoint(version, null, 0, null);
+        } else {
+            log.info("PAN rekey to key version {} completed", version);
+            saveCheckpoint(version, null, 0, Instant.now(clock));
+        }
+    }
+
+    private void saveCheckpoint(int version, UUID lastCardId, int rekeyed, Instant completedAt) {
+        jdbcTemplate.update("""
+                insert into pan_rekey_checkpoint (key_version, last_card_id, rows_rekeyed, completed_at, updated_at)
+                values (?, ?, ?, ?, ?)
+                on conflict (key_version) do update
+                    set last_card_id = excluded.last_card_id,
+                        rows_rekeyed = pan_rekey_checkpoint.rows_rekeyed + excluded.rows_rekeyed,
+                        completed_at = excluded.completed_at,
+                        updated_at = excluded.updated_at
+                """,
+                version, lastCardId, rekeyed,
+                completedAt == null ? null : Timestamp.from(completedAt),
+                Timestamp.from(Instant.now(clock)));
+    }
+
+    private static CardPan mapRow(ResultSet rs, int n) throws SQLException {
+        return new CardPan(
+                rs.getObject("id", UUID.class),
+                rs.getString("pan_encrypted"),
+                rs.getBytes("pan_ciphertext"));
+    }
+
+    @Override
+    public void start() {
+        if (!enabled || running) return;
+        running = true;
+        rekeyer = Thread.ofPlatform().name("pan-rekeyer").daemon().start(this::loop);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread thread = rekeyer;
+        if (thread == null) return;
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void loop() {
+        while (running) {
+            long started = System.nanoTime();
+            Chunk chunk;
+            try {
+                chunk = rekeyChunk();
+            } catch (RuntimeException e) {
+                log.warn("PAN rekey failed, will retry", e);
+                chunk = Chunk.IDLE;
+            }
+            // idle — ждём интервал; иначе пауза, чтобы держать rows-per-second
+            long pauseMillis = chunk.idle()
+                    ? intervalMillis
+                    : chunk.scanned() * 1000L / rowsPerSecond - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            if (pauseMillis <= 0) continue;
+            try {
+                Thread.sleep(pauseMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+}
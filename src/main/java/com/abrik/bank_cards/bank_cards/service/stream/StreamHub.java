@@ -0,0 +1,144 @@
+package com.abrik.bank_cards.bank_cards.service.stream;
+
+import com.abrik.bank_cards.bank_cards.service.outbox.OutboxRecorded;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Раздача событий outbox подписчикам SSE внутри процесса.
+ * У каждого подписчика своя ограниченная очередь и виртуальный поток-отправитель:
+ * коммит перевода только кладёт событие в очередь и никогда не ждёт сокет.
+ * Переполненная очередь — медленный клиент, подписка закрывается (клиент переподключится
+ * и дочитает пропущенное обычным списком).
+ */
+@Slf4j
+@Component
+public class StreamHub {
+    private final ConcurrentHashMap<Long, List<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final int bufferSize;
+    private final int maxPerUser;
+    private final long timeoutMillis;
+    private final long heartbeatMillis;
+
+    public StreamHub(@Value("${app.stream.buffer-size:64}") int bufferSize,
+                     @Value("${app.stream.max-per-user:5}") int maxPerUser,
+                     @Value("${app.stream.timeout:30m}") Duration timeout,
+                     @Value("${app.stream.heartbeat:15s}") Duration heartbeat) {
+        this.bufferSize = Math.max(1, bufferSize);
+        this.maxPerUser = Math.max(1, maxPerUser);
+        this.timeoutMillis = timeout.toMillis();
+        this.heartbeatMillis = heartbeat.toMillis();
+    }
+
+    public SseEmitter subscribe(Long userId) {
+        return subscribe(userId, new SseEmitter(timeoutMillis));
+    }
+
+    SseEmitter subscribe(Long userId, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(userId, emitter, new ArrayBlockingQueue<>(bufferSize));
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> {
+            remove(subscriber);
+            emitter.complete();
+        });
+        emitter.onError(e -> remove(subscriber));
+
+        List<Subscriber> current = subscribers.compute(userId, (id, list) -> {
+            List<Subscriber> next = list == null ? new CopyOnWriteArrayList<>() : list;
+            next.add(subscriber);
+            return next;
+        });
+        // лишние подключения пользователя: закрываем самые старые
+        for (int i = 0; i < current.size() - maxPerUser; i++)
+            evict(current.get(i), "too many connections");
+
+        subscriber.sender = Thread.ofVirtual().name("sse-" + userId).start(() -> sendLoop(subscriber));
+        return emitter;
+    }
+
+    /** После коммита: событие уходит в очереди подписчиков владельца. */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRecorded(OutboxRecorded event) {
+        if (event.userId() == null) return;
+        List<Subscriber> list = subscribers.get(event.userId());
+        if (list == null) return;
+        for (Subscriber subscriber : list) {
+            if (!subscriber.queue.offer(event))
+                evict(subscriber, "slow consumer");
+        }
+    }
+
+    public int subscriberCount() {
+        return subscribers.values().stream().mapToInt(List::size).sum();
+    }
+
+    private void sendLoop(Subscriber subscriber) {
+        SseEmitter emitter = subscriber.emitter;
+        try {
+            emitter.send(SseEmitter.event().comment("connected"));
+            while (!subscriber.closed) {
+                OutboxRecorded event = subscriber.queue.poll(heartbeatMillis, TimeUnit.MILLISECONDS);
+                if (subscriber.closed) break;
+                if (event == null)
+                    emitter.send(SseEmitter.event().comment("keepalive"));
+                else
+                    emitter.send(SseEmitter.event()
+                            .name(event.eventType())
+                            .data(event.payload(), MediaType.APPLICATION_JSON));
+            }
+        } catch (IOException | IllegalStateException e) {
+            // клиент отключился или эмиттер уже завершён
+            log.debug("SSE subscriber of user {} dropped: {}", subscriber.userId, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            remove(subscriber);
+            // завершает только отправитель: издатель не должен ждать блокировку эмиттера
+            emitter.complete();
+        }
+    }
+
+    private void evict(Subscriber subscriber, String reason) {
+        if (subscriber.closed) return;
+        log.info("Closing SSE subscriber of user {}: {}", subscriber.userId, reason);
+        remove(subscriber);
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscriber.closed = true;
+        subscribers.computeIfPresent(subscriber.userId, (id, list) -> {
+            list.remove(subscriber);
+            return list.isEmpty() ? null : list;
+        });
+        Thread sender = subscriber.sender;
+        if (sender != null && sender != Thread.currentThread())
+            sender.interrupt();
+    }
+
+    private static final class Subscriber {
+        final Long userId;
+        final SseEmitter emitter;
+        final BlockingQueue<OutboxRecorded> queue;
+        volatile boolean closed;
+        volatile Thread sender;
+
+        Subscriber(Long userId, SseEmitter emitter, BlockingQueue<OutboxRecorded> queue) {
+            this.userId = userId;
+            this.emitter = emitter;
+            this.queue = queue;
+        }
+    }
+}
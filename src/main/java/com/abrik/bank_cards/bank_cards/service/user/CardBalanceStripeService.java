@@ -0,0 +1,113 @@
+package com.abrik.bank_cards.bank_cards.service.user;
+
+import com.abrik.bank_cards.bank_cards.dto.card.CardStatus;
+import com.abrik.bank_cards.bank_cards.entity.Card;
+import com.abrik.bank_cards.bank_cards.entity.CardBalanceStripe;
+import com.abrik.bank_cards.bank_cards.entity.CardBalanceStripeId;
+import com.abrik.bank_cards.bank_cards.exception.BadRequestException;
+import com.abrik.bank_cards.bank_cards.repository.CardBalanceStripeRepository;
+import com.abrik.bank_cards.bank_cards.util.HotCardRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Полосы баланса «горячих» карт.
+ * Баланс карты = card.balance + сумма полос. Зачисления идут в случайную полосу
+ * без блокировки строки карты, списания — из card.balance; если его не хватает,
+ * полосы консолидируются в card.balance под блокировкой карты.
+ */
+@Service
+@RequiredArgsConstructor
+public class CardBalanceStripeService {
+    public static final int MAX_STRIPES = 64;
+
+    private final CardBalanceStripeRepository stripeRepository;
+    private final HotCardRegistry hotCardRegistry;
+
+    /**
+     * Зачисление в случайную полосу. Если карта перестала быть горячей (реестр устарел),
+     * бросает конфликт версий — {@code TransferDispatcher} повторит перевод уже с блокировкой карты.
+     */
+    public void creditStripe(Long userId, Card card, BigDecimal amount) {
+        if (!tryCreditStripe(userId, card.getId(), card.getCurrency(), amount)) {
+            throw new ObjectOptimisticLockingFailureException(Card.class, card.getId());
+        }
+    }
+
+    /** То же без исключения: false — карта не горячая, не активна или в другой валюте. */
+    public boolean tryCreditStripe(Long userId, UUID cardId, String currency, BigDecimal amount) {
+        short stripe = hotCardRegistry.randomStripe(cardId);
+        if (stripe < 0 || stripeRepository.creditStripe(cardId, stripe, userId,
+                CardStatus.ACTIVE, currency, amount) == 0) {
+            hotCardRegistry.forget(cardId);
+            return false;
+        }
+        return true;
+    }
+
+    /** Заполняет card.stripedBalance у горячей карты (одна сумма по полосам); у обычной не делает ничего. */
+    public void loadStripedBalance(Card card) {
+        if (card.getBalanceStripes() > 0) {
+            BigDecimal striped = stripeRepository.sumByCardId(card.getId());
+            card.setStripedBalance(striped == null ? BigDecimal.ZERO : striped);
+        }
+    }
+
+    /**
+     * Переносит все полосы в card.balance. Карта должна быть заблокирована вызывающим
+     * (или проверяться по @Version). Возвращает перенесённую сумму.
+     */
+    public BigDecimal consolidate(Card card) {
+        if (card.getBalanceStripes() <= 0) {
+            return BigDecimal.ZERO;
+        }
+        BigDecimal moved = BigDecimal.ZERO;
+        for (CardBalanceStripe stripe : stripeRepository.lockAllByCardId(card.getId())) {
+            moved = moved.add(stripe.getBalance());
+            stripe.setBalance(BigDecimal.ZERO);
+        }
+        if (moved.signum() > 0) {
+            card.setBalance(card.getBalance().add(moved));
+        }
+        card.setStripedBalance(BigDecimal.ZERO);
+        return moved;
+    }
+
+    /** Делает карту горячей: K пустых полос. Карта должна быть заблокирована. */
+    public void stripe(Card card, int stripeCount) {
+        if (stripeCount < 2 || stripeCount > MAX_STRIPES) {
+            throw new BadRequestException("stripes must be between 2 and " + MAX_STRIPES);
+        }
+        if (card.getBalanceStripes() > 0) {
+            throw new BadRequestException("Card is already hot");
+        }
+        List<CardBalanceStripe> stripes = new ArrayList<>(stripeCount);
+        for (short i = 0; i < stripeCount; i++) {
+            CardBalanceStripe stripe = new CardBalanceStripe();
+            stripe.setId(new CardBalanceStripeId(card.getId(), i));
+            stripe.setBalance(BigDecimal.ZERO);
+            stripes.add(stripe);
+        }
+        stripeRepository.saveAll(stripes);
+        card.setBalanceStripes((short) stripeCount);
+        hotCardRegistry.put(card.getId(), (short) stripeCount);
+    }
+
+    /** Возвращает карту в обычный режим: полосы сливаются в card.balance и удаляются. */
+    public void unstripe(Card card) {
+        if (card.getBalanceStripes() <= 0) {
+            throw new BadRequestException("Card is not hot");
+        }
+        consolidate(card);
+        stripeRepository.flush();
+        stripeRepository.deleteAllByCardId(card.getId());
+        card.setBalanceStripes((short) 0);
+        hotCardRegistry.forget(card.getId());
+    }
+}
@@ -1,23 +1,34 @@
 package com.abrik.bank_cards.bank_cards.service.user;
 
 import com.abrik.bank_cards.bank_cards.dto.card.*;
+import com.abrik.bank_cards.bank_cards.dto.common.CountMode;
 import com.abrik.bank_cards.bank_cards.dto.common.PageResponse;
 import com.abrik.bank_cards.bank_cards.entity.Card;
 import com.abrik.bank_cards.bank_cards.exception.BadRequestException;
+import com.abrik.bank_cards.bank_cards.exception.ConflictException;
 import com.abrik.bank_cards.bank_cards.exception.NotFoundException;
 import com.abrik.bank_cards.bank_cards.repository.CardRepository;
+import com.abrik.bank_cards.bank_cards.service.audit.PanRevealed;
+import com.abrik.bank_cards.bank_cards.service.outbox.OutboxService;
 import com.abrik.bank_cards.bank_cards.util.CardUtil;
+import com.abrik.bank_cards.bank_cards.util.PageCounter;
 import com.abrik.bank_cards.bank_cards.util.PanCryptoUtil;
-import jakarta.transaction.Transactional;
+import com.abrik.bank_cards.bank_cards.util.PanFingerprintUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Clock;
 import java.time.Instant;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -26,27 +37,40 @@ public class CardService {
     private final CardRepository cardRepository;
     private final CardUtil cardUtil;
     private final PanCryptoUtil panCryptoUtil;
+    private final PanFingerprintUtil panFingerprintUtil;
+    private final OutboxService outboxService;
+    private final PageCounter pageCounter;
+    private final CardBalanceStripeService stripeService;
+    private final ApplicationEventPublisher events;
     private final Clock clock = Clock.systemUTC();
 
     public CardResponse createCard(Long userId, CreateCardRequest request) {
         cardUtil.validateExpiry(request.getExpiryMonth(), request.getExpiryYear());
 
-        String pan = request.getPan();
-        cardUtil.validatePan(pan);
+        // дальше — только нормализованный номер: без пробелов и дефисов в last4, шифротексте и отпечатке
+        String pan = cardUtil.validatePan(request.getPan());
+        String currency = cardUtil.validateCurrency(request.getCurrency());
+
+        // уникальный индекс на pan_fingerprint ловит и гонку двух одновременных регистраций (→ 409)
+        byte[] fingerprint = panFingerprintUtil.fingerprint(pan);
+        if (cardRepository.existsByPanFingerprint(fingerprint)) {
+            throw new ConflictException("Card with this PAN is already registered");
+        }
 
         String last4 = pan.substring(pan.length() - 4);
-        String panEncrypted = panCryptoUtil.encrypt(pan);
+        byte[] panCiphertext = panCryptoUtil.encrypt(pan);
 
         Card card = new Card();
         card.setId(UUID.randomUUID());
         card.setUserId(userId);
         card.setLast4(last4);
-        card.setPanEncrypted(panEncrypted);
+        card.setPanCiphertext(panCiphertext);
+        card.setPanFingerprint(fingerprint);
         card.setExpiryMonth(request.getExpiryMonth());
         card.setExpiryYear(request.getExpiryYear());
         card.setStatus(CardStatus.ACTIVE);
         card.setBalance(request.getBalance());
-        card.setCurrency(request.getCurrency());
+        card.setCurrency(currency);
         card.setRequestedBlockAt(null);
 
         Instant now = Instant.now();
@@ -58,15 +82,63 @@ public class CardService {
     }
 
     /** для юзера */
+    @Transactional(readOnly = true)
     public PageResponse<CardResponse> listMyCards(Long userId,
                                                   CardStatus status,
                                                   String search,
                                                   Pageable pageable) {
-        Page<Card> page = findCards(userId, status, search, pageable);
+        Page<CardSummary> page = findCards(userId, status, search, pageable);
         return cardUtil.toCardPageResponse(page);
     }
 
-    private Page<Card> findCards(Long userId, CardStatus status, String search, Pageable pageable) {
+    @Transactional(readOnly = true)
+    public PageResponse<CardResponse> listMyCards(Long userId,
+                                                  CardStatus status,
+                                                  String search,
+                                                  Pageable pageable,
+                                                  CountMode count,
+                                                  PanMode pan) {
+        if (count == CountMode.EXACT) {
+            return cardUtil.toCardPageResponse(findCards(userId, status, search, pageable), pan);
+        }
+        String q = cardUtil.normalizeQuery(search);
+        String digits = cardUtil.extractDigits(search);
+
+        String qPattern = cardUtil.isBlank(q) ? null : "%" + q + "%";
+        String last4Pattern = cardUtil.isBlank(digits) ? null : "%" + digits + "%";
+
+        return pageCounter.fetch(count, pageable,
+                "cards:" + userId + ":" + status + ":" + qPattern + ":" + last4Pattern,
+                p -> cardRepository.searchSlice(userId, status, qPattern, last4Pattern, p),
+                () -> cardRepository.countSearch(userId, status, qPattern, last4Pattern),
+                card -> cardUtil.toResponse(card, pan));
+    }
+
+    /**
+     * Полные номера набора своих карт одним запросом, в порядке запроса.
+     * Если хоть одна карта не найдена (или чужая) — 404 для всего набора.
+     */
+    @Transactional(readOnly = true)
+    public List<RevealedPanResponse> revealPans(Long userId, List<UUID> cardIds) {
+        List<UUID> ids = cardIds.stream().distinct().toList();
+        Map<UUID, CardRepository.PanView> encrypted = cardRepository.findPans(ids, userId).stream()
+                .collect(Collectors.toMap(CardRepository.PanView::getId, Function.identity()));
+        if (encrypted.size() < ids.size()) {
+            throw new NotFoundException("Card not found");
+        }
+
+        events.publishEvent(new PanRevealed(userId, ids, Instant.now(clock)));
+
+        return ids.stream()
+                .map(id -> {
+                    CardRepository.PanView card = encrypted.get(id);
+                    return new RevealedPanResponse(id,
+                            panCryptoUtil.decryptPan(card.getPanCiphertext(), card.getPanEncrypted()));
+                })
+                .toList();
+    }
+
+    private Page<CardSummary> findCards(Long userId, CardStatus status, String search, Pageable pageable) {
         String q = cardUtil.normalizeQuery(search);
         String digits = cardUtil.extractDigits(search);
 
@@ -88,18 +160,22 @@ public class CardService {
             throw new BadRequestException("Card is EXPIRED and cannot be blocked");
         }
 
-        if (card.getRequestedBlockAt() == null) {
+        boolean firstRequest = card.getRequestedBlockAt() == null;
+        if (firstRequest) {
             Instant now = Instant.now(clock);
             card.setRequestedBlockAt(now);
             card.setUpdatedAt(now);
             cardRepository.save(card);
         }
 
-        return new StatusResponse(
+        StatusResponse response = new StatusResponse(
                 card.getId(),
                 card.getRequestedBlockAt(),
                 card.getStatus()
         );
+        if (firstRequest)
+            outboxService.record(OutboxService.CARD, card.getId(), "CARD_BLOCK_REQUESTED", userId, response);
+        return response;
     }
 
     public CardResponse getMyCard(Long userId, UUID cardId) {
@@ -108,6 +184,7 @@ public class CardService {
         card = cardRepository.findByIdAndUserId(cardId, userId)
                 .orElseThrow(() -> new NotFoundException("Card not found"));
 
+        stripeService.loadStripedBalance(card);
         return cardUtil.toResponse(card);
     }
 
@@ -127,17 +204,24 @@ public class CardService {
             throw new BadRequestException("Card is EXPIRED and cannot be changed");
         }
 
-        String pan = request.getPan();
-        String panEncrypted = panCryptoUtil.encrypt(pan);
+        String pan = cardUtil.validatePan(request.getPan());
+        byte[] fingerprint = panFingerprintUtil.fingerprint(pan);
+        if (cardRepository.existsByPanFingerprintAndIdNot(fingerprint, cardId)) {
+            throw new ConflictException("Card with this PAN is already registered");
+        }
+        byte[] panCiphertext = panCryptoUtil.encrypt(pan);
         String last4 = pan.substring(pan.length() - 4);
         card.setUpdatedAt(Instant.now(clock));
-        card.setPanEncrypted(panEncrypted);
+        card.setPanCiphertext(panCiphertext);
+        card.setPanEncrypted(null);
+        card.setPanFingerprint(fingerprint);
         card.setLast4(last4);
         card.setExpiryMonth(request.getExpiryMonth());
         card.setExpiryYear(request.getExpiryYear());
 
         Card saved = cardRepository.save(card);
 
+        stripeService.loadStripedBalance(saved);
         return cardUtil.toResponse(saved);
     }
 }
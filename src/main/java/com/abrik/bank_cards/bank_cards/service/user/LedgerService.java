@@ -0,0 +1,149 @@
+package com.abrik.bank_cards.bank_cards.service.user;
+
+import com.abrik.bank_cards.bank_cards.dto.common.PageResponse;
+import com.abrik.bank_cards.bank_cards.dto.ledger.BalanceAtResponse;
+import com.abrik.bank_cards.bank_cards.dto.ledger.CardDayStatsResponse;
+import com.abrik.bank_cards.bank_cards.dto.ledger.CardStatsResponse;
+import com.abrik.bank_cards.bank_cards.dto.ledger.LedgerEntryResponse;
+import com.abrik.bank_cards.bank_cards.dto.transfer.Bounds;
+import com.abrik.bank_cards.bank_cards.entity.Card;
+import com.abrik.bank_cards.bank_cards.entity.LedgerEntry;
+import com.abrik.bank_cards.bank_cards.exception.BadRequestException;
+import com.abrik.bank_cards.bank_cards.exception.NotFoundException;
+import com.abrik.bank_cards.bank_cards.repository.CardDailyStatsRepository;
+import com.abrik.bank_cards.bank_cards.repository.CardRepository;
+import com.abrik.bank_cards.bank_cards.repository.LedgerEntryRepository;
+import com.abrik.bank_cards.bank_cards.util.TransferUtil;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Выписки и исторические балансы по журналу проводок ledger_entry,
+ * дневные итоги — по card_daily_stats.
+ */
+@Service
+@RequiredArgsConstructor
+public class LedgerService {
+    private static final Instant MAX_TS = Instant.parse("9999-12-31T00:00:00Z");
+    private static final int STATS_DEFAULT_DAYS = 30;
+    private static final int STATS_MAX_DAYS = 366;
+
+    private final CardRepository cardRepository;
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final CardDailyStatsRepository cardDailyStatsRepository;
+    private final TransferUtil transferUtil;
+    private final CardBalanceStripeService stripeService;
+    private final Clock clock = Clock.systemUTC();
+
+    @Transactional(readOnly = true)
+    public PageResponse<LedgerEntryResponse> statement(Long userId,
+                                                       UUID cardId,
+                                                       Instant from,
+                                                       Instant to,
+                                                       Pageable pageable) {
+        ownCard(userId, cardId);
+        Bounds bounds = transferUtil.normalizeBounds(from, to);
+        // порядок задан в запросе (created_at desc, id desc) — сортировку из запроса не принимаем
+        Pageable page = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+
+        Page<LedgerEntry> entries = ledgerEntryRepository.findStatement(
+                cardId,
+                bounds.from() == null ? Instant.EPOCH : bounds.from(),
+                bounds.to() == null ? MAX_TS : bounds.to(),
+                page);
+
+        return PageResponse.of(
+                entries.getContent().stream().map(LedgerService::toResponse).toList(),
+                entries.getNumber(),
+                entries.getSize(),
+                entries.getTotalElements(),
+                entries.getTotalPages(),
+                entries.hasNext(),
+                entries.hasPrevious()
+        );
+    }
+
+    /**
+     * Баланс на момент T: balance_after последней проводки не позже T.
+     * Если его нет (горячая карта или проводок до T не было) —
+     * текущий баланс минус движение после T.
+     */
+    @Transactional(readOnly = true)
+    public BalanceAtResponse balanceAt(Long userId, UUID cardId, Instant at) {
+        Card card = ownCard(userId, cardId);
+        Instant moment = at == null ? Instant.now(clock) : at;
+
+        BigDecimal balance = ledgerEntryRepository
+                .findFirstByCardIdAndCreatedAtLessThanEqualOrderByCreatedAtDescIdDesc(cardId, moment)
+                .map(LedgerEntry::getBalanceAfter)
+                .orElse(null);
+
+        if (balance == null) {
+            stripeService.loadStripedBalance(card);
+            BigDecimal current = card.getStripedBalance() == null
+                    ? card.getBalance()
+                    : card.getBalance().add(card.getStripedBalance());
+            balance = current.subtract(ledgerEntryRepository.sumSignedAfter(cardId, moment));
+        }
+
+        return new BalanceAtResponse(cardId, moment, balance, card.getCurrency());
+    }
+
+    /**
+     * Дневные итоги карты за [from, to] (дни UTC, включительно). По умолчанию — последние 30 дней.
+     * Дни без проводок не возвращаются.
+     */
+    @Transactional(readOnly = true)
+    public CardStatsResponse stats(Long userId, UUID cardId, LocalDate from, LocalDate to) {
+        Card card = ownCard(userId, cardId);
+        LocalDate toDay = to == null ? LocalDate.now(clock) : to;
+        LocalDate fromDay = from == null ? toDay.minusDays(STATS_DEFAULT_DAYS - 1) : from;
+        if (fromDay.isAfter(toDay)) {
+            throw new BadRequestException("'from' must be before or equal to 'to'");
+        }
+        if (ChronoUnit.DAYS.between(fromDay, toDay) >= STATS_MAX_DAYS) {
+            throw new BadRequestException("Stats range must not exceed " + STATS_MAX_DAYS + " days");
+        }
+
+        List<CardDayStatsResponse> days = cardDailyStatsRepository.findDays(cardId, fromDay, toDay).stream()
+                .map(d -> new CardDayStatsResponse(
+                        d.getDay(), d.getDebitSum(), d.getCreditSum(), d.getTxCount(), d.getClosingBalance()))
+                .toList();
+
+        BigDecimal debit = days.stream().map(CardDayStatsResponse::getDebitSum).reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal credit = days.stream().map(CardDayStatsResponse::getCreditSum).reduce(BigDecimal.ZERO, BigDecimal::add);
+        long count = days.stream().mapToLong(CardDayStatsResponse::getTxCount).sum();
+
+        return new CardStatsResponse(cardId, card.getCurrency(), fromDay, toDay, debit, credit, count, days);
+    }
+
+    private Card ownCard(Long userId, UUID cardId) {
+        return cardRepository.findByIdAndUserId(cardId, userId)
+                .orElseThrow(() -> new NotFoundException("Card not found"));
+    }
+
+    private static LedgerEntryResponse toResponse(LedgerEntry e) {
+        return new LedgerEntryResponse(
+                e.getId(),
+                e.getTransferId(),
+                e.getCardId(),
+                e.getDirection(),
+                e.getAmount(),
+                e.getCurrency(),
+                e.getBalanceAfter(),
+                e.getCreatedAt()
+        );
+    }
+}
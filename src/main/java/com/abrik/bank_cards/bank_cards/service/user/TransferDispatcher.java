@@ -0,0 +1,146 @@
+package com.abrik.bank_cards.bank_cards.service.user;
+
+import com.abrik.bank_cards.bank_cards.dto.transfer.BatchTransferRequest;
+import com.abrik.bank_cards.bank_cards.dto.transfer.BatchTransferResponse;
+import com.abrik.bank_cards.bank_cards.dto.transfer.CreateTransferRequest;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferCommand;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferResponse;
+import com.abrik.bank_cards.bank_cards.exception.BadRequestException;
+import com.abrik.bank_cards.bank_cards.exception.ConflictException;
+import com.abrik.bank_cards.bank_cards.util.CardBackPressure;
+import com.abrik.bank_cards.bank_cards.util.InputValidator;
+import com.abrik.bank_cards.bank_cards.util.TransferIdempotencyCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Точка входа для проведения переводов: всё, что должно происходить
+ * вне транзакции {@link TransferService} (идемпотентность, back-pressure по горячим картам и т.п.).
+ */
+@Service
+@RequiredArgsConstructor
+public class TransferDispatcher {
+    private final TransferService transferService;
+    private final CardBackPressure cardBackPressure;
+    private final TransferIdempotencyCache idempotencyCache;
+    private final TransferGroupCommitter groupCommitter;
+
+    @Value("${app.transfer.async.enabled:false}")
+    private boolean async;
+
+    @Value("${app.transfer.optimistic.max-attempts:5}")
+    private int maxAttempts = 5;
+
+    @Value("${app.transfer.optimistic.backoff:5ms}")
+    private Duration backoff = Duration.ofMillis(5);
+
+    @Value("${app.transfer.optimistic.max-backoff:100ms}")
+    private Duration maxBackoff = Duration.ofMillis(100);
+
+    /**
+     * idempotencyKey == null — клиент ключ не прислал: сервер генерирует случайный ключ для БД,
+     * а кэш идемпотентности обходится — такой ключ больше не придёт и лишь вытеснял бы клиентские.
+     */
+    public TransferResponse transfer(Long userId, CreateTransferRequest request, String idempotencyKey) {
+        normalizeCurrency(request);
+        if (idempotencyKey == null)
+            return doTransfer(userId, request, UUID.randomUUID().toString());
+        return idempotencyCache.execute(userId, idempotencyKey,
+                () -> doTransfer(userId, request, idempotencyKey));
+    }
+
+    private TransferResponse doTransfer(Long userId, CreateTransferRequest request, String idempotencyKey) {
+        if (async)
+            return acceptAsync(userId, request, idempotencyKey);
+        if (groupCommitter.isEnabled()) {
+            try {
+                return groupCommitter.submit(new TransferCommand(userId, request, idempotencyKey)).join();
+            } catch (CompletionException e) {
+                if (!(e.getCause() instanceof RuntimeException cause))
+                    throw e;
+                if (!(cause instanceof TransferGroupCommitter.GroupAbortedException))
+                    throw cause;
+                // транзакция группы откатилась — проводим перевод отдельно
+            }
+        }
+        try {
+            return withOptimisticRetry(() -> cardBackPressure.withCards(
+                    List.of(request.getFromCardId(), request.getToCardId()),
+                    () -> transferService.transferOwnCards(userId, request, idempotencyKey)));
+        } catch (DataIntegrityViolationException e) {
+            // тот же ключ успел закоммитить другой инстанс — отдаём его результат
+            return transferService.findByIdempotencyKey(userId, idempotencyKey)
+                    .orElseThrow(() -> e);
+        }
+    }
+
+    // PENDING-перевод; списание выполнит TransferWorker
+    private TransferResponse acceptAsync(Long userId, CreateTransferRequest request, String idempotencyKey) {
+        try {
+            return transferService.acceptAsync(userId, request, idempotencyKey);
+        } catch (DataIntegrityViolationException e) {
+            return transferService.findByIdempotencyKey(userId, idempotencyKey)
+                    .orElseThrow(() -> e);
+        }
+    }
+
+    public BatchTransferResponse transferBatch(Long userId, BatchTransferRequest request, String idempotencyKey) {
+        String batchKey = idempotencyKey != null ? idempotencyKey : UUID.randomUUID().toString();
+        Set<UUID> cardIds = new HashSet<>();
+        for (CreateTransferRequest item : request.getItems()) {
+            normalizeCurrency(item);
+            cardIds.add(item.getFromCardId());
+            cardIds.add(item.getToCardId());
+        }
+        try {
+            return cardBackPressure.withCards(
+                    cardIds,
+                    () -> transferService.transferBatch(userId, request, batchKey));
+        } catch (DataIntegrityViolationException e) {
+            // параллельный пакет с тем же ключом — повтор вернёт уже сохранённые элементы
+            throw new ConflictException("Batch with this Idempotency-Key is being processed, retry");
+        }
+    }
+
+    // дальше (сравнение с валютой карт, сохранение перевода) — только код в верхнем регистре
+    private static void normalizeCurrency(CreateTransferRequest request) {
+        String currency = InputValidator.normalizeCurrency(request.getCurrency());
+        if (currency == null)
+            throw new BadRequestException("Unknown ISO-4217 currency code: " + request.getCurrency());
+        request.setCurrency(currency);
+    }
+
+    /**
+     * Повтор всей транзакции при конфликте версий (режим OPTIMISTIC, устаревший реестр горячих карт)
+     * и при откате транзакции как жертвы дедлока.
+     * Пауза перед повтором — случайная в [0, backoff * 2^(n-1)], не больше maxBackoff (full jitter).
+     */
+    public <T> T withOptimisticRetry(Supplier<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= maxAttempts)
+                    throw new ConflictException("Card was changed concurrently, retry later");
+
+                long ceiling = Math.min(maxBackoff.toNanos(), backoff.toNanos() << Math.min(attempt - 1, 20));
+                LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(ceiling + 1));
+                if (Thread.currentThread().isInterrupted())
+                    throw new ConflictException("Interrupted while retrying transfer");
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.abrik.bank_cards.bank_cards.service.user;
+
+import com.abrik.bank_cards.bank_cards.dto.transfer.ExportFormat;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferResponse;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferStatus;
+import com.abrik.bank_cards.bank_cards.util.TransferUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static com.abrik.bank_cards.bank_cards.repository.specification.TransferSpecifications.containsPattern;
+
+/**
+ * Выгрузка переводов потоком: строки читаются серверным курсором Postgres
+ * (fetch size внутри read-only транзакции) и сразу пишутся в ответ —
+ * память не зависит от размера выгрузки, OFFSET и COUNT не нужны.
+ */
+@Service
+public class TransferExportService {
+    private static final String CSV_HEADER =
+            "id,userId,fromCardId,toCardId,amount,currency,status,message,failureReason,createdAt";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate tx;
+    private final TransferUtil transferUtil;
+    private final ObjectMapper objectMapper;
+    private final int fetchSize;
+
+    public TransferExportService(JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 TransferUtil transferUtil,
+                                 ObjectMapper objectMapper,
+                                 @Value("${app.transfer.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tx = new TransactionTemplate(transactionManager);
+        // без транзакции (autocommit) драйвер Postgres игнорирует fetch size и читает всё в память
+        this.tx.setReadOnly(true);
+        this.transferUtil = transferUtil;
+        this.objectMapper = objectMapper;
+        this.fetchSize = Math.max(1, fetchSize);
+    }
+
+    /**
+     * userId = null — все переводы (админ). Фильтры проверяются сразу,
+     * чтобы ошибка вернулась как 400 до начала записи ответа.
+     */
+    public StreamingResponseBody export(Long userId,
+                                        TransferStatus status,
+                                        Instant from,
+                                        Instant to,
+                                        UUID cardId,
+                                        String q,
+                                        ExportFormat format) {
+        var bounds = transferUtil.normalizeBounds(from, to);
+        String text = transferUtil.normalizeMessageQuery(q);
+
+        // условия только для заданных фильтров — как в TransferSpecifications
+        StringBuilder sql = new StringBuilder("""
+                select id, user_id, from_card_id, to_card_id, amount, currency,
+                       status, message, failure_reason, created_at
+                from transfer
+                where true""");
+        List<Object> args = new ArrayList<>();
+        if (userId != null) {
+            sql.append(" and user_id = ?");
+            args.add(userId);
+        }
+        if (status != null) {
+            sql.append(" and status = ?");
+            args.add(status.name());
+        }
+        if (bounds.from() != null) {
+            sql.append(" and created_at >= ?");
+            args.add(Timestamp.from(bounds.from()));
+        }
+        if (bounds.to() != null) {
+            sql.append(" and created_at < ?");
+            args.add(Timestamp.from(bounds.to()));
+        }
+        if (cardId != null) {
+            sql.append(" and (from_card_id = ? or to_card_id = ?)");
+            args.add(cardId);
+            args.add(cardId);
+        }
+        if (text != null) {
+            sql.append(" and lower(message) like ? escape '\\'");
+            args.add(containsPattern(text));
+        }
+        sql.append(" order by created_at, id");
+
+        return out -> write(sql.toString(), args, format, out);
+    }
+
+    private void write(String sql, List<Object> args, ExportFormat format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        tx.executeWithoutResult(txStatus -> {
+            write(writer, format == ExportFormat.CSV ? CSV_HEADER + "\n" : null);
+            jdbcTemplate.query(con -> {
+                var ps = con.prepareStatement(sql,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(fetchSize);
+                for (int i = 0; i < args.size(); i++)
+                    ps.setObject(i + 1, args.get(i));
+                return ps;
+            }, (RowCallbackHandler) rs -> write(writer, format == ExportFormat.CSV ? csvLine(rs) : jsonLine(rs)));
+        });
+        writer.flush();
+    }
+
+    private static void write(Writer writer, String line) {
+        if (line == null) return;
+        try {
+            writer.write(line);
+        } catch (IOException e) {
+            // клиент оборвал загрузку — прерываем чтение курсора
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String csvLine(ResultSet rs) throws SQLException {
+        return String.join(",",
+                rs.getString("id"),
+                String.valueOf(rs.getLong("user_id")),
+                rs.getString("from_card_id"),
+                rs.getString("to_card_id"),
+                rs.getBigDecimal("amount").toPlainString(),
+                rs.getString("currency"),
+                rs.getString("status"),
+                csv(rs.getString("message")),
+                csv(rs.getString("failure_reason")),
+                rs.getTimestamp("created_at").toInstant().toString()) + "\n";
+    }
+
+    // RFC 4180: поле в кавычках, если есть запятая, кавычка или перевод строки
+    static String csv(String value) {
+        if (value == null) return "";
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0
+                && value.indexOf('\n') < 0 && value.indexOf('\r') < 0)
+            return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private String jsonLine(ResultSet rs) throws SQLException {
+        TransferResponse row = new TransferResponse(
+                rs.getObject("id", UUID.class),
+                rs.getLong("user_id"),
+                rs.getObject("from_card_id", UUID.class),
+                rs.getObject("to_card_id", UUID.class),
+                rs.getBigDecimal("amount"),
+                rs.getString("currency"),
+                TransferStatus.valueOf(rs.getString("status")),
+                rs.getString("message"),
+                rs.getString("failure_reason"),
+                rs.getTimestamp("created_at").toInstant());
+        try {
+            return objectMapper.writeValueAsString(row) + "\n";
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.abrik.bank_cards.bank_cards.service.user;
+
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferCommand;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferOutcome;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferResponse;
+import com.abrik.bank_cards.bank_cards.exception.ConflictException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Групповой коммит переводов: запросы ставятся в ограниченную очередь,
+ * один поток-коммиттер забирает до maxBatch переводов (или сколько набралось за maxWait)
+ * и проводит их одной транзакцией {@link TransferService#transferGroup} —
+ * один flush WAL на всю группу вместо одного на перевод.
+ * Если транзакция группы откатилась целиком, каждый перевод получает {@link GroupAbortedException}
+ * и {@link TransferDispatcher} проводит его отдельно обычным путём.
+ */
+@Slf4j
+@Component
+public class TransferGroupCommitter implements SmartLifecycle {
+    private final TransferService transferService;
+    private final boolean enabled;
+    private final int maxBatch;
+    private final long maxWaitNanos;
+    private final BlockingQueue<Pending> queue;
+
+    private final DistributionSummary batchSize;
+    private final Timer waitTime;
+
+    private volatile boolean running;
+    private Thread committer;
+
+    private record Pending(TransferCommand command, CompletableFuture<TransferResponse> future, long enqueuedAt) {}
+
+    /** Транзакция группы не прошла — перевод нужно провести отдельно. */
+    public static class GroupAbortedException extends RuntimeException {
+        public GroupAbortedException(Throwable cause) {
+            super("Group commit aborted", cause);
+        }
+    }
+
+    public TransferGroupCommitter(TransferService transferService,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${app.transfer.group-commit.enabled:false}") boolean enabled,
+                                  @Value("${app.transfer.group-commit.max-batch:64}") int maxBatch,
+                                  @Value("${app.transfer.group-commit.max-wait:500us}") Duration maxWait,
+                                  @Value("${app.transfer.group-commit.queue-capacity:10000}") int queueCapacity) {
+        this.transferService = transferService;
+        this.enabled = enabled;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.maxWaitNanos = maxWait.toNanos();
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.batchSize = DistributionSummary.builder("transfer.group_commit.batch_size")
+                .description("Число переводов в одной транзакции группового коммита")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.waitTime = Timer.builder("transfer.group_commit.wait")
+                .description("Время перевода в очереди до начала транзакции группы")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public CompletableFuture<TransferResponse> submit(TransferCommand command) {
+        Pending pending = new Pending(command, new CompletableFuture<>(), System.nanoTime());
+        if (!running || !queue.offer(pending))
+            throw new ConflictException("Transfer queue is full, retry");
+        return pending.future();
+    }
+
+    @Override
+    public void start() {
+        if (!enabled || running) return;
+        running = true;
+        committer = Thread.ofPlatform().name("transfer-group-committer").daemon().start(this::drainLoop);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread thread = committer;
+        if (thread == null) return;
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // не успели провести — отдаём вызывающим на обычный путь
+        Pending left;
+        while ((left = queue.poll()) != null)
+            left.future().completeExceptionally(new GroupAbortedException(new IllegalStateException("Shutting down")));
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void drainLoop() {
+        List<Pending> group = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                group.add(first);
+
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (group.size() < maxBatch) {
+                    long left = deadline - System.nanoTime();
+                    Pending next = left > 0 ? queue.poll(left, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) break;
+                    group.add(next);
+                }
+                commit(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } finally {
+                // завершённые future не меняются; незавершённые (прерывание, Error) не должны висеть
+                for (Pending p : group)
+                    p.future().completeExceptionally(new GroupAbortedException(new IllegalStateException("Not committed")));
+                group.clear();
+            }
+        }
+    }
+
+    private void commit(List<Pending> group) {
+        long startedAt = System.nanoTime();
+        batchSize.record(group.size());
+        List<TransferCommand> commands = new ArrayList<>(group.size());
+        for (Pending p : group) {
+            waitTime.record(startedAt - p.enqueuedAt(), TimeUnit.NANOSECONDS);
+            commands.add(p.command());
+        }
+
+        try {
+            List<TransferOutcome> outcomes = transferService.transferGroup(commands);
+            for (int i = 0; i < group.size(); i++) {
+                TransferOutcome outcome = outcomes.get(i);
+                if (outcome.error() == null)
+                    group.get(i).future().complete(outcome.transfer());
+                else
+                    group.get(i).future().completeExceptionally(outcome.error());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Group commit of {} transfers failed, falling back to single transfers", group.size(), e);
+            for (Pending p : group)
+                p.future().completeExceptionally(new GroupAbortedException(e));
+        }
+    }
+}
@@ -1,36 +1,83 @@
 package com.abrik.bank_cards.bank_cards.service.user;
 
+import com.abrik.bank_cards.bank_cards.dto.card.CardStatus;
+import com.abrik.bank_cards.bank_cards.dto.common.CountMode;
+import com.abrik.bank_cards.bank_cards.dto.common.CursorPage;
+import com.abrik.bank_cards.bank_cards.dto.common.PageResponse;
+import com.abrik.bank_cards.bank_cards.dto.transfer.BatchMode;
+import com.abrik.bank_cards.bank_cards.dto.transfer.BatchTransferItemResult;
+import com.abrik.bank_cards.bank_cards.dto.transfer.BatchTransferRequest;
+import com.abrik.bank_cards.bank_cards.dto.transfer.BatchTransferResponse;
+import com.abrik.bank_cards.bank_cards.dto.transfer.Bounds;
 import com.abrik.bank_cards.bank_cards.dto.transfer.CreateTransferRequest;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferCommand;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferCursor;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferMode;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferOutcome;
 import com.abrik.bank_cards.bank_cards.dto.transfer.TransferResponse;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferSearchOrder;
 import com.abrik.bank_cards.bank_cards.dto.transfer.TransferStatus;
+import com.abrik.bank_cards.bank_cards.dto.ledger.LedgerDirection;
 import com.abrik.bank_cards.bank_cards.entity.Card;
+import com.abrik.bank_cards.bank_cards.entity.LedgerEntry;
 import com.abrik.bank_cards.bank_cards.entity.Transfer;
 import com.abrik.bank_cards.bank_cards.exception.BadRequestException;
+import com.abrik.bank_cards.bank_cards.exception.ConflictException;
 import com.abrik.bank_cards.bank_cards.exception.NotFoundException;
 import com.abrik.bank_cards.bank_cards.repository.CardRepository;
+import com.abrik.bank_cards.bank_cards.repository.LedgerEntryRepository;
 import com.abrik.bank_cards.bank_cards.repository.TransferRepository;
+import com.abrik.bank_cards.bank_cards.service.archive.TransferArchive;
+import com.abrik.bank_cards.bank_cards.service.outbox.OutboxService;
+import com.abrik.bank_cards.bank_cards.util.HotCardRegistry;
+import com.abrik.bank_cards.bank_cards.util.InputValidator;
+import com.abrik.bank_cards.bank_cards.util.PageCounter;
 import com.abrik.bank_cards.bank_cards.util.TransferUtil;
-import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.Clock;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+
+import static com.abrik.bank_cards.bank_cards.repository.specification.TransferSpecifications.*;
 
 @Service
 @RequiredArgsConstructor
 public class TransferService {
     private final CardRepository cardRepository;
     private final TransferRepository transferRepository;
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final OutboxService outboxService;
     private final TransferUtil transferUtil;
+    private final HotCardRegistry hotCardRegistry;
+    private final CardBalanceStripeService stripeService;
+    private final PageCounter pageCounter;
+    private final TransferArchive transferArchive;
     private final Clock clock = Clock.systemUTC();
 
+    @Value("${app.transfer.mode:PESSIMISTIC}")
+    private TransferMode mode = TransferMode.PESSIMISTIC;
+
     @Transactional
     public TransferResponse transferOwnCards(Long userId, CreateTransferRequest request, String idempotencyKey) {
 
@@ -40,13 +87,10 @@ public class TransferService {
             return transferUtil.map(t);
         }
 
-        if (request.getFromCardId().equals(request.getToCardId()))
-            throw new BadRequestException("fromCardId must differ from toCardId");
+        BigDecimal amount = validateRequest(request);
 
-        // Жёстко держим scale = 2 (для банковских карт)
-        BigDecimal amount = request.getAmount().setScale(2, RoundingMode.HALF_UP);
-        if (amount.compareTo(BigDecimal.ZERO) <= 0)
-            throw new BadRequestException("Amount must be > 0.00");
+        if (mode == TransferMode.GUARDED)
+            return transferGuarded(userId, request, idempotencyKey, amount);
 
         // Детектируем порядок блокировки для избежания дедлоков
         UUID firstId = ( request.getFromCardId().toString()
@@ -56,63 +100,614 @@ public class TransferService {
         UUID secondId = firstId.equals(request.getFromCardId())
                 ? request.getToCardId() : request.getFromCardId();
 
-        // Блокируем обе карты пользователю
-        Card first = cardRepository.lockByIdAndUserId(firstId, userId)
+        // Горячую карту-получателя не блокируем: зачисление уйдёт в полосу баланса
+        UUID stripedToId = hotCardRegistry.isHot(request.getToCardId()) ? request.getToCardId() : null;
+
+        // Блокируем обе карты пользователю (OPTIMISTIC — читаем без блокировки, конфликт поймает @Version)
+        Card first = loadCard(firstId, userId, firstId.equals(stripedToId))
                 .orElseThrow(() -> new NotFoundException("Card not found"));
-        Card second = cardRepository.lockByIdAndUserId(secondId, userId)
+        Card second = loadCard(secondId, userId, secondId.equals(stripedToId))
                 .orElseThrow(() -> new NotFoundException("Card not found"));
 
         // Мапим обратно на from/to после блокировок в нужном порядке
         Card from = first.getId().equals(request.getFromCardId()) ? first : second;
         Card to   = first.getId().equals(request.getToCardId())   ? first : second;
 
+        List<LedgerEntry> ledger = new ArrayList<>(2);
+        var transfer = applyTransfer(userId, request, idempotencyKey, amount, from, to, stripedToId != null, ledger);
+
+        // Зафиксируем изменения карт
+        cardRepository.saveAll(List.of(from, to));
+
+        transfer = transferRepository.saveAndFlush(transfer);
+        ledgerEntryRepository.saveAll(ledger);
+        outboxService.recordTransfers(List.of(transfer));
+
+        return transferUtil.map(transfer);
+    }
+
+    private Optional<Card> loadCard(UUID cardId, Long userId, boolean unlocked) {
+        return unlocked || mode == TransferMode.OPTIMISTIC
+                ? cardRepository.findByIdAndUserId(cardId, userId)
+                : cardRepository.lockByIdAndUserId(cardId, userId);
+    }
+
+    /**
+     * Пакет переводов между своими картами в одной транзакции.
+     * Все карты пакета блокируются одним запросом в глобальном порядке (по id),
+     * элементы применяются последовательно к уже заблокированным балансам.
+     * Ключ идемпотентности элемента: {@code <Idempotency-Key>:<index>} —
+     * повтор пакета возвращает уже сохранённые переводы без повторного списания.
+     */
+    @Transactional
+    public BatchTransferResponse transferBatch(Long userId, BatchTransferRequest request, String idempotencyKey) {
+        List<CreateTransferRequest> items = request.getItems();
+        BatchMode mode = request.getMode() == null ? BatchMode.ALL_OR_NOTHING : request.getMode();
+
+        List<String> itemKeys = new ArrayList<>(items.size());
+        List<TransferCommand> commands = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            String itemKey = idempotencyKey + ":" + i;
+            if (itemKey.length() > InputValidator.IDEMPOTENCY_KEY_MAX_LENGTH)
+                throw new BadRequestException("Idempotency-Key is too long for a batch");
+            itemKeys.add(itemKey);
+            commands.add(new TransferCommand(userId, items.get(i), itemKey));
+        }
+
+        Map<String, Transfer> existing = new HashMap<>();
+        for (Transfer t : transferRepository.findAllByUserIdAndIdempotencyKeyIn(userId, itemKeys))
+            existing.put(commandKey(userId, t.getIdempotencyKey()), t);
+
+        Set<UUID> cardIds = cardIdsToLock(commands, existing);
+        Map<UUID, Card> cards = cardIds.isEmpty()
+                ? Map.of()
+                : byId(cardRepository.lockAllByIdInAndUserId(cardIds, userId));
+
+        RuntimeException[] errors = new RuntimeException[items.size()];
+        Transfer[] applied = applyCommands(commands, existing, cards, mode == BatchMode.ALL_OR_NOTHING, errors);
+
+        List<BatchTransferItemResult> results = new ArrayList<>(items.size());
+        int succeeded = 0;
+        for (int i = 0; i < items.size(); i++) {
+            if (applied[i] != null) {
+                results.add(new BatchTransferItemResult(i, transferUtil.map(applied[i]), null));
+                succeeded++;
+            } else {
+                results.add(new BatchTransferItemResult(i, null, errors[i].getMessage()));
+            }
+        }
+
+        return new BatchTransferResponse(mode, succeeded, items.size() - succeeded, results);
+    }
+
+    /**
+     * Групповой коммит: переводы разных пользователей в одной транзакции.
+     * Карты блокируются одним запросом по id, владелец проверяется для каждого перевода;
+     * бизнес-ошибки возвращаются поэлементно, не откатывая остальные переводы группы.
+     */
+    @Transactional
+    public List<TransferOutcome> transferGroup(List<TransferCommand> commands) {
+        Set<Long> userIds = new HashSet<>();
+        Set<String> keys = new HashSet<>();
+        for (TransferCommand c : commands) {
+            userIds.add(c.userId());
+            keys.add(c.idempotencyKey());
+        }
+
+        Map<String, Transfer> existing = new HashMap<>();
+        for (Transfer t : transferRepository.findAllByUserIdInAndIdempotencyKeyIn(userIds, keys))
+            existing.put(commandKey(t.getUserId(), t.getIdempotencyKey()), t);
+
+        Set<UUID> cardIds = cardIdsToLock(commands, existing);
+        Map<UUID, Card> cards = cardIds.isEmpty() ? Map.of() : byId(cardRepository.lockAllByIdIn(cardIds));
+
+        RuntimeException[] errors = new RuntimeException[commands.size()];
+        Transfer[] applied = applyCommands(commands, existing, cards, false, errors);
+
+        List<TransferOutcome> outcomes = new ArrayList<>(commands.size());
+        for (int i = 0; i < commands.size(); i++) {
+            outcomes.add(applied[i] != null
+                    ? TransferOutcome.ok(transferUtil.map(applied[i]))
+                    : TransferOutcome.failed(errors[i]));
+        }
+        return outcomes;
+    }
+
+    /**
+     * Общее ядро пакета и группового коммита: применяет переводы последовательно
+     * к уже заблокированным картам и сохраняет всё пачкой (saveAll + один flush).
+     * Повтор ключа идемпотентности (в БД или внутри группы) возвращает уже созданный перевод.
+     * При allOrNothing первая бизнес-ошибка пробрасывается, иначе записывается в errors.
+     */
+    private Transfer[] applyCommands(List<TransferCommand> commands,
+                                     Map<String, Transfer> existing,
+                                     Map<UUID, Card> cards,
+                                     boolean allOrNothing,
+                                     RuntimeException[] errors) {
+        Transfer[] applied = new Transfer[commands.size()];
+        Map<UUID, Card> touched = new LinkedHashMap<>();
+        List<Transfer> created = new ArrayList<>();
+        List<LedgerEntry> ledger = new ArrayList<>();
+
+        for (int i = 0; i < commands.size(); i++) {
+            TransferCommand command = commands.get(i);
+            String key = commandKey(command.userId(), command.idempotencyKey());
+            Transfer replay = existing.get(key);
+            if (replay != null) {
+                applied[i] = replay;
+                continue;
+            }
+
+            CreateTransferRequest item = command.request();
+            try {
+                BigDecimal amount = validateRequest(item);
+                Card from = ownedCard(cards, item.getFromCardId(), command.userId());
+                Card to = ownedCard(cards, item.getToCardId(), command.userId());
+
+                applied[i] = applyTransfer(command.userId(), item, command.idempotencyKey(), amount, from, to, false, ledger);
+                existing.put(key, applied[i]);
+                created.add(applied[i]);
+                touched.put(from.getId(), from);
+                touched.put(to.getId(), to);
+            } catch (BadRequestException | NotFoundException e) {
+                if (allOrNothing)
+                    throw e;
+                errors[i] = e;
+            }
+        }
+
+        if (!created.isEmpty()) {
+            cardRepository.saveAll(touched.values());
+            transferRepository.saveAll(created);
+            // проводки — после INSERT переводов (FK на transfer)
+            transferRepository.flush();
+            ledgerEntryRepository.saveAll(ledger);
+            outboxService.recordTransfers(created);
+        }
+        return applied;
+    }
+
+    private static Set<UUID> cardIdsToLock(List<TransferCommand> commands, Map<String, Transfer> existing) {
+        Set<UUID> cardIds = new HashSet<>();
+        for (TransferCommand c : commands) {
+            if (existing.containsKey(commandKey(c.userId(), c.idempotencyKey()))) continue;
+            cardIds.add(c.request().getFromCardId());
+            cardIds.add(c.request().getToCardId());
+        }
+        return cardIds;
+    }
+
+    private static Map<UUID, Card> byId(List<Card> cards) {
+        Map<UUID, Card> map = new HashMap<>();
+        for (Card c : cards)
+            map.put(c.getId(), c);
+        return map;
+    }
+
+    private static Card ownedCard(Map<UUID, Card> cards, UUID cardId, Long userId) {
+        Card card = cards.get(cardId);
+        if (card == null || !userId.equals(card.getUserId()))
+            throw new NotFoundException("Card not found");
+        return card;
+    }
+
+    private static String commandKey(Long userId, String idempotencyKey) {
+        return userId + "/" + idempotencyKey;
+    }
+
+    /**
+     * Перевод условными UPDATE без предварительной загрузки карт:
+     * статус, валюта и достаточность средств проверяются в WHERE,
+     * результат определяется по числу изменённых строк.
+     * UPDATE выполняются в том же порядке по id, что и блокировки в PESSIMISTIC.
+     */
+    private TransferResponse transferGuarded(Long userId,
+                                             CreateTransferRequest request,
+                                             String idempotencyKey,
+                                             BigDecimal amount) {
+        UUID fromId = request.getFromCardId();
+        UUID toId = request.getToCardId();
+        String currency = request.getCurrency();
+
+        if (hotCardRegistry.isHot(toId)) {
+            // Полоса горячей карты не участвует в порядке блокировок — зачисляем последней
+            debitGuarded(userId, fromId, currency, amount);
+            if (!stripeService.tryCreditStripe(userId, toId, currency, amount))
+                creditGuarded(userId, toId, currency, amount);
+            return saveGuarded(userId, request, idempotencyKey, amount);
+        }
+
+        boolean debitFirst = fromId.toString().compareTo(toId.toString()) < 0;
+        if (debitFirst) {
+            debitGuarded(userId, fromId, currency, amount);
+            creditGuarded(userId, toId, currency, amount);
+        } else {
+            creditGuarded(userId, toId, currency, amount);
+            debitGuarded(userId, fromId, currency, amount);
+        }
+
+        return saveGuarded(userId, request, idempotencyKey, amount);
+    }
+
+    // проводки читают баланс из строк карт, уже изменённых условными UPDATE этой транзакции
+    private TransferResponse saveGuarded(Long userId,
+                                         CreateTransferRequest request,
+                                         String idempotencyKey,
+                                         BigDecimal amount) {
+        var transfer = transferRepository.saveAndFlush(newTransfer(userId, request, idempotencyKey, amount));
+        ledgerEntryRepository.insertForCard(transfer.getId(), transfer.getFromCardId(),
+                LedgerDirection.DEBIT.name(), amount, transfer.getCreatedAt());
+        ledgerEntryRepository.insertForCard(transfer.getId(), transfer.getToCardId(),
+                LedgerDirection.CREDIT.name(), amount, transfer.getCreatedAt());
+        outboxService.recordTransfers(List.of(transfer));
+        return transferUtil.map(transfer);
+    }
+
+    private void debitGuarded(Long userId, UUID cardId, String currency, BigDecimal amount) {
+        if (cardRepository.debitGuarded(cardId, userId, CardStatus.ACTIVE, currency, amount) > 0)
+            return;
+        // У горячей карты часть средств в полосах — сливаем их в balance и пробуем ещё раз
+        if (consolidateHot(userId, cardId)
+                && cardRepository.debitGuarded(cardId, userId, CardStatus.ACTIVE, currency, amount) > 0)
+            return;
+        throw guardFailure(userId, cardId, "from", currency, amount);
+    }
+
+    private boolean consolidateHot(Long userId, UUID cardId) {
+        Card card = cardRepository.lockById(cardId)
+                .filter(c -> c.getUserId().equals(userId) && c.getBalanceStripes() > 0)
+                .orElse(null);
+        if (card == null || stripeService.consolidate(card).signum() == 0)
+            return false;
+        cardRepository.saveAndFlush(card);
+        return true;
+    }
+
+    private void creditGuarded(Long userId, UUID cardId, String currency, BigDecimal amount) {
+        if (cardRepository.creditGuarded(cardId, userId, CardStatus.ACTIVE, currency, amount) == 0)
+            throw guardFailure(userId, cardId, "to", currency, amount);
+    }
+
+    // UPDATE не прошёл — читаем карту, чтобы вернуть ту же ошибку, что и PESSIMISTIC (транзакция откатится)
+    private RuntimeException guardFailure(Long userId, UUID cardId, String label, String currency, BigDecimal amount) {
+        Card card = cardRepository.findByIdAndUserId(cardId, userId)
+                .orElseThrow(() -> new NotFoundException("Card not found"));
+        transferUtil.ensureCardActive(card, label);
+        if (!currency.equals(card.getCurrency()))
+            return new BadRequestException("Currency mismatch");
+        if ("from".equals(label) && available(card).compareTo(amount) < 0)
+            return new BadRequestException("Insufficient funds");
+        return new ConflictException("Card '" + label + "' was changed concurrently, retry");
+    }
+
+    private BigDecimal validateRequest(CreateTransferRequest request) {
+        if (request.getFromCardId().equals(request.getToCardId()))
+            throw new BadRequestException("fromCardId must differ from toCardId");
+
+        // Жёстко держим scale = 2 (для банковских карт)
+        BigDecimal amount = request.getAmount().setScale(2, RoundingMode.HALF_UP);
+        if (amount.compareTo(BigDecimal.ZERO) <= 0)
+            throw new BadRequestException("Amount must be > 0.00");
+
+        return amount;
+    }
+
+    /**
+     * Проверяет уже заблокированные карты и переносит сумму между ними.
+     * Все проверки выполняются до изменения балансов — при ошибке карты остаются нетронутыми.
+     * Возвращает несохранённый {@link Transfer}; проводки DEBIT/CREDIT добавляются в ledger.
+     */
+    private Transfer applyTransfer(Long userId,
+                                   CreateTransferRequest request,
+                                   String idempotencyKey,
+                                   BigDecimal amount,
+                                   Card from,
+                                   Card to,
+                                   boolean stripedCredit,
+                                   List<LedgerEntry> ledger) {
+        moveFunds(userId, request.getCurrency(), amount, from, to, stripedCredit);
+
+        var transfer = newTransfer(userId, request, idempotencyKey, amount);
+        addLedgerEntries(ledger, transfer, from, to, stripedCredit, transfer.getCreatedAt());
+        return transfer;
+    }
+
+    private void moveFunds(Long userId, String currency, BigDecimal amount, Card from, Card to, boolean stripedCredit) {
         // Бизнес-валидации статусов и валют
         transferUtil.ensureCardActive(from, "from");
         transferUtil.ensureCardActive(to,   "to");
 
-        String currency = request.getCurrency();
         if (!currency.equals(from.getCurrency()) || !currency.equals(to.getCurrency()))
             throw new BadRequestException("Currency mismatch");
 
-        // Проверка баланса
-        if (from.getBalance().compareTo(amount) < 0)
+        // Проверка баланса (у горячей карты — вместе с полосами)
+        if (available(from).compareTo(amount) < 0)
             throw new BadRequestException("Insufficient funds");
+        if (from.getBalance().compareTo(amount) < 0)
+            stripeService.consolidate(from);
 
-        // Списание/зачисление (атомарно в рамках транзакции)
+        // Зачисление в полосу — до изменения from: при неудаче перевод повторится целиком
+        if (stripedCredit)
+            stripeService.creditStripe(userId, to, amount);
+        else
+            to.setBalance(to.getBalance().add(amount));
+
+        // Списание (атомарно в рамках транзакции)
         from.setBalance(from.getBalance().subtract(amount));
-        to.setBalance(to.getBalance().add(amount));
+    }
 
-        // Зафиксируем изменения карт
-        cardRepository.saveAll(List.of(from, to));
+    // postedAt — момент проведения: для асинхронных переводов он позже created_at перевода
+    private static void addLedgerEntries(List<LedgerEntry> ledger,
+                                         Transfer transfer,
+                                         Card from,
+                                         Card to,
+                                         boolean stripedCredit,
+                                         Instant postedAt) {
+        ledger.add(ledgerEntry(transfer, from, LedgerDirection.DEBIT, balanceAfter(from), postedAt));
+        ledger.add(ledgerEntry(transfer, to, LedgerDirection.CREDIT, stripedCredit ? null : balanceAfter(to), postedAt));
+    }
+
+    // у горячей карты итог зависит от параллельных зачислений в полосы — не фиксируем
+    private static BigDecimal balanceAfter(Card card) {
+        return card.getBalanceStripes() > 0 ? null : card.getBalance();
+    }
 
-        // 9) Запишем трансфер
+    private static LedgerEntry ledgerEntry(Transfer transfer,
+                                           Card card,
+                                           LedgerDirection direction,
+                                           BigDecimal balanceAfter,
+                                           Instant postedAt) {
+        var entry = new LedgerEntry();
+        entry.setTransferId(transfer.getId());
+        entry.setCardId(card.getId());
+        entry.setUserId(card.getUserId());
+        entry.setDirection(direction);
+        entry.setAmount(transfer.getAmount());
+        entry.setCurrency(transfer.getCurrency());
+        entry.setBalanceAfter(balanceAfter);
+        entry.setCreatedAt(postedAt);
+        return entry;
+    }
+
+    private BigDecimal available(Card card) {
+        if (card.getBalanceStripes() > 0 && card.getStripedBalance() == null)
+            stripeService.loadStripedBalance(card);
+        BigDecimal striped = card.getStripedBalance();
+        return striped == null ? card.getBalance() : card.getBalance().add(striped);
+    }
+
+    private Transfer newTransfer(Long userId, CreateTransferRequest request, String idempotencyKey, BigDecimal amount) {
         var transfer = new Transfer();
         transfer.setId(UUID.randomUUID());
         transfer.setUserId(userId);
-        transfer.setFromCardId(from.getId());
-        transfer.setToCardId(to.getId());
+        transfer.setFromCardId(request.getFromCardId());
+        transfer.setToCardId(request.getToCardId());
         transfer.setAmount(amount);
-        transfer.setCurrency(currency);
+        transfer.setCurrency(request.getCurrency());
         transfer.setStatus(TransferStatus.COMPLETED);
         transfer.setMessage(request.getMessage());
         transfer.setIdempotencyKey(idempotencyKey);
         transfer.setCreatedAt(Instant.now(clock));
+        return transfer;
+    }
 
-        transfer = transferRepository.saveAndFlush(transfer);
+    /**
+     * Асинхронный приём: проверки без блокировок и INSERT перевода в статусе PENDING.
+     * Списание выполняет {@link #processPending}; окончательный статус — COMPLETED или FAILED.
+     */
+    @Transactional
+    public TransferResponse acceptAsync(Long userId, CreateTransferRequest request, String idempotencyKey) {
+        var existing = transferRepository.findByUserIdAndIdempotencyKey(userId, idempotencyKey);
+        if (existing.isPresent())
+            return transferUtil.map(existing.get());
+
+        BigDecimal amount = validateRequest(request);
+
+        // ранний отказ по очевидным причинам; достаточность средств проверит обработчик
+        Card from = cardRepository.findByIdAndUserId(request.getFromCardId(), userId)
+                .orElseThrow(() -> new NotFoundException("Card not found"));
+        Card to = cardRepository.findByIdAndUserId(request.getToCardId(), userId)
+                .orElseThrow(() -> new NotFoundException("Card not found"));
+        transferUtil.ensureCardActive(from, "from");
+        transferUtil.ensureCardActive(to,   "to");
+        if (!request.getCurrency().equals(from.getCurrency()) || !request.getCurrency().equals(to.getCurrency()))
+            throw new BadRequestException("Currency mismatch");
 
+        var transfer = newTransfer(userId, request, idempotencyKey, amount);
+        transfer.setStatus(TransferStatus.PENDING);
+        transfer = transferRepository.saveAndFlush(transfer);
+        outboxService.recordTransfers(List.of(transfer));
         return transferUtil.map(transfer);
     }
 
+    /**
+     * Забирает до limit переводов PENDING (FOR UPDATE SKIP LOCKED — параллельные обработчики,
+     * в том числе на других инстансах, получают разные строки), блокирует их карты одним запросом
+     * и переводит каждый в COMPLETED или FAILED с причиной. Возвращает число обработанных.
+     */
+    @Transactional
+    public int processPending(int limit) {
+        return process(transferRepository.claimPending(limit));
+    }
+
+    /** Id ожидающих переводов (без блокировки) — для обработки по одному, когда пачка падает. */
+    @Transactional(readOnly = true)
+    public List<UUID> findPendingIds(int limit) {
+        return transferRepository.findPendingIds(limit);
+    }
+
+    /** Один перевод PENDING в своей транзакции; 0 — уже обработан или забран другим обработчиком. */
+    @Transactional
+    public int processPendingById(UUID transferId) {
+        return process(transferRepository.claimPendingById(transferId).stream().toList());
+    }
+
+    /**
+     * Перевод, обработка которого в одиночку падает с неожиданной ошибкой, — в FAILED:
+     * иначе он возвращался бы в PENDING и забирался снова. false — уже не PENDING.
+     */
+    @Transactional
+    public boolean failPending(UUID transferId, String reason) {
+        Optional<Transfer> claimed = transferRepository.claimPendingById(transferId);
+        if (claimed.isEmpty())
+            return false;
+        Transfer t = claimed.get();
+        t.setStatus(TransferStatus.FAILED);
+        t.setFailureReason(reason);
+        transferRepository.saveAndFlush(t);
+        outboxService.recordTransfers(List.of(t));
+        return true;
+    }
+
+    private int process(List<Transfer> claimed) {
+        if (claimed.isEmpty())
+            return 0;
+
+        Set<UUID> cardIds = new HashSet<>();
+        for (Transfer t : claimed) {
+            cardIds.add(t.getFromCardId());
+            cardIds.add(t.getToCardId());
+        }
+        Map<UUID, Card> cards = byId(cardRepository.lockAllByIdIn(cardIds));
+
+        Instant postedAt = Instant.now(clock);
+        Map<UUID, Card> touched = new LinkedHashMap<>();
+        List<LedgerEntry> ledger = new ArrayList<>();
+
+        for (Transfer t : claimed) {
+            try {
+                Card from = ownedCard(cards, t.getFromCardId(), t.getUserId());
+                Card to = ownedCard(cards, t.getToCardId(), t.getUserId());
+                moveFunds(t.getUserId(), t.getCurrency(), t.getAmount(), from, to, false);
+
+                t.setStatus(TransferStatus.COMPLETED);
+                addLedgerEntries(ledger, t, from, to, false, postedAt);
+                touched.put(from.getId(), from);
+                touched.put(to.getId(), to);
+            } catch (BadRequestException | NotFoundException e) {
+                t.setStatus(TransferStatus.FAILED);
+                t.setFailureReason(e.getMessage());
+            }
+        }
+
+        cardRepository.saveAll(touched.values());
+        transferRepository.saveAll(claimed);
+        transferRepository.flush();
+        ledgerEntryRepository.saveAll(ledger);
+        outboxService.recordTransfers(claimed);
+        return claimed.size();
+    }
+
+    public TransferResponse getOwn(Long userId, UUID transferId) {
+        return transferRepository.findByIdAndUserId(transferId, userId)
+                .map(transferUtil::map)
+                .orElseThrow(() -> new NotFoundException("Transfer not found"));
+    }
+
+    public Optional<TransferResponse> findByIdempotencyKey(Long userId, String idempotencyKey) {
+        return transferRepository.findByUserIdAndIdempotencyKey(userId, idempotencyKey)
+                .map(transferUtil::map);
+    }
+
+    // REPEATABLE READ: transfer и набор архивных месяцев читаются из одного снимка
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
     public Page<TransferResponse> listOwn(Long userId,
                                                TransferStatus status,
                                                Instant from,
                                                Instant to,
                                                UUID cardId,
+                                               String q,
+                                               TransferSearchOrder order,
                                                Pageable pageable) {
         var bounds = transferUtil.normalizeBounds(from, to);
-        Pageable sortedPageable = transferUtil.ensureSort(pageable);
-        Page<Transfer> page = transferRepository.searchUser(
-                userId, status, bounds.from(), bounds.to(), cardId, sortedPageable);
-        return page.map(transferUtil::map);
+        String text = transferUtil.normalizeMessageQuery(q);
+        if (transferArchive.covers(bounds.from())) {
+            return listOwnWithArchive(userId, status, bounds, cardId, text, pageable);
+        }
+        Pageable searchPageable = transferUtil.searchPageable(pageable, text, order);
+        return transferRepository.findResponses(
+                ordered(search(userId, status, bounds.from(), bounds.to(), cardId, text), text, order),
+                searchPageable);
+    }
+
+    /**
+     * Интервал уходит в архив: сначала строки таблицы, за ними архивные — они всегда старше.
+     * Порядок поэтому фиксирован (новые сверху), сортировку и order из запроса не принимаем.
+     */
+    private Page<TransferResponse> listOwnWithArchive(Long userId,
+                                                      TransferStatus status,
+                                                      Bounds bounds,
+                                                      UUID cardId,
+                                                      String q,
+                                                      Pageable pageable) {
+        Pageable page = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), NEWEST_FIRST);
+        Page<TransferResponse> hot = transferRepository.findResponses(
+                search(userId, status, bounds.from(), bounds.to(), cardId, q), page);
+
+        List<TransferResponse> content = new ArrayList<>(hot.getContent());
+        long skip = Math.max(0, page.getOffset() - hot.getTotalElements());
+        // из архива — только строки до конца страницы; полный пересчёт — лишь если их не меньше limit
+        int limit = (int) Math.min(Integer.MAX_VALUE, skip + page.getPageSize() - content.size());
+        List<Transfer> archived = transferArchive.find(userId, status, bounds.from(), bounds.to(), cardId, q, null, limit);
+        for (long i = skip; i < archived.size() && content.size() < page.getPageSize(); i++)
+            content.add(transferUtil.map(archived.get((int) i)));
+        long archivedTotal = archived.size() < limit
+                ? archived.size()
+                : transferArchive.count(userId, status, bounds.from(), bounds.to(), cardId, q);
+        return new PageImpl<>(content, page, hot.getTotalElements() + archivedTotal);
+    }
+
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public PageResponse<TransferResponse> listOwn(Long userId,
+                                                  TransferStatus status,
+                                                  Instant from,
+                                                  Instant to,
+                                                  UUID cardId,
+                                                  String q,
+                                                  TransferSearchOrder order,
+                                                  Pageable pageable,
+                                                  CountMode count) {
+        var bounds = transferUtil.normalizeBounds(from, to);
+        // архивная часть считается в памяти — точный итог ничего не стоит
+        if (count == CountMode.EXACT || transferArchive.covers(bounds.from())) {
+            return PageResponse.of(listOwn(userId, status, from, to, cardId, q, order, pageable));
+        }
+        String text = transferUtil.normalizeMessageQuery(q);
+        Pageable searchPageable = transferUtil.searchPageable(pageable, text, order);
+        Specification<Transfer> spec = search(userId, status, bounds.from(), bounds.to(), cardId, text);
+        Specification<Transfer> orderedSpec = ordered(spec, text, order);
+        // ключ — исходные фильтры: окно по умолчанию «последние 90 дней» сдвигается каждый запрос
+        return pageCounter.fetch(count, searchPageable,
+                "transfers:" + userId + ":" + status + ":" + from + ":" + to + ":" + cardId + ":" + text,
+                p -> transferRepository.findResponseSlice(orderedSpec, p),
+                () -> transferRepository.count(spec),
+                Function.identity());
+    }
+
+    /** Лента своих переводов с курсором: страницы любой глубины стоят одинаково. */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public CursorPage<TransferResponse> listOwnCursor(Long userId,
+                                                      TransferStatus status,
+                                                      Instant from,
+                                                      Instant to,
+                                                      UUID cardId,
+                                                      String q,
+                                                      String cursor,
+                                                      int size) {
+        var bounds = transferUtil.normalizeBounds(from, to);
+        String text = transferUtil.normalizeMessageQuery(q);
+        TransferCursor after = transferUtil.decodeCursor(cursor);
+        int pageSize = transferUtil.cursorPageSize(size);
+        Specification<Transfer> spec = search(userId, status, bounds.from(), bounds.to(), cardId, text)
+                .and(seekAfter(after));
+        List<TransferResponse> rows = transferRepository.findResponses(spec, NEWEST_FIRST, pageSize + 1);
+        // таблица закончилась раньше страницы — продолжаем архивом (он старше любой строки таблицы)
+        if (rows.size() <= pageSize && transferArchive.covers(bounds.from())) {
+            rows = new ArrayList<>(rows);
+            for (Transfer t : transferArchive.find(userId, status, bounds.from(), bounds.to(), cardId, text, after,
+                    pageSize + 1 - rows.size()))
+                rows.add(transferUtil.map(t));
+        }
+        return transferUtil.toCursorPage(rows, pageSize);
     }
 }
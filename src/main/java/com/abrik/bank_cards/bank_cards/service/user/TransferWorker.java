@@ -0,0 +1,145 @@
+package com.abrik.bank_cards.bank_cards.service.user;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пул обработчиков асинхронных переводов: каждый поток в цикле вызывает
+ * {@link TransferService#processPending}. Полная пачка — сразу следующая,
+ * неполная — пауза pollInterval. Инстансов может быть сколько угодно: строки делятся через SKIP LOCKED.
+ * <p>
+ * Если пачка падает целиком, её переводы обрабатываются по одному, каждый в своей транзакции;
+ * перевод, упавший и в одиночку, переводится в FAILED — одна битая строка не держит очередь.
+ * Временные ошибки БД (таймаут блокировки, дедлок, нет соединения) перевод не проваливают:
+ * он остаётся PENDING и забирается снова после паузы.
+ */
+@Slf4j
+@Component
+public class TransferWorker implements SmartLifecycle {
+    private final TransferService transferService;
+    private final boolean enabled;
+    private final int workers;
+    private final int batchSize;
+    private final long pollMillis;
+
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running;
+
+    public TransferWorker(TransferService transferService,
+                          @Value("${app.transfer.async.enabled:false}") boolean enabled,
+                          @Value("${app.transfer.async.workers:2}") int workers,
+                          @Value("${app.transfer.async.batch-size:50}") int batchSize,
+                          @Value("${app.transfer.async.poll-interval:200ms}") Duration pollInterval) {
+        this.transferService = transferService;
+        this.enabled = enabled;
+        this.workers = workers;
+        this.batchSize = Math.max(1, batchSize);
+        this.pollMillis = pollInterval.toMillis();
+    }
+
+    @Override
+    public synchronized void start() {
+        if (!enabled || workers <= 0 || running) return;
+        running = true;
+        for (int i = 0; i < workers; i++)
+            threads.add(Thread.ofPlatform().name("transfer-worker-" + i).daemon().start(this::pollLoop));
+    }
+
+    @Override
+    public synchronized void stop() {
+        // без interrupt: текущая пачка дорабатывает, пауза не длиннее pollInterval
+        running = false;
+        for (Thread t : threads) {
+            try {
+                t.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        threads.clear();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void pollLoop() {
+        while (running) {
+            int processed = 0;
+            try {
+                processed = transferService.processPending(batchSize);
+            } catch (RuntimeException e) {
+                if (isTransient(e)) {
+                    // строки не виноваты — ждём паузу и забираем пачку снова
+                    log.warn("Processing of pending transfers failed transiently, will retry: {}", e.toString());
+                    if (!pause()) return;
+                    continue;
+                }
+                // транзакция откатилась — строки снова PENDING; ищем виновника, обрабатывая по одному
+                log.warn("Processing of pending transfers failed, retrying one by one", e);
+                processed = processOneByOne();
+            }
+            if (processed < batchSize && !pause())
+                return;
+        }
+    }
+
+    /**
+     * Ожидающие переводы по одному; упавшие и в одиночку — в FAILED, кроме временных ошибок БД:
+     * такие остаются PENDING. Возвращает число обработанных.
+     */
+    public int processOneByOne() {
+        int processed = 0;
+        List<UUID> ids;
+        try {
+            ids = transferService.findPendingIds(batchSize);
+        } catch (RuntimeException e) {
+            log.warn("Cannot list pending transfers", e);
+            return 0;
+        }
+        for (UUID id : ids) {
+            try {
+                processed += transferService.processPendingById(id);
+            } catch (RuntimeException e) {
+                if (isTransient(e)) {
+                    log.warn("Pending transfer {} hit a transient failure, leaving it PENDING: {}", id, e.toString());
+                    continue;
+                }
+                log.error("Pending transfer {} cannot be processed, marking it FAILED", id, e);
+                try {
+                    if (transferService.failPending(id, "Processing error"))
+                        processed++;
+                } catch (RuntimeException failure) {
+                    log.warn("Cannot mark pending transfer {} as FAILED", id, failure);
+                }
+            }
+        }
+        return processed;
+    }
+
+    // таймауты блокировок, дедлоки, нехватка соединений: повтор позже может пройти
+    static boolean isTransient(RuntimeException e) {
+        return e instanceof TransientDataAccessException || e instanceof CannotCreateTransactionException;
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(pollMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.abrik.bank_cards.bank_cards.util;
+
+import com.abrik.bank_cards.bank_cards.exception.ConflictException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Back-pressure на пул соединений для «горячих» карт: карта → слот по id, в каждом слоте
+ * один перевод одновременно. Переводы по занятой карте ждут в JVM до открытия транзакции,
+ * а не на row lock в Postgres с взятым из пула соединением.
+ * <p>
+ * Это не обход блокировки строк: PESSIMISTIC_WRITE / условные UPDATE по-прежнему берутся,
+ * и потолок переводов по одной карте остаётся тем же — одна транзакция за раз.
+ * Слой лишь не даёт очереди к одной карте занять весь пул и задержать переводы по другим картам.
+ * Ограничение действует только внутри одного инстанса.
+ * <p>
+ * Слоты берутся по возрастанию индекса и всегда до открытия транзакции, то есть стоят уровнем
+ * выше блокировок строк; пути без этого слоя (воркер, group commit) только ждут строку дольше.
+ * При {@code app.transfer.card-back-pressure.slots=0} слой выключен.
+ */
+@Component
+public class CardBackPressure {
+    private final ReentrantLock[] slots;
+    private final long timeoutMillis;
+
+    public CardBackPressure(@Value("${app.transfer.card-back-pressure.slots:0}") int slotCount,
+                            @Value("${app.transfer.card-back-pressure.timeout:5s}") Duration timeout) {
+        if (slotCount < 0) {
+            throw new IllegalArgumentException("app.transfer.card-back-pressure.slots must be >= 0");
+        }
+        this.slots = new ReentrantLock[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new ReentrantLock();
+        }
+        this.timeoutMillis = timeout.toMillis();
+    }
+
+    public boolean isEnabled() {
+        return slots.length > 0;
+    }
+
+    /**
+     * Выполняет action, удерживая слоты всех переданных карт.
+     */
+    public <T> T withCards(Collection<UUID> cardIds, Supplier<T> action) {
+        if (!isEnabled()) {
+            return action.get();
+        }
+
+        int[] indexes = cardIds.stream()
+                .mapToInt(this::slotOf)
+                .distinct()
+                .sorted()
+                .toArray();
+
+        int locked = 0;
+        try {
+            for (int index : indexes) {
+                if (!slots[index].tryLock(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                    throw new ConflictException("Card is busy, retry later");
+                }
+                locked++;
+            }
+            return action.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConflictException("Interrupted while waiting for card");
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                slots[indexes[i]].unlock();
+            }
+        }
+    }
+
+    int slotOf(UUID cardId) {
+        return Math.floorMod(cardId.hashCode(), slots.length);
+    }
+}
@@ -1,6 +1,8 @@
 package com.abrik.bank_cards.bank_cards.util;
 
 import com.abrik.bank_cards.bank_cards.dto.card.CardResponse;
+import com.abrik.bank_cards.bank_cards.dto.card.CardSummary;
+import com.abrik.bank_cards.bank_cards.dto.card.PanMode;
 import com.abrik.bank_cards.bank_cards.dto.common.PageResponse;
 import com.abrik.bank_cards.bank_cards.entity.Card;
 import com.abrik.bank_cards.bank_cards.exception.BadRequestException;
@@ -10,7 +12,6 @@ import org.springframework.stereotype.Component;
 import java.time.Clock;
 import java.time.YearMonth;
 import java.util.List;
-import java.util.regex.Pattern;
 
 @Component
 public class CardUtil {
@@ -43,15 +44,17 @@ public class CardUtil {
     }
 
     public String extractDigits(String search) {
-        if (search == null) return null;
-        String digits = search.replaceAll("\\D+", "");
-        return digits.isEmpty() ? null : digits;
+        return InputValidator.digitsOf(search);
+    }
+
+    public PageResponse<CardResponse> toCardPageResponse(Page<CardSummary> page) {
+        return toCardPageResponse(page, PanMode.FULL);
     }
 
-    public PageResponse<CardResponse> toCardPageResponse(Page<Card> page) {
+    public PageResponse<CardResponse> toCardPageResponse(Page<CardSummary> page, PanMode pan) {
         List<CardResponse> content = page.getContent()
                 .stream()
-                .map(this::toResponse)
+                .map(card -> toResponse(card, pan))
                 .toList();
 
         return PageResponse.of(
@@ -74,11 +77,13 @@ public class CardUtil {
                 card.getId(),
                 card.getUserId(),
                 maskCardNumber(card.getLast4()),
-                panCryptoUtil.decrypt(card.getPanEncrypted()),
+                panCryptoUtil.decryptPan(card.getPanCiphertext(), card.getPanEncrypted()),
                 card.getExpiryMonth(),
                 card.getExpiryYear(),
                 card.getStatus(),
-                card.getBalance(),
+                card.getStripedBalance() == null
+                        ? card.getBalance()
+                        : card.getBalance().add(card.getStripedBalance()),
                 card.getCurrency(),
                 card.getRequestedBlockAt() != null,
                 card.getCreatedAt(),
@@ -86,6 +91,30 @@ public class CardUtil {
         );
     }
 
+    public CardResponse toResponse(CardSummary card) {
+        return toResponse(card, PanMode.FULL);
+    }
+
+    /** MASKED — без расшифровки, panDecrypted = null. */
+    public CardResponse toResponse(CardSummary card, PanMode pan) {
+        return new CardResponse(
+                card.id(),
+                card.userId(),
+                maskCardNumber(card.last4()),
+                pan == PanMode.FULL ? panCryptoUtil.decryptPan(card.panCiphertext(), card.panEncrypted()) : null,
+                card.expiryMonth(),
+                card.expiryYear(),
+                card.status(),
+                card.stripedBalance() == null
+                        ? card.balance()
+                        : card.balance().add(card.stripedBalance()),
+                card.currency(),
+                card.requestedBlockAt() != null,
+                card.createdAt(),
+                card.updatedAt()
+        );
+    }
+
     private static String maskCardNumber(String last4) {
         if (last4 == null || last4.isBlank()) {
             return "**** **** **** ****";
@@ -93,29 +122,27 @@ public class CardUtil {
         return "**** **** **** " + last4;
     }
 
-    private static final Pattern PAN_PATTERN = Pattern.compile("^\\d{13,19}$");
-
     /**
-     * Валидирует PAN:
-     * 1) обязательность
-     * 2) нормализация (удаление пробелов/дефисов)
-     * 3) проверка по регулярке (13–19 цифр)
-     * 4) проверка по модулю Луна
+     * Валидирует PAN: обязательность, 13–19 цифр (пробелы и дефисы допускаются), контрольная сумма Луна.
      * Возвращает нормализованный PAN (без пробелов и дефисов).
      */
     public String validatePan(String rawPan) {
         if (rawPan == null || rawPan.isBlank()) {
             throw new BadRequestException("PAN обязателен");
         }
-
-        // 1) Нормализация: убираем пробелы и дефисы
-        String pan = rawPan.replaceAll("[\\s-]", "");
-
-        // 2) Регулярка: только цифры, длина 13–19
-        if (!PAN_PATTERN.matcher(pan).matches()) {
-            throw new BadRequestException("PAN должен состоять из 13–19 цифр");
+        String pan = InputValidator.normalizePan(rawPan);
+        if (pan == null) {
+            throw new BadRequestException("PAN должен состоять из 13–19 цифр и проходить проверку Луна");
         }
-
         return pan;
     }
+
+    /** Возвращает код валюты в верхнем регистре. */
+    public String validateCurrency(String rawCurrency) {
+        String currency = InputValidator.normalizeCurrency(rawCurrency);
+        if (currency == null) {
+            throw new BadRequestException("Неизвестный код валюты ISO-4217: " + rawCurrency);
+        }
+        return currency;
+    }
 }
@@ -0,0 +1,80 @@
+package com.abrik.bank_cards.bank_cards.util;
+
+import com.abrik.bank_cards.bank_cards.repository.CardRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Локальная копия списка «горячих» карт (card.balance_stripes > 0), обновляется раз в refresh.
+ * Это только подсказка, по какой карте-получателю не брать row lock: устаревшее значение
+ * не нарушает корректность — зачисление в полосу проверяет признак карты в том же UPDATE.
+ */
+@Component
+public class HotCardRegistry {
+    private final CardRepository cardRepository;
+    private final long refreshMillis;
+    private final Clock clock = Clock.systemUTC();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    private volatile Map<UUID, Short> stripes = Map.of();
+    private volatile long loadedAt = Long.MIN_VALUE;
+
+    public HotCardRegistry(CardRepository cardRepository,
+                           @Value("${app.card.hot.refresh:10s}") Duration refresh) {
+        this.cardRepository = cardRepository;
+        this.refreshMillis = refresh.toMillis();
+    }
+
+    public boolean isHot(UUID cardId) {
+        return stripeCount(cardId) > 0;
+    }
+
+    /** Случайная полоса карты или -1, если карта не горячая. */
+    public short randomStripe(UUID cardId) {
+        int count = stripeCount(cardId);
+        return count > 0 ? (short) ThreadLocalRandom.current().nextInt(count) : -1;
+    }
+
+    public synchronized void put(UUID cardId, short stripeCount) {
+        Map<UUID, Short> copy = new HashMap<>(stripes);
+        if (stripeCount > 0) copy.put(cardId, stripeCount);
+        else copy.remove(cardId);
+        stripes = Map.copyOf(copy);
+    }
+
+    public void forget(UUID cardId) {
+        put(cardId, (short) 0);
+    }
+
+    private int stripeCount(UUID cardId) {
+        refreshIfStale();
+        Short count = stripes.get(cardId);
+        return count == null ? 0 : count;
+    }
+
+    private void refreshIfStale() {
+        if (clock.millis() - loadedAt < refreshMillis || !refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Map<UUID, Short> loaded = new HashMap<>();
+            for (CardRepository.HotCardView view : cardRepository.findHotCards()) {
+                loaded.put(view.getId(), view.getBalanceStripes());
+            }
+            synchronized (this) {
+                stripes = Map.copyOf(loaded);
+            }
+            loadedAt = clock.millis();
+        } finally {
+            refreshing.set(false);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.abrik.bank_cards.bank_cards.util;
+
+import java.util.BitSet;
+import java.util.Currency;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Проверки входных строк за один проход по символам, без регулярок и промежуточных строк.
+ * Проверки {@code is*} ничего не аллоцируют; {@link #normalizePan}, {@link #normalizeCurrency} и {@link #digitsOf}
+ * создают строку, только если вход надо менять, иначе возвращают сам вход.
+ * <p>
+ * Исключения бросают вызывающие (CardUtil, UserService, контроллеры) — здесь только ответ да/нет.
+ */
+public final class InputValidator {
+    public static final int PAN_MIN_DIGITS = 13;
+    public static final int PAN_MAX_DIGITS = 19;
+    public static final int EMAIL_MAX_LENGTH = 254;
+    public static final int IDEMPOTENCY_KEY_MAX_LENGTH = 64;
+
+    // коды ISO-4217 из JDK, индекс — код как число в системе счисления 26
+    private static final BitSet CURRENCIES = new BitSet(26 * 26 * 26);
+
+    static {
+        for (Currency currency : Currency.getAvailableCurrencies()) {
+            int index = currencyIndex(currency.getCurrencyCode());
+            if (index >= 0) CURRENCIES.set(index);
+        }
+    }
+
+    private InputValidator() {
+    }
+
+    /** PAN: 13–19 цифр (пробелы и дефисы допускаются) и контрольная сумма Луна. */
+    public static boolean isPan(CharSequence pan) {
+        if (pan == null) return false;
+        // длина заранее неизвестна, поэтому считаем обе суммы Луна: удваивая чётные и нечётные позиции слева
+        int digits = 0;
+        int sumEven = 0;
+        int sumOdd = 0;
+        for (int i = 0; i < pan.length(); i++) {
+            char c = pan.charAt(i);
+            if (isPanSeparator(c)) continue;
+            if (c < '0' || c > '9' || digits == PAN_MAX_DIGITS) return false;
+            int d = c - '0';
+            int doubled = d < 5 ? d * 2 : d * 2 - 9;
+            if ((digits & 1) == 0) {
+                sumEven += doubled;
+                sumOdd += d;
+            } else {
+                sumEven += d;
+                sumOdd += doubled;
+            }
+            digits++;
+        }
+        if (digits < PAN_MIN_DIGITS) return false;
+        // последняя цифра не удваивается: при нечётной длине удвоены нечётные позиции слева
+        return ((digits & 1) == 0 ? sumEven : sumOdd) % 10 == 0;
+    }
+
+    /** PAN без пробелов и дефисов; null — номер невалиден (см. {@link #isPan}). */
+    public static String normalizePan(String pan) {
+        return isPan(pan) ? stripPanSeparators(pan) : null;
+    }
+
+    /** Удаляет пробелы и дефисы, без проверки; вход без них возвращается как есть. */
+    public static String stripPanSeparators(String pan) {
+        int first = 0;
+        while (first < pan.length() && !isPanSeparator(pan.charAt(first))) first++;
+        if (first == pan.length()) return pan;
+
+        StringBuilder sb = new StringBuilder(pan.length() - 1);
+        sb.append(pan, 0, first);
+        for (int i = first + 1; i < pan.length(); i++) {
+            char c = pan.charAt(i);
+            if (!isPanSeparator(c)) sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /** Только цифры из строки; null — цифр нет. Строка из одних цифр возвращается как есть. */
+    public static String digitsOf(String s) {
+        if (s == null) return null;
+        int digits = 0;
+        for (int i = 0; i < s.length(); i++) {
+            if (isDigit(s.charAt(i))) digits++;
+        }
+        if (digits == 0) return null;
+        if (digits == s.length()) return s;
+
+        char[] out = new char[digits];
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (isDigit(c)) out[n++] = c;
+        }
+        return new String(out);
+    }
+
+    /** Код валюты ISO-4217 (три заглавные латинские буквы, известный JDK). */
+    public static boolean isCurrency(CharSequence code) {
+        int index = code == null ? -1 : currencyIndex(code);
+        return index >= 0 && CURRENCIES.get(index);
+    }
+
+    /** Код валюты в верхнем регистре ({@code usd} → {@code USD}); null — код неизвестен. */
+    public static String normalizeCurrency(String code) {
+        if (code == null || code.length() != 3) return null;
+        String upper = isCurrency(code) ? code : code.toUpperCase(Locale.ROOT);
+        return isCurrency(upper) ? upper : null;
+    }
+
+    /**
+     * Email в прежнем формате {@code local@label.rest}: local — {@code [A-Za-z0-9_.+-]+},
+     * label — {@code [A-Za-z0-9-]+}, rest — {@code [A-Za-z0-9.-]+}; не длиннее 254 символов.
+     */
+    public static boolean isEmail(CharSequence email) {
+        if (email == null || email.length() > EMAIL_MAX_LENGTH) return false;
+        int len = email.length();
+        int i = 0;
+        while (i < len && isEmailLocalChar(email.charAt(i))) i++;
+        if (i == 0 || i == len || email.charAt(i) != '@') return false;
+
+        int label = ++i;
+        while (i < len && isDomainChar(email.charAt(i))) i++;
+        if (i == label || i == len || email.charAt(i) != '.') return false;
+
+        int rest = ++i;
+        while (i < len && (isDomainChar(email.charAt(i)) || email.charAt(i) == '.')) i++;
+        return i > rest && i == len;
+    }
+
+    /** Ключ идемпотентности: 1–64 печатных ASCII-символа без пробелов. */
+    public static boolean isIdempotencyKey(CharSequence key) {
+        if (key == null || key.isEmpty() || key.length() > IDEMPOTENCY_KEY_MAX_LENGTH) return false;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c <= ' ' || c > '~') return false;
+        }
+        return true;
+    }
+
+    /**
+     * Пакетная проверка PAN для массового импорта: индексы невалидных номеров (пусто — все валидны).
+     * На весь пакет одна аллокация — результат.
+     */
+    public static BitSet invalidPans(List<? extends CharSequence> pans) {
+        BitSet invalid = new BitSet(pans.size());
+        for (int i = 0; i < pans.size(); i++) {
+            if (!isPan(pans.get(i))) invalid.set(i);
+        }
+        return invalid;
+    }
+
+    // те же символы, что \s и '-' в прежнем [\s-]
+    private static boolean isPanSeparator(char c) {
+        return c == ' ' || c == '-' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == 0x0B;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLatinLetterOrDigit(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || isDigit(c);
+    }
+
+    private static boolean isEmailLocalChar(char c) {
+        return isLatinLetterOrDigit(c) || c == '_' || c == '.' || c == '+' || c == '-';
+    }
+
+    private static boolean isDomainChar(char c) {
+        return isLatinLetterOrDigit(c) || c == '-';
+    }
+
+    private static int currencyIndex(CharSequence code) {
+        if (code.length() != 3) return -1;
+        int index = 0;
+        for (int i = 0; i < 3; i++) {
+            char c = code.charAt(i);
+            if (c < 'A' || c > 'Z') return -1;
+            index = index * 26 + (c - 'A');
+        }
+        return index;
+    }
+}
@@ -0,0 +1,114 @@
+package com.abrik.bank_cards.bank_cards.util;
+
+import com.abrik.bank_cards.bank_cards.dto.common.CountMode;
+import com.abrik.bank_cards.bank_cards.dto.common.PageResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Страницы без COUNT(*) на каждый запрос (count = ESTIMATE | NONE).
+ * Содержимое берётся как Slice (size + 1 строка для hasNext), а для ESTIMATE
+ * totalElements — COUNT по тем же фильтрам, закэшированный на {@code ttl}.
+ */
+@Component
+public class PageCounter {
+    // порядок вставки = порядок записи, поэтому просроченные записи всегда в начале
+    private final LinkedHashMap<String, Entry> counts = new LinkedHashMap<>();
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Clock clock;
+
+    @Autowired
+    public PageCounter(@Value("${app.page.count.cache-size:1000}") int maxSize,
+                       @Value("${app.page.count.ttl:30s}") Duration ttl) {
+        this(maxSize, ttl, Clock.systemUTC());
+    }
+
+    PageCounter(int maxSize, Duration ttl, Clock clock) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+    }
+
+    /**
+     * @param countKey ключ кэша: эндпоинт + значения фильтров (не пагинация)
+     * @param slice    запрос содержимого без COUNT
+     * @param count    точный COUNT по тем же фильтрам (ESTIMATE при промахе и страница за концом)
+     */
+    public <E, T> PageResponse<T> fetch(CountMode mode,
+                                        Pageable pageable,
+                                        String countKey,
+                                        Function<Pageable, Slice<E>> slice,
+                                        LongSupplier count,
+                                        Function<E, T> mapper) {
+        Slice<E> rows = slice.apply(pageable);
+        var content = rows.getContent().stream().map(mapper).toList();
+        if (mode == CountMode.NONE) {
+            return PageResponse.of(rows, content, CountMode.NONE, null);
+        }
+
+        long seen = pageable.isPaged() ? pageable.getOffset() + rows.getNumberOfElements() : rows.getNumberOfElements();
+        if (!rows.hasNext()) {
+            // последняя страница — итог известен точно и без COUNT; пустая страница за концом
+            // (offset > 0) итога не даёт — считаем по-настоящему
+            long total = rows.getNumberOfElements() > 0 || seen == 0 ? seen : count.getAsLong();
+            put(countKey, total);
+            return PageResponse.of(rows, content, CountMode.EXACT, total);
+        }
+        long estimate = Math.max(cached(countKey, count), seen + 1);
+        return PageResponse.of(rows, content, CountMode.ESTIMATE, estimate);
+    }
+
+    private long cached(String key, LongSupplier count) {
+        Long hit = get(key);
+        if (hit != null) {
+            return hit;
+        }
+        long total = count.getAsLong();
+        put(key, total);
+        return total;
+    }
+
+    private synchronized Long get(String key) {
+        Entry entry = counts.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt() <= clock.millis()) {
+            counts.remove(key);
+            return null;
+        }
+        return entry.total();
+    }
+
+    private synchronized void put(String key, long total) {
+        if (maxSize <= 0) {
+            return;
+        }
+        long now = clock.millis();
+        counts.remove(key);
+        counts.put(key, new Entry(total, now + ttlMillis));
+
+        Iterator<Map.Entry<String, Entry>> it = counts.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            if (counts.size() <= maxSize && eldest.getValue().expiresAt() > now) {
+                break;
+            }
+            it.remove();
+        }
+    }
+
+    private record Entry(long total, long expiresAt) {}
+}
@@ -1,61 +1,227 @@
 package com.abrik.bank_cards.bank_cards.util;
 
-import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
+/**
+ * Шифрование PAN.
+ * <p>
+ * Формат pan_ciphertext (bytea): {@code [0x01][версия ключа, 2 байта][IV, 12 байт][AES-GCM шифротекст + тег]},
+ * первые 3 байта — AAD. Ключи берутся из кольца {@code app.security.pan-keys} по версии,
+ * новые значения шифруются текущей версией.
+ * <p>
+ * Прежний формат (pan_encrypted: Base64 от AES/ECB ключом {@code app.security.pan-key}) только читается —
+ * пока {@link com.abrik.bank_cards.bank_cards.service.rekey.PanRekeyer} не перешифрует все строки.
+ * <p>
+ * Cipher переиспользуются через пул, а не ThreadLocal: запросы могут идти на виртуальных потоках.
+ * Для GCM init нужен на каждый вызов (новый IV), пул экономит только getInstance.
+ */
 @Component
 public class PanCryptoUtil {
-    @Value("${app.security.pan-key}")
-    private String secretBase64;
-
-    private SecretKeySpec keySpec;
-    private static final String ALGORITHM = "AES";
+    private static final String LEGACY_ALGORITHM = "AES";
+    private static final String ALGORITHM = "AES/GCM/NoPadding";
+    private static final byte FORMAT = 0x01;
+    private static final int HEADER_LENGTH = 3;
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
 
     /**
      * Разрешённые длины AES-ключа (в байтах).
      */
     private static final Set<Integer> ALLOWED_KEY_LENGTHS = Set.of(16, 24, 32);
 
-    @PostConstruct
-    public void init() {
-        byte[] decodedKey = Base64.getDecoder().decode(secretBase64);
-        int keyLen = decodedKey.length;
+    // сверх этого лишние Cipher после использования просто выбрасываются
+    private static final int POOL_SIZE = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
 
-        if (!ALLOWED_KEY_LENGTHS.contains(keyLen)) {
-            throw new IllegalArgumentException(
-                    "Invalid AES key length: " + keyLen
-                            + " bytes (allowed: " + ALLOWED_KEY_LENGTHS + ")"
-            );
+    private final SecretKeySpec legacyKey;
+    private final Map<Integer, SecretKeySpec> keyRing;
+    private final int currentVersion;
+    private final SecureRandom random = new SecureRandom();
+    private final BlockingQueue<Cipher> ciphers = new ArrayBlockingQueue<>(POOL_SIZE);
+    private final BlockingQueue<Cipher> legacyDecryptors = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    /**
+     * @param legacyKeyBase64 ключ прежнего формата (AES/ECB)
+     * @param keyRing         кольцо ключей: {@code 1:base64,2:base64}
+     * @param currentVersion  версия, которой шифруются новые значения
+     */
+    public PanCryptoUtil(@Value("${app.security.pan-key}") String legacyKeyBase64,
+                         @Value("${app.security.pan-keys}") String keyRing,
+                         @Value("${app.security.pan-key-version}") int currentVersion) {
+        this.legacyKey = new SecretKeySpec(decodeKey(legacyKeyBase64), LEGACY_ALGORITHM);
+        this.keyRing = parseKeyRing(keyRing);
+        if (!this.keyRing.containsKey(currentVersion)) {
+            throw new IllegalArgumentException("PAN key version " + currentVersion + " is not in app.security.pan-keys");
         }
+        this.currentVersion = currentVersion;
+    }
 
-        keySpec = new SecretKeySpec(decodedKey, ALGORITHM);
+    public int currentKeyVersion() {
+        return currentVersion;
+    }
+
+    /** Версия ключа конверта. */
+    public static int keyVersion(byte[] envelope) {
+        if (envelope.length < HEADER_LENGTH + IV_LENGTH || envelope[0] != FORMAT) {
+            throw new IllegalArgumentException("Unknown PAN ciphertext format");
+        }
+        return ((envelope[1] & 0xFF) << 8) | (envelope[2] & 0xFF);
     }
 
-    public String encrypt(String pan) {
+    /** true — значение в новом формате и под текущим ключом, перешифровывать не нужно. */
+    public boolean isCurrent(byte[] ciphertext) {
+        return ciphertext != null && keyVersion(ciphertext) == currentVersion;
+    }
+
+    public byte[] encrypt(String pan) {
+        return encrypt(pan.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public byte[] encrypt(byte[] pan) {
+        byte[] out = new byte[HEADER_LENGTH + IV_LENGTH + pan.length + TAG_BITS / 8];
+        out[0] = FORMAT;
+        out[1] = (byte) (currentVersion >>> 8);
+        out[2] = (byte) currentVersion;
+        byte[] iv = new byte[IV_LENGTH];
+        random.nextBytes(iv);
+        System.arraycopy(iv, 0, out, HEADER_LENGTH, IV_LENGTH);
+
+        Cipher cipher = borrow();
         try {
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.ENCRYPT_MODE, keySpec);
-            byte[] encrypted = cipher.doFinal(pan.getBytes());
-            return Base64.getEncoder().encodeToString(encrypted);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+            cipher.init(Cipher.ENCRYPT_MODE, keyRing.get(currentVersion), new GCMParameterSpec(TAG_BITS, iv));
+            cipher.updateAAD(out, 0, HEADER_LENGTH);
+            cipher.doFinal(pan, 0, pan.length, out, HEADER_LENGTH + IV_LENGTH);
+            ciphers.offer(cipher);
+            return out;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PAN encryption failed", e);
         }
     }
 
-    public String decrypt(String encryptedPan) {
+    public byte[] decrypt(byte[] envelope) {
+        SecretKeySpec key = key(keyVersion(envelope));
+        Cipher cipher = borrow();
         try {
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.DECRYPT_MODE, keySpec);
-            byte[] decoded = Base64.getDecoder().decode(encryptedPan);
-            return new String(cipher.doFinal(decoded));
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, envelope, HEADER_LENGTH, IV_LENGTH));
+            cipher.updateAAD(envelope, 0, HEADER_LENGTH);
+            byte[] result = cipher.doFinal(envelope, HEADER_LENGTH + IV_LENGTH, envelope.length - HEADER_LENGTH - IV_LENGTH);
+            ciphers.offer(cipher);
+            return result;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PAN decryption failed", e);
+        }
+    }
+
+    /**
+     * Расшифровка конверта без промежуточных массивов: читает in до limit, пишет в out
+     * (в out должно быть не меньше in.remaining() байт).
+     * @return число записанных байт
+     */
+    public int decrypt(ByteBuffer in, ByteBuffer out) {
+        byte[] header = new byte[HEADER_LENGTH + IV_LENGTH];
+        in.get(header);
+        SecretKeySpec key = key(keyVersion(header));
+        Cipher cipher = borrow();
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, header, HEADER_LENGTH, IV_LENGTH));
+            cipher.updateAAD(header, 0, HEADER_LENGTH);
+            int written = cipher.doFinal(in, out);
+            ciphers.offer(cipher);
+            return written;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PAN decryption failed", e);
+        }
+    }
+
+    /** Значение прежнего формата (Base64 от AES/ECB). */
+    public String decryptLegacy(String encryptedPan) {
+        Cipher cipher = legacyDecryptors.poll();
+        try {
+            if (cipher == null) {
+                cipher = Cipher.getInstance(LEGACY_ALGORITHM);
+                cipher.init(Cipher.DECRYPT_MODE, legacyKey);
+            }
+            // после doFinal ECB-Cipher возвращается в состояние init — повторная инициализация не нужна
+            byte[] result = cipher.doFinal(Base64.getDecoder().decode(encryptedPan));
+            legacyDecryptors.offer(cipher);
+            return new String(result, StandardCharsets.US_ASCII);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PAN decryption failed", e);
+        }
+    }
+
+    /** PAN карты из того столбца, что заполнен: pan_ciphertext, иначе pan_encrypted; null — нет ни того, ни другого. */
+    public String decryptPan(byte[] ciphertext, String legacyEncrypted) {
+        if (ciphertext != null) {
+            return new String(decrypt(ciphertext), StandardCharsets.US_ASCII);
+        }
+        return legacyEncrypted == null ? null : decryptLegacy(legacyEncrypted);
+    }
+
+    private SecretKeySpec key(int version) {
+        SecretKeySpec key = keyRing.get(version);
+        if (key == null) {
+            throw new IllegalStateException("PAN key version " + version + " is not configured");
+        }
+        return key;
+    }
+
+    // при ошибке Cipher в пул не возвращается
+    private Cipher borrow() {
+        Cipher cipher = ciphers.poll();
+        if (cipher != null) {
+            return cipher;
+        }
+        try {
+            return Cipher.getInstance(ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialize PAN cipher", e);
+        }
+    }
+
+    private static Map<Integer, SecretKeySpec> parseKeyRing(String keyRing) {
+        Map<Integer, SecretKeySpec> keys = new HashMap<>();
+        for (String entry : keyRing.split(",")) {
+            if (entry.isBlank()) continue;
+            int sep = entry.indexOf(':');
+            if (sep < 0) {
+                throw new IllegalArgumentException("PAN key ring entry must be <version>:<base64 key>");
+            }
+            int version = Integer.parseInt(entry.substring(0, sep).trim());
+            if (version < 1 || version > 0xFFFF) {
+                throw new IllegalArgumentException("PAN key version must be in 1..65535: " + version);
+            }
+            if (keys.put(version, new SecretKeySpec(decodeKey(entry.substring(sep + 1).trim()), LEGACY_ALGORITHM)) != null) {
+                throw new IllegalArgumentException("Duplicate PAN key version " + version);
+            }
+        }
+        return Map.copyOf(keys);
+    }
+
+    private static byte[] decodeKey(String base64) {
+        byte[] decodedKey = Base64.getDecoder().decode(base64);
+        int keyLen = decodedKey.length;
+
+        if (!ALLOWED_KEY_LENGTHS.contains(keyLen)) {
+            throw new IllegalArgumentException(
+                    "Invalid AES key length: " + keyLen
+                            + " bytes (allowed: " + ALLOWED_KEY_LENGTHS + ")"
+            );
         }
+        return decodedKey;
     }
 }
@@ -0,0 +1,60 @@
+package com.abrik.bank_cards.bank_cards.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Слепой индекс PAN: HMAC-SHA256 нормализованного номера отдельным ключом
+ * {@code app.security.pan-fingerprint-key}. Позволяет искать карту по PAN и ловить дубликаты
+ * без расшифровки; без ключа по отпечатку номер не подобрать.
+ * Смена ключа требует пересчёта всех pan_fingerprint.
+ */
+@Component
+public class PanFingerprintUtil {
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MIN_KEY_LENGTH = 32;
+    private static final int POOL_SIZE = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    private final SecretKeySpec key;
+    // Mac не потокобезопасен; после doFinal готов к следующему вызову с тем же ключом
+    private final BlockingQueue<Mac> macs = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    public PanFingerprintUtil(@Value("${app.security.pan-fingerprint-key}") String keyBase64) {
+        byte[] decodedKey = Base64.getDecoder().decode(keyBase64);
+        if (decodedKey.length < MIN_KEY_LENGTH) {
+            throw new IllegalArgumentException(
+                    "PAN fingerprint key must be at least " + MIN_KEY_LENGTH + " bytes, got " + decodedKey.length);
+        }
+        this.key = new SecretKeySpec(decodedKey, ALGORITHM);
+    }
+
+    /** Отпечаток PAN; пробелы и дефисы не влияют. */
+    public byte[] fingerprint(String pan) {
+        byte[] normalized = normalize(pan).getBytes(StandardCharsets.US_ASCII);
+        Mac mac = macs.poll();
+        try {
+            if (mac == null) {
+                mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+            }
+            byte[] result = mac.doFinal(normalized);
+            macs.offer(mac);
+            return result;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PAN fingerprint failed", e);
+        }
+    }
+
+    /** Та же нормализация, что в CardUtil.validatePan. */
+    static String normalize(String pan) {
+        return InputValidator.stripPanSeparators(pan);
+    }
+}
@@ -0,0 +1,127 @@
+package com.abrik.bank_cards.bank_cards.util;
+
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferResponse;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Идемпотентность переводов внутри процесса:
+ * 1) запросы с одинаковым (userId, Idempotency-Key), пришедшие одновременно,
+ *    ждут одно выполнение и получают его результат (или его исключение);
+ * 2) успешные результаты хранятся в ограниченном кэше с TTL и отдаются без обращения к БД.
+ * Кэш локален для инстанса — проверка по БД в {@code TransferService} остаётся для промахов.
+ */
+@Component
+public class TransferIdempotencyCache {
+    private final ConcurrentHashMap<Key, CompletableFuture<TransferResponse>> inFlight = new ConcurrentHashMap<>();
+    // порядок вставки = порядок записи, поэтому просроченные записи всегда в начале
+    private final LinkedHashMap<Key, Entry> completed = new LinkedHashMap<>();
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Clock clock;
+
+    @Autowired
+    public TransferIdempotencyCache(@Value("${app.transfer.idempotency.cache-size:10000}") int maxSize,
+                                    @Value("${app.transfer.idempotency.ttl:10m}") Duration ttl) {
+        this(maxSize, ttl, Clock.systemUTC());
+    }
+
+    TransferIdempotencyCache(int maxSize, Duration ttl, Clock clock) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+    }
+
+    public TransferResponse execute(Long userId, String idempotencyKey, Supplier<TransferResponse> action) {
+        Key key = new Key(userId, idempotencyKey);
+
+        TransferResponse cached = getCompleted(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        CompletableFuture<TransferResponse> own = new CompletableFuture<>();
+        CompletableFuture<TransferResponse> leader = inFlight.putIfAbsent(key, own);
+        if (leader != null) {
+            return await(leader);
+        }
+
+        try {
+            // результат мог появиться между getCompleted и putIfAbsent
+            TransferResponse result = getCompleted(key);
+            if (result == null) {
+                result = action.get();
+                putCompleted(key, result);
+            }
+            own.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    private static TransferResponse await(CompletableFuture<TransferResponse> leader) {
+        try {
+            return leader.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private synchronized TransferResponse getCompleted(Key key) {
+        Entry entry = completed.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt() <= clock.millis()) {
+            completed.remove(key);
+            return null;
+        }
+        return entry.response();
+    }
+
+    private synchronized void putCompleted(Key key, TransferResponse response) {
+        // PENDING ещё изменит статус — повтор должен читать его из БД
+        if (maxSize <= 0 || response == null || response.getStatus() == TransferStatus.PENDING) {
+            return;
+        }
+        long now = clock.millis();
+        completed.remove(key);
+        completed.put(key, new Entry(response, now + ttlMillis));
+
+        Iterator<Map.Entry<Key, Entry>> it = completed.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, Entry> eldest = it.next();
+            if (completed.size() <= maxSize && eldest.getValue().expiresAt() > now) {
+                break;
+            }
+            it.remove();
+        }
+    }
+
+    synchronized int size() {
+        return completed.size();
+    }
+
+    private record Key(Long userId, String idempotencyKey) {}
+
+    private record Entry(TransferResponse response, long expiresAt) {}
+}
@@ -1,8 +1,11 @@
 package com.abrik.bank_cards.bank_cards.util;
 
 import com.abrik.bank_cards.bank_cards.dto.card.CardStatus;
+import com.abrik.bank_cards.bank_cards.dto.common.CursorPage;
 import com.abrik.bank_cards.bank_cards.dto.transfer.Bounds;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferCursor;
 import com.abrik.bank_cards.bank_cards.dto.transfer.TransferResponse;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferSearchOrder;
 import com.abrik.bank_cards.bank_cards.entity.Card;
 import com.abrik.bank_cards.bank_cards.entity.Transfer;
 import com.abrik.bank_cards.bank_cards.exception.BadRequestException;
@@ -11,11 +14,19 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
 
 @Component
 public class TransferUtil {
+    public static final int CURSOR_MAX_SIZE = 200;
+    public static final int QUERY_MIN_LENGTH = 3;
+    public static final int QUERY_MAX_LENGTH = 200;
 
     public void ensureCardActive(Card c, String label) {
         if (c.getStatus() != CardStatus.ACTIVE)
@@ -32,6 +43,7 @@ public class TransferUtil {
                 t.getCurrency(),
                 t.getStatus(),
                 t.getMessage(),
+                t.getFailureReason(),
                 t.getCreatedAt()
         );
     }
@@ -55,4 +67,60 @@ public class TransferUtil {
         }
         return pageable;
     }
+
+    // короче трёх символов у pg_trgm нет ни одной триграммы — индекс не поможет
+    public String normalizeMessageQuery(String q) {
+        if (q == null || q.isBlank())
+            return null;
+        String trimmed = q.trim().toLowerCase(Locale.ROOT);
+        if (trimmed.length() < QUERY_MIN_LENGTH || trimmed.length() > QUERY_MAX_LENGTH)
+            throw new BadRequestException("q must be " + QUERY_MIN_LENGTH + ".." + QUERY_MAX_LENGTH + " characters");
+        return trimmed;
+    }
+
+    // relevance: порядок задаёт спецификация (orderByRelevance), sort из запроса отбрасывается
+    public Pageable searchPageable(Pageable pageable, String q, TransferSearchOrder order) {
+        if (order != TransferSearchOrder.RELEVANCE)
+            return ensureSort(pageable);
+        if (q == null)
+            throw new BadRequestException("order=relevance requires q");
+        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+    }
+
+    public int cursorPageSize(int size) {
+        if (size < 1)
+            throw new BadRequestException("size must be >= 1");
+        return Math.min(size, CURSOR_MAX_SIZE);
+    }
+
+    // курсор непрозрачен для клиента: base64url("<epochSecond>.<nano>:<id>"); null — первая страница
+    public TransferCursor decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank())
+            return null;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int dot = raw.indexOf('.');
+            int colon = raw.indexOf(':');
+            Instant createdAt = Instant.ofEpochSecond(
+                    Long.parseLong(raw.substring(0, dot)),
+                    Long.parseLong(raw.substring(dot + 1, colon)));
+            return new TransferCursor(createdAt, UUID.fromString(raw.substring(colon + 1)));
+        } catch (RuntimeException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+
+    public String encodeCursor(TransferResponse t) {
+        Instant ts = t.getCreatedAt();
+        String raw = ts.getEpochSecond() + "." + ts.getNano() + ":" + t.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** rows — выборка размером size + 1: лишняя строка означает, что есть следующая страница. */
+    public CursorPage<TransferResponse> toCursorPage(List<TransferResponse> rows, int size) {
+        boolean hasNext = rows.size() > size;
+        List<TransferResponse> page = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = hasNext ? encodeCursor(page.get(page.size() - 1)) : null;
+        return new CursorPage<>(page, size, nextCursor, hasNext);
+    }
 }
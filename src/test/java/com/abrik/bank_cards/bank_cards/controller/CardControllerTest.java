@@ -23,6 +23,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 class CardControllerTest extends IntegrationTestBase {
 
     @Autowired MockMvc mvc;
+    @Autowired JdbcTemplate jdbcTemplate;
     private final ObjectMapper om = new ObjectMapper();
 
     @Test
@@ -80,7 +81,7 @@ class CardControllerTest extends IntegrationTestBase {
                 .andExpect(jsonPath("$.content[0].id").value(cardId.toString()));
 
         // update PAN/expiry
-        String newPan = "5212345678909999";
+        String newPan = "5212345678909997";
         short newMonth = 10;
         short newYear = 2031;
         String updateBody = """
@@ -132,7 +133,7 @@ class CardControllerTest extends IntegrationTestBase {
         String confirmPassword = "Str0ng!Pass";
         String jwt = registerAndGetJwt(username, fullName, email, password, confirmPassword);
 
-        String invalidPan = "123456789012"; // 12 цифр — должно упасть по @Pattern \\d{13,19}
+        String invalidPan = "123456789012"; // 12 цифр — отклоняет CardUtil.validatePan
         String body = """
             {
               "pan":"%s",
@@ -151,6 +152,39 @@ class CardControllerTest extends IntegrationTestBase {
                 .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
     }
 
+    @Test
+    @DisplayName("PAN с пробелами и дефисами и валюта в нижнем регистре → 201, в БД нормализованные значения")
+    void createCard_normalizesPanAndCurrency() throws Exception {
+        String username = "u_" + UUID.randomUUID().toString().substring(0, 8);
+        String jwt = registerAndGetJwt(username, username, username + "@test.com", "Str0ng!Pass", "Str0ng!Pass");
+
+        String body = """
+            { "pan":"5212 3456-7890 1234", "expiryMonth":9, "expiryYear":2030, "currency":"usd", "balance":0 }
+            """;
+        String resp = mvc.perform(post("/api/cards")
+                        .header("Authorization", "Bearer " + jwt)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.currency").value("USD"))
+                .andExpect(jsonPath("$.panDecrypted").value("5212345678901234"))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        UUID cardId = UUID.fromString(om.readTree(resp).path("id").asText());
+
+        var stored = jdbcTemplate.queryForMap("select last4, currency from card where id = ?", cardId);
+        assertThat(stored.get("last4")).isEqualTo("1234");
+        assertThat(stored.get("currency")).isEqualTo("USD");
+
+        // отпечаток посчитан по нормализованному номеру: тот же PAN без разделителей — дубликат
+        mvc.perform(post("/api/cards")
+                        .header("Authorization", "Bearer " + jwt)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                    { "pan":"5212345678901234","expiryMonth":9,"expiryYear":2030,"currency":"USD","balance":0 }
+                """))
+                .andExpect(status().isConflict());
+    }
+
     @Test
     @DisplayName("Доступ без токена к защищённым эндпоинтам → 401")
     void securedEndpoints_requireJwt() throws Exception {
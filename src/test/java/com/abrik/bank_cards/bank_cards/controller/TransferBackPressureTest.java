@@ -0,0 +1,92 @@
+package com.abrik.bank_cards.bank_cards.controller;
+
+import com.abrik.bank_cards.bank_cards.IntegrationTestBase;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+@DisplayName("CardBackPressure IT")
+@TestPropertySource(properties = {
+        "app.transfer.mode=GUARDED",
+        "app.transfer.card-back-pressure.slots=4",
+        "app.transfer.card-back-pressure.timeout=10s"
+})
+// без тестовой транзакции: переводы из разных потоков должны реально конкурировать за строки
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TransferBackPressureTest extends IntegrationTestBase {
+
+    @Autowired MockMvc mvc;
+    @Autowired JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("GUARDED-переводы и пакеты по одним картам при включённом back-pressure не дают deadlock")
+    void guardedAndBatch_doNotDeadlock() throws Exception {
+        String username = "u_" + UUID.randomUUID().toString().substring(0, 8);
+        String jwt = registerAndGetJwt(username, username, username + "@test.com", "Str0ng!Pass", "Str0ng!Pass");
+        UUID a = createCardAndGetId(jwt, randomPan(), (short) 9, (short) 2030, "USD", new BigDecimal("1000.00"));
+        UUID b = createCardAndGetId(jwt, randomPan(), (short) 9, (short) 2030, "USD", new BigDecimal("1000.00"));
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Integer> statuses = new ArrayList<>();
+        try {
+            List<Callable<Integer>> tasks = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                boolean forward = i % 2 == 0;
+                if (i % 4 < 2) {
+                    tasks.add(() -> send(jwt, "/api/transfers", item(forward ? a : b, forward ? b : a)));
+                } else {
+                    tasks.add(() -> send(jwt, "/api/transfers/batch",
+                            "{\"items\":[" + item(a, b) + "," + item(b, a) + "]}"));
+                }
+            }
+            for (Future<Integer> f : pool.invokeAll(tasks, 60, TimeUnit.SECONDS)) {
+                statuses.add(f.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(statuses).allMatch(s -> s == 200 || s == 201);
+        BigDecimal total = jdbcTemplate.queryForObject(
+                "select sum(balance) from card where id in (?, ?)", BigDecimal.class, a, b);
+        assertThat(total).isEqualByComparingTo("2000.00");
+    }
+
+    private int send(String jwt, String path, String body) throws Exception {
+        return mvc.perform(post(path)
+                        .header("Authorization", "Bearer " + jwt)
+                        .header("Idempotency-Key", UUID.randomUUID().toString())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andReturn().getResponse().getStatus();
+    }
+
+    private static String item(UUID from, UUID to) {
+        return """
+            {"fromCardId":"%s","toCardId":"%s","amount":1.00,"currency":"USD"}
+            """.formatted(from, to).trim();
+    }
+
+    private static String randomPan() {
+        return "52" + String.format("%014d", ThreadLocalRandom.current().nextLong(100_000_000_000_000L));
+    }
+}
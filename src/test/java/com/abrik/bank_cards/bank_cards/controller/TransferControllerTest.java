@@ -12,6 +12,7 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.web.servlet.MockMvc;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -23,6 +24,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 class TransferControllerTest extends IntegrationTestBase {
 
     @Autowired MockMvc mvc;
+    @Autowired JdbcTemplate jdbcTemplate;
     private final ObjectMapper om = new ObjectMapper();
 
     @Test
@@ -37,7 +39,7 @@ class TransferControllerTest extends IntegrationTestBase {
         String jwt = registerAndGetJwt(username, fullName, email, password, confirmPassword);
 
         UUID fromCard = createCardAndGetId(jwt, "5212345678901234", (short) 9, (short) 2030, "USD", new BigDecimal("500.00"));
-        UUID toCard   = createCardAndGetId(jwt, "5212345678909999", (short)10, (short) 2031, "USD", new BigDecimal("10.00"));
+        UUID toCard   = createCardAndGetId(jwt, "5212345678909997", (short)10, (short) 2031, "USD", new BigDecimal("10.00"));
 
         BigDecimal amount = new BigDecimal("100.00");
         String currency = "USD";
@@ -106,7 +108,7 @@ class TransferControllerTest extends IntegrationTestBase {
         String jwt = registerAndGetJwt(username, fullName, email, password, confirmPassword);
 
         UUID fromCard = createCardAndGetId(jwt, "5212345678901234", (short) 9, (short) 2030, "USD", new BigDecimal("500.00"));
-        UUID toCard   = createCardAndGetId(jwt, "5212345678909999", (short)10, (short) 2031, "USD", new BigDecimal("10.00"));
+        UUID toCard   = createCardAndGetId(jwt, "5212345678909997", (short)10, (short) 2031, "USD", new BigDecimal("10.00"));
 
         String req = """
             {
@@ -145,6 +147,19 @@ class TransferControllerTest extends IntegrationTestBase {
                 .andExpect(jsonPath("$.content[0].fromCardId").value(fromCard.toString()))
                 .andExpect(jsonPath("$.pageable.pageNumber").value(0))
                 .andExpect(jsonPath("$.pageable.pageSize").value(10));
+
+        // count задан явно — ответ в формате PageResponse
+        mvc.perform(get("/api/transfers")
+                        .header("Authorization", "Bearer " + jwt)
+                        .param("cardId", fromCard.toString())
+                        .param("count", "none")
+                        .param("page", "0")
+                        .param("size", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.page").value(0))
+                .andExpect(jsonPath("$.size").value(10))
+                .andExpect(jsonPath("$.countMode").value("NONE"))
+                .andExpect(jsonPath("$.totalElements").doesNotExist());
     }
 
     @Test
@@ -158,7 +173,7 @@ class TransferControllerTest extends IntegrationTestBase {
         String jwt = registerAndGetJwt(username, fullName, email, password, confirmPassword);
 
         UUID fromCard = createCardAndGetId(jwt, "5212345678901234", (short) 9, (short) 2030, "USD", new BigDecimal("500.00"));
-        UUID toCard   = createCardAndGetId(jwt, "5212345678909999", (short)10, (short) 2031, "USD", new BigDecimal("10.00"));
+        UUID toCard   = createCardAndGetId(jwt, "5212345678909997", (short)10, (short) 2031, "USD", new BigDecimal("10.00"));
 
         String badReq = """
             {
@@ -179,6 +194,57 @@ class TransferControllerTest extends IntegrationTestBase {
         // при желании проверь поля error-ответа, если у тебя единый формат
     }
 
+    @Test
+    @DisplayName("POST /api/transfers — валюта в нижнем регистре приводится к коду карты и сохраняется в верхнем")
+    void createTransfer_lowercaseCurrency() throws Exception {
+        String username = "u_" + UUID.randomUUID().toString().substring(0, 8);
+        String jwt = registerAndGetJwt(username, username, username + "@test.com", "Str0ng!Pass", "Str0ng!Pass");
+
+        UUID fromCard = createCardAndGetId(jwt, "5212345678901234", (short) 9, (short) 2030, "USD", new BigDecimal("500.00"));
+        UUID toCard   = createCardAndGetId(jwt, "5212345678909997", (short)10, (short) 2031, "USD", new BigDecimal("10.00"));
+
+        String req = """
+            { "fromCardId":"%s", "toCardId":"%s", "amount":25.00, "currency":"usd" }
+            """.formatted(fromCard, toCard);
+
+        String resp = mvc.perform(post("/api/transfers")
+                        .header("Authorization", "Bearer " + jwt)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(req))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.currency").value("USD"))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        UUID transferId = UUID.fromString(om.readTree(resp).path("id").asText());
+
+        assertThat(jdbcTemplate.queryForObject("select currency from transfer where id = ?", String.class, transferId))
+                .isEqualTo("USD");
+
+        mvc.perform(post("/api/transfers")
+                        .header("Authorization", "Bearer " + jwt)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(req.replace("usd", "qqq")))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("GET /api/transfers/export — потоковый ответ проходит async-диспетчеризацию без повторной авторизации")
+    void export_streamsAfterAsyncDispatch() throws Exception {
+        String username = "u_" + UUID.randomUUID().toString().substring(0, 8);
+        String jwt = registerAndGetJwt(username, username, username + "@test.com", "Str0ng!Pass", "Str0ng!Pass");
+
+        var started = mvc.perform(get("/api/transfers/export")
+                        .header("Authorization", "Bearer " + jwt))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        var res = mvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", Matchers.containsString("transfers.csv")))
+                .andReturn();
+        assertThat(res.getResponse().getContentAsString(StandardCharsets.UTF_8))
+                .startsWith("id,userId,fromCardId,toCardId,amount,currency,status,message,failureReason,createdAt");
+    }
+
     @Test
     @DisplayName("Без токена доступ к /api/transfers запрещён → 401")
     void securedEndpoints_requireJwt() throws Exception {
@@ -0,0 +1,53 @@
+package com.abrik.bank_cards.bank_cards.exception;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.ResponseEntity;
+
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GlobalExceptionHandlerTest {
+
+    private final GlobalExceptionHandler handler = new GlobalExceptionHandler();
+
+    private static DataIntegrityViolationException hibernate(String constraint) {
+        return new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("could not execute statement", new SQLException("duplicate"), constraint));
+    }
+
+    @Test
+    @DisplayName("гонка Idempotency-Key → 409 с повтором, дубликат PAN → 409 «уже зарегистрирована»")
+    void knownConstraints_conflict() {
+        ResponseEntity<AppError> idem = handler.handleDataIntegrity(hibernate("uq_transfer_user_idempotency"));
+        assertThat(idem.getStatusCode().value()).isEqualTo(409);
+        assertThat(idem.getBody().getMessage()).contains("retry");
+
+        ResponseEntity<AppError> pan = handler.handleDataIntegrity(hibernate("uq_card_pan_fingerprint"));
+        assertThat(pan.getStatusCode().value()).isEqualTo(409);
+        assertThat(pan.getBody().getMessage()).contains("already registered");
+    }
+
+    @Test
+    @DisplayName("путь JdbcTemplate: имя ограничения берётся из текста ошибки Postgres")
+    void jdbcPath_constraintFromMessage() {
+        var ex = new DuplicateKeyException("PreparedStatementCallback",
+                new SQLException("ERROR: duplicate key value violates unique constraint \"uq_card_pan_fingerprint\""));
+
+        assertThat(GlobalExceptionHandler.constraintName(ex)).isEqualTo("uq_card_pan_fingerprint");
+        assertThat(handler.handleDataIntegrity(ex).getStatusCode().value()).isEqualTo(409);
+    }
+
+    @Test
+    @DisplayName("прочие ограничения → 400, без имени ограничения → 500")
+    void otherViolations_notRetry() {
+        assertThat(handler.handleDataIntegrity(hibernate("chk_card_pan_present")).getStatusCode().value())
+                .isEqualTo(400);
+        assertThat(handler.handleDataIntegrity(new DataIntegrityViolationException("value too long"))
+                .getStatusCode().value()).isEqualTo(500);
+    }
+}
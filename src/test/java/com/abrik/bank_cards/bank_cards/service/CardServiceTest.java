@@ -1,20 +1,27 @@
 package com.abrik.bank_cards.bank_cards.service;
 
 import com.abrik.bank_cards.bank_cards.dto.card.*;
+import com.abrik.bank_cards.bank_cards.dto.common.CountMode;
 import com.abrik.bank_cards.bank_cards.dto.common.PageResponse;
 import com.abrik.bank_cards.bank_cards.entity.Card;
 import com.abrik.bank_cards.bank_cards.exception.BadRequestException;
+import com.abrik.bank_cards.bank_cards.exception.ConflictException;
 import com.abrik.bank_cards.bank_cards.exception.NotFoundException;
 import com.abrik.bank_cards.bank_cards.repository.CardRepository;
+import com.abrik.bank_cards.bank_cards.service.audit.PanRevealed;
+import com.abrik.bank_cards.bank_cards.service.outbox.OutboxService;
 import com.abrik.bank_cards.bank_cards.service.user.CardService;
 import com.abrik.bank_cards.bank_cards.util.CardUtil;
 import com.abrik.bank_cards.bank_cards.util.PanCryptoUtil;
+import com.abrik.bank_cards.bank_cards.util.PanFingerprintUtil;
+import com.abrik.bank_cards.bank_cards.service.user.CardBalanceStripeService;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.*;
 
 import java.math.BigDecimal;
@@ -32,6 +39,10 @@ class CardServiceTest {
     @Mock private CardRepository cardRepository;
     @Mock private CardUtil cardUtil;
     @Mock private PanCryptoUtil panCryptoUtil;
+    @Mock private PanFingerprintUtil panFingerprintUtil;
+    @Mock private OutboxService outboxService;
+    @Mock private ApplicationEventPublisher events;
+    @Mock private CardBalanceStripeService stripeService;
 
     @InjectMocks private CardService cardService;
 
@@ -54,18 +65,23 @@ class CardServiceTest {
      // createCard 
 
     @Test
-    @DisplayName("createCard: валидирует, шифрует PAN, сохраняет и маппит в CardResponse")
+    @DisplayName("createCard: валидирует, шифрует нормализованный PAN, валюта в верхнем регистре, сохраняет и маппит в CardResponse")
     void createCard_success() {
         Long userId = 7L;
         CreateCardRequest req = new CreateCardRequest();
         req.setUserId(userId);
-        req.setPan("5212345678901234");
+        req.setPan("5212 3456-7890 1234");
         req.setExpiryMonth((short) 9);
         req.setExpiryYear((short) 2030);
-        req.setCurrency("USD");
+        req.setCurrency("usd");
         req.setBalance(new BigDecimal("123.45"));
 
-        when(panCryptoUtil.encrypt("5212345678901234")).thenReturn("ENCRYPTED");
+        byte[] encrypted = {1, 0, 1, 42};
+        byte[] fingerprint = {9, 9, 9};
+        when(cardUtil.validatePan("5212 3456-7890 1234")).thenReturn("5212345678901234");
+        when(cardUtil.validateCurrency("usd")).thenReturn("USD");
+        when(panCryptoUtil.encrypt("5212345678901234")).thenReturn(encrypted);
+        when(panFingerprintUtil.fingerprint("5212345678901234")).thenReturn(fingerprint);
 
         ArgumentCaptor<Card> saveCaptor = ArgumentCaptor.forClass(Card.class);
         when(cardRepository.save(any(Card.class))).thenAnswer(inv -> inv.getArgument(0));
@@ -83,7 +99,10 @@ class CardServiceTest {
         Card saved = saveCaptor.getValue();
 
         assertThat(saved.getUserId()).isEqualTo(userId);
-        assertThat(saved.getPanEncrypted()).isEqualTo("ENCRYPTED");
+        assertThat(saved.getPanCiphertext()).isSameAs(encrypted);
+        assertThat(saved.getPanEncrypted()).isNull();
+        assertThat(saved.getPanFingerprint()).isSameAs(fingerprint);
+        verify(cardRepository).existsByPanFingerprint(fingerprint);
         assertThat(saved.getLast4()).isEqualTo("1234");
         assertThat(saved.getExpiryMonth()).isEqualTo((short) 9);
         assertThat(saved.getExpiryYear()).isEqualTo((short) 2030);
@@ -96,7 +115,8 @@ class CardServiceTest {
 
         // Валидации вызваны
         verify(cardUtil).validateExpiry((short) 9, (short) 2030);
-        verify(cardUtil).validatePan("5212345678901234");
+        verify(cardUtil).validatePan("5212 3456-7890 1234");
+        verify(cardUtil).validateCurrency("usd");
         verify(panCryptoUtil).encrypt("5212345678901234");
 
         // Маппинг в ответ — через util
@@ -106,6 +126,23 @@ class CardServiceTest {
         assertThat(resp.getStatus()).isEqualTo(CardStatus.ACTIVE);
     }
 
+    @Test
+    @DisplayName("createCard: карта с таким PAN уже есть (по pan_fingerprint) → 409, ничего не шифруется и не сохраняется")
+    void createCard_duplicatePan() {
+        CreateCardRequest req = new CreateCardRequest();
+        req.setPan("5212345678901234");
+        req.setExpiryMonth((short) 9);
+        req.setExpiryYear((short) 2030);
+        byte[] fingerprint = {9, 9, 9};
+        when(cardUtil.validatePan("5212345678901234")).thenReturn("5212345678901234");
+        when(panFingerprintUtil.fingerprint("5212345678901234")).thenReturn(fingerprint);
+        when(cardRepository.existsByPanFingerprint(fingerprint)).thenReturn(true);
+
+        assertThrows(ConflictException.class, () -> cardService.createCard(7L, req));
+        verifyNoInteractions(panCryptoUtil);
+        verify(cardRepository, never()).save(any());
+    }
+
      // listMyCards / findCards 
 
     @Test
@@ -116,7 +153,10 @@ class CardServiceTest {
         String search = " my card **** 1234 ";
 
         Pageable pageable = PageRequest.of(0, 10, Sort.by("createdAt").descending());
-        Page<Card> page = new PageImpl<>(List.of(cardWithStatus(userId, CardStatus.ACTIVE)));
+        Instant now = Instant.now();
+        CardSummary row = new CardSummary(UUID.randomUUID(), userId, "1234", null, new byte[]{1}, (short) 12, (short) 2030,
+                CardStatus.ACTIVE, new BigDecimal("100.00"), BigDecimal.ZERO, "USD", null, now, now);
+        Page<CardSummary> page = new PageImpl<>(List.of(row));
 
         // Поведение утилит поиска
         when(cardUtil.normalizeQuery(search)).thenReturn("my card");
@@ -147,7 +187,7 @@ class CardServiceTest {
         when(cardUtil.extractDigits(null)).thenReturn(null);
         when(cardUtil.isBlank(null)).thenReturn(true);
 
-        Page<Card> page = Page.empty(pageable);
+        Page<CardSummary> page = Page.empty(pageable);
         when(cardRepository.search(eq(userId), isNull(), isNull(), isNull(), eq(pageable))).thenReturn(page);
 
         when(cardUtil.toCardPageResponse(page)).thenReturn(new PageResponse<>());
@@ -157,6 +197,64 @@ class CardServiceTest {
         verify(cardRepository).search(userId, null, null, null, pageable);
     }
 
+    @Test
+    @DisplayName("listMyCards: pan=masked передаётся в util, PAN не расшифровывается")
+    void listMyCards_maskedMode() {
+        Long userId = 5L;
+        Pageable pageable = PageRequest.of(0, 5);
+        when(cardUtil.isBlank(null)).thenReturn(true);
+        Page<CardSummary> page = Page.empty(pageable);
+        when(cardRepository.search(eq(userId), isNull(), isNull(), isNull(), eq(pageable))).thenReturn(page);
+        PageResponse<CardResponse> expected = new PageResponse<>();
+        when(cardUtil.toCardPageResponse(page, PanMode.MASKED)).thenReturn(expected);
+
+        PageResponse<CardResponse> resp = cardService.listMyCards(userId, null, null, pageable, CountMode.EXACT, PanMode.MASKED);
+
+        assertThat(resp).isSameAs(expected);
+        verifyNoInteractions(panCryptoUtil);
+    }
+
+     // revealPans 
+
+    private static CardRepository.PanView panView(UUID id, String enc) {
+        // enc — прежний формат (pan_encrypted), pan_ciphertext ещё не заполнен
+        return new CardRepository.PanView() {
+            public UUID getId() { return id; }
+            public String getPanEncrypted() { return enc; }
+            public byte[] getPanCiphertext() { return null; }
+        };
+    }
+
+    @Test
+    @DisplayName("revealPans: один запрос к БД, порядок как в запросе, дубликаты схлопываются, событие аудита")
+    void revealPans_success() {
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        when(cardRepository.findPans(List.of(b, a), 7L)).thenReturn(List.of(panView(a, "ENC_A"), panView(b, "ENC_B")));
+        when(panCryptoUtil.decryptPan(null, "ENC_A")).thenReturn("4000000000000001");
+        when(panCryptoUtil.decryptPan(null, "ENC_B")).thenReturn("4000000000000002");
+
+        List<RevealedPanResponse> resp = cardService.revealPans(7L, List.of(b, a, b));
+
+        assertThat(resp).extracting(RevealedPanResponse::getCardId).containsExactly(b, a);
+        assertThat(resp).extracting(RevealedPanResponse::getPan).containsExactly("4000000000000002", "4000000000000001");
+        ArgumentCaptor<PanRevealed> event = ArgumentCaptor.forClass(PanRevealed.class);
+        verify(events).publishEvent(event.capture());
+        assertThat(event.getValue().userId()).isEqualTo(7L);
+        assertThat(event.getValue().cardIds()).containsExactly(b, a);
+    }
+
+    @Test
+    @DisplayName("revealPans: чужая/несуществующая карта в наборе → NotFound, ничего не расшифровано")
+    void revealPans_foreignCard() {
+        UUID own = UUID.randomUUID();
+        UUID foreign = UUID.randomUUID();
+        when(cardRepository.findPans(List.of(own, foreign), 7L)).thenReturn(List.of(panView(own, "ENC")));
+
+        assertThrows(NotFoundException.class, () -> cardService.revealPans(7L, List.of(own, foreign)));
+        verifyNoInteractions(panCryptoUtil, events);
+    }
+
      // requestBlock 
 
     @Nested
@@ -173,8 +271,9 @@ class CardServiceTest {
 
             StatusResponse resp = cardService.requestBlock(userId, c.getId());
 
-            // Сохраняли карту при первом запросе
+            // Сохраняли карту при первом запросе, событие ушло в outbox
             verify(cardRepository).save(any(Card.class));
+            verify(outboxService).record(eq(OutboxService.CARD), eq(c.getId()), eq("CARD_BLOCK_REQUESTED"), eq(userId), any());
 
             assertThat(resp.getCardId()).isEqualTo(c.getId());
             assertThat(resp.getStatus()).isEqualTo(CardStatus.ACTIVE);
@@ -197,6 +296,7 @@ class CardServiceTest {
             StatusResponse resp = cardService.requestBlock(userId, c.getId());
 
             verify(cardRepository, never()).save(any(Card.class));
+            verifyNoInteractions(outboxService);
             assertThat(resp.getRequestedBlockAt()).isEqualTo(c.getRequestedBlockAt());
         }
 
@@ -250,7 +350,10 @@ class CardServiceTest {
 
         assertThat(resp).isSameAs(expected);
         verify(cardRepository).findByIdAndUserId(c.getId(), userId);
-        verify(cardUtil).toResponse(c);
+        // сумма полос читается явно, до маппинга в ответ
+        InOrder order = inOrder(stripeService, cardUtil);
+        order.verify(stripeService).loadStripedBalance(c);
+        order.verify(cardUtil).toResponse(c);
     }
 
     @Test
@@ -288,12 +391,14 @@ class CardServiceTest {
         Instant oldUpdatedAt = existing.getUpdatedAt();
 
         UpdateCardRequest req = new UpdateCardRequest();
-        req.setPan("5212345678909999");
+        req.setPan("5212-3456-7890-9997");
         req.setExpiryMonth((short) 10);
         req.setExpiryYear((short) 2031);
 
         when(cardRepository.findByIdAndUserId(existing.getId(), userId)).thenReturn(Optional.of(existing));
-        when(panCryptoUtil.encrypt("5212345678909999")).thenReturn("NEW_ENC");
+        when(cardUtil.validatePan("5212-3456-7890-9997")).thenReturn("5212345678909997");
+        byte[] newCiphertext = {1, 0, 1, 7};
+        when(panCryptoUtil.encrypt("5212345678909997")).thenReturn(newCiphertext);
         when(cardRepository.save(any(Card.class))).thenAnswer(inv -> inv.getArgument(0));
 
         CardResponse expected = new CardResponse();
@@ -308,19 +413,40 @@ class CardServiceTest {
         verify(cardRepository).save(captor.capture());
         Card saved = captor.getValue();
 
-        assertThat(saved.getPanEncrypted()).isEqualTo("NEW_ENC");
-        assertThat(saved.getLast4()).isEqualTo("9999");
+        assertThat(saved.getPanCiphertext()).isSameAs(newCiphertext);
+        assertThat(saved.getPanEncrypted()).isNull();
+        assertThat(saved.getLast4()).isEqualTo("9997");
         assertThat(saved.getExpiryMonth()).isEqualTo((short) 10);
         assertThat(saved.getExpiryYear()).isEqualTo((short) 2031);
         assertThat(saved.getUpdatedAt()).isNotNull();
         assertThat(saved.getUpdatedAt()).isNotEqualTo(oldUpdatedAt);
 
+        verify(cardUtil).validatePan("5212-3456-7890-9997");
         verify(cardUtil).toResponse(saved);
         assertThat(resp.getId()).isEqualTo(existing.getId());
         assertThat(resp.getExpiryMonth()).isEqualTo((short) 10);
         assertThat(resp.getExpiryYear()).isEqualTo((short) 2031);
     }
 
+    @Test
+    @DisplayName("updateMyCard: новый PAN уже принадлежит другой карте → 409; своя карта в проверке не учитывается")
+    void updateMyCard_duplicatePan() {
+        Long userId = 41L;
+        Card existing = cardWithStatus(userId, CardStatus.ACTIVE);
+        UpdateCardRequest req = new UpdateCardRequest();
+        req.setPan("5212345678909997");
+        req.setExpiryMonth((short) 10);
+        req.setExpiryYear((short) 2031);
+        byte[] fingerprint = {7, 7};
+        when(cardRepository.findByIdAndUserId(existing.getId(), userId)).thenReturn(Optional.of(existing));
+        when(cardUtil.validatePan("5212345678909997")).thenReturn("5212345678909997");
+        when(panFingerprintUtil.fingerprint("5212345678909997")).thenReturn(fingerprint);
+        when(cardRepository.existsByPanFingerprintAndIdNot(fingerprint, existing.getId())).thenReturn(true);
+
+        assertThrows(ConflictException.class, () -> cardService.updateMyCard(userId, existing.getId(), req));
+        verify(cardRepository, never()).save(any());
+    }
+
     @Test
     @DisplayName("updateMyCard: BLOCKED → BadRequestException")
     void updateMyCard_blocked() {
@@ -0,0 +1,141 @@
+package com.abrik.bank_cards.bank_cards.service;
+
+import com.abrik.bank_cards.bank_cards.dto.ledger.BalanceAtResponse;
+import com.abrik.bank_cards.bank_cards.dto.ledger.CardStatsResponse;
+import com.abrik.bank_cards.bank_cards.entity.Card;
+import com.abrik.bank_cards.bank_cards.entity.LedgerEntry;
+import com.abrik.bank_cards.bank_cards.exception.BadRequestException;
+import com.abrik.bank_cards.bank_cards.exception.NotFoundException;
+import com.abrik.bank_cards.bank_cards.repository.CardDailyStatsRepository;
+import com.abrik.bank_cards.bank_cards.repository.CardRepository;
+import com.abrik.bank_cards.bank_cards.repository.LedgerEntryRepository;
+import com.abrik.bank_cards.bank_cards.service.user.LedgerService;
+import com.abrik.bank_cards.bank_cards.util.TransferUtil;
+import com.abrik.bank_cards.bank_cards.service.user.CardBalanceStripeService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LedgerServiceTest {
+
+    @Mock CardRepository cardRepository;
+    @Mock LedgerEntryRepository ledgerEntryRepository;
+    @Mock CardDailyStatsRepository cardDailyStatsRepository;
+    @Mock TransferUtil transferUtil;
+    @Mock CardBalanceStripeService stripeService;
+
+    @InjectMocks
+    LedgerService ledgerService;
+
+    private static final Instant AT = Instant.parse("2025-03-01T00:00:00Z");
+
+    private static Card card(UUID id, Long userId, String balance) {
+        Card c = new Card();
+        c.setId(id);
+        c.setUserId(userId);
+        c.setCurrency("USD");
+        c.setBalance(new BigDecimal(balance));
+        return c;
+    }
+
+    @Test
+    @DisplayName("balanceAt: берётся balance_after последней проводки не позже T, без суммирования истории")
+    void balanceAt_usesLastEntry() {
+        UUID cardId = UUID.randomUUID();
+        when(cardRepository.findByIdAndUserId(cardId, 1L)).thenReturn(Optional.of(card(cardId, 1L, "500.00")));
+        LedgerEntry last = new LedgerEntry();
+        last.setBalanceAfter(new BigDecimal("120.00"));
+        when(ledgerEntryRepository.findFirstByCardIdAndCreatedAtLessThanEqualOrderByCreatedAtDescIdDesc(cardId, AT))
+                .thenReturn(Optional.of(last));
+
+        BalanceAtResponse resp = ledgerService.balanceAt(1L, cardId, AT);
+
+        assertThat(resp.getBalance()).isEqualByComparingTo("120.00");
+        verify(ledgerEntryRepository, never()).sumSignedAfter(any(), any());
+    }
+
+    @Test
+    @DisplayName("balanceAt: balance_after не зафиксирован (горячая карта) → текущий баланс минус движение после T")
+    void balanceAt_fallsBackToCurrentMinusLaterMovement() {
+        UUID cardId = UUID.randomUUID();
+        Card hot = card(cardId, 1L, "300.00");
+        hot.setStripedBalance(new BigDecimal("50.00"));
+        when(cardRepository.findByIdAndUserId(cardId, 1L)).thenReturn(Optional.of(hot));
+        when(ledgerEntryRepository.findFirstByCardIdAndCreatedAtLessThanEqualOrderByCreatedAtDescIdDesc(cardId, AT))
+                .thenReturn(Optional.of(new LedgerEntry()));
+        when(ledgerEntryRepository.sumSignedAfter(cardId, AT)).thenReturn(new BigDecimal("70.00"));
+
+        BalanceAtResponse resp = ledgerService.balanceAt(1L, cardId, AT);
+
+        assertThat(resp.getBalance()).isEqualByComparingTo("280.00");
+    }
+
+    @Test
+    @DisplayName("balanceAt: чужая карта → NotFound")
+    void balanceAt_foreignCard() {
+        UUID cardId = UUID.randomUUID();
+        when(cardRepository.findByIdAndUserId(cardId, 2L)).thenReturn(Optional.empty());
+
+        assertThrows(NotFoundException.class, () -> ledgerService.balanceAt(2L, cardId, AT));
+        verifyNoInteractions(ledgerEntryRepository);
+    }
+
+    private static CardDailyStatsRepository.DayView day(LocalDate day, String debit, String credit, long count, String closing) {
+        return new CardDailyStatsRepository.DayView() {
+            public LocalDate getDay() { return day; }
+            public BigDecimal getDebitSum() { return new BigDecimal(debit); }
+            public BigDecimal getCreditSum() { return new BigDecimal(credit); }
+            public long getTxCount() { return count; }
+            public BigDecimal getClosingBalance() { return closing == null ? null : new BigDecimal(closing); }
+        };
+    }
+
+    @Test
+    @DisplayName("stats: дни из card_daily_stats как есть, итоги периода — их сумма")
+    void stats_sumsDays() {
+        UUID cardId = UUID.randomUUID();
+        LocalDate from = LocalDate.of(2025, 3, 1);
+        LocalDate to = LocalDate.of(2025, 3, 31);
+        when(cardRepository.findByIdAndUserId(cardId, 1L)).thenReturn(Optional.of(card(cardId, 1L, "500.00")));
+        when(cardDailyStatsRepository.findDays(cardId, from, to)).thenReturn(List.of(
+                day(LocalDate.of(2025, 3, 2), "10.00", "0", 1, "490.00"),
+                day(LocalDate.of(2025, 3, 5), "5.50", "100.00", 3, null)));
+
+        CardStatsResponse resp = ledgerService.stats(1L, cardId, from, to);
+
+        assertThat(resp.getCurrency()).isEqualTo("USD");
+        assertThat(resp.getDays()).hasSize(2);
+        assertThat(resp.getDays().get(1).getClosingBalance()).isNull();
+        assertThat(resp.getDebitSum()).isEqualByComparingTo("15.50");
+        assertThat(resp.getCreditSum()).isEqualByComparingTo("100.00");
+        assertThat(resp.getTxCount()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("stats: from позже to или период длиннее 366 дней → 400")
+    void stats_rejectsBadRange() {
+        UUID cardId = UUID.randomUUID();
+        when(cardRepository.findByIdAndUserId(cardId, 1L)).thenReturn(Optional.of(card(cardId, 1L, "0")));
+
+        assertThrows(BadRequestException.class,
+                () -> ledgerService.stats(1L, cardId, LocalDate.of(2025, 3, 2), LocalDate.of(2025, 3, 1)));
+        assertThrows(BadRequestException.class,
+                () -> ledgerService.stats(1L, cardId, LocalDate.of(2024, 1, 1), LocalDate.of(2025, 1, 1)));
+        verifyNoInteractions(cardDailyStatsRepository);
+    }
+}
@@ -0,0 +1,80 @@
+package com.abrik.bank_cards.bank_cards.service;
+
+import com.abrik.bank_cards.bank_cards.entity.OutboxEvent;
+import com.abrik.bank_cards.bank_cards.repository.OutboxEventRepository;
+import com.abrik.bank_cards.bank_cards.service.outbox.InMemoryOutboxSink;
+import com.abrik.bank_cards.bank_cards.service.outbox.OutboxRelay;
+import com.abrik.bank_cards.bank_cards.service.outbox.OutboxSink;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class OutboxRelayTest {
+
+    private final OutboxEventRepository repository = mock(OutboxEventRepository.class);
+    private final PlatformTransactionManager txManager = mock(PlatformTransactionManager.class);
+
+    {
+        when(txManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+    }
+
+    private OutboxRelay relay(OutboxSink sink) {
+        return new OutboxRelay(repository, sink, txManager, false, 10, Duration.ofMillis(10));
+    }
+
+    private static OutboxEvent event(long id) {
+        OutboxEvent e = new OutboxEvent();
+        e.setId(id);
+        e.setEventType("TRANSFER_COMPLETED");
+        e.setPayload("{}");
+        e.setCreatedAt(Instant.now());
+        return e;
+    }
+
+    @Test
+    @DisplayName("relayOnce: пачка уходит в sink по порядку id и удаляется из outbox в той же транзакции")
+    void publishesInOrderAndDeletes() {
+        InMemoryOutboxSink sink = new InMemoryOutboxSink(100);
+        when(repository.tryRelayLock(anyLong())).thenReturn(true);
+        when(repository.findBatch(10)).thenReturn(List.of(event(1), event(2), event(51)));
+
+        int sent = relay(sink).relayOnce();
+
+        assertThat(sent).isEqualTo(3);
+        assertThat(sink.events()).extracting(OutboxEvent::getId).containsExactly(1L, 2L, 51L);
+        verify(repository).deleteAllByIdIn(List.of(1L, 2L, 51L));
+        verify(txManager).commit(any());
+    }
+
+    @Test
+    @DisplayName("relayOnce: ошибка sink → транзакция откатывается, события остаются для повтора")
+    void sinkFailure_keepsEvents() {
+        OutboxSink failing = events -> { throw new IllegalStateException("sink down"); };
+        when(repository.tryRelayLock(anyLong())).thenReturn(true);
+        when(repository.findBatch(10)).thenReturn(List.of(event(1)));
+
+        assertThrows(IllegalStateException.class, () -> relay(failing).relayOnce());
+
+        verify(repository, never()).deleteAllByIdIn(anyCollection());
+        verify(txManager).rollback(any());
+    }
+
+    @Test
+    @DisplayName("relayOnce: релей занят другим инстансом → ничего не читаем")
+    void lockBusy_skips() {
+        when(repository.tryRelayLock(anyLong())).thenReturn(false);
+
+        assertThat(relay(new InMemoryOutboxSink(10)).relayOnce()).isZero();
+        verify(repository, never()).findBatch(anyInt());
+    }
+}
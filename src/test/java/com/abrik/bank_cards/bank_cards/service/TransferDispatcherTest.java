@@ -0,0 +1,118 @@
+package com.abrik.bank_cards.bank_cards.service;
+
+import com.abrik.bank_cards.bank_cards.dto.transfer.CreateTransferRequest;
+import com.abrik.bank_cards.bank_cards.exception.BadRequestException;
+import com.abrik.bank_cards.bank_cards.exception.ConflictException;
+import com.abrik.bank_cards.bank_cards.service.user.TransferDispatcher;
+import com.abrik.bank_cards.bank_cards.service.user.TransferGroupCommitter;
+import com.abrik.bank_cards.bank_cards.service.user.TransferService;
+import com.abrik.bank_cards.bank_cards.util.CardBackPressure;
+import com.abrik.bank_cards.bank_cards.util.TransferIdempotencyCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class TransferDispatcherTest {
+
+    private TransferService transferService;
+    private TransferDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        transferService = mock(TransferService.class);
+        dispatcher = new TransferDispatcher(
+                transferService,
+                new CardBackPressure(0, Duration.ofSeconds(1)),
+                new TransferIdempotencyCache(0, Duration.ofMinutes(1)),
+                new TransferGroupCommitter(mock(TransferService.class), new SimpleMeterRegistry(),
+                        false, 64, Duration.ofNanos(500_000), 100));
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", 3);
+        ReflectionTestUtils.setField(dispatcher, "backoff", Duration.ofMillis(1));
+        ReflectionTestUtils.setField(dispatcher, "maxBackoff", Duration.ofMillis(2));
+    }
+
+    @Test
+    @DisplayName("withOptimisticRetry: конфликт версий повторяется, пока не получится")
+    void retriesUntilSuccess() {
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = dispatcher.withOptimisticRetry(() -> {
+            if (calls.incrementAndGet() < 3)
+                throw new ObjectOptimisticLockingFailureException("Card", "id");
+            return "ok";
+        });
+
+        assertThat(result).isEqualTo("ok");
+        assertThat(calls.get()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("withOptimisticRetry: попытки исчерпаны → 409 Conflict")
+    void givesUpAfterMaxAttempts() {
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThrows(ConflictException.class, () -> dispatcher.withOptimisticRetry(() -> {
+            calls.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException("Card", "id");
+        }));
+        assertThat(calls.get()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("transfer: код валюты приводится к верхнему регистру до сервиса, неизвестный → 400")
+    void transfer_normalizesCurrency() {
+        CreateTransferRequest request = new CreateTransferRequest();
+        request.setFromCardId(UUID.randomUUID());
+        request.setToCardId(UUID.randomUUID());
+        request.setAmount(new BigDecimal("1.00"));
+        request.setCurrency("usd");
+
+        dispatcher.transfer(1L, request, "k1");
+
+        verify(transferService).transferOwnCards(eq(1L), argThat(r -> "USD".equals(r.getCurrency())), eq("k1"));
+
+        request.setCurrency("qqq");
+        assertThrows(BadRequestException.class, () -> dispatcher.transfer(1L, request, "k2"));
+        verify(transferService, never()).transferOwnCards(any(), any(), eq("k2"));
+    }
+
+    @Test
+    @DisplayName("transfer без Idempotency-Key: ключ генерируется для БД, кэш идемпотентности не трогается")
+    void transfer_withoutKey_bypassesIdempotencyCache() {
+        TransferIdempotencyCache cache = mock(TransferIdempotencyCache.class);
+        TransferDispatcher noKeyDispatcher = new TransferDispatcher(
+                transferService,
+                new CardBackPressure(0, Duration.ofSeconds(1)),
+                cache,
+                new TransferGroupCommitter(mock(TransferService.class), new SimpleMeterRegistry(),
+                        false, 64, Duration.ofNanos(500_000), 100));
+        CreateTransferRequest request = new CreateTransferRequest();
+        request.setFromCardId(UUID.randomUUID());
+        request.setToCardId(UUID.randomUUID());
+        request.setAmount(new BigDecimal("1.00"));
+        request.setCurrency("USD");
+
+        noKeyDispatcher.transfer(1L, request, null);
+
+        verify(transferService).transferOwnCards(eq(1L), eq(request), argThat(k -> k != null && !k.isBlank()));
+        verifyNoInteractions(cache);
+    }
+}
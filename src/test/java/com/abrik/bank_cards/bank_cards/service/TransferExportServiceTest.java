@@ -0,0 +1,157 @@
+package com.abrik.bank_cards.bank_cards.service;
+
+import com.abrik.bank_cards.bank_cards.dto.transfer.Bounds;
+import com.abrik.bank_cards.bank_cards.dto.transfer.ExportFormat;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferStatus;
+import com.abrik.bank_cards.bank_cards.exception.BadRequestException;
+import com.abrik.bank_cards.bank_cards.service.user.TransferExportService;
+import com.abrik.bank_cards.bank_cards.util.TransferUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransferExportServiceTest {
+
+    @Mock JdbcTemplate jdbcTemplate;
+    @Mock PlatformTransactionManager transactionManager;
+    @Mock TransferUtil transferUtil;
+    @Mock(strictness = Mock.Strictness.LENIENT) ResultSet rs;
+
+    TransferExportService exportService;
+
+    final UUID id = UUID.randomUUID();
+    final UUID fromCard = UUID.randomUUID();
+    final UUID toCard = UUID.randomUUID();
+    final Instant createdAt = Instant.parse("2025-03-01T10:00:00Z");
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        exportService = new TransferExportService(jdbcTemplate, transactionManager, transferUtil, objectMapper, 500);
+    }
+
+    private void oneRow() throws Exception {
+        when(rs.getString("id")).thenReturn(id.toString());
+        when(rs.getObject("id", UUID.class)).thenReturn(id);
+        when(rs.getLong("user_id")).thenReturn(7L);
+        when(rs.getString("from_card_id")).thenReturn(fromCard.toString());
+        when(rs.getObject("from_card_id", UUID.class)).thenReturn(fromCard);
+        when(rs.getString("to_card_id")).thenReturn(toCard.toString());
+        when(rs.getObject("to_card_id", UUID.class)).thenReturn(toCard);
+        when(rs.getBigDecimal("amount")).thenReturn(new BigDecimal("12.50"));
+        when(rs.getString("currency")).thenReturn("USD");
+        when(rs.getString("status")).thenReturn("COMPLETED");
+        when(rs.getString("message")).thenReturn("rent, \"march\"");
+        when(rs.getString("failure_reason")).thenReturn(null);
+        when(rs.getTimestamp("created_at")).thenReturn(Timestamp.from(createdAt));
+
+        doAnswer(inv -> {
+            inv.getArgument(1, RowCallbackHandler.class).processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    @DisplayName("csv: заголовок, строка и экранирование по RFC 4180")
+    void csv_writesHeaderAndEscapedRow() throws Exception {
+        when(transferUtil.normalizeBounds(null, null)).thenReturn(new Bounds(null, null));
+        oneRow();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.export(7L, null, null, null, null, null, ExportFormat.CSV).writeTo(out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).startsWith("id,userId,fromCardId");
+        assertThat(lines[1]).isEqualTo(id + ",7," + fromCard + "," + toCard
+                + ",12.50,USD,COMPLETED,\"rent, \"\"march\"\"\",," + createdAt);
+    }
+
+    @Test
+    @DisplayName("ndjson: строка на перевод в формате TransferResponse")
+    void ndjson_writesOneJsonPerLine() throws Exception {
+        when(transferUtil.normalizeBounds(null, null)).thenReturn(new Bounds(null, null));
+        oneRow();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.export(null, null, null, null, null, null, ExportFormat.NDJSON).writeTo(out);
+
+        String body = out.toString(StandardCharsets.UTF_8);
+        assertThat(body).endsWith("\n").doesNotContain("id,userId");
+        assertThat(body.trim()).startsWith("{\"id\":\"" + id + "\"")
+                .contains("\"status\":\"COMPLETED\"", "\"createdAt\":\"" + createdAt + "\"");
+    }
+
+    @Test
+    @DisplayName("SQL: условия только по заданным фильтрам (q — экранированный like), forward-only курсор с fetch size")
+    void sql_onlySuppliedFiltersAndFetchSize() throws Exception {
+        Instant from = Instant.parse("2025-01-01T00:00:00Z");
+        UUID cardId = UUID.randomUUID();
+        when(transferUtil.normalizeBounds(from, null)).thenReturn(new Bounds(from, null));
+        when(transferUtil.normalizeMessageQuery("Rent_10%")).thenReturn("rent_10%");
+
+        exportService.export(7L, TransferStatus.COMPLETED, from, null, cardId, "Rent_10%", ExportFormat.CSV)
+                .writeTo(new ByteArrayOutputStream());
+
+        ArgumentCaptor<PreparedStatementCreator> creator = ArgumentCaptor.forClass(PreparedStatementCreator.class);
+        verify(jdbcTemplate).query(creator.capture(), any(RowCallbackHandler.class));
+
+        Connection con = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        when(con.prepareStatement(sql.capture(), eq(ResultSet.TYPE_FORWARD_ONLY), eq(ResultSet.CONCUR_READ_ONLY)))
+                .thenReturn(ps);
+        creator.getValue().createPreparedStatement(con);
+
+        assertThat(sql.getValue())
+                .contains("user_id = ?", "status = ?", "created_at >= ?", "(from_card_id = ? or to_card_id = ?)",
+                        "lower(message) like ? escape")
+                .doesNotContain("created_at < ?", "coalesce")
+                .endsWith("order by created_at, id");
+        verify(ps).setFetchSize(500);
+        verify(ps).setObject(1, 7L);
+        verify(ps).setObject(2, "COMPLETED");
+        verify(ps).setObject(6, "%rent\\_10\\%%");
+        verify(ps, times(6)).setObject(anyInt(), any());
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    @DisplayName("неверный интервал — ошибка до начала потока")
+    void invalidBounds_failFast() {
+        Instant from = Instant.parse("2025-02-01T00:00:00Z");
+        Instant to = Instant.parse("2025-01-01T00:00:00Z");
+        when(transferUtil.normalizeBounds(from, to)).thenThrow(new BadRequestException("'from' must be <= 'to'"));
+
+        assertThrows(BadRequestException.class,
+                () -> exportService.export(7L, null, from, to, null, null, ExportFormat.CSV));
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
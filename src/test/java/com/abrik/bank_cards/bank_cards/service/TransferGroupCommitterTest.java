@@ -0,0 +1,92 @@
+package com.abrik.bank_cards.bank_cards.service;
+
+import com.abrik.bank_cards.bank_cards.dto.transfer.CreateTransferRequest;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferCommand;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferOutcome;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferResponse;
+import com.abrik.bank_cards.bank_cards.exception.BadRequestException;
+import com.abrik.bank_cards.bank_cards.service.user.TransferGroupCommitter;
+import com.abrik.bank_cards.bank_cards.service.user.TransferService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class TransferGroupCommitterTest {
+
+    private final TransferService transferService = mock(TransferService.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private TransferGroupCommitter committer;
+
+    @AfterEach
+    void tearDown() {
+        committer.stop();
+    }
+
+    private void start(int maxBatch, Duration maxWait) {
+        committer = new TransferGroupCommitter(transferService, registry, true, maxBatch, maxWait, 100);
+        committer.start();
+    }
+
+    private static TransferCommand command(String key) {
+        return new TransferCommand(1L, new CreateTransferRequest(), key);
+    }
+
+    @Test
+    @DisplayName("Переводы из очереди проводятся одной транзакцией, каждый получает свой результат")
+    void commitsQueuedTransfersTogether() {
+        when(transferService.transferGroup(anyList())).thenAnswer(inv -> {
+            List<TransferCommand> commands = inv.getArgument(0);
+            List<TransferOutcome> outcomes = new ArrayList<>();
+            for (TransferCommand c : commands) {
+                TransferResponse r = new TransferResponse();
+                r.setMessage(c.idempotencyKey());
+                outcomes.add(c.idempotencyKey().equals("bad")
+                        ? TransferOutcome.failed(new BadRequestException("Insufficient funds"))
+                        : TransferOutcome.ok(r));
+            }
+            return outcomes;
+        });
+        start(3, Duration.ofSeconds(2));
+
+        CompletableFuture<TransferResponse> a = committer.submit(command("a"));
+        CompletableFuture<TransferResponse> bad = committer.submit(command("bad"));
+        CompletableFuture<TransferResponse> c = committer.submit(command("c"));
+
+        assertThat(a.join().getMessage()).isEqualTo("a");
+        assertThat(c.join().getMessage()).isEqualTo("c");
+        CompletionException ex = assertThrows(CompletionException.class, bad::join);
+        assertThat(ex.getCause()).isInstanceOf(BadRequestException.class);
+
+        verify(transferService, times(1)).transferGroup(anyList());
+        assertThat(registry.get("transfer.group_commit.batch_size").summary().totalAmount()).isEqualTo(3.0);
+        assertThat(registry.get("transfer.group_commit.wait").timer().count()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Транзакция группы откатилась → каждому переводу GroupAbortedException для отдельного проведения")
+    void groupFailure_abortsEveryTransfer() {
+        when(transferService.transferGroup(anyList())).thenThrow(new CannotAcquireLockException("deadlock"));
+        start(2, Duration.ofSeconds(2));
+
+        CompletableFuture<TransferResponse> a = committer.submit(command("a"));
+        CompletableFuture<TransferResponse> b = committer.submit(command("b"));
+
+        for (CompletableFuture<TransferResponse> f : List.of(a, b)) {
+            CompletionException ex = assertThrows(CompletionException.class, f::join);
+            assertThat(ex.getCause()).isInstanceOf(TransferGroupCommitter.GroupAbortedException.class);
+        }
+    }
+}
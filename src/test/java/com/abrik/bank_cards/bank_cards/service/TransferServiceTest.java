@@ -1,29 +1,53 @@
 package com.abrik.bank_cards.bank_cards.service;
 
+import com.abrik.bank_cards.bank_cards.dto.card.CardStatus;
+import com.abrik.bank_cards.bank_cards.dto.transfer.BatchMode;
+import com.abrik.bank_cards.bank_cards.dto.transfer.BatchTransferItemResult;
+import com.abrik.bank_cards.bank_cards.dto.transfer.BatchTransferRequest;
+import com.abrik.bank_cards.bank_cards.dto.transfer.BatchTransferResponse;
 import com.abrik.bank_cards.bank_cards.dto.transfer.Bounds;
 import com.abrik.bank_cards.bank_cards.dto.transfer.CreateTransferRequest;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferCommand;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferMode;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferOutcome;
 import com.abrik.bank_cards.bank_cards.dto.transfer.TransferResponse;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferSearchOrder;
 import com.abrik.bank_cards.bank_cards.dto.transfer.TransferStatus;
+import com.abrik.bank_cards.bank_cards.dto.ledger.LedgerDirection;
 import com.abrik.bank_cards.bank_cards.entity.Card;
+import com.abrik.bank_cards.bank_cards.entity.LedgerEntry;
 import com.abrik.bank_cards.bank_cards.entity.Transfer;
 import com.abrik.bank_cards.bank_cards.exception.BadRequestException;
 import com.abrik.bank_cards.bank_cards.exception.NotFoundException;
 import com.abrik.bank_cards.bank_cards.repository.CardRepository;
+import com.abrik.bank_cards.bank_cards.repository.LedgerEntryRepository;
 import com.abrik.bank_cards.bank_cards.repository.TransferRepository;
+import com.abrik.bank_cards.bank_cards.service.archive.TransferArchive;
+import com.abrik.bank_cards.bank_cards.service.outbox.OutboxService;
+import com.abrik.bank_cards.bank_cards.service.user.CardBalanceStripeService;
 import com.abrik.bank_cards.bank_cards.service.user.TransferService;
+import com.abrik.bank_cards.bank_cards.util.HotCardRegistry;
 import com.abrik.bank_cards.bank_cards.util.TransferUtil;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.*;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.*;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.AdditionalAnswers.returnsFirstArg;
 import static org.mockito.ArgumentMatchers.*;
@@ -34,7 +58,12 @@ class TransferServiceTest {
 
     @Mock CardRepository cardRepository;
     @Mock TransferRepository transferRepository;
+    @Mock LedgerEntryRepository ledgerEntryRepository;
+    @Mock OutboxService outboxService;
     @Mock TransferUtil transferUtil;
+    @Mock HotCardRegistry hotCardRegistry;
+    @Mock CardBalanceStripeService stripeService;
+    @Mock TransferArchive transferArchive;
 
     @InjectMocks
     TransferService transferService;
@@ -270,11 +299,400 @@ class TransferServiceTest {
         assertThat(resp.getStatus()).isEqualTo(TransferStatus.COMPLETED);
     }
 
+    //  ЖУРНАЛ ПРОВОДОК
+
+    @Test
+    @DisplayName("transferOwnCards: пишет DEBIT и CREDIT с балансом после проводки, после сохранения перевода")
+    void transfer_writesLedgerEntries() {
+        Long userId = 18L;
+        UUID from = UUID.randomUUID(), to = UUID.randomUUID();
+
+        when(transferRepository.findByUserIdAndIdempotencyKey(anyLong(), anyString()))
+                .thenReturn(Optional.empty());
+        when(cardRepository.lockByIdAndUserId(from, userId))
+                .thenReturn(Optional.of(card(from, userId, "USD", new BigDecimal("50.00"), true)));
+        when(cardRepository.lockByIdAndUserId(to, userId))
+                .thenReturn(Optional.of(card(to, userId, "USD", new BigDecimal("5.00"), true)));
+        when(transferRepository.saveAndFlush(any(Transfer.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        transferService.transferOwnCards(userId, req(from, to, "20.00", "USD", null), "k");
+
+        ArgumentCaptor<List<LedgerEntry>> captor = ArgumentCaptor.forClass(List.class);
+        InOrder order = inOrder(transferRepository, ledgerEntryRepository);
+        order.verify(transferRepository).saveAndFlush(any(Transfer.class));
+        order.verify(ledgerEntryRepository).saveAll(captor.capture());
+
+        List<LedgerEntry> entries = captor.getValue();
+        assertThat(entries).extracting(LedgerEntry::getCardId, LedgerEntry::getDirection)
+                .containsExactly(tuple(from, LedgerDirection.DEBIT), tuple(to, LedgerDirection.CREDIT));
+        assertThat(entries.get(0).getBalanceAfter()).isEqualByComparingTo("30.00");
+        assertThat(entries.get(1).getBalanceAfter()).isEqualByComparingTo("25.00");
+        assertThat(entries).allSatisfy(e -> assertThat(e.getAmount()).isEqualByComparingTo("20.00"));
+    }
+
+    //  GUARDED: условные UPDATE
+
+    @Test
+    @DisplayName("transferOwnCards GUARDED: условные UPDATE в порядке id, без SELECT FOR UPDATE и saveAll")
+    void guarded_success_updatesInIdOrder() {
+        ReflectionTestUtils.setField(transferService, "mode", TransferMode.GUARDED);
+        Long userId = 40L;
+        UUID from = UUID.fromString("bbbbbbbb-0000-0000-0000-000000000000");
+        UUID to   = UUID.fromString("aaaaaaaa-0000-0000-0000-000000000000");
+
+        when(transferRepository.findByUserIdAndIdempotencyKey(anyLong(), anyString()))
+                .thenReturn(Optional.empty());
+        when(cardRepository.creditGuarded(to, userId, CardStatus.ACTIVE, "USD", new BigDecimal("10.00")))
+                .thenReturn(1);
+        when(cardRepository.debitGuarded(from, userId, CardStatus.ACTIVE, "USD", new BigDecimal("10.00")))
+                .thenReturn(1);
+        when(transferRepository.saveAndFlush(any(Transfer.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        transferService.transferOwnCards(userId, req(from, to, "10", "USD", null), "k");
+
+        // to < from по id → сначала зачисление, затем списание
+        InOrder order = inOrder(cardRepository);
+        order.verify(cardRepository).creditGuarded(to, userId, CardStatus.ACTIVE, "USD", new BigDecimal("10.00"));
+        order.verify(cardRepository).debitGuarded(from, userId, CardStatus.ACTIVE, "USD", new BigDecimal("10.00"));
+        verify(cardRepository, never()).lockByIdAndUserId(any(), any());
+        verify(cardRepository, never()).saveAll(anyCollection());
+        verify(transferRepository).saveAndFlush(any(Transfer.class));
+        verify(ledgerEntryRepository).insertForCard(any(), eq(from), eq("DEBIT"), eq(new BigDecimal("10.00")), any());
+        verify(ledgerEntryRepository).insertForCard(any(), eq(to), eq("CREDIT"), eq(new BigDecimal("10.00")), any());
+    }
+
+    @Test
+    @DisplayName("transferOwnCards GUARDED: списание не прошло → причина определяется по карте (Insufficient funds)")
+    void guarded_debitRejected_reportsReason() {
+        ReflectionTestUtils.setField(transferService, "mode", TransferMode.GUARDED);
+        Long userId = 41L;
+        UUID from = UUID.fromString("aaaaaaaa-0000-0000-0000-000000000000");
+        UUID to   = UUID.fromString("bbbbbbbb-0000-0000-0000-000000000000");
+
+        when(transferRepository.findByUserIdAndIdempotencyKey(anyLong(), anyString()))
+                .thenReturn(Optional.empty());
+        when(cardRepository.debitGuarded(eq(from), eq(userId), any(), any(), any())).thenReturn(0);
+        when(cardRepository.findByIdAndUserId(from, userId))
+                .thenReturn(Optional.of(card(from, userId, "USD", new BigDecimal("1.00"), true)));
+
+        BadRequestException ex = assertThrows(BadRequestException.class, () ->
+                transferService.transferOwnCards(userId, req(from, to, "10.00", "USD", null), "k"));
+
+        assertThat(ex.getMessage()).isEqualTo("Insufficient funds");
+        verify(cardRepository, never()).creditGuarded(any(), any(), any(), any(), any());
+        verify(transferRepository, never()).saveAndFlush(any());
+    }
+
+    //  OPTIMISTIC: чтение без блокировок
+
+    @Test
+    @DisplayName("transferOwnCards OPTIMISTIC: карты читаются без PESSIMISTIC_WRITE, изменения через saveAll")
+    void optimistic_readsWithoutLocks() {
+        ReflectionTestUtils.setField(transferService, "mode", TransferMode.OPTIMISTIC);
+        Long userId = 42L;
+        UUID from = UUID.randomUUID(), to = UUID.randomUUID();
+
+        when(transferRepository.findByUserIdAndIdempotencyKey(anyLong(), anyString()))
+                .thenReturn(Optional.empty());
+        Card fromCard = card(from, userId, "USD", new BigDecimal("50.00"), true);
+        Card toCard   = card(to,   userId, "USD", new BigDecimal("0.00"),  true);
+        when(cardRepository.findByIdAndUserId(from, userId)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdAndUserId(to, userId)).thenReturn(Optional.of(toCard));
+        when(transferRepository.saveAndFlush(any(Transfer.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        transferService.transferOwnCards(userId, req(from, to, "20.00", "USD", null), "k");
+
+        assertThat(fromCard.getBalance()).isEqualByComparingTo("30.00");
+        assertThat(toCard.getBalance()).isEqualByComparingTo("20.00");
+        verify(cardRepository, never()).lockByIdAndUserId(any(), any());
+        verify(cardRepository).saveAll(List.of(fromCard, toCard));
+    }
+
+    //  ГОРЯЧИЕ КАРТЫ: полосы баланса
+
+    @Test
+    @DisplayName("transferOwnCards: горячая карта-получатель читается без блокировки, зачисление уходит в полосу")
+    void hotTo_creditsStripe_withoutLockingTarget() {
+        Long userId = 43L;
+        UUID from = UUID.randomUUID(), to = UUID.randomUUID();
+
+        when(transferRepository.findByUserIdAndIdempotencyKey(anyLong(), anyString()))
+                .thenReturn(Optional.empty());
+        when(hotCardRegistry.isHot(to)).thenReturn(true);
+        Card fromCard = card(from, userId, "USD", new BigDecimal("50.00"), true);
+        Card toCard   = card(to,   userId, "USD", new BigDecimal("5.00"),  true);
+        when(cardRepository.lockByIdAndUserId(from, userId)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdAndUserId(to, userId)).thenReturn(Optional.of(toCard));
+        when(transferRepository.saveAndFlush(any(Transfer.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        transferService.transferOwnCards(userId, req(from, to, "20.00", "USD", null), "k");
+
+        verify(stripeService).creditStripe(userId, toCard, new BigDecimal("20.00"));
+        verify(cardRepository, never()).lockByIdAndUserId(eq(to), any());
+        assertThat(fromCard.getBalance()).isEqualByComparingTo("30.00");
+        assertThat(toCard.getBalance()).isEqualByComparingTo("5.00");
+    }
+
+    @Test
+    @DisplayName("transferOwnCards: основного баланса горячей карты не хватает → полосы консолидируются перед списанием")
+    void hotFrom_consolidatesStripes_whenBalanceShort() {
+        Long userId = 44L;
+        UUID from = UUID.randomUUID(), to = UUID.randomUUID();
+
+        when(transferRepository.findByUserIdAndIdempotencyKey(anyLong(), anyString()))
+                .thenReturn(Optional.empty());
+        Card fromCard = card(from, userId, "USD", new BigDecimal("10.00"), true);
+        fromCard.setBalanceStripes((short) 4);
+        fromCard.setStripedBalance(new BigDecimal("40.00"));
+        Card toCard   = card(to,   userId, "USD", new BigDecimal("0.00"),  true);
+        when(cardRepository.lockByIdAndUserId(from, userId)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.lockByIdAndUserId(to, userId)).thenReturn(Optional.of(toCard));
+        when(stripeService.consolidate(fromCard)).thenAnswer(inv -> {
+            fromCard.setBalance(fromCard.getBalance().add(fromCard.getStripedBalance()));
+            fromCard.setStripedBalance(BigDecimal.ZERO);
+            return new BigDecimal("40.00");
+        });
+        when(transferRepository.saveAndFlush(any(Transfer.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        transferService.transferOwnCards(userId, req(from, to, "30.00", "USD", null), "k");
+
+        verify(stripeService).consolidate(fromCard);
+        assertThat(fromCard.getBalance()).isEqualByComparingTo("20.00");
+        assertThat(toCard.getBalance()).isEqualByComparingTo("30.00");
+    }
+
+    //  ГРУППОВОЙ КОММИТ
+
+    @Test
+    @DisplayName("transferGroup: карты разных пользователей блокируются одним запросом, чужая карта → NotFound только для своего перевода")
+    void group_locksOnce_checksOwnerPerTransfer() {
+        UUID a1 = UUID.randomUUID(), a2 = UUID.randomUUID(), b1 = UUID.randomUUID();
+        Card cardA1 = card(a1, 1L, "USD", new BigDecimal("100.00"), true);
+        Card cardA2 = card(a2, 1L, "USD", new BigDecimal("0.00"),   true);
+        Card cardB1 = card(b1, 2L, "USD", new BigDecimal("0.00"),   true);
+
+        when(transferRepository.findAllByUserIdInAndIdempotencyKeyIn(anyCollection(), anyCollection()))
+                .thenReturn(List.of());
+        when(cardRepository.lockAllByIdIn(anyCollection())).thenReturn(List.of(cardA1, cardA2, cardB1));
+        when(transferUtil.map(any(Transfer.class))).thenReturn(new TransferResponse());
+
+        List<TransferOutcome> outcomes = transferService.transferGroup(List.of(
+                new TransferCommand(1L, req(a1, a2, "30.00", "USD", null), "k1"),
+                new TransferCommand(2L, req(b1, a2, "10.00", "USD", null), "k2")));
+
+        assertThat(outcomes.get(0).error()).isNull();
+        assertThat(outcomes.get(1).error()).isInstanceOf(NotFoundException.class);
+        assertThat(cardA1.getBalance()).isEqualByComparingTo("70.00");
+        assertThat(cardA2.getBalance()).isEqualByComparingTo("30.00");
+        verify(cardRepository, times(1)).lockAllByIdIn(anyCollection());
+        verify(transferRepository).saveAll(argThat((List<Transfer> l) -> l.size() == 1));
+        verify(transferRepository).flush();
+    }
+
+    //  АСИНХРОННЫЙ ПРИЁМ
+
+    @Test
+    @DisplayName("acceptAsync: перевод сохраняется в статусе PENDING без блокировок и списаний")
+    void acceptAsync_insertsPending() {
+        Long userId = 50L;
+        UUID from = UUID.randomUUID(), to = UUID.randomUUID();
+        Card fromCard = card(from, userId, "USD", new BigDecimal("1.00"), true);
+        Card toCard   = card(to,   userId, "USD", new BigDecimal("0.00"), true);
+
+        when(transferRepository.findByUserIdAndIdempotencyKey(anyLong(), anyString()))
+                .thenReturn(Optional.empty());
+        when(cardRepository.findByIdAndUserId(from, userId)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdAndUserId(to, userId)).thenReturn(Optional.of(toCard));
+        ArgumentCaptor<Transfer> captor = ArgumentCaptor.forClass(Transfer.class);
+        when(transferRepository.saveAndFlush(captor.capture())).thenAnswer(inv -> inv.getArgument(0));
+
+        // средств не хватает, но это проверит обработчик
+        transferService.acceptAsync(userId, req(from, to, "10.00", "USD", null), "k");
+
+        assertThat(captor.getValue().getStatus()).isEqualTo(TransferStatus.PENDING);
+        assertThat(fromCard.getBalance()).isEqualByComparingTo("1.00");
+        verify(cardRepository, never()).lockByIdAndUserId(any(), any());
+        verifyNoInteractions(ledgerEntryRepository);
+    }
+
+    @Test
+    @DisplayName("processPending: забранные переводы → COMPLETED с проводками или FAILED с причиной")
+    void processPending_completesOrFails() {
+        Long userId = 51L;
+        UUID a = UUID.randomUUID(), b = UUID.randomUUID();
+        Card cardA = card(a, userId, "USD", new BigDecimal("15.00"), true);
+        Card cardB = card(b, userId, "USD", new BigDecimal("0.00"),  true);
+
+        Transfer ok = pending(userId, a, b, "10.00");
+        Transfer tooMuch = pending(userId, a, b, "10.00");
+        when(transferRepository.claimPending(50)).thenReturn(List.of(ok, tooMuch));
+        when(cardRepository.lockAllByIdIn(anyCollection())).thenReturn(List.of(cardA, cardB));
+
+        int processed = transferService.processPending(50);
+
+        assertThat(processed).isEqualTo(2);
+        assertThat(ok.getStatus()).isEqualTo(TransferStatus.COMPLETED);
+        assertThat(tooMuch.getStatus()).isEqualTo(TransferStatus.FAILED);
+        assertThat(tooMuch.getFailureReason()).isEqualTo("Insufficient funds");
+        assertThat(cardA.getBalance()).isEqualByComparingTo("5.00");
+        assertThat(cardB.getBalance()).isEqualByComparingTo("10.00");
+        verify(ledgerEntryRepository).saveAll(argThat((List<LedgerEntry> l) -> l.size() == 2));
+    }
+
+    @Test
+    @DisplayName("failPending: перевод PENDING → FAILED с причиной и событием; уже обработанный не трогается")
+    void failPending_marksFailed() {
+        Transfer poison = pending(52L, UUID.randomUUID(), UUID.randomUUID(), "1.00");
+        when(transferRepository.claimPendingById(poison.getId())).thenReturn(Optional.of(poison));
+        UUID done = UUID.randomUUID();
+        when(transferRepository.claimPendingById(done)).thenReturn(Optional.empty());
+
+        assertThat(transferService.failPending(poison.getId(), "Processing error")).isTrue();
+        assertThat(transferService.failPending(done, "Processing error")).isFalse();
+
+        assertThat(poison.getStatus()).isEqualTo(TransferStatus.FAILED);
+        assertThat(poison.getFailureReason()).isEqualTo("Processing error");
+        verify(transferRepository).saveAndFlush(poison);
+        verify(outboxService).recordTransfers(List.of(poison));
+    }
+
+    private static Transfer pending(Long userId, UUID from, UUID to, String amount) {
+        Transfer t = new Transfer();
+        t.setId(UUID.randomUUID());
+        t.setUserId(userId);
+        t.setFromCardId(from);
+        t.setToCardId(to);
+        t.setAmount(new BigDecimal(amount));
+        t.setCurrency("USD");
+        t.setStatus(TransferStatus.PENDING);
+        t.setCreatedAt(Instant.now());
+        return t;
+    }
+
+    //  ПАКЕТ ПЕРЕВОДОВ
+
+    private static BatchTransferRequest batch(BatchMode mode, CreateTransferRequest... items) {
+        BatchTransferRequest r = new BatchTransferRequest();
+        r.setItems(List.of(items));
+        r.setMode(mode);
+        return r;
+    }
+
+    @Test
+    @DisplayName("transferBatch: все карты блокируются одним запросом, балансы применяются последовательно")
+    void batch_locksOnce_andAppliesSequentially() {
+        Long userId = 30L;
+        UUID a = UUID.randomUUID(), b = UUID.randomUUID(), c = UUID.randomUUID();
+
+        Card cardA = card(a, userId, "USD", new BigDecimal("100.00"), true);
+        Card cardB = card(b, userId, "USD", new BigDecimal("0.00"), true);
+        Card cardC = card(c, userId, "USD", new BigDecimal("0.00"), true);
+
+        when(transferRepository.findAllByUserIdAndIdempotencyKeyIn(eq(userId), anyCollection()))
+                .thenReturn(List.of());
+        when(cardRepository.lockAllByIdInAndUserId(anyCollection(), eq(userId)))
+                .thenReturn(List.of(cardA, cardB, cardC));
+        when(transferUtil.map(any(Transfer.class))).thenAnswer(inv -> {
+            TransferResponse r = new TransferResponse();
+            r.setId(inv.<Transfer>getArgument(0).getId());
+            return r;
+        });
+
+        // A → B 60, затем B → C 50: второй шаг видит баланс B после первого
+        BatchTransferResponse resp = transferService.transferBatch(userId, batch(BatchMode.ALL_OR_NOTHING,
+                req(a, b, "60.00", "USD", null),
+                req(b, c, "50.00", "USD", null)), "batch-key");
+
+        assertThat(resp.getSucceeded()).isEqualTo(2);
+        assertThat(resp.getFailed()).isZero();
+        assertThat(cardA.getBalance()).isEqualByComparingTo("40.00");
+        assertThat(cardB.getBalance()).isEqualByComparingTo("10.00");
+        assertThat(cardC.getBalance()).isEqualByComparingTo("50.00");
+
+        verify(cardRepository, times(1)).lockAllByIdInAndUserId(anyCollection(), eq(userId));
+        verify(cardRepository, never()).lockByIdAndUserId(any(), any());
+
+        ArgumentCaptor<List<Transfer>> saved = ArgumentCaptor.forClass(List.class);
+        verify(transferRepository).saveAll(saved.capture());
+        assertThat(saved.getValue()).extracting(Transfer::getIdempotencyKey)
+                .containsExactly("batch-key:0", "batch-key:1");
+        verify(transferRepository).flush();
+    }
+
+    @Test
+    @DisplayName("transferBatch ALL_OR_NOTHING: ошибка одного элемента → исключение, ничего не сохраняется")
+    void batch_allOrNothing_failsWhole() {
+        Long userId = 31L;
+        UUID a = UUID.randomUUID(), b = UUID.randomUUID();
+
+        when(transferRepository.findAllByUserIdAndIdempotencyKeyIn(eq(userId), anyCollection()))
+                .thenReturn(List.of());
+        when(cardRepository.lockAllByIdInAndUserId(anyCollection(), eq(userId)))
+                .thenReturn(List.of(card(a, userId, "USD", new BigDecimal("10.00"), true),
+                        card(b, userId, "USD", new BigDecimal("0.00"), true)));
+
+        assertThrows(BadRequestException.class, () -> transferService.transferBatch(userId,
+                batch(BatchMode.ALL_OR_NOTHING,
+                        req(a, b, "5.00", "USD", null),
+                        req(a, b, "50.00", "USD", null)), "k"));
+
+        verify(cardRepository, never()).saveAll(anyCollection());
+        verify(transferRepository, never()).saveAll(anyCollection());
+    }
+
+    @Test
+    @DisplayName("transferBatch PER_ITEM: неуспешные элементы получают error, остальные проводятся")
+    void batch_perItem_reportsErrors() {
+        Long userId = 32L;
+        UUID a = UUID.randomUUID(), b = UUID.randomUUID(), missing = UUID.randomUUID();
+
+        Card cardA = card(a, userId, "USD", new BigDecimal("10.00"), true);
+        Card cardB = card(b, userId, "USD", new BigDecimal("0.00"), true);
+
+        when(transferRepository.findAllByUserIdAndIdempotencyKeyIn(eq(userId), anyCollection()))
+                .thenReturn(List.of());
+        when(cardRepository.lockAllByIdInAndUserId(anyCollection(), eq(userId)))
+                .thenReturn(List.of(cardA, cardB));
+
+        BatchTransferResponse resp = transferService.transferBatch(userId, batch(BatchMode.PER_ITEM,
+                req(a, b, "5.00", "USD", null),
+                req(a, missing, "1.00", "USD", null),
+                req(a, b, "1.00", "EUR", null)), "k");
+
+        assertThat(resp.getSucceeded()).isEqualTo(1);
+        assertThat(resp.getFailed()).isEqualTo(2);
+        assertThat(resp.getResults()).extracting(BatchTransferItemResult::getError)
+                .containsExactly(null, "Card not found", "Currency mismatch");
+        assertThat(cardA.getBalance()).isEqualByComparingTo("5.00");
+        assertThat(cardB.getBalance()).isEqualByComparingTo("5.00");
+    }
+
+    @Test
+    @DisplayName("transferBatch: повтор пакета с тем же ключом возвращает сохранённые переводы без блокировок")
+    void batch_replay_returnsExisting() {
+        Long userId = 33L;
+        UUID a = UUID.randomUUID(), b = UUID.randomUUID();
+
+        Transfer saved = new Transfer();
+        saved.setId(UUID.randomUUID());
+        saved.setIdempotencyKey("k:0");
+        when(transferRepository.findAllByUserIdAndIdempotencyKeyIn(eq(userId), anyCollection()))
+                .thenReturn(List.of(saved));
+
+        BatchTransferResponse resp = transferService.transferBatch(userId,
+                batch(BatchMode.ALL_OR_NOTHING, req(a, b, "5.00", "USD", null)), "k");
+
+        assertThat(resp.getSucceeded()).isEqualTo(1);
+        verify(transferUtil).map(saved);
+        verifyNoInteractions(cardRepository);
+        verify(transferRepository, never()).saveAll(anyCollection());
+    }
+
     // listOwn
 
     @Test
-    @DisplayName("listOwn: нормализация интервалов, ensureSort и маппинг страницы")
-    void listOwn_mapsPage() {
+    @DisplayName("listOwn: предикаты по фильтрам, нормализация интервалов, searchPageable, строки читаются проекцией без маппинга сущностей")
+    void listOwn_readsProjection() {
         Long userId = 20L;
         TransferStatus status = TransferStatus.COMPLETED;
         Instant from = Instant.now().minusSeconds(3600);
@@ -285,30 +703,97 @@ class TransferServiceTest {
          var bounds = new Bounds(from, to);
          when(transferUtil.normalizeBounds(from, to)).thenReturn(bounds);
         Pageable sorted = PageRequest.of(0, 10, Sort.by("createdAt").descending());
-        when(transferUtil.ensureSort(pageable)).thenReturn(sorted);
+        when(transferUtil.searchPageable(pageable, null, TransferSearchOrder.DATE)).thenReturn(sorted);
 
-        Transfer entity = new Transfer();
-        entity.setId(UUID.randomUUID());
-        entity.setStatus(TransferStatus.COMPLETED);
+        TransferResponse row = new TransferResponse();
+        row.setId(UUID.randomUUID());
+        row.setStatus(TransferStatus.COMPLETED);
 
-        Page<Transfer> repoPage = new PageImpl<>(List.of(entity), sorted, 1);
-        when(transferRepository.searchUser(eq(userId), eq(status), any(), any(), eq(cardId), eq(sorted)))
+        Page<TransferResponse> repoPage = new PageImpl<>(List.of(row), sorted, 1);
+        ArgumentCaptor<Specification<Transfer>> specCaptor = ArgumentCaptor.forClass(Specification.class);
+        when(transferRepository.findResponses(specCaptor.capture(), eq(sorted)))
                 .thenReturn(repoPage);
 
-        TransferResponse mapped = new TransferResponse();
-        mapped.setId(entity.getId());
-        mapped.setStatus(TransferStatus.COMPLETED);
-        when(transferUtil.map(entity)).thenReturn(mapped);
-
-        Page<TransferResponse> page = transferService.listOwn(userId, status, from, to, cardId, pageable);
+        Page<TransferResponse> page = transferService.listOwn(userId, status, from, to, cardId, null,
+                TransferSearchOrder.DATE, pageable);
 
         assertThat(page.getContent()).hasSize(1);
-        assertThat(page.getContent().getFirst().getId()).isEqualTo(entity.getId());
+        assertThat(page.getContent().getFirst().getId()).isEqualTo(row.getId());
         assertThat(page.getContent().getFirst().getStatus()).isEqualTo(TransferStatus.COMPLETED);
 
+        // предикаты спецификации: по одному на заданный фильтр, нормализованные границы интервала
+        Root<Transfer> root = mock(Root.class);
+        CriteriaQuery<?> query = mock(CriteriaQuery.class);
+        CriteriaBuilder cb = mock(CriteriaBuilder.class);
+        Path<Object> userIdPath = mock(Path.class);
+        Path<Object> statusPath = mock(Path.class);
+        Path<Instant> createdAtPath = mock(Path.class);
+        Path<Object> fromCardPath = mock(Path.class);
+        Path<Object> toCardPath = mock(Path.class);
+        doReturn(userIdPath).when(root).get("userId");
+        doReturn(statusPath).when(root).get("status");
+        doReturn(createdAtPath).when(root).get("createdAt");
+        doReturn(fromCardPath).when(root).get("fromCardId");
+        doReturn(toCardPath).when(root).get("toCardId");
+        Predicate userEq = mock(Predicate.class);
+        Predicate statusEq = mock(Predicate.class);
+        Predicate fromCardEq = mock(Predicate.class);
+        Predicate toCardEq = mock(Predicate.class);
+        when(cb.equal(userIdPath, userId)).thenReturn(userEq);
+        when(cb.equal(statusPath, status)).thenReturn(statusEq);
+        when(cb.equal(fromCardPath, cardId)).thenReturn(fromCardEq);
+        when(cb.equal(toCardPath, cardId)).thenReturn(toCardEq);
+
+        specCaptor.getValue().toPredicate(root, query, cb);
+
+        verify(cb).and(userEq, statusEq);
+        verify(cb).greaterThanOrEqualTo(createdAtPath, bounds.from());
+        verify(cb).lessThan(createdAtPath, bounds.to());
+        verify(cb).or(fromCardEq, toCardEq);
+        verify(cb, never()).lower(any());
+        verifyNoInteractions(query);
+
         verify(transferUtil).normalizeBounds(from, to);
-        verify(transferUtil).ensureSort(pageable);
-        verify(transferRepository).searchUser(userId, status, bounds.from(), bounds.to(), cardId, sorted);
-        verify(transferUtil).map(entity);
+        verify(transferUtil).searchPageable(pageable, null, TransferSearchOrder.DATE);
+        verify(transferRepository, never()).findAll(any(Specification.class), any(Pageable.class));
+        verify(transferUtil, never()).map(any());
+    }
+
+    @Test
+    @DisplayName("listOwn: интервал задевает архив → архивные строки дописываются после строк таблицы")
+    void listOwn_mergesArchiveAfterHotRows() {
+        Long userId = 20L;
+        Instant from = Instant.parse("2020-01-01T00:00:00Z");
+        Instant to   = Instant.parse("2026-01-01T00:00:00Z");
+        Pageable pageable = PageRequest.of(1, 2);
+        when(transferUtil.normalizeBounds(from, to)).thenReturn(new Bounds(from, to));
+        when(transferArchive.covers(from)).thenReturn(true);
+
+        TransferResponse hot = new TransferResponse();
+        hot.setId(UUID.randomUUID());
+        Transfer old1 = new Transfer();
+        old1.setId(UUID.randomUUID());
+        Transfer old2 = new Transfer();
+        old2.setId(UUID.randomUUID());
+
+        // в таблице 3 строки: вторая страница получает последнюю из них и первую архивную
+        Pageable newest = PageRequest.of(1, 2, Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id")));
+        when(transferRepository.findResponses(any(Specification.class), eq(newest)))
+                .thenReturn(new PageImpl<>(List.of(hot), newest, 3));
+        // на странице одно свободное место: из архива читается одна строка, итог — отдельным подсчётом
+        when(transferArchive.find(userId, null, from, to, null, null, null, 1)).thenReturn(List.of(old1));
+        when(transferArchive.count(userId, null, from, to, null, null)).thenReturn(2L);
+        when(transferUtil.map(any(Transfer.class))).thenAnswer(inv -> {
+            TransferResponse r = new TransferResponse();
+            r.setId(inv.<Transfer>getArgument(0).getId());
+            return r;
+        });
+
+        Page<TransferResponse> page = transferService.listOwn(userId, null, from, to, null, null,
+                TransferSearchOrder.DATE, pageable);
+
+        assertThat(page.getContent()).extracting(TransferResponse::getId).containsExactly(hot.getId(), old1.getId());
+        assertThat(page.getTotalElements()).isEqualTo(5);
+        verify(transferUtil, never()).searchPageable(any(), any(), any());
     }
 }
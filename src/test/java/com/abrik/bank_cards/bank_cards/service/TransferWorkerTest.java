@@ -0,0 +1,67 @@
+package com.abrik.bank_cards.bank_cards.service;
+
+import com.abrik.bank_cards.bank_cards.service.user.TransferService;
+import com.abrik.bank_cards.bank_cards.service.user.TransferWorker;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DeadlockLoserDataAccessException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class TransferWorkerTest {
+
+    private final TransferService transferService = mock(TransferService.class);
+    private final TransferWorker worker = new TransferWorker(transferService, true, 1, 50, Duration.ofMillis(200));
+
+    @Test
+    @DisplayName("по одному: обычные переводы обрабатываются, упавший в одиночку уходит в FAILED")
+    void processOneByOne_failsOnlyPoisonRow() {
+        UUID ok = UUID.randomUUID(), poison = UUID.randomUUID(), taken = UUID.randomUUID();
+        when(transferService.findPendingIds(50)).thenReturn(List.of(ok, poison, taken));
+        when(transferService.processPendingById(ok)).thenReturn(1);
+        when(transferService.processPendingById(poison)).thenThrow(new IllegalStateException("boom"));
+        when(transferService.processPendingById(taken)).thenReturn(0);
+        when(transferService.failPending(poison, "Processing error")).thenReturn(true);
+
+        assertThat(worker.processOneByOne()).isEqualTo(2);
+
+        verify(transferService).failPending(poison, "Processing error");
+        verify(transferService, never()).failPending(ok, "Processing error");
+        verify(transferService, never()).failPending(taken, "Processing error");
+    }
+
+    @Test
+    @DisplayName("по одному: ошибка при пометке FAILED не прерывает остальные")
+    void processOneByOne_continuesWhenFailPendingThrows() {
+        UUID poison = UUID.randomUUID(), ok = UUID.randomUUID();
+        when(transferService.findPendingIds(50)).thenReturn(List.of(poison, ok));
+        when(transferService.processPendingById(poison)).thenThrow(new IllegalStateException("boom"));
+        when(transferService.failPending(poison, "Processing error")).thenThrow(new IllegalStateException("db down"));
+        when(transferService.processPendingById(ok)).thenReturn(1);
+
+        assertThat(worker.processOneByOne()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("по одному: таймаут блокировки или дедлок — перевод остаётся PENDING, не FAILED")
+    void processOneByOne_leavesTransientFailuresPending() {
+        UUID locked = UUID.randomUUID(), deadlocked = UUID.randomUUID(), ok = UUID.randomUUID();
+        when(transferService.findPendingIds(50)).thenReturn(List.of(locked, deadlocked, ok));
+        when(transferService.processPendingById(locked))
+                .thenThrow(new CannotAcquireLockException("lock timeout"));
+        when(transferService.processPendingById(deadlocked))
+                .thenThrow(new DeadlockLoserDataAccessException("deadlock detected", null));
+        when(transferService.processPendingById(ok)).thenReturn(1);
+
+        assertThat(worker.processOneByOne()).isEqualTo(1);
+
+        verify(transferService, never()).failPending(any(), any());
+    }
+}
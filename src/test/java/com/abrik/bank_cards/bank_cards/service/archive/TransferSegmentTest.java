@@ -0,0 +1,239 @@
+package com.abrik.bank_cards.bank_cards.service.archive;
+
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferCursor;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferStatus;
+import com.abrik.bank_cards.bank_cards.entity.Transfer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class TransferSegmentTest {
+
+    @TempDir Path dir;
+
+    private static final Instant MARCH = Instant.parse("2023-03-01T00:00:00Z");
+    private static final UUID CARD_A = UUID.randomUUID();
+    private static final UUID CARD_B = UUID.randomUUID();
+
+    private static Transfer transfer(long userId, Instant createdAt, TransferStatus status, UUID from, String message) {
+        Transfer t = new Transfer();
+        t.setId(UUID.randomUUID());
+        t.setUserId(userId);
+        t.setFromCardId(from);
+        t.setToCardId(from == CARD_A ? CARD_B : CARD_A);
+        t.setAmount(new BigDecimal("12.50"));
+        t.setCurrency("RUB");
+        t.setStatus(status);
+        t.setMessage(message);
+        t.setIdempotencyKey("k-" + userId + "-" + createdAt.getEpochSecond());
+        t.setCreatedAt(createdAt);
+        return t;
+    }
+
+    // 3 пользователя по 10 переводов с шагом в час, блоки по 4 строки
+    private List<Transfer> writeSegment(Path file) {
+        List<Transfer> rows = new ArrayList<>();
+        for (long user = 1; user <= 3; user++)
+            for (int i = 0; i < 10; i++)
+                rows.add(transfer(user, MARCH.plusSeconds(3600L * i),
+                        i % 2 == 0 ? TransferStatus.COMPLETED : TransferStatus.FAILED,
+                        i % 3 == 0 ? CARD_A : CARD_B,
+                        i == 0 ? "первый" : null));
+        try (TransferSegmentWriter writer = new TransferSegmentWriter(file, 4)) {
+            rows.forEach(writer::append);
+        }
+        return rows;
+    }
+
+    @Test
+    @DisplayName("запись → чтение: все поля сохраняются, читаются только строки пользователя в интервале")
+    void roundTrip() {
+        Path file = dir.resolve(TransferArchive.segmentFileName(YearMonth.of(2023, 3)));
+        List<Transfer> written = writeSegment(file);
+
+        try (TransferSegment segment = TransferSegment.open(file)) {
+            assertThat(segment.rowCount()).isEqualTo(30);
+            assertThat(segment.minCreatedAt()).isEqualTo(MARCH);
+            assertThat(segment.maxCreatedAt()).isEqualTo(MARCH.plusSeconds(9 * 3600));
+
+            List<Transfer> user2 = segment.find(2L, null, null, t -> true);
+            assertThat(user2).hasSize(10);
+            assertThat(user2).allMatch(t -> t.getUserId() == 2L);
+            Transfer first = written.get(10);
+            assertThat(user2).anySatisfy(t -> {
+                assertThat(t.getId()).isEqualTo(first.getId());
+                assertThat(t.getAmount()).isEqualByComparingTo("12.50");
+                assertThat(t.getCurrency()).isEqualTo("RUB");
+                assertThat(t.getMessage()).isEqualTo("первый");
+                assertThat(t.getIdempotencyKey()).isEqualTo(first.getIdempotencyKey());
+                assertThat(t.getFromCardId()).isEqualTo(first.getFromCardId());
+                assertThat(t.getToCardId()).isEqualTo(first.getToCardId());
+                assertThat(t.getFailureReason()).isNull();
+            });
+
+            // полуинтервал [from, to)
+            List<Transfer> window = segment.find(3L, MARCH.plusSeconds(2 * 3600), MARCH.plusSeconds(5 * 3600), t -> true);
+            assertThat(window).extracting(Transfer::getCreatedAt).containsExactlyInAnyOrder(
+                    MARCH.plusSeconds(2 * 3600), MARCH.plusSeconds(3 * 3600), MARCH.plusSeconds(4 * 3600));
+
+            assertThat(segment.find(42L, null, null, t -> true)).isEmpty();
+        }
+    }
+
+    @Test
+    @DisplayName("limit: новые сверху, старые блоки не читаются; count — по тем же фильтрам")
+    void find_newestFirstWithLimit() {
+        Path file = dir.resolve(TransferArchive.segmentFileName(YearMonth.of(2023, 3)));
+        writeSegment(file);
+
+        try (TransferSegment segment = TransferSegment.open(file)) {
+            List<Transfer> all = segment.find(2L, null, null, t -> true);
+            assertThat(all).hasSize(10).isSortedAccordingTo(TransferArchive.NEWEST_FIRST);
+
+            List<Transfer> newest = segment.find(2L, null, null, t -> true, 3);
+            assertThat(newest).extracting(Transfer::getId)
+                    .containsExactlyElementsOf(all.subList(0, 3).stream().map(Transfer::getId).toList());
+            assertThat(segment.find(2L, null, null, t -> true, 0)).isEmpty();
+
+            // нижняя граница посреди блоков: читаются только строки [from, ∞)
+            assertThat(segment.find(3L, MARCH.plusSeconds(7 * 3600), null, t -> true, 100))
+                    .extracting(Transfer::getCreatedAt)
+                    .containsExactly(MARCH.plusSeconds(9 * 3600), MARCH.plusSeconds(8 * 3600), MARCH.plusSeconds(7 * 3600));
+
+            assertThat(segment.count(2L, null, null, t -> true)).isEqualTo(10);
+            assertThat(segment.count(1L, null, null, t -> t.getStatus() == TransferStatus.COMPLETED)).isEqualTo(5);
+            assertThat(segment.count(42L, null, null, t -> true)).isZero();
+        }
+
+        TransferArchive archive = new TransferArchive(dir);
+        List<Transfer> page = archive.find(1L, null, null, null, null, null, null, 4);
+        assertThat(page).hasSize(4).isSortedAccordingTo(TransferArchive.NEWEST_FIRST);
+        assertThat(page.getFirst().getCreatedAt()).isEqualTo(MARCH.plusSeconds(9 * 3600));
+        assertThat(archive.count(1L, TransferStatus.COMPLETED, null, null, null, null)).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("archive: выключен или интервал новее архивируемых месяцев — к БД не обращается")
+    void archive_skipsDatabaseOutsideArchivableWindow() {
+        Clock clock = Clock.fixed(Instant.parse("2026-10-18T12:00:00Z"), ZoneOffset.UTC);
+        JdbcTemplate jdbc = mock(JdbcTemplate.class);
+
+        TransferArchive disabled = new TransferArchive(dir, jdbc, false, 24, clock);
+        assertThat(disabled.covers(null)).isFalse();
+        assertThat(disabled.find(1L, null, null, null, null, null, null, 10)).isEmpty();
+        assertThat(disabled.count(1L, null, null, null, null, null)).isZero();
+
+        // after-months = 24: архивируются месяцы раньше 2024-10, с запасом в месяц — раньше 2024-11
+        TransferArchive archive = new TransferArchive(dir, jdbc, true, 24, clock);
+        assertThat(archive.covers(Instant.parse("2026-07-20T00:00:00Z"))).isFalse();
+        assertThat(archive.covers(Instant.parse("2024-11-01T00:00:00Z"))).isFalse();
+        verifyNoInteractions(jdbc);
+
+        assertThat(archive.covers(Instant.parse("2024-10-31T00:00:00Z"))).isFalse();
+        verify(jdbc).query(eq("select month, size_bytes from transfer_archive_segment"), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    @DisplayName("writer: строки не по порядку (user_id, created_at) отклоняются")
+    void writer_rejectsUnorderedRows() {
+        Path file = dir.resolve("transfers-2023-03.seg");
+        TransferSegmentWriter writer = new TransferSegmentWriter(file, 4);
+        writer.append(transfer(2L, MARCH, TransferStatus.COMPLETED, CARD_A, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> writer.append(transfer(1L, MARCH, TransferStatus.COMPLETED, CARD_A, null)));
+        writer.abort();
+        assertThat(dir.resolve("transfers-2023-03.seg")).doesNotExist();
+    }
+
+    @Test
+    @DisplayName("archive: граница по последнему сегменту, фильтры, q и курсор, новые сверху")
+    void archive_filtersAndCursor() {
+        TransferArchive archive = new TransferArchive(dir);
+        assertThat(archive.archivedBefore()).isNull();
+        assertThat(archive.covers(null)).isFalse();
+
+        writeSegment(dir.resolve(TransferArchive.segmentFileName(YearMonth.of(2023, 3))));
+        archive.reload();
+
+        assertThat(archive.contains(YearMonth.of(2023, 3))).isTrue();
+        assertThat(archive.archivedBefore()).isEqualTo(Instant.parse("2023-04-01T00:00:00Z"));
+        assertThat(archive.covers(Instant.parse("2023-03-31T23:59:59Z"))).isTrue();
+        assertThat(archive.covers(Instant.parse("2023-04-01T00:00:00Z"))).isFalse();
+
+        List<Transfer> completed = archive.find(1L, TransferStatus.COMPLETED, null, null, null, null, null, Integer.MAX_VALUE);
+        assertThat(completed).hasSize(5).isSortedAccordingTo(TransferArchive.NEWEST_FIRST);
+        assertThat(completed).allMatch(t -> t.getStatus() == TransferStatus.COMPLETED);
+
+        List<Transfer> byCard = archive.find(1L, null, null, null, CARD_A, null, null, Integer.MAX_VALUE);
+        assertThat(byCard).hasSize(10);
+
+        Transfer third = archive.find(1L, null, null, null, null, null, null, Integer.MAX_VALUE).get(2);
+        List<Transfer> after = archive.find(1L, null, null, null, null, null,
+                new TransferCursor(third.getCreatedAt(), third.getId()), Integer.MAX_VALUE);
+        assertThat(after).hasSize(7);
+        assertThat(after).allMatch(t -> t.getCreatedAt().isBefore(third.getCreatedAt()));
+
+        // q — подстрока сообщения в нижнем регистре
+        assertThat(archive.find(2L, null, null, null, null, "перв", null, Integer.MAX_VALUE)).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("archive c БД: видны только месяцы из transfer_archive_segment, недостающий сегмент скачивается")
+    void archive_fetchesSegmentsListedInDatabase() throws Exception {
+        Path source = dir.resolve("source.seg");
+        writeSegment(source);
+        byte[] bytes = Files.readAllBytes(source);
+        // файл месяца, которого нет в таблице (например, после отката архивации), не читается
+        writeSegment(dir.resolve(TransferArchive.segmentFileName(YearMonth.of(2023, 4))));
+
+        JdbcTemplate jdbc = mock(JdbcTemplate.class);
+        doAnswer(inv -> {
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getDate("month")).thenReturn(Date.valueOf("2023-03-01"));
+            when(rs.getLong("size_bytes")).thenReturn((long) bytes.length);
+            inv.<RowCallbackHandler>getArgument(1).processRow(rs);
+            return null;
+        }).when(jdbc).query(eq("select month, size_bytes from transfer_archive_segment"), any(RowCallbackHandler.class));
+        doAnswer(inv -> {
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getBinaryStream("data")).thenReturn(new ByteArrayInputStream(bytes));
+            inv.<RowCallbackHandler>getArgument(1).processRow(rs);
+            return null;
+        }).when(jdbc).query(anyString(), any(RowCallbackHandler.class), eq(Date.valueOf("2023-03-01")));
+
+        TransferArchive archive = new TransferArchive(dir, jdbc, true, 24, Clock.systemUTC());
+
+        assertThat(archive.contains(YearMonth.of(2023, 3))).isTrue();
+        assertThat(archive.contains(YearMonth.of(2023, 4))).isFalse();
+        assertThat(archive.archivedBefore()).isEqualTo(Instant.parse("2023-04-01T00:00:00Z"));
+        assertThat(archive.find(1L, null, null, null, null, null, null, Integer.MAX_VALUE)).hasSize(10);
+        assertThat(dir.resolve(TransferArchive.segmentFileName(YearMonth.of(2023, 3)))).hasSize(bytes.length);
+    }
+}
@@ -0,0 +1,94 @@
+package com.abrik.bank_cards.bank_cards.service.partition;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.Date;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransferPartitionMaintainerTest {
+
+    @Mock JdbcTemplate jdbcTemplate;
+    @Mock PlatformTransactionManager transactionManager;
+
+    private final Clock clock = Clock.fixed(Instant.parse("2025-05-20T12:00:00Z"), ZoneOffset.UTC);
+
+    private TransferPartitionMaintainer maintainer(int retentionMonths) {
+        return new TransferPartitionMaintainer(jdbcTemplate, transactionManager, clock,
+                true, 3, retentionMonths, Duration.ofHours(6));
+    }
+
+    private void lockAcquired(boolean acquired) {
+        when(jdbcTemplate.queryForObject(eq("select pg_try_advisory_xact_lock(?)"), eq(Boolean.class), anyLong()))
+                .thenReturn(acquired);
+    }
+
+    @Test
+    @DisplayName("создаёт партиции текущего месяца и months-ahead следующих")
+    void createsCurrentAndFutureMonths() {
+        lockAcquired(true);
+
+        List<String> detached = maintainer(0).maintainOnce();
+
+        ArgumentCaptor<Object> month = ArgumentCaptor.forClass(Object.class);
+        verify(jdbcTemplate, times(4)).queryForObject(eq("select transfer_create_partition(?)"),
+                eq(String.class), month.capture());
+        assertThat(month.getAllValues()).containsExactly(
+                Date.valueOf("2025-05-01"), Date.valueOf("2025-06-01"),
+                Date.valueOf("2025-07-01"), Date.valueOf("2025-08-01"));
+        assertThat(detached).isEmpty();
+        verify(jdbcTemplate, never()).execute(anyString());
+        verify(jdbcTemplate).queryForObject("select count(*) from transfer_default", Long.class);
+    }
+
+    @Test
+    @DisplayName("retention: отсоединяет только месячные партиции старше срока")
+    void detachesPartitionsPastRetention() {
+        lockAcquired(true);
+        when(jdbcTemplate.queryForList(contains("pg_inherits"), eq(String.class)))
+                .thenReturn(List.of("transfer_y2024m12", "transfer_y2025m01", "transfer_y2025m02",
+                        "transfer_y2025m05", "transfer_default"));
+
+        List<String> detached = maintainer(3).maintainOnce();
+
+        assertThat(detached).containsExactly("transfer_y2024m12", "transfer_y2025m01");
+        verify(jdbcTemplate).execute("alter table transfer detach partition transfer_y2024m12");
+        verify(jdbcTemplate).execute("alter table transfer detach partition transfer_y2025m01");
+        verify(jdbcTemplate).update(eq("delete from transfer_idempotency where created_at < ?"), any(Object.class));
+    }
+
+    @Test
+    @DisplayName("другой инстанс держит блокировку — ничего не делает")
+    void skipsWhenLockHeldElsewhere() {
+        lockAcquired(false);
+
+        assertThat(maintainer(3).maintainOnce()).isEmpty();
+
+        verify(jdbcTemplate, never()).queryForObject(eq("select transfer_create_partition(?)"), eq(String.class), any());
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+
+    @Test
+    @DisplayName("partitionMonth: разбирает только имена transfer_yYYYYmMM")
+    void partitionMonth_parsesOnlyMonthlyNames() {
+        assertThat(TransferPartitionMaintainer.partitionMonth("transfer_y2025m03")).isEqualTo(YearMonth.of(2025, 3));
+        assertThat(TransferPartitionMaintainer.partitionMonth("transfer_default")).isNull();
+        assertThat(TransferPartitionMaintainer.partitionMonth("transfer_y2025m03; drop table card")).isNull();
+    }
+}
@@ -0,0 +1,77 @@
+package com.abrik.bank_cards.bank_cards.service.rekey;
+
+import com.abrik.bank_cards.bank_cards.util.PanCryptoUtil;
+import com.abrik.bank_cards.bank_cards.util.PanFingerprintUtil;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PanFingerprintBackfillTest {
+
+    @Mock JdbcTemplate jdbcTemplate;
+    @Mock PlatformTransactionManager transactionManager;
+
+    private final PanCryptoUtil crypto = new PanCryptoUtil(
+            "U8ZqTyCHJ3FSNFMoHp436kRbwuB5QlQqorF1ORy8rQw=", "1:WBmC7aKN7xQNDfRoTtNuwSqqKqfCoGu6Haf3+Nj9+3s=", 1);
+    private final PanFingerprintUtil fingerprints = new PanFingerprintUtil("IaXooPriGnr8/TTIYU1izSlF4CkTYb6Xwd6D4FLoZl8=");
+
+    private PanFingerprintBackfill backfill() {
+        return new PanFingerprintBackfill(jdbcTemplate, transactionManager, crypto, fingerprints, true, 100, 1000);
+    }
+
+    @Test
+    @DisplayName("кусок: отпечатки расшифрованных PAN, условный UPDATE; следующий кусок — после последнего id")
+    @SuppressWarnings("unchecked")
+    void chunk_fillsAndAdvances() {
+        when(jdbcTemplate.queryForObject(eq("select pg_try_advisory_xact_lock(?)"), eq(Boolean.class), anyLong()))
+                .thenReturn(true);
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        when(jdbcTemplate.query(argThat((String sql) -> sql.contains("pan_fingerprint is null") && !sql.contains("id > ?")),
+                any(RowMapper.class), eq(100)))
+                .thenReturn(List.of(
+                        new PanRekeyer.CardPan(a, null, crypto.encrypt("4000000000000001")),
+                        new PanRekeyer.CardPan(b, null, crypto.encrypt("4000000000000002"))));
+        // вторая карта — дубликат: UPDATE её не тронул
+        when(jdbcTemplate.batchUpdate(eq(PanFingerprintBackfill.UPDATE_SQL), anyList())).thenReturn(new int[]{1, 0});
+
+        PanFingerprintBackfill backfill = backfill();
+        assertThat(backfill.backfillChunk()).isEqualTo(new PanFingerprintBackfill.Chunk(2, 1));
+
+        ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(eq(PanFingerprintBackfill.UPDATE_SQL), batch.capture());
+        Object[] first = batch.getValue().getFirst();
+        assertThat((byte[]) first[0]).isEqualTo(fingerprints.fingerprint("4000000000000001"));
+        assertThat(first[1]).isEqualTo(a);
+        assertThat(crypto.decryptPan((byte[]) first[2], null)).isEqualTo("4000000000000001");
+        assertThat(first[3]).isNull();
+        assertThat(first[4]).isSameAs(first[0]);
+
+        when(jdbcTemplate.query(contains("id > ?"), any(RowMapper.class), eq(b), eq(100))).thenReturn(List.of());
+        assertThat(backfill.backfillChunk().scanned()).isZero();
+    }
+
+    @Test
+    @DisplayName("блокировка у другого инстанса — null, карты не читаются")
+    void busy() {
+        when(jdbcTemplate.queryForObject(eq("select pg_try_advisory_xact_lock(?)"), eq(Boolean.class), anyLong()))
+                .thenReturn(false);
+
+        assertThat(backfill().backfillChunk()).isNull();
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+}
@@ -0,0 +1,157 @@
+package com.abrik.bank_cards.bank_cards.service.rekey;
+
+import com.abrik.bank_cards.bank_cards.util.PanCryptoUtil;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PanRekeyerTest {
+
+    @Mock JdbcTemplate jdbcTemplate;
+    @Mock PlatformTransactionManager transactionManager;
+
+    private static final String LEGACY_KEY = "U8ZqTyCHJ3FSNFMoHp436kRbwuB5QlQqorF1ORy8rQw=";
+    private static final String KEY_1 = "WBmC7aKN7xQNDfRoTtNuwSqqKqfCoGu6Haf3+Nj9+3s=";
+    private static final String KEY_2 = Base64.getEncoder().encodeToString(new byte[16]);
+
+    private final PanCryptoUtil v1 = new PanCryptoUtil(LEGACY_KEY, "1:" + KEY_1, 1);
+    private final PanCryptoUtil v2 = new PanCryptoUtil(LEGACY_KEY, "1:" + KEY_1 + ",2:" + KEY_2, 2);
+    private final Clock clock = Clock.fixed(Instant.parse("2025-05-20T12:00:00Z"), ZoneOffset.UTC);
+
+    private PanRekeyer rekeyer() {
+        return new PanRekeyer(jdbcTemplate, transactionManager, v2, clock, true, 100, 1000, Duration.ofHours(1));
+    }
+
+    private void lockAcquired(boolean acquired) {
+        when(jdbcTemplate.queryForObject(eq("select pg_try_advisory_xact_lock(?)"), eq(Boolean.class), anyLong()))
+                .thenReturn(acquired);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void checkpoint(PanRekeyer.Checkpoint checkpoint) {
+        when(jdbcTemplate.query(contains("from pan_rekey_checkpoint"), any(RowMapper.class), eq(2)))
+                .thenReturn(checkpoint == null ? List.of() : List.of(checkpoint));
+    }
+
+    private static String legacyEncrypt(String pan) throws Exception {
+        Cipher cipher = Cipher.getInstance("AES");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(Base64.getDecoder().decode(LEGACY_KEY), "AES"));
+        return Base64.getEncoder().encodeToString(cipher.doFinal(pan.getBytes()));
+    }
+
+    @Test
+    @DisplayName("rekey: прежний формат и старая версия перешифровываются, текущая версия пропускается")
+    void rekey_onlyStaleRows() throws Exception {
+        UUID legacy = UUID.randomUUID();
+        UUID old = UUID.randomUUID();
+        UUID current = UUID.randomUUID();
+        List<PanRekeyer.CardPan> rows = List.of(
+                new PanRekeyer.CardPan(legacy, legacyEncrypt("4000000000000001"), null),
+                new PanRekeyer.CardPan(old, null, v1.encrypt("4000000000000002")),
+                new PanRekeyer.CardPan(current, null, v2.encrypt("4000000000000003")));
+
+        List<Object[]> updates = rekeyer().rekey(rows);
+
+        assertThat(updates).hasSize(2);
+        assertThat(updates.get(0)[1]).isEqualTo(legacy);
+        assertThat(updates.get(0)[2]).isNull();
+        assertThat(updates.get(0)[3]).isEqualTo(rows.get(0).panEncrypted());
+        assertThat(updates.get(1)[2]).isSameAs(rows.get(1).panCiphertext());
+        assertThat(v2.decryptPan((byte[]) updates.get(0)[0], null)).isEqualTo("4000000000000001");
+        assertThat(PanCryptoUtil.keyVersion((byte[]) updates.get(1)[0])).isEqualTo(2);
+        assertThat(v2.decryptPan((byte[]) updates.get(1)[0], null)).isEqualTo("4000000000000002");
+    }
+
+    @Test
+    @DisplayName("кусок: читает после checkpoint, условный UPDATE пачкой, checkpoint — id последней строки")
+    @SuppressWarnings("unchecked")
+    void chunk_advancesCheckpoint() {
+        lockAcquired(true);
+        UUID after = UUID.randomUUID();
+        checkpoint(new PanRekeyer.Checkpoint(after, null));
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        when(jdbcTemplate.query(contains("where id > ?"), any(RowMapper.class), eq(after), eq(100)))
+                .thenReturn(List.of(
+                        new PanRekeyer.CardPan(a, null, v1.encrypt("4000000000000001")),
+                        new PanRekeyer.CardPan(b, null, v2.encrypt("4000000000000002"))));
+        when(jdbcTemplate.batchUpdate(eq(PanRekeyer.UPDATE_SQL), anyList())).thenReturn(new int[]{1});
+
+        PanRekeyer.Chunk chunk = rekeyer().rekeyChunk();
+
+        assertThat(chunk).isEqualTo(new PanRekeyer.Chunk(2, 1, false));
+        ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(eq(PanRekeyer.UPDATE_SQL), batch.capture());
+        assertThat(batch.getValue()).hasSize(1);
+        assertThat(batch.getValue().getFirst()[1]).isEqualTo(a);
+        verify(jdbcTemplate).update(contains("insert into pan_rekey_checkpoint"),
+                eq(2), eq(b), eq(1), isNull(), any());
+    }
+
+    @Test
+    @DisplayName("конец таблицы: нет отставших строк → проход завершён")
+    @SuppressWarnings("unchecked")
+    void endOfTable_completes() {
+        lockAcquired(true);
+        checkpoint(new PanRekeyer.Checkpoint(UUID.randomUUID(), null));
+        when(jdbcTemplate.query(contains("where id > ?"), any(RowMapper.class), any(), eq(100))).thenReturn(List.of());
+        when(jdbcTemplate.queryForObject(contains("select count(*) from card"), eq(Long.class), eq(2))).thenReturn(0L);
+
+        PanRekeyer.Chunk chunk = rekeyer().rekeyChunk();
+
+        assertThat(chunk.scanned()).isZero();
+        verify(jdbcTemplate).update(contains("insert into pan_rekey_checkpoint"),
+                eq(2), isNull(), eq(0), notNull(), any());
+    }
+
+    @Test
+    @DisplayName("конец таблицы: остались строки, изменённые во время прохода → новый проход с начала")
+    @SuppressWarnings("unchecked")
+    void endOfTable_restartsWhenRowsLeftBehind() {
+        lockAcquired(true);
+        checkpoint(new PanRekeyer.Checkpoint(UUID.randomUUID(), null));
+        when(jdbcTemplate.query(contains("where id > ?"), any(RowMapper.class), any(), eq(100))).thenReturn(List.of());
+        when(jdbcTemplate.queryForObject(contains("select count(*) from card"), eq(Long.class), eq(2))).thenReturn(3L);
+
+        rekeyer().rekeyChunk();
+
+        verify(jdbcTemplate).update(contains("insert into pan_rekey_checkpoint"),
+                eq(2), isNull(), eq(0), isNull(), any());
+    }
+
+    @Test
+    @DisplayName("проход завершён или блокировка у другого инстанса — idle, карты не читаются")
+    @SuppressWarnings("unchecked")
+    void idle() {
+        lockAcquired(true);
+        checkpoint(new PanRekeyer.Checkpoint(null, Instant.parse("2025-05-01T00:00:00Z")));
+        assertThat(rekeyer().rekeyChunk().idle()).isTrue();
+
+        lockAcquired(false);
+        assertThat(rekeyer().rekeyChunk().idle()).isTrue();
+
+        verify(jdbcTemplate, never()).query(contains("from card"), any(RowMapper.class), any(Object[].class));
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+}
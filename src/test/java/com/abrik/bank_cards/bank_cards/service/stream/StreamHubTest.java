@@ -0,0 +1,111 @@
+package com.abrik.bank_cards.bank_cards.service.stream;
+
+import com.abrik.bank_cards.bank_cards.service.outbox.OutboxRecorded;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamHubTest {
+
+    /** Эмиттер без сервлета: запоминает отправленное, может «зависнуть» на сокете. */
+    static class RecordingEmitter extends SseEmitter {
+        final List<String> sent = new CopyOnWriteArrayList<>();
+        final CountDownLatch socket;
+        final CountDownLatch completed = new CountDownLatch(1);
+
+        RecordingEmitter(CountDownLatch socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            Set<ResponseBodyEmitter.DataWithMediaType> data = builder.build();
+            StringBuilder text = new StringBuilder();
+            data.forEach(d -> text.append(d.getData()));
+            try {
+                socket.await();
+            } catch (InterruptedException e) {
+                throw new IOException("interrupted", e);
+            }
+            sent.add(text.toString());
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+
+        boolean received(String payload) {
+            return sent.stream().anyMatch(s -> s.contains(payload));
+        }
+    }
+
+    private static StreamHub hub(int bufferSize, int maxPerUser) {
+        return new StreamHub(bufferSize, maxPerUser, Duration.ofMinutes(1), Duration.ofMinutes(1));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+
+    @Test
+    @DisplayName("событие уходит только подписчикам владельца, с типом в event:")
+    void deliversToOwnerOnly() throws Exception {
+        StreamHub hub = hub(8, 5);
+        RecordingEmitter mine = new RecordingEmitter(new CountDownLatch(0));
+        RecordingEmitter other = new RecordingEmitter(new CountDownLatch(0));
+        hub.subscribe(1L, mine);
+        hub.subscribe(2L, other);
+
+        hub.onRecorded(new OutboxRecorded("TRANSFER_COMPLETED", 1L, "{\"id\":\"t1\"}"));
+
+        await(() -> mine.received("{\"id\":\"t1\"}"));
+        assertThat(mine.sent).anyMatch(s -> s.contains("event:TRANSFER_COMPLETED"));
+        assertThat(other.received("t1")).isFalse();
+        assertThat(hub.subscriberCount()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("медленный клиент: переполненная очередь закрывает подписку, издатель не блокируется")
+    void evictsSlowConsumer() throws Exception {
+        StreamHub hub = hub(2, 5);
+        CountDownLatch socket = new CountDownLatch(1);
+        RecordingEmitter slow = new RecordingEmitter(socket);
+        hub.subscribe(1L, slow);
+
+        for (int i = 0; i < 10; i++)
+            hub.onRecorded(new OutboxRecorded("TRANSFER_COMPLETED", 1L, "{\"n\":" + i + "}"));
+
+        assertThat(hub.subscriberCount()).isZero();
+        socket.countDown();
+        assertThat(slow.completed.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    @DisplayName("лимит подключений пользователя: самое старое закрывается")
+    void closesOldestOverLimit() throws Exception {
+        StreamHub hub = hub(8, 2);
+        RecordingEmitter first = new RecordingEmitter(new CountDownLatch(0));
+        hub.subscribe(1L, first);
+        hub.subscribe(1L, new RecordingEmitter(new CountDownLatch(0)));
+        hub.subscribe(1L, new RecordingEmitter(new CountDownLatch(0)));
+
+        assertThat(hub.subscriberCount()).isEqualTo(2);
+        assertThat(first.completed.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+}
@@ -0,0 +1,162 @@
+package com.abrik.bank_cards.bank_cards.util;
+
+import com.abrik.bank_cards.bank_cards.exception.ConflictException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CardBackPressureTest {
+
+    @Test
+    @DisplayName("slots=0: action выполняется без блокировок")
+    void disabled_passesThrough() {
+        CardBackPressure locks = new CardBackPressure(0, Duration.ofSeconds(1));
+
+        assertThat(locks.isEnabled()).isFalse();
+        assertThat(locks.withCards(List.of(UUID.randomUUID()), () -> 42)).isEqualTo(42);
+    }
+
+    @Test
+    @DisplayName("переводы по одной карте выполняются строго по одному")
+    void sameCard_isSerialized() throws Exception {
+        CardBackPressure locks = new CardBackPressure(16, Duration.ofSeconds(5));
+        UUID hot = UUID.randomUUID();
+        AtomicInteger inside = new AtomicInteger();
+        AtomicInteger maxInside = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<Integer>> tasks = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                tasks.add(() -> locks.withCards(List.of(hot, UUID.randomUUID()), () -> {
+                    maxInside.accumulateAndGet(inside.incrementAndGet(), Math::max);
+                    Thread.onSpinWait();
+                    inside.decrementAndGet();
+                    return 1;
+                }));
+            }
+            for (Future<Integer> f : pool.invokeAll(tasks)) {
+                f.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(maxInside.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("слот занят дольше таймаута → 409 Conflict")
+    void busySlot_timesOut() throws Exception {
+        CardBackPressure locks = new CardBackPressure(4, Duration.ofMillis(50));
+        UUID card = UUID.randomUUID();
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Thread holder = new Thread(() -> locks.withCards(List.of(card), () -> {
+            held.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }));
+        holder.start();
+        held.await();
+
+        try {
+            assertThrows(ConflictException.class, () -> locks.withCards(List.of(card), () -> null));
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+    }
+
+    @Test
+    @DisplayName("слоты + row lock: GUARDED, пакет и воркер без слоёв не блокируют друг друга")
+    void mixedLockers_doNotDeadlock() throws Exception {
+        CardBackPressure backPressure = new CardBackPressure(2, Duration.ofSeconds(10));
+        List<UUID> cards = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            cards.add(UUID.randomUUID());
+        }
+        // row lock в Postgres: таймаут вместо ожидания навсегда — признак взаимной блокировки
+        Map<UUID, ReentrantLock> rows = new ConcurrentHashMap<>();
+        cards.forEach(id -> rows.put(id, new ReentrantLock()));
+        UUID hot = cards.get(0);
+        AtomicInteger deadlocks = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(12);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                UUID from = cards.get(i % 4);
+                UUID to = cards.get((i % 4 + 1 + (i / 4) % 3) % 4);
+                switch (i % 3) {
+                    // GUARDED: UPDATE по порядку id, кредит горячей карты — последним
+                    case 0 -> tasks.add(() -> backPressure.withCards(List.of(from, to),
+                            () -> lockRows(rows, guardedOrder(from, to, hot), deadlocks)));
+                    // пакет: lockAllByIdInAndUserId — все карты одним запросом по порядку id
+                    case 1 -> tasks.add(() -> backPressure.withCards(cards,
+                            () -> lockRows(rows, sorted(cards), deadlocks)));
+                    // TransferWorker / group commit: берут строки без слоёв
+                    default -> tasks.add(() -> lockRows(rows, sorted(cards.subList(1, 4)), deadlocks));
+                }
+            }
+            for (Future<Void> f : pool.invokeAll(tasks, 30, TimeUnit.SECONDS)) {
+                f.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(deadlocks.get()).isZero();
+    }
+
+    private static List<UUID> guardedOrder(UUID from, UUID to, UUID hot) {
+        if (to.equals(hot)) {
+            return List.of(from, to);
+        }
+        return sorted(List.of(from, to));
+    }
+
+    private static List<UUID> sorted(List<UUID> ids) {
+        return ids.stream().sorted(Comparator.comparing(UUID::toString)).toList();
+    }
+
+    private static Void lockRows(Map<UUID, ReentrantLock> rows, List<UUID> order, AtomicInteger deadlocks) {
+        List<ReentrantLock> held = new ArrayList<>();
+        try {
+            for (UUID id : order) {
+                ReentrantLock row = rows.get(id);
+                if (!row.tryLock(5, TimeUnit.SECONDS)) {
+                    deadlocks.incrementAndGet();
+                    return null;
+                }
+                held.add(row);
+            }
+            Thread.yield();
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            for (int i = held.size() - 1; i >= 0; i--) {
+                held.get(i).unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.abrik.bank_cards.bank_cards.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InputValidatorTest {
+
+    @Test
+    @DisplayName("PAN: длина 13–19, разделители, контрольная сумма Луна чётной и нечётной длины")
+    void pan() {
+        assertThat(InputValidator.isPan("5212345678901234")).isTrue();
+        assertThat(InputValidator.isPan("5212 3456-7890 1234")).isTrue();
+        assertThat(InputValidator.isPan("4222222222222")).isTrue();          // 13 цифр
+        assertThat(InputValidator.isPan("378282246310005")).isTrue();        // 15 цифр
+        assertThat(InputValidator.isPan("6011111111111117")).isTrue();
+
+        assertThat(InputValidator.isPan("5212345678901235")).isFalse();      // не сходится Луна
+        assertThat(InputValidator.isPan("5212345678909999")).isFalse();
+        assertThat(InputValidator.isPan("422222222222")).isFalse();          // 12 цифр
+        assertThat(InputValidator.isPan("42222222222222222222")).isFalse();  // 20 цифр
+        assertThat(InputValidator.isPan("5212x45678901234")).isFalse();
+        assertThat(InputValidator.isPan(" - ")).isFalse();
+        assertThat(InputValidator.isPan(null)).isFalse();
+    }
+
+    @Test
+    @DisplayName("нормализация PAN и цифр: чистый вход возвращается тем же объектом")
+    void normalization() {
+        String clean = "5212345678901234";
+        assertThat(InputValidator.normalizePan(clean)).isSameAs(clean);
+        assertThat(InputValidator.normalizePan("5212 3456\t7890-1234")).isEqualTo(clean);
+        assertThat(InputValidator.normalizePan("5212345678901235")).isNull();
+
+        assertThat(InputValidator.stripPanSeparators("12-34 5")).isEqualTo("12345");
+        assertThat(InputValidator.digitsOf(clean)).isSameAs(clean);
+        assertThat(InputValidator.digitsOf("**** 1234")).isEqualTo("1234");
+        assertThat(InputValidator.digitsOf("visa")).isNull();
+        assertThat(InputValidator.digitsOf(null)).isNull();
+    }
+
+    @Test
+    @DisplayName("валюта: только известные коды ISO-4217 в верхнем регистре")
+    void currency() {
+        assertThat(InputValidator.isCurrency("USD")).isTrue();
+        assertThat(InputValidator.isCurrency("RUB")).isTrue();
+        assertThat(InputValidator.isCurrency("EUR")).isTrue();
+
+        assertThat(InputValidator.isCurrency("usd")).isFalse();
+        assertThat(InputValidator.isCurrency("QQQ")).isFalse();
+        assertThat(InputValidator.isCurrency("US")).isFalse();
+        assertThat(InputValidator.isCurrency("USDT")).isFalse();
+        assertThat(InputValidator.isCurrency(null)).isFalse();
+    }
+
+    @Test
+    @DisplayName("валюта: нормализация регистра, неизвестный код → null")
+    void normalizeCurrency() {
+        String upper = "USD";
+        assertThat(InputValidator.normalizeCurrency(upper)).isSameAs(upper);
+        assertThat(InputValidator.normalizeCurrency("usd")).isEqualTo("USD");
+        assertThat(InputValidator.normalizeCurrency("Eur")).isEqualTo("EUR");
+
+        assertThat(InputValidator.normalizeCurrency("qqq")).isNull();
+        assertThat(InputValidator.normalizeCurrency("us")).isNull();
+        assertThat(InputValidator.normalizeCurrency(null)).isNull();
+    }
+
+    @Test
+    @DisplayName("email: тот же формат, что у прежней регулярки")
+    void email() {
+        assertThat(InputValidator.isEmail("user@example.com")).isTrue();
+        assertThat(InputValidator.isEmail("first.last+tag@mail-server.co.uk")).isTrue();
+        assertThat(InputValidator.isEmail("a@b.c")).isTrue();
+
+        assertThat(InputValidator.isEmail("no-at-symbol")).isFalse();
+        assertThat(InputValidator.isEmail("user@domain")).isFalse();
+        assertThat(InputValidator.isEmail("@example.com")).isFalse();
+        assertThat(InputValidator.isEmail("user@.com")).isFalse();
+        assertThat(InputValidator.isEmail("user@example.")).isFalse();
+        assertThat(InputValidator.isEmail("us er@example.com")).isFalse();
+        assertThat(InputValidator.isEmail("user@exa_mple.com")).isFalse();
+        assertThat(InputValidator.isEmail("a@b.c" + "c".repeat(250))).isFalse();  // > 254
+    }
+
+    @Test
+    @DisplayName("ключ идемпотентности: 1–64 печатных ASCII без пробелов")
+    void idempotencyKey() {
+        assertThat(InputValidator.isIdempotencyKey("3f1c2a9e-7b1d-4c55-9d0e-0a7f2b6c8e11")).isTrue();
+        assertThat(InputValidator.isIdempotencyKey("k".repeat(64))).isTrue();
+
+        assertThat(InputValidator.isIdempotencyKey("k".repeat(65))).isFalse();
+        assertThat(InputValidator.isIdempotencyKey("")).isFalse();
+        assertThat(InputValidator.isIdempotencyKey("with space")).isFalse();
+        assertThat(InputValidator.isIdempotencyKey("ключ")).isFalse();
+        assertThat(InputValidator.isIdempotencyKey(null)).isFalse();
+    }
+
+    @Test
+    @DisplayName("пакетная проверка PAN возвращает индексы невалидных номеров")
+    void batch() {
+        List<String> pans = Arrays.asList("5212345678901234", "5212345678901235", null, "4222 2222 2222 2");
+
+        assertThat(InputValidator.invalidPans(pans).stream().toArray()).containsExactly(1, 2);
+        assertThat(InputValidator.invalidPans(List.of("5212345678901234")).isEmpty()).isTrue();
+    }
+}
@@ -0,0 +1,118 @@
+package com.abrik.bank_cards.bank_cards.util;
+
+import com.abrik.bank_cards.bank_cards.dto.common.CountMode;
+import com.abrik.bank_cards.bank_cards.dto.common.PageResponse;
+import com.abrik.bank_cards.bank_cards.exception.BadRequestException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PageCounterTest {
+
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+        void advance(Duration d) { now = now.plus(d); }
+
+        @Override public ZoneId getZone() { return ZoneOffset.UTC; }
+        @Override public Clock withZone(ZoneId zone) { return this; }
+        @Override public Instant instant() { return now; }
+    }
+
+    private final MutableClock clock = new MutableClock();
+    private final PageCounter pageCounter = new PageCounter(100, Duration.ofSeconds(30), clock);
+    private final AtomicInteger counts = new AtomicInteger();
+
+    private static Function<Pageable, Slice<Integer>> slice(boolean hasNext) {
+        return p -> new SliceImpl<>(List.of(1, 2), p, hasNext);
+    }
+
+    private long count() {
+        counts.incrementAndGet();
+        return 500;
+    }
+
+    @Test
+    @DisplayName("none: COUNT не выполняется, totalElements = null")
+    void none_skipsCount() {
+        PageResponse<String> page = pageCounter.fetch(CountMode.NONE, PageRequest.of(0, 2), "k",
+                slice(true), this::count, String::valueOf);
+
+        assertThat(page.getContent()).containsExactly("1", "2");
+        assertThat(page.isHasNext()).isTrue();
+        assertThat(page.getTotalElements()).isNull();
+        assertThat(page.getTotalPages()).isNull();
+        assertThat(page.getCountMode()).isEqualTo(CountMode.NONE);
+        assertThat(counts).hasValue(0);
+    }
+
+    @Test
+    @DisplayName("estimate: COUNT кэшируется по ключу до истечения TTL")
+    void estimate_cachesCountUntilTtl() {
+        PageResponse<String> first = pageCounter.fetch(CountMode.ESTIMATE, PageRequest.of(0, 2), "k",
+                slice(true), this::count, String::valueOf);
+        pageCounter.fetch(CountMode.ESTIMATE, PageRequest.of(3, 2), "k",
+                slice(true), this::count, String::valueOf);
+
+        assertThat(first.getTotalElements()).isEqualTo(500L);
+        assertThat(first.getTotalPages()).isEqualTo(250);
+        assertThat(first.getCountMode()).isEqualTo(CountMode.ESTIMATE);
+        assertThat(counts).hasValue(1);
+
+        clock.advance(Duration.ofSeconds(31));
+        pageCounter.fetch(CountMode.ESTIMATE, PageRequest.of(0, 2), "k",
+                slice(true), this::count, String::valueOf);
+        assertThat(counts).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("estimate: на последней странице итог точный и COUNT не нужен")
+    void estimate_lastPageIsExact() {
+        PageResponse<String> page = pageCounter.fetch(CountMode.ESTIMATE, PageRequest.of(4, 2), "k",
+                slice(false), this::count, String::valueOf);
+
+        assertThat(page.getTotalElements()).isEqualTo(10L);
+        assertThat(page.getCountMode()).isEqualTo(CountMode.EXACT);
+        assertThat(counts).hasValue(0);
+    }
+
+    @Test
+    @DisplayName("estimate: пустая страница за концом не выдаёт offset за итог — точный COUNT")
+    void estimate_pastEndPageCounts() {
+        PageResponse<String> page = pageCounter.fetch(CountMode.ESTIMATE, PageRequest.of(50, 2), "k",
+                p -> new SliceImpl<Integer>(List.of(), p, false), this::count, String::valueOf);
+
+        assertThat(page.getContent()).isEmpty();
+        assertThat(page.getTotalElements()).isEqualTo(500L);
+        assertThat(page.getCountMode()).isEqualTo(CountMode.EXACT);
+        assertThat(counts).hasValue(1);
+
+        PageResponse<String> first = pageCounter.fetch(CountMode.ESTIMATE, PageRequest.of(0, 2), "k",
+                p -> new SliceImpl<Integer>(List.of(), p, false), this::count, String::valueOf);
+        assertThat(first.getTotalElements()).isZero();
+        assertThat(counts).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("CountMode.from: регистр не важен, пусто — exact, мусор — BadRequest")
+    void countMode_parsing() {
+        assertThat(CountMode.from("estimate")).isEqualTo(CountMode.ESTIMATE);
+        assertThat(CountMode.from(null)).isEqualTo(CountMode.EXACT);
+        assertThrows(BadRequestException.class, () -> CountMode.from("approx"));
+    }
+}
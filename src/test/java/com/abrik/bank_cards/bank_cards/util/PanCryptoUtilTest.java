@@ -0,0 +1,131 @@
+package com.abrik.bank_cards.bank_cards.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PanCryptoUtilTest {
+
+    private static final String LEGACY_KEY = "U8ZqTyCHJ3FSNFMoHp436kRbwuB5QlQqorF1ORy8rQw=";
+    private static final String KEY_1 = "WBmC7aKN7xQNDfRoTtNuwSqqKqfCoGu6Haf3+Nj9+3s=";
+    private static final String KEY_2 = Base64.getEncoder().encodeToString(new byte[16]);
+    private static final String PAN = "5212345678901234";
+
+    private final PanCryptoUtil crypto = new PanCryptoUtil(LEGACY_KEY, "1:" + KEY_1, 1);
+
+    @Test
+    @DisplayName("конверт: формат, версия ключа, случайный IV, расшифровка")
+    void envelopeRoundTrip() {
+        byte[] first = crypto.encrypt(PAN);
+        byte[] second = crypto.encrypt(PAN);
+
+        assertThat(first).hasSize(3 + 12 + PAN.length() + 16);
+        assertThat(first[0]).isEqualTo((byte) 0x01);
+        assertThat(PanCryptoUtil.keyVersion(first)).isEqualTo(1);
+        assertThat(first).isNotEqualTo(second);
+        assertThat(crypto.decryptPan(first, null)).isEqualTo(PAN);
+        assertThat(crypto.isCurrent(first)).isTrue();
+    }
+
+    @Test
+    @DisplayName("кольцо ключей: старая версия читается, новые значения — текущей, неизвестная версия — ошибка")
+    void keyRing() {
+        byte[] underV1 = crypto.encrypt(PAN);
+        PanCryptoUtil rotated = new PanCryptoUtil(LEGACY_KEY, "1:" + KEY_1 + ",2:" + KEY_2, 2);
+
+        assertThat(rotated.isCurrent(underV1)).isFalse();
+        assertThat(rotated.decryptPan(underV1, null)).isEqualTo(PAN);
+        byte[] underV2 = rotated.encrypt(PAN);
+        assertThat(PanCryptoUtil.keyVersion(underV2)).isEqualTo(2);
+
+        assertThrows(IllegalStateException.class, () -> crypto.decrypt(underV2));
+        assertThrows(IllegalArgumentException.class, () -> new PanCryptoUtil(LEGACY_KEY, "1:" + KEY_1, 2));
+    }
+
+    @Test
+    @DisplayName("подмена версии в заголовке или шифротекста не проходит проверку тега")
+    void tamperingDetected() {
+        PanCryptoUtil sameKeyTwice = new PanCryptoUtil(LEGACY_KEY, "1:" + KEY_1 + ",2:" + KEY_1, 1);
+        byte[] envelope = sameKeyTwice.encrypt(PAN);
+
+        byte[] relabeled = envelope.clone();
+        relabeled[2] = 2;
+        assertThrows(IllegalStateException.class, () -> sameKeyTwice.decrypt(relabeled));
+
+        byte[] flipped = envelope.clone();
+        flipped[flipped.length - 20] ^= 1;
+        assertThrows(IllegalStateException.class, () -> sameKeyTwice.decrypt(flipped));
+
+        // после ошибок пул исправен
+        assertThat(sameKeyTwice.decryptPan(envelope, null)).isEqualTo(PAN);
+    }
+
+    @Test
+    @DisplayName("прежний формат (Base64 от AES/ECB) читается")
+    void legacyFormat() throws Exception {
+        Cipher legacy = Cipher.getInstance("AES");
+        legacy.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(Base64.getDecoder().decode(LEGACY_KEY), "AES"));
+        String stored = Base64.getEncoder().encodeToString(legacy.doFinal(PAN.getBytes()));
+
+        assertThat(crypto.decryptPan(null, stored)).isEqualTo(PAN);
+        assertThat(crypto.decryptLegacy(stored)).isEqualTo(PAN);
+        assertThat(crypto.decryptPan(null, null)).isNull();
+        assertThat(crypto.isCurrent(null)).isFalse();
+    }
+
+    @Test
+    @DisplayName("ByteBuffer: тот же результат, что и byte[]")
+    void byteBufferPath() {
+        byte[] envelope = crypto.encrypt(PAN.getBytes(StandardCharsets.US_ASCII));
+
+        ByteBuffer out = ByteBuffer.allocate(envelope.length);
+        int written = crypto.decrypt(ByteBuffer.wrap(envelope), out);
+        assertThat(new String(out.array(), 0, written, StandardCharsets.US_ASCII)).isEqualTo(PAN);
+    }
+
+    @Test
+    @DisplayName("параллельные вызовы не делят один Cipher")
+    void concurrentUse() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int seed = t;
+                results.add(pool.submit(() -> {
+                    for (int i = 0; i < 2_000; i++) {
+                        String pan = String.format("52%014d", seed * 1_000_000L + i);
+                        if (!crypto.decryptPan(crypto.encrypt(pan), null).equals(pan)) return false;
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> r : results) assertThat(r.get()).isTrue();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("ключ недопустимой длины и кривое кольцо отклоняются при создании")
+    void rejectsBadConfig() {
+        String shortKey = Base64.getEncoder().encodeToString(new byte[10]);
+        assertThrows(IllegalArgumentException.class, () -> new PanCryptoUtil(shortKey, "1:" + KEY_1, 1));
+        assertThrows(IllegalArgumentException.class, () -> new PanCryptoUtil(LEGACY_KEY, "1:" + shortKey, 1));
+        assertThrows(IllegalArgumentException.class, () -> new PanCryptoUtil(LEGACY_KEY, KEY_1, 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new PanCryptoUtil(LEGACY_KEY, "1:" + KEY_1 + ",1:" + KEY_2, 1));
+    }
+}
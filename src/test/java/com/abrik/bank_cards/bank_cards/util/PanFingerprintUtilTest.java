@@ -0,0 +1,37 @@
+package com.abrik.bank_cards.bank_cards.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PanFingerprintUtilTest {
+
+    private static final String KEY = "IaXooPriGnr8/TTIYU1izSlF4CkTYb6Xwd6D4FLoZl8=";
+
+    private final PanFingerprintUtil fingerprints = new PanFingerprintUtil(KEY);
+
+    @Test
+    @DisplayName("отпечаток детерминирован и не зависит от пробелов/дефисов")
+    void normalizedAndDeterministic() {
+        byte[] plain = fingerprints.fingerprint("5212345678901234");
+
+        assertThat(plain).hasSize(32);
+        assertThat(fingerprints.fingerprint("5212 3456 7890 1234")).isEqualTo(plain);
+        assertThat(fingerprints.fingerprint("5212-3456-7890-1234")).isEqualTo(plain);
+        assertThat(fingerprints.fingerprint("5212345678901235")).isNotEqualTo(plain);
+    }
+
+    @Test
+    @DisplayName("другой ключ — другой отпечаток; короткий ключ отклоняется")
+    void keyed() {
+        PanFingerprintUtil other = new PanFingerprintUtil(Base64.getEncoder().encodeToString(new byte[32]));
+
+        assertThat(other.fingerprint("5212345678901234")).isNotEqualTo(fingerprints.fingerprint("5212345678901234"));
+        assertThrows(IllegalArgumentException.class,
+                () -> new PanFingerprintUtil(Base64.getEncoder().encodeToString(new byte[16])));
+    }
+}
@@ -0,0 +1,124 @@
+package com.abrik.bank_cards.bank_cards.util;
+
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferResponse;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferStatus;
+import com.abrik.bank_cards.bank_cards.exception.BadRequestException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TransferIdempotencyCacheTest {
+
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+        void advance(Duration d) { now = now.plus(d); }
+
+        @Override public ZoneId getZone() { return ZoneOffset.UTC; }
+        @Override public Clock withZone(ZoneId zone) { return this; }
+        @Override public Instant instant() { return now; }
+    }
+
+    private static TransferResponse response() {
+        TransferResponse r = new TransferResponse();
+        r.setId(UUID.randomUUID());
+        return r;
+    }
+
+    @Test
+    @DisplayName("одновременные запросы с одним ключом выполняются один раз и получают один результат")
+    void concurrentRequests_coalesce() throws Exception {
+        TransferIdempotencyCache cache = new TransferIdempotencyCache(100, Duration.ofMinutes(1), new MutableClock());
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        TransferResponse result = response();
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            Future<TransferResponse> leader = pool.submit(() -> cache.execute(1L, "k", () -> {
+                executions.incrementAndGet();
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return result;
+            }));
+            started.await();
+
+            Future<TransferResponse> follower1 = pool.submit(() -> cache.execute(1L, "k", () -> {
+                executions.incrementAndGet();
+                return response();
+            }));
+            Future<TransferResponse> follower2 = pool.submit(() -> cache.execute(1L, "k", () -> {
+                executions.incrementAndGet();
+                return response();
+            }));
+            release.countDown();
+
+            assertThat(leader.get()).isSameAs(result);
+            assertThat(follower1.get()).isSameAs(result);
+            assertThat(follower2.get()).isSameAs(result);
+            assertThat(executions.get()).isEqualTo(1);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("завершённый результат отдаётся из кэша до истечения TTL")
+    void completedResult_servedUntilTtl() {
+        MutableClock clock = new MutableClock();
+        TransferIdempotencyCache cache = new TransferIdempotencyCache(100, Duration.ofMinutes(1), clock);
+        TransferResponse first = response();
+
+        cache.execute(1L, "k", () -> first);
+        assertThat(cache.execute(1L, "k", TransferIdempotencyCacheTest::response)).isSameAs(first);
+        // ключ изолирован по пользователю
+        assertThat(cache.execute(2L, "k", TransferIdempotencyCacheTest::response)).isNotSameAs(first);
+
+        clock.advance(Duration.ofMinutes(2));
+        assertThat(cache.execute(1L, "k", TransferIdempotencyCacheTest::response)).isNotSameAs(first);
+    }
+
+    @Test
+    @DisplayName("ошибки не кэшируются, размер кэша ограничен")
+    void errorsNotCached_andSizeBounded() {
+        TransferIdempotencyCache cache = new TransferIdempotencyCache(2, Duration.ofMinutes(1), new MutableClock());
+
+        assertThrows(BadRequestException.class, () -> cache.execute(1L, "bad", () -> {
+            throw new BadRequestException("Insufficient funds");
+        }));
+        assertThat(cache.size()).isZero();
+
+        cache.execute(1L, "a", TransferIdempotencyCacheTest::response);
+        cache.execute(1L, "b", TransferIdempotencyCacheTest::response);
+        cache.execute(1L, "c", TransferIdempotencyCacheTest::response);
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("PENDING-перевод не кэшируется: повтор должен увидеть итоговый статус")
+    void pendingNotCached() {
+        TransferIdempotencyCache cache = new TransferIdempotencyCache(100, Duration.ofMinutes(1), new MutableClock());
+        TransferResponse pending = response();
+        pending.setStatus(TransferStatus.PENDING);
+
+        cache.execute(1L, "k", () -> pending);
+
+        assertThat(cache.size()).isZero();
+    }
+}
@@ -0,0 +1,97 @@
+package com.abrik.bank_cards.bank_cards.util;
+
+import com.abrik.bank_cards.bank_cards.dto.common.CursorPage;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferCursor;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferResponse;
+import com.abrik.bank_cards.bank_cards.dto.transfer.TransferSearchOrder;
+import com.abrik.bank_cards.bank_cards.exception.BadRequestException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TransferUtilTest {
+
+    private final TransferUtil transferUtil = new TransferUtil();
+
+    private static TransferResponse transfer(Instant createdAt) {
+        TransferResponse t = new TransferResponse();
+        t.setId(UUID.randomUUID());
+        t.setCreatedAt(createdAt);
+        return t;
+    }
+
+    @Test
+    @DisplayName("курсор: encode → decode возвращает ту же позицию (с наносекундами)")
+    void cursor_roundTrip() {
+        TransferResponse t = transfer(Instant.parse("2025-03-01T10:15:30.123456789Z"));
+
+        TransferCursor c = transferUtil.decodeCursor(transferUtil.encodeCursor(t));
+
+        assertThat(c.createdAt()).isEqualTo(t.getCreatedAt());
+        assertThat(c.id()).isEqualTo(t.getId());
+    }
+
+    @Test
+    @DisplayName("курсор: пустой — начало ленты, мусор — BadRequest")
+    void cursor_emptyAndInvalid() {
+        assertThat(transferUtil.decodeCursor(null)).isNull();
+        assertThat(transferUtil.decodeCursor(" ")).isNull();
+
+        assertThrows(BadRequestException.class, () -> transferUtil.decodeCursor("not-a-cursor"));
+    }
+
+    @Test
+    @DisplayName("toCursorPage: лишняя строка даёт hasNext и курсор по последней выданной")
+    void toCursorPage_hasNext() {
+        Instant now = Instant.parse("2025-03-01T00:00:00Z");
+        List<TransferResponse> rows = List.of(transfer(now), transfer(now.minusSeconds(1)), transfer(now.minusSeconds(2)));
+
+        CursorPage<TransferResponse> page = transferUtil.toCursorPage(rows, 2);
+
+        assertThat(page.getContent()).hasSize(2);
+        assertThat(page.isHasNext()).isTrue();
+        assertThat(transferUtil.decodeCursor(page.getNextCursor()).id()).isEqualTo(rows.get(1).getId());
+
+        CursorPage<TransferResponse> last = transferUtil.toCursorPage(rows.subList(0, 2), 2);
+        assertThat(last.isHasNext()).isFalse();
+        assertThat(last.getNextCursor()).isNull();
+    }
+
+    @Test
+    @DisplayName("cursorPageSize: ограничение сверху и проверка снизу")
+    void cursorPageSize_clamped() {
+        assertThat(transferUtil.cursorPageSize(1000)).isEqualTo(TransferUtil.CURSOR_MAX_SIZE);
+        assertThrows(BadRequestException.class, () -> transferUtil.cursorPageSize(0));
+    }
+
+    @Test
+    @DisplayName("q: обрезка и нижний регистр, пустой → null, короче 3 символов → 400")
+    void normalizeMessageQuery() {
+        assertThat(transferUtil.normalizeMessageQuery("  Rent March ")).isEqualTo("rent march");
+        assertThat(transferUtil.normalizeMessageQuery("   ")).isNull();
+        assertThat(transferUtil.normalizeMessageQuery(null)).isNull();
+        assertThrows(BadRequestException.class, () -> transferUtil.normalizeMessageQuery("ab"));
+    }
+
+    @Test
+    @DisplayName("searchPageable: relevance отбрасывает sort и требует q, date — sort по умолчанию")
+    void searchPageable_byOrder() {
+        Pageable pageable = PageRequest.of(2, 10, Sort.by("amount"));
+
+        assertThat(transferUtil.searchPageable(pageable, "rent", TransferSearchOrder.RELEVANCE).getSort().isUnsorted())
+                .isTrue();
+        assertThat(transferUtil.searchPageable(PageRequest.of(0, 10), null, TransferSearchOrder.DATE).getSort())
+                .isEqualTo(Sort.by(Sort.Direction.DESC, "createdAt"));
+        assertThrows(BadRequestException.class,
+                () -> transferUtil.searchPageable(pageable, null, TransferSearchOrder.RELEVANCE));
+    }
+}